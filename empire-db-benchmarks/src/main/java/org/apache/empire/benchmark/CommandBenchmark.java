@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.empire.db.DBCommand;
+import org.apache.empire.db.DBCmdParam;
+import org.apache.empire.db.hsql.DBDatabaseDriverHSql;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the rendering of select statements by DBCommand.getSelect()
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandBenchmark
+{
+    private DBCommand simpleCmd;
+    private DBCommand joinCmd;
+    private DBCommand paramCmd;
+    
+    @Setup
+    public void setup()
+    {
+        BenchmarkDB db = new BenchmarkDB();
+        db.open(new DBDatabaseDriverHSql(), null);
+        BenchmarkDB.Employees EMP = db.EMPLOYEES;
+        BenchmarkDB.Departments DEP = db.DEPARTMENTS;
+        // simple
+        simpleCmd = db.createCommand();
+        simpleCmd.select(EMP.getColumns());
+        simpleCmd.where(EMP.RETIRED.is(false));
+        simpleCmd.orderBy(EMP.LAST_NAME);
+        // join
+        joinCmd = db.createCommand();
+        joinCmd.select(EMP.EMPLOYEE_ID, EMP.LAST_NAME.append(", ").append(EMP.FIRST_NAME).as("NAME"));
+        joinCmd.select(DEP.NAME.as("DEPARTMENT"), EMP.SALARY.sum());
+        joinCmd.join(EMP.DEPARTMENT_ID, DEP.DEPARTMENT_ID);
+        joinCmd.where(EMP.LAST_NAME.likeUpper("S%"));
+        joinCmd.where(DEP.BUSINESS_UNIT.in(new String[] { "ITTK", "SALE", "ADMN" }));
+        joinCmd.groupBy(EMP.EMPLOYEE_ID, EMP.LAST_NAME, EMP.FIRST_NAME, DEP.NAME);
+        joinCmd.having(EMP.SALARY.sum().isGreaterThan(1000));
+        joinCmd.orderBy(EMP.LAST_NAME, EMP.FIRST_NAME);
+        // with params
+        paramCmd = db.createCommand();
+        DBCmdParam idParam = paramCmd.addParam(1);
+        DBCmdParam nameParam = paramCmd.addParam("Smith");
+        paramCmd.select(EMP.getColumns());
+        paramCmd.where(EMP.DEPARTMENT_ID.is(idParam));
+        paramCmd.where(EMP.LAST_NAME.is(nameParam));
+    }
+
+    @Benchmark
+    public String simpleSelect()
+    {
+        return simpleCmd.getSelect();
+    }
+
+    @Benchmark
+    public String joinSelect()
+    {
+        return joinCmd.getSelect();
+    }
+
+    @Benchmark
+    public String paramSelect()
+    {
+        return paramCmd.getSelect();
+    }
+}
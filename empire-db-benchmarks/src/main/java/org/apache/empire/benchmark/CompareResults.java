@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.benchmark;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares two JMH result files written in CSV format (-rf csv).<br>
+ * Usage:
+ * <pre>
+ *   java -cp target/benchmarks.jar org.apache.empire.benchmark.CompareResults baseline.csv current.csv [threshold]
+ * </pre>
+ * The threshold is the tolerated deviation in percent (default 10).<br>
+ * The process exits with status 1 if at least one benchmark is slower than the baseline by more than the threshold.
+ */
+public class CompareResults
+{
+    /**
+     * A single benchmark result
+     */
+    private static class Result
+    {
+        final String mode;
+        final double score;
+        final double error;
+        final String unit;
+
+        Result(String mode, double score, double error, String unit)
+        {
+            this.mode = mode;
+            this.score = score;
+            this.error = error;
+            this.unit = unit;
+        }
+    }
+
+    public static void main(String[] args)
+        throws IOException
+    {
+        if (args.length < 2)
+        {
+            System.err.println("Usage: CompareResults <baseline.csv> <current.csv> [threshold in percent]");
+            System.exit(2);
+        }
+        double threshold = (args.length > 2 ? Double.parseDouble(args[2]) : 10.0d);
+        Map<String, Result> baseline = readResults(args[0]);
+        Map<String, Result> current  = readResults(args[1]);
+        // compare
+        int regressions = 0;
+        System.out.println(String.format("%-70s %14s %14s %9s %s", "Benchmark", "Baseline", "Current", "Change", "Unit"));
+        for (Map.Entry<String, Result> e : current.entrySet())
+        {
+            Result cur = e.getValue();
+            Result base = baseline.get(e.getKey());
+            if (base == null || !base.unit.equals(cur.unit))
+            {   // new or changed benchmark
+                System.out.println(String.format("%-70s %14s %14.3f %9s %s", e.getKey(), "-", cur.score, "new", cur.unit));
+                continue;
+            }
+            // Throughput: higher is better. All other modes: lower is better
+            boolean higherIsBetter = "thrpt".equals(cur.mode);
+            double change = (base.score != 0 ? (cur.score - base.score) * 100.0d / base.score : 0.0d);
+            double worse  = (higherIsBetter ? -change : change);
+            // Ignore differences within the measurement error
+            boolean significant = (Math.abs(cur.score - base.score) > (cur.error + base.error));
+            String flag = "";
+            if (significant && worse > threshold)
+            {   // Regression
+                flag = "  <-- REGRESSION";
+                regressions++;
+            }
+            else if (significant && -worse > threshold)
+                flag = "  (improved)";
+            System.out.println(String.format("%-70s %14.3f %14.3f %+8.1f%% %s%s", e.getKey(), base.score, cur.score, change, cur.unit, flag));
+        }
+        // missing
+        for (String name : baseline.keySet())
+        {
+            if (!current.containsKey(name))
+                System.out.println(String.format("%-70s %14.3f %14s %9s", name, baseline.get(name).score, "-", "missing"));
+        }
+        // result
+        if (regressions > 0)
+        {
+            System.out.println(regressions + " benchmark(s) regressed by more than " + threshold + "%.");
+            System.exit(1);
+        }
+        System.out.println("No regressions found.");
+    }
+
+    /**
+     * Reads a JMH CSV result file.
+     * The key of each result is the benchmark name followed by the parameter values (if any).
+     */
+    private static Map<String, Result> readResults(String fileName)
+        throws IOException
+    {
+        Map<String, Result> results = new LinkedHashMap<String, Result>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(fileName), "UTF-8"));
+        try
+        {
+            String line = reader.readLine();
+            if (line == null)
+                return results;
+            List<String> header = split(line);
+            int iName  = header.indexOf("Benchmark");
+            int iMode  = header.indexOf("Mode");
+            int iScore = header.indexOf("Score");
+            int iError = header.indexOf("Score Error (99.9%)");
+            int iUnit  = header.indexOf("Unit");
+            while ((line = reader.readLine()) != null)
+            {
+                if (line.trim().length() == 0)
+                    continue;
+                List<String> cols = split(line);
+                StringBuilder key = new StringBuilder(cols.get(iName));
+                for (int i = 0; i < header.size() && i < cols.size(); i++)
+                {   // append params
+                    if (header.get(i).startsWith("Param: ") && cols.get(i).length() > 0)
+                        key.append(" ").append(header.get(i).substring(7)).append("=").append(cols.get(i));
+                }
+                double error = (iError >= 0 ? parseDouble(cols.get(iError)) : 0.0d);
+                results.put(key.toString(), new Result(cols.get(iMode), parseDouble(cols.get(iScore)), error, cols.get(iUnit)));
+            }
+        } finally {
+            reader.close();
+        }
+        return results;
+    }
+
+    private static double parseDouble(String value)
+    {
+        if (value.length() == 0 || "NaN".equals(value))
+            return 0.0d;
+        return Double.parseDouble(value.replace(',', '.'));
+    }
+
+    /**
+     * Splits a CSV line. Values may be enclosed in double quotes.
+     */
+    private static List<String> split(String line)
+    {
+        List<String> cols = new ArrayList<String>();
+        StringBuilder col = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++)
+        {
+            char c = line.charAt(i);
+            if (c == '"')
+                quoted = !quoted;
+            else if (c == ',' && !quoted)
+            {
+                cols.add(col.toString());
+                col.setLength(0);
+            }
+            else
+                col.append(c);
+        }
+        cols.add(col.toString());
+        return cols;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.benchmark;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.empire.commons.ObjectUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures value conversion by ObjectUtils.convert()
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConvertBenchmark
+{
+    private Object intValue = Integer.valueOf(4711);
+    private Object longValue = Long.valueOf(4711L);
+    private Object decimalValue = new BigDecimal("4711.25");
+    private Object stringValue = "4711";
+    
+    @Benchmark
+    public Object sameType()
+    {
+        return ObjectUtils.convert(Integer.class, intValue);
+    }
+
+    @Benchmark
+    public void numberToNumber(Blackhole bh)
+    {
+        bh.consume(ObjectUtils.convert(Integer.class, longValue));
+        bh.consume(ObjectUtils.convert(Long.class, intValue));
+        bh.consume(ObjectUtils.convert(Double.class, decimalValue));
+    }
+
+    @Benchmark
+    public void stringToNumber(Blackhole bh)
+    {
+        bh.consume(ObjectUtils.convert(Integer.class, stringValue));
+        bh.consume(ObjectUtils.convert(Long.class, stringValue));
+    }
+
+    @Benchmark
+    public Object numberToString()
+    {
+        return ObjectUtils.convert(String.class, decimalValue);
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.benchmark;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.empire.db.DBDatabase;
+import org.apache.empire.db.hsql.DBDatabaseDriverHSql;
+
+/**
+ * A driver that generates SQL like the HSQLDB driver but does not execute any insert, update or delete statements.
+ * This allows to measure SQL generation without the cost of the database.
+ */
+public class MockDriver extends DBDatabaseDriverHSql
+{
+    private final static long serialVersionUID = 1L;
+    
+    private final AtomicLong sequence = new AtomicLong();
+    private long sqlLength = 0;
+
+    /**
+     * Returns the total length of all SQL statements passed to executeSQL.
+     * @return the total statement length
+     */
+    public long getSqlLength()
+    {
+        return sqlLength;
+    }
+
+    @Override
+    public Object getNextSequenceValue(DBDatabase db, String seqName, int minValue, Connection conn)
+    {
+        return sequence.incrementAndGet();
+    }
+
+    @Override
+    public Timestamp getUpdateTimestamp(Connection conn)
+    {
+        return new Timestamp(System.currentTimeMillis());
+    }
+
+    @Override
+    public int executeSQL(String sqlCmd, Object[] sqlParams, Connection conn, DBSetGenKeys genKeys)
+        throws SQLException
+    {
+        // Do not execute
+        sqlLength += sqlCmd.length();
+        return 1;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.empire.commons.Options;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the lookup of option entries by value
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OptionsBenchmark
+{
+    @Param({ "5", "50", "500" })
+    public int size;
+    
+    private Options options;
+    private Object firstValue;
+    private Object lastValue;
+    private Object missingValue;
+    
+    @Setup
+    public void setup()
+    {
+        options = new Options();
+        for (int i=0; i<size; i++)
+            options.set("K" + i, "Text " + i);
+        firstValue = "K0";
+        lastValue = "K" + (size - 1);
+        missingValue = "X";
+    }
+
+    @Benchmark
+    public void get(Blackhole bh)
+    {
+        bh.consume(options.get(firstValue));
+        bh.consume(options.get(lastValue));
+    }
+
+    @Benchmark
+    public boolean containsMissing()
+    {
+        return options.contains(missingValue);
+    }
+
+    @Benchmark
+    public Object getEntry()
+    {
+        return options.getEntry(lastValue);
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.benchmark;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.empire.db.DBCommand;
+import org.apache.empire.db.DBReader;
+import org.apache.empire.db.DBRecord;
+import org.apache.empire.db.hsql.DBDatabaseDriverHSql;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures DBReader iteration and DBReader.getBeanList() on an in-memory HSQLDB database.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReaderBenchmark
+{
+    /**
+     * The bean used for getBeanList()
+     */
+    public static class Employee
+    {
+        private int employeeId;
+        private String firstName;
+        private String lastName;
+        private BigDecimal salary;
+        private boolean retired;
+
+        public int getEmployeeId()
+        {
+            return employeeId;
+        }
+
+        public void setEmployeeId(int employeeId)
+        {
+            this.employeeId = employeeId;
+        }
+
+        public String getFirstName()
+        {
+            return firstName;
+        }
+
+        public void setFirstName(String firstName)
+        {
+            this.firstName = firstName;
+        }
+
+        public String getLastName()
+        {
+            return lastName;
+        }
+
+        public void setLastName(String lastName)
+        {
+            this.lastName = lastName;
+        }
+
+        public BigDecimal getSalary()
+        {
+            return salary;
+        }
+
+        public void setSalary(BigDecimal salary)
+        {
+            this.salary = salary;
+        }
+
+        public boolean isRetired()
+        {
+            return retired;
+        }
+
+        public void setRetired(boolean retired)
+        {
+            this.retired = retired;
+        }
+    }
+
+    @Param({ "100", "10000" })
+    public int rowCount;
+
+    private Connection conn;
+    private BenchmarkDB db;
+    private DBCommand cmd;
+    
+    @Setup
+    public void setup()
+    {
+        conn = BenchmarkDB.openConnection("readerBenchmark");
+        db = new BenchmarkDB();
+        db.open(new DBDatabaseDriverHSql(), conn);
+        db.createTables(conn);
+        // department
+        DBRecord dep = new DBRecord();
+        dep.create(db.DEPARTMENTS);
+        dep.setValue(db.DEPARTMENTS.NAME, "Development");
+        dep.update(conn);
+        // employees
+        BenchmarkDB.Employees EMP = db.EMPLOYEES;
+        DBRecord rec = new DBRecord();
+        for (int i=0; i<rowCount; i++)
+        {
+            rec.create(EMP);
+            rec.setValue(EMP.FIRST_NAME, "First" + i);
+            rec.setValue(EMP.LAST_NAME, "Last" + i);
+            rec.setValue(EMP.DEPARTMENT_ID, dep.getValue(db.DEPARTMENTS.DEPARTMENT_ID));
+            rec.setValue(EMP.SALARY, new BigDecimal(1000 + i));
+            rec.update(conn);
+        }
+        db.commit(conn);
+        // the query
+        cmd = db.createCommand();
+        cmd.select(EMP.EMPLOYEE_ID, EMP.FIRST_NAME, EMP.LAST_NAME, EMP.SALARY, EMP.RETIRED);
+        cmd.orderBy(EMP.EMPLOYEE_ID);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        db.close(conn);
+        BenchmarkDB.closeConnection(conn);
+    }
+
+    @Benchmark
+    public void iterate(Blackhole bh)
+    {
+        BenchmarkDB.Employees EMP = db.EMPLOYEES;
+        DBReader reader = new DBReader();
+        try
+        {
+            reader.open(cmd, conn);
+            while (reader.moveNext())
+            {
+                bh.consume(reader.getInt(EMP.EMPLOYEE_ID));
+                bh.consume(reader.getString(EMP.FIRST_NAME));
+                bh.consume(reader.getString(EMP.LAST_NAME));
+                bh.consume(reader.getDecimal(EMP.SALARY));
+                bh.consume(reader.getBoolean(EMP.RETIRED));
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Benchmark
+    public List<Employee> getBeanList()
+    {
+        DBReader reader = new DBReader();
+        try
+        {
+            reader.open(cmd, conn);
+            return reader.getBeanList(Employee.class);
+        } finally {
+            reader.close();
+        }
+    }
+}
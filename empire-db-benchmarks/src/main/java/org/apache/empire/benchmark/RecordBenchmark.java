@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.benchmark;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.empire.db.DBRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures DBRecord value access and the generation of update statements by DBRowSet.updateRecord().<br>
+ * Statements are not executed (see {@link MockDriver}).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecordBenchmark
+{
+    private static final String[] NAMES = new String[] { "Smith", "Miller" }; 
+
+    private Connection conn;
+    private BenchmarkDB db;
+    private DBRecord rec;
+    private int count;
+    
+    @Setup
+    public void setup()
+    {
+        conn = BenchmarkDB.openConnection("recordBenchmark");
+        db = new BenchmarkDB();
+        db.open(new MockDriver(), conn);
+        // create a record
+        BenchmarkDB.Employees EMP = db.EMPLOYEES;
+        rec = new DBRecord();
+        rec.create(EMP);
+        rec.setValue(EMP.FIRST_NAME, "John");
+        rec.setValue(EMP.LAST_NAME, NAMES[0]);
+        rec.setValue(EMP.DEPARTMENT_ID, 1);
+        rec.setValue(EMP.GENDER, "M");
+        rec.setValue(EMP.SALARY, new BigDecimal("2000.00"));
+        rec.update(conn);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        db.close(conn);
+        BenchmarkDB.closeConnection(conn);
+    }
+
+    @Benchmark
+    public boolean setValue()
+    {
+        rec.setValue(db.EMPLOYEES.LAST_NAME, NAMES[(count++) & 1]);
+        return rec.isModified();
+    }
+
+    @Benchmark
+    public void getValue(Blackhole bh)
+    {
+        BenchmarkDB.Employees EMP = db.EMPLOYEES;
+        bh.consume(rec.getValue(EMP.LAST_NAME));
+        bh.consume(rec.getString(EMP.FIRST_NAME));
+        bh.consume(rec.getInt(EMP.DEPARTMENT_ID));
+        bh.consume(rec.getBoolean(EMP.RETIRED));
+    }
+
+    @Benchmark
+    public long updateRecord()
+    {
+        BenchmarkDB.Employees EMP = db.EMPLOYEES;
+        rec.setValue(EMP.LAST_NAME, NAMES[(count++) & 1]);
+        rec.setValue(EMP.SALARY, count);
+        rec.update(conn);
+        return ((MockDriver)db.getDriver()).getSqlLength();
+    }
+}
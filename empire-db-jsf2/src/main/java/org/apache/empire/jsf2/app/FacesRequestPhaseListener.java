@@ -46,6 +46,14 @@ public class FacesRequestPhaseListener implements PhaseListener
     @Override
     public void beforePhase(PhaseEvent pe)
     {
+        // Request start
+        if (pe.getPhaseId() == PhaseId.RESTORE_VIEW)
+        {
+            WebApplication app = WebApplication.getInstance();
+            if (app!=null)
+                app.onRequestStart(pe.getFacesContext());
+            return;
+        }
         // Only when rendering the response
         if (pe.getPhaseId() != PhaseId.RENDER_RESPONSE)
             return;
@@ -74,6 +82,12 @@ public class FacesRequestPhaseListener implements PhaseListener
             else
                 log.warn("No WebApplication available to complete and cleanup request. Please create a managed bean of name "+WebApplication.APPLICATION_BEAN_NAME);
         }
+        else if (pe.getPhaseId() == PhaseId.INVOKE_APPLICATION)
+        {   // Action complete: release connections before rendering
+            WebApplication app = WebApplication.getInstance();
+            if (app!=null)
+                app.onInvokeApplicationComplete(ctx);
+        }
             
     }
 
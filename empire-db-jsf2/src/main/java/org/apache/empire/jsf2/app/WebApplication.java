@@ -25,6 +25,8 @@ import java.util.Iterator;
 import java.util.Locale;
 import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.faces.FactoryFinder;
 import javax.faces.application.Application;
@@ -41,6 +43,8 @@ import javax.sql.DataSource;
 import org.apache.empire.commons.StringUtils;
 import org.apache.empire.data.DataType;
 import org.apache.empire.db.DBDatabase;
+import org.apache.empire.db.DBReadReplicaRouter;
+import org.apache.empire.db.DBReader;
 import org.apache.empire.exceptions.InternalException;
 import org.apache.empire.exceptions.InvalidArgumentException;
 import org.apache.empire.exceptions.NotSupportedException;
@@ -57,6 +61,10 @@ public abstract class WebApplication
 
     private static final String CONNECTION_ATTRIBUTE  = "dbConnections";
 
+    private static final String CONNECTION_TIME_ATTRIBUTE = "dbConnectionTimes";
+
+    private static final String READ_CONNECTION_ATTRIBUTE = "dbReadConnections";
+
     public static String        APPLICATION_BEAN_NAME = "webApplication";
 
     protected TextResolver[]    textResolvers         = null;
@@ -66,6 +74,14 @@ public abstract class WebApplication
     private FacesImplementation facesImpl			  = null;
     
     private static WebApplication appInstance         = null;
+
+    private boolean             releaseConnectionsAfterAction = false;
+
+    /** Connection statistics **/
+    private final AtomicInteger activeConnections     = new AtomicInteger();
+    private final AtomicLong    connectionCount       = new AtomicLong();
+    private final AtomicLong    connectionHoldNanos   = new AtomicLong();
+    private final AtomicLong    maxConnectionHoldNanos = new AtomicLong();
     
     public static WebApplication getInstance()
     {
@@ -121,6 +137,18 @@ public abstract class WebApplication
 
     /* Context handling */
     
+    /**
+     * handle request start
+     * @param ctx
+     */
+    public void onRequestStart(final FacesContext ctx)
+    {
+        // Readers left open by a previous request on this thread
+        int count = DBReader.resetOpenReaderCount();
+        if (count > 0)
+            log.warn("{} DBReader(s) of a previous request have not been closed.", count);
+    }
+
     /**
      * handle request cleanup
      * @param ctx
@@ -128,6 +156,88 @@ public abstract class WebApplication
     public void onRequestComplete(final FacesContext ctx)
     {
         releaseAllConnections(ctx);
+        // Reset open readers
+        int count = DBReader.resetOpenReaderCount();
+        if (count > 0)
+            log.warn("{} DBReader(s) have not been closed at the end of the request.", count);
+    }
+
+    /**
+     * handle the end of the invoke application phase.<br>
+     * If releaseConnectionsAfterAction is enabled, the connections of the request are committed (or rolled back on error)
+     * and returned to the pool, unless a DBReader is still open on the current thread.
+     * If rendering requires a connection, a new one is obtained by getConnectionForRequest().
+     * @param ctx
+     */
+    public void onInvokeApplicationComplete(final FacesContext ctx)
+    {
+        if (!releaseConnectionsAfterAction || ctx.getResponseComplete())
+            return;
+        // Check open readers
+        if (DBReader.getOpenReaderCount() > 0)
+        {   // Readers might still be used for rendering
+            log.debug("Connections are kept for rendering since {} DBReader(s) are open.", DBReader.getOpenReaderCount());
+            return;
+        }
+        releaseAllConnections(ctx);
+    }
+
+    /**
+     * Returns whether connections are released after the invoke application phase
+     * @return true if connections are released before rendering
+     */
+    public boolean isReleaseConnectionsAfterAction()
+    {
+        return releaseConnectionsAfterAction;
+    }
+
+    /**
+     * Sets whether connections are released after the invoke application phase.<br>
+     * If false (default), connections are held until the response has been rendered.<br>
+     * If true, changes made by an action are committed before rendering,
+     * hence they are not rolled back if an error occurs while the response is rendered.
+     * @param releaseConnectionsAfterAction true to release connections before rendering
+     */
+    public void setReleaseConnectionsAfterAction(boolean releaseConnectionsAfterAction)
+    {
+        this.releaseConnectionsAfterAction = releaseConnectionsAfterAction;
+    }
+
+    /**
+     * Returns the number of request connections currently held
+     * @return the number of active connections
+     */
+    public int getActiveConnectionCount()
+    {
+        return activeConnections.get();
+    }
+
+    /**
+     * Returns the number of request connections obtained from the pool
+     * @return the number of connections obtained
+     */
+    public long getConnectionCount()
+    {
+        return connectionCount.get();
+    }
+
+    /**
+     * Returns the average time a request connection has been held
+     * @return the average hold time in milliseconds
+     */
+    public long getAvgConnectionHoldTime()
+    {
+        long count = connectionCount.get() - activeConnections.get();
+        return (count > 0) ? connectionHoldNanos.get() / count / 1000000L : 0;
+    }
+
+    /**
+     * Returns the maximum time a request connection has been held
+     * @return the maximum hold time in milliseconds
+     */
+    public long getMaxConnectionHoldTime()
+    {
+        return maxConnectionHoldNanos.get() / 1000000L;
     }
 
     /**
@@ -457,9 +567,114 @@ public abstract class WebApplication
             FacesUtils.setRequestAttribute(fc, CONNECTION_ATTRIBUTE, connMap);
         }
         connMap.put(db, conn);
+        // Remember acquisition time
+        @SuppressWarnings("unchecked")
+        Map<DBDatabase, Long> timeMap = (Map<DBDatabase, Long>) FacesUtils.getRequestAttribute(fc, CONNECTION_TIME_ATTRIBUTE);
+        if (timeMap == null)
+        {
+            timeMap = new HashMap<DBDatabase, Long>();
+            FacesUtils.setRequestAttribute(fc, CONNECTION_TIME_ATTRIBUTE, timeMap);
+        }
+        timeMap.put(db, System.nanoTime());
+        connectionCount.incrementAndGet();
+        activeConnections.incrementAndGet();
         return conn;
     }
 
+    /**
+     * returns a connection for read-only queries of the current Request.<br>
+     * If the database has a read replica router, the connection is obtained from a read replica
+     * unless the request already holds a connection to the primary or a write has recently been performed.<br>
+     * Otherwise the connection for the request is returned.
+     */
+    public Connection getReadConnectionForRequest(FacesContext fc, DBDatabase db)
+    {
+        if (fc == null)
+            throw new InvalidArgumentException("FacesContext", fc);
+        if (db == null)
+            throw new InvalidArgumentException("DBDatabase", db);
+        // Check router
+        DBReadReplicaRouter router = db.getReadReplicaRouter();
+        if (router == null)
+            return getConnectionForRequest(fc, db);
+        // Read your own writes
+        @SuppressWarnings("unchecked")
+        Map<DBDatabase, Connection> connMap = (Map<DBDatabase, Connection>) FacesUtils.getRequestAttribute(fc, CONNECTION_ATTRIBUTE);
+        if ((connMap != null && connMap.containsKey(db)) || router.isStickyToPrimary())
+            return getConnectionForRequest(fc, db);
+        // Get read connection map
+        @SuppressWarnings("unchecked")
+        Map<DBDatabase, Connection> readMap = (Map<DBDatabase, Connection>) FacesUtils.getRequestAttribute(fc, READ_CONNECTION_ATTRIBUTE);
+        if (readMap != null && readMap.containsKey(db))
+            return readMap.get(db);
+        // Replica Connection
+        Connection conn;
+        try
+        { // Obtain a connection
+            conn = router.getReadConnection();
+        }
+        catch (SQLException e)
+        {
+            log.error("Failed to get read connection.", e);
+            throw new InternalException(e);
+        }
+        // Add to map
+        if (readMap == null)
+        {
+            readMap = new HashMap<DBDatabase, Connection>();
+            FacesUtils.setRequestAttribute(fc, READ_CONNECTION_ATTRIBUTE, readMap);
+        }
+        readMap.put(db, conn);
+        return conn;
+    }
+
+    /**
+     * closes the read connections of the current Request
+     */
+    private void releaseReadConnections(final FacesContext fc)
+    {
+        @SuppressWarnings("unchecked")
+        Map<DBDatabase, Connection> readMap = (Map<DBDatabase, Connection>) FacesUtils.getRequestAttribute(fc, READ_CONNECTION_ATTRIBUTE);
+        if (readMap == null)
+            return;
+        for (Connection conn : readMap.values())
+        {
+            try
+            { // nothing to commit
+                conn.close();
+            }
+            catch (SQLException e)
+            {
+                log.error("Error releasing read connection", e);
+            }
+        }
+        // remove from request map
+        FacesUtils.setRequestAttribute(fc, READ_CONNECTION_ATTRIBUTE, null);
+    }
+
+    /**
+     * records the hold time of a request connection
+     */
+    private void onConnectionReleased(final FacesContext fc, DBDatabase db)
+    {
+        @SuppressWarnings("unchecked")
+        Map<DBDatabase, Long> timeMap = (Map<DBDatabase, Long>) FacesUtils.getRequestAttribute(fc, CONNECTION_TIME_ATTRIBUTE);
+        Long start = (timeMap != null) ? timeMap.remove(db) : null;
+        if (start == null)
+            return;
+        if (timeMap.isEmpty())
+            FacesUtils.setRequestAttribute(fc, CONNECTION_TIME_ATTRIBUTE, null);
+        // statistics
+        long nanos = System.nanoTime() - start;
+        activeConnections.decrementAndGet();
+        connectionHoldNanos.addAndGet(nanos);
+        long max = maxConnectionHoldNanos.get();
+        while (nanos > max && !maxConnectionHoldNanos.compareAndSet(max, nanos))
+            max = maxConnectionHoldNanos.get();
+        if (log.isDebugEnabled())
+            log.debug("Connection for {} was held for {} ms.", db.getClass().getSimpleName(), nanos / 1000000L);
+    }
+
     /**
      * releases the current request connection
      * @param fc the FacesContext
@@ -474,10 +689,13 @@ public abstract class WebApplication
             for (Map.Entry<DBDatabase, Connection> e : connMap.entrySet())
             {
                 releaseConnection(e.getKey(), e.getValue(), commit);
+                onConnectionReleased(fc, e.getKey());
             }
             // remove from request map
             FacesUtils.setRequestAttribute(fc, CONNECTION_ATTRIBUTE, null);
         }
+        // Read connections
+        releaseReadConnections(fc);
     }
 
     public void releaseAllConnections(final FacesContext fc)
@@ -492,6 +710,7 @@ public abstract class WebApplication
         if (connMap != null && connMap.containsKey(db))
         { // Walk the connection map
             releaseConnection(db, connMap.get(db), commit);
+            onConnectionReleased(fc, db);
             connMap.remove(db);
             if (connMap.size() == 0)
                 FacesUtils.setRequestAttribute(fc, CONNECTION_ATTRIBUTE, null);
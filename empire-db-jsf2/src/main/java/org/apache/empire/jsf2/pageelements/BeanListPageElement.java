@@ -18,6 +18,7 @@
  */
 package org.apache.empire.jsf2.pageelements;
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -29,6 +30,7 @@ import org.apache.empire.commons.ObjectUtils;
 import org.apache.empire.commons.StringUtils;
 import org.apache.empire.data.Column;
 import org.apache.empire.data.DataType;
+import org.apache.empire.db.DBBeanMapper;
 import org.apache.empire.db.DBColumn;
 import org.apache.empire.db.DBColumnExpr;
 import org.apache.empire.db.DBCommand;
@@ -72,6 +74,8 @@ public class BeanListPageElement<T> extends ListPageElement<T> implements ListIt
     protected DBOrderByExpr     secondarySortOrder   = null;
     
     protected int               maxItemCount = 1000;
+
+    protected boolean           keysetPagination = false;
     
     /**
      * Extended ListTableInfo
@@ -210,6 +214,25 @@ public class BeanListPageElement<T> extends ListPageElement<T> implements ListIt
         this.secondarySortOrder = secondarySortOrder;
     }
 
+    public boolean isKeysetPagination()
+    {
+        return keysetPagination;
+    }
+
+    /**
+     * Enables or disables keyset pagination.<br>
+     * If enabled, the key columns of the rowset are added to the order by clause as tie-breakers
+     * and the key of the last row of each page is stored in the ListTableInfo.
+     * The following page is then selected with a seek constraint (see DBCommand.whereSeek) instead of skipping all previous rows.
+     * Hence the cost of loading a page does not depend on its position.<br>
+     * The order by expressions must be part of the select list and must not be null.
+     * @param keysetPagination flag whether to use keyset pagination
+     */
+    public void setKeysetPagination(boolean keysetPagination)
+    {
+        this.keysetPagination = keysetPagination;
+    }
+
     /** session scoped properties **/
     @Override
     public ListTableInfo getTableInfo()
@@ -256,7 +279,7 @@ public class BeanListPageElement<T> extends ListPageElement<T> implements ListIt
         { // Negative count means: loadItems should load all items.
             countCmd.clearSelect();
             countCmd.select(rowset.count());
-            int count = rowset.getDatabase().querySingleInt(countCmd.getSelect(), countCmd.getParamValues(), 0, getConnection(rowset));
+            int count = rowset.getDatabase().querySingleInt(countCmd.getSelect(), countCmd.getParamValues(), 0, getReadConnection(rowset));
             lti.init(count, pageSize);
         }
         else
@@ -340,6 +363,7 @@ public class BeanListPageElement<T> extends ListPageElement<T> implements ListIt
             int position = 0;
             int skipRows = 0;
             int maxItems = maxItemCount;
+            DBCommand cmd = queryCmd;
             if (loadPageFromPosition)
             {   // detect position
                 position = lti.getPosition();
@@ -354,22 +378,30 @@ public class BeanListPageElement<T> extends ListPageElement<T> implements ListIt
                 // maxItems
                 maxItems = lti.getPageSize();
                 skipRows = position;
+                // keyset pagination
+                Object[] pageKey = (keysetPagination && position > 0) ? lti.getPageKey(position) : null;
+                if (pageKey != null)
+                {   // seek the page instead of skipping all previous rows
+                    cmd = queryCmd.clone();
+                    cmd.whereSeek(pageKey, false);
+                    skipRows = 0;
+                }
                 // constraint
-                queryCmd.clearLimit();
-                DBDatabaseDriver driver = queryCmd.getDatabase().getDriver(); 
+                cmd.clearLimit();
+                DBDatabaseDriver driver = cmd.getDatabase().getDriver(); 
                 if (driver.isSupported(DBDriverFeature.QUERY_LIMIT_ROWS))
                 {   // let the database limit the rows
                     if (driver.isSupported(DBDriverFeature.QUERY_SKIP_ROWS))
                     {   // let the database skip the rows
-                        queryCmd.skipRows(skipRows);
+                        cmd.skipRows(skipRows);
                         skipRows = 0;
                     }
-                    queryCmd.limitRows(skipRows+maxItems);
+                    cmd.limitRows(skipRows+maxItems);
                 }
             }
 
             // DBReader.open must always be surrounded with a try {} finally {} block!
-            r.open(queryCmd, getConnection(queryCmd));
+            r.open(cmd, getReadConnection(cmd));
 
             // get position from the session
             if (skipRows>0)
@@ -378,7 +410,10 @@ public class BeanListPageElement<T> extends ListPageElement<T> implements ListIt
             }
 
             // Read all Items
-            items = r.getBeanList(beanClass, maxItems);
+            if (keysetPagination && loadPageFromPosition)
+                items = readPageItems(r, cmd, position, maxItems);
+            else
+                items = r.getBeanList(beanClass, maxItems);
             if (items == null)
                 throw new UnexpectedReturnValueException(items, "DBReader.getBeanList");
             generateIdParams(rowset, items);
@@ -420,6 +455,38 @@ public class BeanListPageElement<T> extends ListPageElement<T> implements ListIt
         }
     }
 
+    /**
+     * Reads the items of a page and stores the key of the last row for keyset pagination
+     * @param r the reader
+     * @param cmd the query command
+     * @param position the position of the first row
+     * @param maxItems the page size
+     * @return the list of items
+     */
+    protected List<T> readPageItems(DBReader r, DBCommand cmd, int position, int maxItems)
+    {
+        DBBeanMapper<T> mapper = DBBeanMapper.getMapper(beanClass, cmd.getSelectExprList());
+        List<T> list = new ArrayList<T>(maxItems);
+        while (list.size() < maxItems && r.moveNext())
+        {   // add bean
+            list.add(mapper.map(r));
+        }
+        if (list.size() < maxItems)
+            return list; // last page
+        // reader is still positioned on the last row
+        Object[] key = cmd.getSeekKey(r);
+        for (int i = 0; key != null && i < key.length; i++)
+        {   // null values cannot be compared
+            if (key[i] == null)
+                key = null;
+        }
+        if (key != null)
+            getTableInfo().setPageKey(position + maxItems, key);
+        else
+            log.warn("Keyset pagination for {} not possible. Order by expressions must be selected and not null.", getPropertyName());
+        return list;
+    }
+
     /**
      * set order by for db queries
      * 
@@ -466,6 +533,22 @@ public class BeanListPageElement<T> extends ListPageElement<T> implements ListIt
         {
             cmd.orderBy(secondarySortOrder);
         }
+        // Keyset pagination requires a unique order
+        if (keysetPagination && rowset.getKeyColumns() != null)
+        {   // add key columns as tie-breakers
+            for (DBColumn keyColumn : rowset.getKeyColumns())
+            {
+                boolean found = false;
+                List<DBOrderByExpr> order = cmd.getOrderBy();
+                for (int i = 0; order != null && i < order.size(); i++)
+                {
+                    if (order.get(i).getColumnExpr().equals(keyColumn))
+                        found = true;
+                }
+                if (!found)
+                    cmd.orderBy(keyColumn);
+            }
+        }
     }
     
     /* Scrollbar relacted functions */
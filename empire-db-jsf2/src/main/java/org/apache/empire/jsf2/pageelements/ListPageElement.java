@@ -20,8 +20,10 @@ package org.apache.empire.jsf2.pageelements;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 
 import javax.faces.event.ActionEvent;
 
@@ -190,6 +192,9 @@ public abstract class ListPageElement<T> extends PageElement
         private int               position         = 0;
         private int               pageSize         = 0;
 
+        /** Keyset pagination **/
+        private Map<Integer, Object[]> pageKeys    = null;
+
         public void init(int itemCount, int pageSize)
         {
             if (pageSize < 0)
@@ -201,6 +206,7 @@ public abstract class ListPageElement<T> extends PageElement
             this.position = 0;
             this.valid = (itemCount >= 0);
             this.modified = false;
+            this.pageKeys = null;
         }
 
         public boolean isValid()
@@ -255,6 +261,7 @@ public abstract class ListPageElement<T> extends PageElement
             this.position = 0;
             this.modified = true;
             this.sortOrderChanged = true;
+            this.pageKeys = null;
         }
 
         public boolean getSortAscending()
@@ -272,6 +279,7 @@ public abstract class ListPageElement<T> extends PageElement
             this.sortAscending = sortAscending;
             this.modified = true;
             this.sortOrderChanged = true;
+            this.pageKeys = null;
         }
 
         public boolean isSortOrderChanged()
@@ -284,6 +292,45 @@ public abstract class ListPageElement<T> extends PageElement
             this.sortOrderChanged = sortOrderChanged;
         }
 
+        /*** keyset pagination ***/
+
+        /**
+         * Returns the key of the row preceding the given position.<br>
+         * The key consists of the values of the order by expressions and allows to seek a page instead of skipping all previous rows.
+         * @param position the position of the first row of a page
+         * @return the key or null if not known
+         */
+        public Object[] getPageKey(int position)
+        {
+            return (this.pageKeys!=null ? this.pageKeys.get(position) : null);
+        }
+
+        /**
+         * Sets the key of the row preceding the given position
+         * @param position the position of the first row of a page
+         * @param key the values of the order by expressions or null to remove the key
+         */
+        public void setPageKey(int position, Object[] key)
+        {
+            if (key == null)
+            {   // remove
+                if (this.pageKeys != null)
+                    this.pageKeys.remove(position);
+                return;
+            }
+            if (this.pageKeys == null)
+                this.pageKeys = new HashMap<Integer, Object[]>();
+            this.pageKeys.put(position, key);
+        }
+
+        /**
+         * Removes all page keys
+         */
+        public void clearPageKeys()
+        {
+            this.pageKeys = null;
+        }
+
         /*** pagination ***/
 
         public int getPosition()
@@ -393,6 +393,17 @@ public abstract class Page implements Serializable
         return app.getConnectionForRequest(FacesUtils.getContext(), db);
     }
 
+    /**
+     * return a connection for read-only queries on a particular database
+     * @param db the database for which to obtain a connection
+     * @return the read connection for the given database
+     */
+    public Connection getReadConnection(DBDatabase db)
+    {       
+        WebApplication app = FacesUtils.getWebApplication();
+        return app.getReadConnectionForRequest(FacesUtils.getContext(), db);
+    }
+
     public Object[] getKeyFromParam(DBRowSet rowset, String idParam)
     {
         FacesContext fc = FacesUtils.getContext();
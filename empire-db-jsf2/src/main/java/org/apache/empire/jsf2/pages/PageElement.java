@@ -112,6 +112,18 @@ public class PageElement implements Serializable
             throw new InvalidArgumentException("dbo", dbo);
         return page.getConnection(dbo.getDatabase());
     }
+
+    public Connection getReadConnection(DBDatabase db)
+    {
+        return page.getReadConnection(db);
+    }
+
+    public Connection getReadConnection(DBObject dbo)
+    {
+        if (dbo==null)
+            throw new InvalidArgumentException("dbo", dbo);
+        return page.getReadConnection(dbo.getDatabase());
+    }
     
     /**
      * generates a default property name for the bean list
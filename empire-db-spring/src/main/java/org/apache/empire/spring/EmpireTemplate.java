@@ -28,6 +28,7 @@ import javax.sql.DataSource;
 
 import org.apache.empire.db.DBColumnExpr;
 import org.apache.empire.db.DBCommand;
+import org.apache.empire.db.DBReadReplicaRouter;
 import org.apache.empire.db.DBReader;
 import org.apache.empire.db.DBRecord;
 import org.apache.empire.db.DBRecordData;
@@ -42,6 +43,7 @@ import org.springframework.dao.IncorrectResultSizeDataAccessException;
 import org.springframework.dao.support.DataAccessUtils;
 import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.Assert;
 
 /**
@@ -388,10 +390,30 @@ public class EmpireTemplate implements InitializingBean {
 				return query(connection, cmd, readerExtractor);
 			}
 		}
-		return getJdbcTemplate().execute(new QueryCallback());
+		return getQueryJdbcTemplate(cmd).execute(new QueryCallback());
 
 	}
 
+	/**
+	 * Returns the JdbcTemplate used to execute a query. If the database of
+	 * the command has a read replica router and no transaction is active,
+	 * the query is executed on a read connection of the router.
+	 * 
+	 * @param cmd
+	 *            the DBCommand to execute
+	 * @return the JdbcTemplate for the query
+	 */
+	protected JdbcTemplate getQueryJdbcTemplate(DBCommand cmd) {
+		DBReadReplicaRouter router = cmd.getDatabase().getReadReplicaRouter();
+		if (router == null
+				|| TransactionSynchronizationManager.isActualTransactionActive()) {
+			return getJdbcTemplate();
+		}
+		JdbcTemplate template = new JdbcTemplate(router.getReadDataSource());
+		template.setExceptionTranslator(getJdbcTemplate().getExceptionTranslator());
+		return template;
+	}
+
 	/**
 	 * Executes a given DBCommand and handles each row of the DBReader with the
 	 * provided DBRecordCallbackHandler.
@@ -18,16 +18,21 @@
  */
 package org.apache.empire.commons;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Locale;
 
 import org.apache.empire.exceptions.InvalidArgumentException;
 import org.w3c.dom.Element;
 
 /**
  * This class holds a map of objects which are identified by a case insensitive key string.
+ * Attributes are looked up by name using a hash index.
  * 
  */
 public class Attributes extends AbstractSet<Attributes.Attribute> implements Cloneable, Serializable 
@@ -102,12 +107,49 @@ public class Attributes extends AbstractSet<Attributes.Attribute> implements Clo
 	
 	protected ArrayList<Attributes.Attribute> attributes = null;
 	
+	// index by case insensitive name
+	private transient HashMap<String, Attributes.Attribute> index = null;
+	
 	protected ArrayList<Attributes.Attribute> list()
 	{
 	    if (attributes==null)
 	        attributes = new ArrayList<Attributes.Attribute>(2);
 	    return attributes;
 	}
+	
+	private HashMap<String, Attributes.Attribute> index()
+	{
+	    if (index==null)
+	        index = new HashMap<String, Attributes.Attribute>();
+	    return index;
+	}
+	
+	private static String key(String name)
+	{
+	    return name.toLowerCase(Locale.ENGLISH);
+	}
+	
+	/**
+	 * Iterator which keeps the index in sync on remove
+	 */
+	private final class AttributeIterator implements Iterator<Attribute>
+	{
+	    private final Iterator<Attribute> it = list().iterator();
+	    private Attribute current = null;
+        @Override
+        public boolean hasNext()  {
+            return it.hasNext();
+        }
+        @Override
+        public Attribute next() {
+            return (current = it.next());
+        }
+        @Override
+        public void remove() {
+            it.remove();
+            index().remove(key(current.getName()));
+        }
+	}
     
     public Attributes()
     {
@@ -125,13 +167,15 @@ public class Attributes extends AbstractSet<Attributes.Attribute> implements Clo
          Attributes clone = new Attributes();
          if (attributes!=null)
              clone.attributes = new ArrayList<Attributes.Attribute>(attributes);
+         if (index!=null)
+             clone.index = new HashMap<String, Attributes.Attribute>(index);
          return clone;
     }
 
     @Override
     public Iterator<Attribute> iterator()
     {
-        return (attributes!=null ? list().iterator() : emptyIterator);
+        return (attributes!=null ? new AttributeIterator() : emptyIterator);
     }
 
     @Override
@@ -145,6 +189,8 @@ public class Attributes extends AbstractSet<Attributes.Attribute> implements Clo
     {
         if (attributes!=null)
             attributes.clear();
+        if (index!=null)
+            index.clear();
     }
     
     @Override
@@ -154,7 +200,7 @@ public class Attributes extends AbstractSet<Attributes.Attribute> implements Clo
             return false;
         // find
         String name = (item instanceof Attribute) ? ((Attribute)item).getName() : item.toString();
-        return (indexOf(name)>=0);
+        return (find(name)!=null);
     }
     
     @Override
@@ -175,7 +221,8 @@ public class Attributes extends AbstractSet<Attributes.Attribute> implements Clo
         if (i<0)
             return false;
         // remove
-        list().remove(i);
+        Attribute a = list().remove(i);
+        index().remove(key(a.getName()));
         return true;
     }
 
@@ -198,6 +245,19 @@ public class Attributes extends AbstractSet<Attributes.Attribute> implements Clo
         return -1;
     }
 
+    /**
+     * Finds an attribute by name.
+     * Unlike get() this allows to distinguish between a missing attribute and an attribute with a null value.
+     * @param name the attribute name
+     * @return the attribute or null if no attribute with this name exists
+     */
+    public Attribute find(String name)
+    {
+        if (index==null || name==null)
+            return null;
+        return index.get(key(name));
+    }
+
 	/**
      * @param name the attribute name
      * @return the attribute value
@@ -207,11 +267,11 @@ public class Attributes extends AbstractSet<Attributes.Attribute> implements Clo
         if (attributes==null || name==null || name.length()==0)
             return null;
         // find
-        int i = indexOf(name);
-        if (i<0)
+        Attribute a = find(name);
+        if (a==null)
             return null; // Not set
         // found
-        return list().get(i).getValue();
+        return a.getValue();
     }
 
     /**
@@ -224,21 +284,33 @@ public class Attributes extends AbstractSet<Attributes.Attribute> implements Clo
         if (name==null || name.length()==0)
             return null;
         // Find
-        int i = indexOf(name);
-        if (i<0)
+        Attribute a = find(name);
+        if (a==null)
         {   // new attribute
-            Attribute a = new Attribute(name, value); 
+            a = new Attribute(name, value); 
             list().add(a);
+            index().put(key(a.getName()), a);
             return a;
         }
         else
         {   // existing attribute
-            Attribute a = list().get(i);
             a.setValue(value);
             return a;
         }
     }
 
+    private void readObject(ObjectInputStream in)
+        throws IOException, ClassNotFoundException
+    {
+        in.defaultReadObject();
+        // rebuild index
+        if (attributes!=null)
+        {
+            for (Attribute a : attributes)
+                index().put(key(a.getName()), a);
+        }
+    }
+
     @Override
     public Object[] toArray()
     {
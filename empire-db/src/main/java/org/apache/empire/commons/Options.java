@@ -19,10 +19,14 @@
 package org.apache.empire.commons;
 
 import java.io.Serializable;
+import java.math.BigDecimal;
 import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
@@ -36,6 +40,8 @@ import org.w3c.dom.Element;
  * The class is implemented as a set of OptionEntry objects 
  * where the entry value is used as the key for the set and thus must be unique.<BR>
  * <P> 
+ * Values are compared using {@link ObjectUtils#compareEqual(Object, Object)}.
+ * For larger option lists a hash index of the values is maintained in order to find entries in constant time.
  */
 public class Options extends AbstractSet<OptionEntry> implements Cloneable, Serializable
 {
@@ -48,8 +54,29 @@ public class Options extends AbstractSet<OptionEntry> implements Cloneable, Seri
 
     private static final String EMPTY_STRING = "";
 
+    // Minimum number of entries for which the value index is used
+    private static final int INDEX_THRESHOLD = 8;
+
     private ArrayList<OptionEntry> list = new ArrayList<OptionEntry>();
     
+    /**
+     * Index of the entry positions by value
+     */
+    private static final class ValueIndex
+    {
+        private final Map<Object, Integer> map;
+        private Class<?> keyClass = null;
+        private boolean  exact = true;
+        
+        private ValueIndex(int size)
+        {
+            map = new HashMap<Object, Integer>(size * 2);
+        }
+    }
+    
+    // Index (built on demand and published when complete, since options may be shared between threads)
+    private transient volatile ValueIndex index = null;
+    
     public Options()
     {
         // Default constructor
@@ -83,6 +110,24 @@ public class Options extends AbstractSet<OptionEntry> implements Cloneable, Seri
             value = ((OptionEntry) value).getValue();
         // Find it now
         int size = list.size();
+        if (size >= INDEX_THRESHOLD)
+        {   // Use index
+            ValueIndex index = this.index;
+            if (index == null)
+                index = buildIndex();
+            Object key = getIndexKey(value);
+            Integer i = index.map.get(key);
+            if (i == null && (key instanceof String) && index.keyClass == Long.class)
+            {   // String representation of a number
+                key = parseLong((String)key);
+                i = (key!=null ? index.map.get(key) : null);
+            }
+            if (i != null && i < size && ObjectUtils.compareEqual(value, list.get(i).getValue()))
+                return i;
+            if (i == null && (key == EMPTY_STRING || (index.exact && (key==null || key.getClass() == index.keyClass || index.keyClass == null))))
+                return -1; // Not found
+        }
+        // Search List
         for (int i = 0; i < size; i++)
         { // Search List for Index
             Object v = list.get(i).getValue();
@@ -92,6 +137,82 @@ public class Options extends AbstractSet<OptionEntry> implements Cloneable, Seri
         return -1;
     }
     
+    /**
+     * Returns the key under which a value is stored in the index
+     */
+    private static Object getIndexKey(Object value)
+    {
+        if (ObjectUtils.isEmpty(value))
+            return EMPTY_STRING;
+        if ((value instanceof Integer) || (value instanceof Long) || (value instanceof Short) || (value instanceof Byte))
+            return Long.valueOf(((Number)value).longValue());
+        if (value instanceof BigDecimal)
+        {   // ignore scale
+            BigDecimal bd = (BigDecimal)value;
+            return (bd.signum()==0 ? BigDecimal.ZERO : bd.stripTrailingZeros());
+        }
+        return value;
+    }
+    
+    /**
+     * Returns true if two values of the given key class are equal (according to compareEqual) exactly if their keys are equal 
+     */
+    private static boolean isExactKeyClass(Class<?> c)
+    {
+        return (c==Long.class || c==String.class || c==BigDecimal.class || c==Double.class || c==Float.class
+             || c==Boolean.class || c==Character.class || Date.class.isAssignableFrom(c) || c.isEnum());
+    }
+    
+    private static Long parseLong(String s)
+    {
+        try {
+            Long value = Long.valueOf(s);
+            return (value.toString().equals(s) ? value : null);
+        } catch(NumberFormatException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Builds the index of all values and publishes it when complete
+     */
+    private ValueIndex buildIndex()
+    {
+        ValueIndex index = new ValueIndex(list.size());
+        for (int i = 0; i < list.size(); i++)
+            addToIndex(index, i);
+        this.index = index;
+        return index;
+    }
+
+    /**
+     * Adds an entry to the index
+     */
+    private void addToIndex(ValueIndex index, int i)
+    {
+        Object key = getIndexKey(list.get(i).getValue());
+        if (index.map.containsKey(key))
+            return; // first entry wins
+        index.map.put(key, i);
+        if (key == EMPTY_STRING)
+            return;
+        // check key class
+        if (index.keyClass == null && index.exact)
+            index.exact = isExactKeyClass(index.keyClass = key.getClass());
+        else if (key.getClass() != index.keyClass)
+            index.exact = false;
+    }
+    
+    /**
+     * Updates the index after an entry has been added to the end of the list
+     */
+    private void appended()
+    {
+        ValueIndex index = this.index;
+        if (index != null)
+            addToIndex(index, list.size() - 1);
+    }
+    
     protected OptionEntry createOptionEntry(Object value, String text)
     {
         return new OptionEntry(value, text);
@@ -171,6 +292,10 @@ public class Options extends AbstractSet<OptionEntry> implements Cloneable, Seri
                 index = list.size();
             // add entry now
             list.add(index, createOptionEntry(value, text));
+            if (index == list.size() - 1)
+                appended();
+            else
+                this.index = null;
         }
     }
 
@@ -198,6 +323,7 @@ public class Options extends AbstractSet<OptionEntry> implements Cloneable, Seri
         if (noCheck)
         { 
             list.add(createOptionEntry(value, text));
+            appended();
         } 
         else
         {
@@ -214,9 +340,15 @@ public class Options extends AbstractSet<OptionEntry> implements Cloneable, Seri
         }
         int i = getIndex(option.getValue());
         if (i >= 0)
+        {   // replace
             list.set(i, option);
+            index = null;
+        }
         else
+        {   // append
             list.add(option);
+            appended();
+        }
         return true;
     }
 
@@ -224,6 +356,7 @@ public class Options extends AbstractSet<OptionEntry> implements Cloneable, Seri
     public void clear()
     {
         list.clear();
+        index = null;
     }
 
     @Override
@@ -242,7 +375,25 @@ public class Options extends AbstractSet<OptionEntry> implements Cloneable, Seri
     @Override
     public Iterator<OptionEntry> iterator()
     {
-        return list.iterator();
+        final Iterator<OptionEntry> i = list.iterator();
+        return new Iterator<OptionEntry>() {
+            @Override
+            public boolean hasNext()
+            {
+                return i.hasNext();
+            }
+            @Override
+            public OptionEntry next()
+            {
+                return i.next();
+            }
+            @Override
+            public void remove()
+            {
+                i.remove();
+                index = null;
+            }
+        };
     }
 
     @Override
@@ -254,6 +405,7 @@ public class Options extends AbstractSet<OptionEntry> implements Cloneable, Seri
             return false; // Element not found
         // remove
         list.remove(i);
+        index = null;
         return true;
     }
 
@@ -0,0 +1,402 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.empire.commons.ObjectUtils;
+import org.apache.empire.commons.StringUtils;
+import org.apache.empire.data.Column;
+import org.apache.empire.data.ColumnExpr;
+import org.apache.empire.exceptions.BeanInstantiationException;
+import org.apache.empire.exceptions.BeanPropertySetException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * DBBeanMapper<br>
+ * This class creates java beans from the rows of a DBRecordData object (usually a DBReader).<br>
+ * The constructor or the property setters of the bean class are resolved only once
+ * for a particular combination of bean class and select expression list.
+ * Mappers are cached and may be shared between threads.
+ * The cache is kept per class loader of the bean class. Mappers are held softly, hence they survive garbage collections
+ * but are released if memory is needed, so that class loaders (e.g. of a web application) can be unloaded. 
+ * <P>
+ * Like {@link DBReader#getBeanList(java.util.Collection, Class, int)} a mapper uses a constructor
+ * matching the select expression list if available. Otherwise the bean is created with its
+ * default constructor and the values are set using the public property setters.<br>
+ * Values that cannot be assigned directly are set using {@link DBRecordData#setBeanProperty(ColumnExpr, Object, String, Object)}.
+ * If the record data overrides setBeanProperty() all values are set this way.
+ *
+ * @param <T> the bean type
+ */
+public class DBBeanMapper<T>
+{
+    // Logger
+    private static final Logger log = LoggerFactory.getLogger(DBBeanMapper.class);
+
+    /**
+     * The key of a cached mapper
+     */
+    private static final class MapperKey
+    {
+        // Classes are identified by name in order to not reference the class loader
+        private final String   beanClass;
+        private final Object[] shape;
+        private final int hash;
+
+        public MapperKey(Class<?> beanClass, DBColumnExpr[] columns)
+        {
+            this.beanClass = beanClass.getName();
+            this.shape = new Object[columns.length * 3];
+            for (int i=0; i<columns.length; i++)
+            {   // property name, data type and enum type
+                Object enumType = columns[i].getAttribute(Column.COLATTR_ENUMTYPE);
+                shape[i*3]   = columns[i].getBeanPropertyName();
+                shape[i*3+1] = columns[i].getDataType();
+                shape[i*3+2] = (enumType instanceof Class<?>) ? ((Class<?>)enumType).getName() : StringUtils.toString(enumType);
+            }
+            this.hash = this.beanClass.hashCode() * 31 + Arrays.hashCode(shape);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other)
+        {
+            if (other == this)
+                return true;
+            if (!(other instanceof MapperKey))
+                return false;
+            MapperKey key = (MapperKey) other;
+            return (hash == key.hash && beanClass.equals(key.beanClass) && Arrays.equals(shape, key.shape));
+        }
+    }
+
+    /**
+     * The maximum number of mappers cached per class loader
+     */
+    public static final int MAX_MAPPERS_PER_CLASSLOADER = 256;
+
+    // Mappers by class loader of the bean class
+    // Weak keys and soft values: mappers survive garbage collections but do not pin a class loader if memory is needed
+    private static final Map<ClassLoader, Map<MapperKey, SoftReference<DBBeanMapper<?>>>> mapperCache = new WeakHashMap<ClassLoader, Map<MapperKey, SoftReference<DBBeanMapper<?>>>>();
+
+    /**
+     * Returns the mapper for a bean class and a select expression list.<br>
+     * The mapper is created on first use and cached.
+     * @param beanClass the bean class
+     * @param columns the select expression list
+     * @return the bean mapper
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> DBBeanMapper<T> getMapper(Class<T> beanClass, DBColumnExpr[] columns)
+    {
+        MapperKey key = new MapperKey(beanClass, columns);
+        ClassLoader loader = beanClass.getClassLoader();
+        synchronized(mapperCache)
+        {   // find mapper
+            Map<MapperKey, SoftReference<DBBeanMapper<?>>> mappers = mapperCache.get(loader);
+            SoftReference<DBBeanMapper<?>> ref = (mappers!=null ? mappers.get(key) : null);
+            DBBeanMapper<?> mapper = (ref!=null ? ref.get() : null);
+            if (mapper!=null)
+                return (DBBeanMapper<T>)mapper;
+        }
+        // create mapper
+        DBBeanMapper<T> mapper = new DBBeanMapper<T>(beanClass, columns);
+        synchronized(mapperCache)
+        {   // add to cache
+            Map<MapperKey, SoftReference<DBBeanMapper<?>>> mappers = mapperCache.get(loader);
+            if (mappers==null)
+            {   mappers = new LinkedHashMap<MapperKey, SoftReference<DBBeanMapper<?>>>(16, 0.75f, true) {
+                    private static final long serialVersionUID = 1L;
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<MapperKey, SoftReference<DBBeanMapper<?>>> eldest)
+                    {
+                        return size() > MAX_MAPPERS_PER_CLASSLOADER;
+                    }
+                };
+                mapperCache.put(loader, mappers);
+            }
+            mappers.put(key, new SoftReference<DBBeanMapper<?>>(mapper));
+        }
+        return mapper;
+    }
+
+    /**
+     * Returns the number of mappers cached for a class loader
+     * @param loader the class loader
+     * @return the number of mappers
+     */
+    public static int getCacheSize(ClassLoader loader)
+    {
+        synchronized(mapperCache)
+        {
+            Map<MapperKey, SoftReference<DBBeanMapper<?>>> mappers = mapperCache.get(loader);
+            return (mappers!=null ? mappers.size() : 0);
+        }
+    }
+
+    /**
+     * Removes all mappers from the cache
+     */
+    public static void clearCache()
+    {
+        synchronized(mapperCache)
+        {
+            mapperCache.clear();
+        }
+    }
+
+    private final Class<T>        beanClass;
+    private final Constructor<?>  ctor;
+    private final Class<?>[]      ctorParamTypes;
+    private final String[]        properties;
+    private final Method[]        setters;
+    private final Class<?>[]      setterTypes;
+    private final boolean[]       setterPrimitive;
+    private final Class<?>[]      enumTypes;
+
+    /**
+     * Creates a mapper for a bean class and a select expression list
+     * @param beanClass the bean class
+     * @param columns the select expression list
+     */
+    protected DBBeanMapper(Class<T> beanClass, DBColumnExpr[] columns)
+    {
+        this.beanClass = beanClass;
+        // Check whether we can use a constructor
+        Class<?>[] paramTypes = new Class[columns.length];
+        for (int i = 0; i < columns.length; i++)
+            paramTypes[i] = DBExpr.getValueClass(columns[i].getDataType());
+        this.ctor = DBReader.findMatchingAccessibleConstructor(beanClass, paramTypes);
+        if (ctor!=null)
+        {   // Use Constructor
+            this.ctorParamTypes = ctor.getParameterTypes();
+            this.properties  = null;
+            this.setters     = null;
+            this.setterTypes = null;
+            this.setterPrimitive = null;
+            this.enumTypes   = null;
+            return;
+        }
+        // Use Property Setters
+        this.ctorParamTypes = null;
+        this.properties  = new String[columns.length];
+        this.setters     = new Method[columns.length];
+        this.setterTypes = new Class<?>[columns.length];
+        this.setterPrimitive = new boolean[columns.length];
+        this.enumTypes   = new Class<?>[columns.length];
+        Map<String, Method> writeMethods = getWriteMethods(beanClass);
+        for (int i = 0; i < columns.length; i++)
+        {
+            properties[i] = columns[i].getBeanPropertyName();
+            Object enumType = columns[i].getAttribute(Column.COLATTR_ENUMTYPE);
+            enumTypes[i] = (enumType instanceof Class<?> && ((Class<?>)enumType).isEnum()) ? (Class<?>)enumType : null;
+            Method setter = (properties[i]!=null) ? writeMethods.get(properties[i]) : null;
+            if (setter!=null)
+            {   // found
+                Class<?> type = setter.getParameterTypes()[0];
+                setters[i] = setter;
+                setterTypes[i] = getWrapperType(type);
+                setterPrimitive[i] = type.isPrimitive();
+            }
+        }
+    }
+
+    /**
+     * Returns the bean class
+     * @return the bean class
+     */
+    public Class<T> getBeanClass()
+    {
+        return beanClass;
+    }
+
+    /**
+     * Creates a bean from the current row of the record data
+     * @param data the record data (e.g. a DBReader)
+     * @return the bean
+     */
+    @SuppressWarnings("unchecked")
+    public T map(DBRecordData data)
+    {
+        try
+        {   // Create bean an init
+            if (ctor!=null)
+            {   // Use Constructor
+                Object[] args = new Object[ctorParamTypes.length];
+                for (int i = 0; i < args.length; i++)
+                    args[i] = ObjectUtils.convert(ctorParamTypes[i], data.getValue(i));
+                return (T)ctor.newInstance(args);
+            }
+            // Use Property Setters
+            T bean = beanClass.newInstance();
+            if (data.isBeanPropertyOverridden())
+            {   // Always use setBeanProperty()
+                for (int i = 0; i < properties.length; i++)
+                {
+                    if (properties[i]!=null)
+                        data.setBeanProperty(data.getColumnExpr(i), bean, properties[i], data.getValue(i));
+                }
+                return bean;
+            }
+            for (int i = 0; i < properties.length; i++)
+            {
+                if (properties[i]==null)
+                    continue; // no property
+                Object value = data.getValue(i);
+                if (enumTypes[i]!=null && value!=null)
+                    value = toEnum(enumTypes[i], value);
+                // Can we assign the value directly?
+                if (setters[i]!=null && (value==null ? !setterPrimitive[i] : setterTypes[i].isInstance(value)))
+                {   // Invoke setter
+                    setProperty(bean, i, value);
+                    continue;
+                }
+                // Can we convert the value?
+                if (setters[i]!=null && value!=null && isSimpleType(setterTypes[i]))
+                {   // Convert and invoke setter
+                    setProperty(bean, i, ObjectUtils.convert(setterTypes[i], value));
+                    continue;
+                }
+                // Use BeanUtils
+                data.setBeanProperty(data.getColumnExpr(i), bean, properties[i], value);
+            }
+            return bean;
+
+        } catch (InvocationTargetException e) {
+            throw new BeanInstantiationException(beanClass, e);
+        } catch (IllegalAccessException e) {
+            throw new BeanInstantiationException(beanClass, e);
+        } catch (InstantiationException e) {
+            throw new BeanInstantiationException(beanClass, e);
+        }
+    }
+
+    /**
+     * Invokes the setter for a property
+     */
+    private void setProperty(Object bean, int index, Object value)
+    {
+        try
+        {   // invoke
+            setters[index].invoke(bean, value);
+        } catch (IllegalAccessException e) {
+            log.error(beanClass.getName() + ": unable to set property '" + properties[index] + "'");
+            throw new BeanPropertySetException(bean, properties[index], e);
+        } catch (InvocationTargetException e) {
+            log.error(beanClass.getName() + ": unable to set property '" + properties[index] + "'");
+            throw new BeanPropertySetException(bean, properties[index], e);
+        }
+    }
+
+    /**
+     * Returns all public property setters of a bean class.<br>
+     * Setters declared by non-public classes are omitted, their values are set by setBeanProperty().
+     */
+    private static Map<String, Method> getWriteMethods(Class<?> beanClass)
+    {
+        Map<String, Method> writeMethods = new HashMap<String, Method>();
+        try
+        {
+            BeanInfo info = Introspector.getBeanInfo(beanClass);
+            for (PropertyDescriptor pd : info.getPropertyDescriptors())
+            {
+                Method setter = pd.getWriteMethod();
+                if (setter==null || !Modifier.isPublic(setter.getDeclaringClass().getModifiers()))
+                    continue;
+                writeMethods.put(pd.getName(), setter);
+            }
+        } catch (IntrospectionException e) {
+            log.warn("Unable to introspect bean class {}: {}", beanClass.getName(), e.getMessage());
+        }
+        return writeMethods;
+    }
+
+    /**
+     * Returns the wrapper type of a primitive type
+     */
+    private static Class<?> getWrapperType(Class<?> type)
+    {
+        if (!type.isPrimitive())
+            return type;
+        if (type==int.class)
+            return Integer.class;
+        if (type==long.class)
+            return Long.class;
+        if (type==double.class)
+            return Double.class;
+        if (type==boolean.class)
+            return Boolean.class;
+        if (type==float.class)
+            return Float.class;
+        if (type==short.class)
+            return Short.class;
+        if (type==byte.class)
+            return Byte.class;
+        if (type==char.class)
+            return Character.class;
+        return type;
+    }
+
+    /**
+     * Returns true if values can be converted to the type by ObjectUtils.convert()
+     */
+    private static boolean isSimpleType(Class<?> type)
+    {
+        return (type==Integer.class || type==Long.class || type==Double.class || type==Boolean.class || type==String.class);
+    }
+
+    /**
+     * Converts a value to an enum
+     */
+    @SuppressWarnings({ "rawtypes" })
+    private static Object toEnum(Class<?> enumType, Object value)
+    {
+        String name = value.toString();
+        for (Object e : enumType.getEnumConstants())
+            if (((Enum)e).name().equals(name))
+                return e;
+        return value;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "DBBeanMapper["+beanClass.getName()+(ctor!=null ? ", constructor" : ", setters")+"]";
+    }
+}
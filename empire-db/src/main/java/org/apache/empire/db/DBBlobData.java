@@ -19,15 +19,24 @@
 package org.apache.empire.db;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 
+import org.apache.empire.exceptions.InternalException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * This class allocates methods to store binary large objects in the database.
- *
+ * <P>
+ * It is also returned by {@link DBRecordData#getBlobData(int)} when reading binary large objects.
+ * In this case the input stream may be backed by the open ResultSet of a DBReader and is only valid
+ * until the reader is moved to the next row or closed.
+ * Such an object may be passed directly to the setValue methods of a record in order to copy
+ * the data from one table to another without loading it into memory.
  *
  */
 public class DBBlobData
@@ -43,7 +52,7 @@ public class DBBlobData
     /**
      * The length of the data in the <code>inputStream</code>.
      */
-    private int           length          = 0;
+    private long          length          = 0;
 
     /**
      * The defaultEncoding used for the constructor.
@@ -64,6 +73,22 @@ public class DBBlobData
      */
     public DBBlobData(InputStream inputStream, int length)
     	throws IllegalArgumentException
+    {
+        this(inputStream, (long)length);
+    }
+
+    /**
+     * Constructor to pass LOB data to the setValue methods
+     * of a record, consisting of the input stream where
+     * the data can be loaded from and the length of the data.
+     * Use this constructor for data larger than 2 GB.
+     *
+     * @param inputStream The stream where the data will be read from
+     * @param length The number of bytes to read from the stream
+     * @throws IllegalArgumentException If the inputStream is null
+     */
+    public DBBlobData(InputStream inputStream, long length)
+        throws IllegalArgumentException
     {
         if (inputStream == null)
         {
@@ -154,10 +179,62 @@ public class DBBlobData
      * @return Returns the length of the BLOB data in bytes
      */
     public int getLength()
+    {
+        if (length > Integer.MAX_VALUE)
+            throw new InternalException(new ArithmeticException("BLOB length exceeds 2 GB. Use getLongLength() instead."));
+        return (int)length;
+    }
+
+    /**
+     * Returns the length of the BLOB data in bytes.
+     * 
+     * @return Returns the length of the BLOB data in bytes
+     */
+    public long getLongLength()
     {
         return length;
     }
 
+    /**
+     * Copies the BLOB data to an output stream in chunks.<br>
+     * The data can only be copied once.
+     * 
+     * @param out the output stream
+     * @return the number of bytes copied
+     */
+    public long copyTo(OutputStream out)
+    {
+        try
+        {   // copy
+            byte[] buffer = new byte[8192];
+            long count = 0;
+            int n;
+            while ((n = inputStream.read(buffer)) >= 0)
+            {
+                out.write(buffer, 0, n);
+                count += n;
+            }
+            return count;
+        }
+        catch (IOException e)
+        {
+            throw new InternalException(e);
+        }
+    }
+
+    /**
+     * Reads the BLOB data into a byte array.<br>
+     * The data can only be read once.
+     * 
+     * @return the data
+     */
+    public byte[] getBytes()
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream((length > 0 && length < Integer.MAX_VALUE) ? (int)length : 8192);
+        copyTo(out);
+        return out.toByteArray();
+    }
+
     /**
      * Sets the defaultEncoding used in a constructor.
      *
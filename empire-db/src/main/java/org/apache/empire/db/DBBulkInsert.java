@@ -0,0 +1,377 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.empire.commons.ObjectUtils;
+import org.apache.empire.data.DataType;
+import org.apache.empire.db.DBRowSet.DBRecordUpdate;
+import org.apache.empire.db.exceptions.DatabaseNotOpenException;
+import org.apache.empire.db.exceptions.FieldNotNullException;
+import org.apache.empire.exceptions.InvalidArgumentException;
+import org.apache.empire.exceptions.NotSupportedException;
+import org.apache.empire.exceptions.ObjectNotValidException;
+import org.apache.empire.exceptions.UnexpectedReturnValueException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * DBBulkInsert<br>
+ * This class collects rows for a table and inserts them using multi-row insert statements.<br>
+ * Rows may be supplied either as value arrays matching the column list or as new DBRecord objects.
+ * <P>
+ * The statements are created by the driver (see {@link DBDatabaseDriver#getBulkInsertStmt(DBTable, DBColumn[], int)}).
+ * Rows are split into chunks in order to stay within the driver's limits for the number of rows
+ * ({@link DBDatabaseDriver#getMaxBulkInsertRows()}) and statement parameters ({@link DBDatabaseDriver#getMaxStatementParams()}).
+ * All chunks of the same size share the same statement and are executed as a JDBC batch.
+ * <P>
+ * Auto-generated values are obtained for empty columns in the same way as for {@link DBRecord#update(Connection)}.
+ * Columns of type AUTOINC which are not supported by sequences cannot be returned by a multi-row statement
+ * and are therefore not included in the default column list.
+ * For such tables only rows can be inserted. Records cannot be added since their primary key would remain unknown.
+ * Use a {@link DBRecordBatch} instead.
+ * <pre>
+ *   DBBulkInsert insert = db.COUNTRIES.createBulkInsert(db.COUNTRIES.CODE, db.COUNTRIES.NAME);
+ *   insert.addRow("DE", "Germany");
+ *   insert.addRow("FR", "France");
+ *   insert.execute(conn);
+ * </pre>
+ */
+public class DBBulkInsert
+{
+    // Logger
+    private static final Logger log = LoggerFactory.getLogger(DBBulkInsert.class);
+
+    private final DBTable     table;
+    private final DBColumn[]  columns;
+    private final List<Object> rows = new ArrayList<Object>();
+    private int maxRows = 0;
+
+    /**
+     * Creates a bulk insert for a table
+     * @param table the table into which to insert
+     * @param columns the columns to insert or none for all columns of the table
+     */
+    public DBBulkInsert(DBTable table, DBColumn... columns)
+    {
+        if (table==null)
+            throw new InvalidArgumentException("table", table);
+        this.table = table;
+        this.columns = (columns!=null && columns.length>0) ? columns.clone() : getDefaultColumns(table);
+        for (int i=0; i<this.columns.length; i++)
+        {   // check column
+            if (this.columns[i]==null || this.columns[i].getRowSet()!=table)
+                throw new InvalidArgumentException("columns", this.columns[i]);
+        }
+    }
+
+    /**
+     * Returns the table into which to insert
+     * @return the table
+     */
+    public DBTable getTable()
+    {
+        return table;
+    }
+
+    /**
+     * Returns the columns to insert
+     * @return the columns
+     */
+    public DBColumn[] getColumns()
+    {
+        return columns.clone();
+    }
+
+    /**
+     * Returns the maximum number of rows inserted by a single statement
+     * @return the maximum number of rows or 0 if the driver's limit is used
+     */
+    public int getMaxRows()
+    {
+        return maxRows;
+    }
+
+    /**
+     * Sets the maximum number of rows inserted by a single statement.<br>
+     * The driver's limits are never exceeded.
+     * @param maxRows the maximum number of rows or 0 to use the driver's limit
+     */
+    public void setMaxRows(int maxRows)
+    {
+        if (maxRows<0)
+            throw new InvalidArgumentException("maxRows", maxRows);
+        this.maxRows = maxRows;
+    }
+
+    /**
+     * Returns the number of rows waiting to be inserted
+     * @return the number of rows
+     */
+    public int getRowCount()
+    {
+        return rows.size();
+    }
+
+    /**
+     * Adds a row of values.
+     * @param values the values in the order of the columns
+     */
+    public void addRow(Object... values)
+    {
+        if (values==null || values.length!=columns.length)
+            throw new InvalidArgumentException("values", values);
+        rows.add(values.clone());
+    }
+
+    /**
+     * Adds a new record.<br>
+     * The values are taken from the record when the statement is created.
+     * After execute() has completed successfully the record is in the state valid.<br>
+     * Records cannot be added if the table has an AUTOINC column whose value is assigned by the database.
+     * @param rec the new record
+     */
+    public void addRecord(DBRecord rec)
+    {
+        if (rec==null || rec.getRowSet()!=table)
+            throw new InvalidArgumentException("rec", rec);
+        if (rec.isValid()==false || rec.isNew()==false)
+            throw new ObjectNotValidException(rec);
+        if (hasGeneratedColumns())
+            throw new NotSupportedException(this, "addRecord");
+        rows.add(rec);
+    }
+
+    /**
+     * Removes all rows without inserting them
+     */
+    public void clear()
+    {
+        rows.clear();
+    }
+
+    /**
+     * Inserts all rows and clears the list of rows.
+     * @param conn a valid JDBC connection
+     * @return the number of rows inserted
+     */
+    public int execute(Connection conn)
+    {
+        if (conn==null)
+            throw new InvalidArgumentException("conn", conn);
+        if (rows.isEmpty())
+            return 0;
+        DBDatabase db = table.getDatabase();
+        // build statements
+        List<String> sqlCmds = new ArrayList<String>();
+        List<Object[]> sqlParams = new ArrayList<Object[]>();
+        List<Integer> chunkSizes = new ArrayList<Integer>();
+        Timestamp timestamp = getTimestamp(conn);
+        buildStatements(sqlCmds, sqlParams, chunkSizes, timestamp, conn);
+        // execute
+        String[] sqlCmd = sqlCmds.toArray(new String[sqlCmds.size()]);
+        Object[][] sqlCmdParams = sqlParams.toArray(new Object[sqlParams.size()][]);
+        int[] affected = db.executeBatch(sqlCmd, sqlCmdParams, conn);
+        for (int i=0; i<sqlCmd.length; i++)
+        {   // check row count
+            int count = (i<affected.length ? affected[i] : Statement.SUCCESS_NO_INFO);
+            if (count!=Statement.SUCCESS_NO_INFO && count!=chunkSizes.get(i).intValue())
+                throw new UnexpectedReturnValueException(count, "db.executeBatch()");
+        }
+        // complete
+        int count = rows.size();
+        boolean notified = false;
+        for (Object row : rows)
+        {
+            if (row instanceof DBRecord)
+                table.completeUpdate(new DBRecordUpdate((DBRecord)row, sqlCmd[0], null, null, timestamp), 1, conn);
+            else if (notified==false)
+            {   // notify once
+                table.onRecordsModified(null, conn);
+                notified = true;
+            }
+        }
+        if (log.isDebugEnabled())
+            log.debug("Bulk insert of {} rows into {} completed using {} statements.", new Object[] { count, table.getName(), sqlCmd.length });
+        rows.clear();
+        return count;
+    }
+
+    /**
+     * Adds the insert statements for all rows to a script and clears the list of rows.<br>
+     * Records added to the bulk insert remain in the state new.
+     * @param script the script to which to add the statements
+     * @param conn a JDBC connection used to obtain auto-generated values (may be null if no such values are required)
+     * @return the number of statements added to the script
+     */
+    public int addToScript(DBSQLScript script, Connection conn)
+    {
+        if (script==null)
+            throw new InvalidArgumentException("script", script);
+        List<String> sqlCmds = new ArrayList<String>();
+        List<Object[]> sqlParams = new ArrayList<Object[]>();
+        List<Integer> chunkSizes = new ArrayList<Integer>();
+        buildStatements(sqlCmds, sqlParams, chunkSizes, getTimestamp(conn), conn);
+        DBObject[] requires = DBSQLScript.getReferencedTables(table);
+        for (int i=0; i<sqlCmds.size(); i++)
+            script.addStmt(sqlCmds.get(i), sqlParams.get(i), table, requires);
+        rows.clear();
+        return sqlCmds.size();
+    }
+
+    /**
+     * Returns the number of rows inserted by a single statement.
+     * @param driver the database driver
+     * @return the number of rows
+     */
+    protected int getChunkSize(DBDatabaseDriver driver)
+    {
+        int rowLimit = driver.getMaxBulkInsertRows();
+        if (maxRows>0 && maxRows<rowLimit)
+            rowLimit = maxRows;
+        int paramLimit = driver.getMaxStatementParams();
+        if (paramLimit>0 && paramLimit/columns.length<rowLimit)
+            rowLimit = paramLimit/columns.length;
+        return Math.max(rowLimit, 1);
+    }
+
+    /**
+     * Creates the statements and parameters for all rows
+     */
+    private void buildStatements(List<String> sqlCmds, List<Object[]> sqlParams, List<Integer> chunkSizes, Timestamp timestamp, Connection conn)
+    {
+        DBDatabaseDriver driver = table.getDatabase().getDriver();
+        if (driver==null)
+            throw new DatabaseNotOpenException(table.getDatabase());
+        int chunkSize = getChunkSize(driver);
+        String chunkSql = null;
+        for (int pos=0; pos<rows.size(); pos+=chunkSize)
+        {
+            int count = Math.min(chunkSize, rows.size()-pos);
+            Object[] params = new Object[count*columns.length];
+            for (int r=0; r<count; r++)
+            {   // add values
+                Object[] values = getRowValues(rows.get(pos+r), timestamp, conn);
+                System.arraycopy(values, 0, params, r*columns.length, columns.length);
+            }
+            // full chunks share the statement
+            String sql;
+            if (count==chunkSize)
+            {   if (chunkSql==null)
+                    chunkSql = driver.getBulkInsertStmt(table, columns, count);
+                sql = chunkSql;
+            }
+            else
+                sql = driver.getBulkInsertStmt(table, columns, count);
+            sqlCmds.add(sql);
+            sqlParams.add(params);
+            chunkSizes.add(count);
+        }
+    }
+
+    /**
+     * Returns the statement parameter values for a single row
+     */
+    private Object[] getRowValues(Object row, Timestamp timestamp, Connection conn)
+    {
+        DBRecord rec = (row instanceof DBRecord) ? (DBRecord)row : null;
+        DBColumn timestampColumn = table.getTimestampColumn();
+        Object[] values = new Object[columns.length];
+        for (int i=0; i<columns.length; i++)
+        {
+            DBTableColumn col = (DBTableColumn)columns[i];
+            Object value = (rec!=null) ? rec.getValue(col) : ((Object[])row)[i];
+            if (col==timestampColumn)
+            {   // Set the update timestamp
+                value = timestamp;
+            }
+            else if (col.isAutoGenerated())
+            {   // get the auto-generated field value
+                if (ObjectUtils.isEmpty(value))
+                {   value = col.getRecordDefaultValue(conn);
+                    if (rec!=null)
+                        rec.getFields()[rec.getFieldIndex(col)] = value;
+                }
+                if (ObjectUtils.isEmpty(value) && col.isRequired())
+                    throw new FieldNotNullException(col);
+            }
+            else if (rec==null || rec.isValidateFieldValues())
+            {   // Check the value
+                value = col.validate(value);
+            }
+            // wrap LOB values as for command params
+            values[i] = new DBCmdParam(null, col.getDataType(), value).getValue();
+        }
+        return values;
+    }
+
+    /**
+     * Returns the update timestamp if the table has a timestamp column
+     */
+    private Timestamp getTimestamp(Connection conn)
+    {
+        if (table.getTimestampColumn()==null)
+            return null;
+        return table.getDatabase().getUpdateTimestamp(conn);
+    }
+
+    /**
+     * Returns whether the table has AUTOINC columns whose values are assigned by the database.<br>
+     * This is the case if the column is not inserted or if the driver does not support sequences.
+     */
+    private boolean hasGeneratedColumns()
+    {
+        DBDatabaseDriver driver = table.getDatabase().getDriver();
+        if (driver==null)
+            throw new DatabaseNotOpenException(table.getDatabase());
+        boolean sequences = driver.isSupported(DBDriverFeature.SEQUENCES);
+        for (DBColumn col : table.getColumns())
+        {
+            if (col.getDataType()!=DataType.AUTOINC)
+                continue;
+            if (sequences==false || ObjectUtils.contains(columns, col)==false)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns all columns of a table except AUTOINC columns which are not supported by sequences
+     */
+    private static DBColumn[] getDefaultColumns(DBTable table)
+    {
+        DBDatabaseDriver driver = table.getDatabase().getDriver();
+        if (driver==null)
+            throw new DatabaseNotOpenException(table.getDatabase());
+        boolean sequences = driver.isSupported(DBDriverFeature.SEQUENCES);
+        List<DBColumn> list = new ArrayList<DBColumn>();
+        for (DBColumn col : table.getColumns())
+        {
+            if (col.getDataType()==DataType.AUTOINC && sequences==false)
+                continue; // generated by the database
+            list.add(col);
+        }
+        return list.toArray(new DBColumn[list.size()]);
+    }
+}
@@ -21,12 +21,19 @@ package org.apache.empire.db;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
 
 import org.apache.empire.exceptions.InternalException;
 
 /**
  * This class allocates methods to store binary character objects in the database.
- *
+ * <P>
+ * It is also returned by {@link DBRecordData#getClobData(int)} when reading character large objects.
+ * In this case the reader may be backed by the open ResultSet of a DBReader and is only valid
+ * until the reader is moved to the next row or closed.
+ * Such an object may be passed directly to the setValue methods of a record in order to copy
+ * the data from one table to another without loading it into memory.
  *
  */
 public class DBClobData
@@ -39,7 +46,7 @@ public class DBClobData
     /**
      * The length of the data in the <code>reader</code>
      */
-    private int        length = 0;
+    private long       length = 0;
 
     /**
      * Constructor to pass LOB data to the setValue methods of
@@ -52,6 +59,22 @@ public class DBClobData
      */
     public DBClobData(Reader reader, int length)
         throws IllegalArgumentException
+    {
+        this(reader, (long)length);
+    }
+
+    /**
+     * Constructor to pass LOB data to the setValue methods of
+     * a record, consisting of the input stream where the data can be
+     * loaded from and the length of the data.
+     * Use this constructor for data larger than 2 GB.
+     *
+     * @param reader The reader where the character data will be read from
+     * @param length The number of characters to read from the reader
+     * @throws IllegalArgumentException If the reader is null
+     */
+    public DBClobData(Reader reader, long length)
+        throws IllegalArgumentException
     {
         if (reader == null)
         {
@@ -87,8 +110,9 @@ public class DBClobData
     public Reader getReader()
     {
         try
-        {
-            reader.reset();
+        {   // Reset (if possible)
+            if (reader.markSupported())
+                reader.reset();
             return reader;
         }
         catch (IOException e)
@@ -103,10 +127,61 @@ public class DBClobData
      * @return Returns the length of the CLOB data in characters
      */
     public int getLength()
+    {
+        if (length > Integer.MAX_VALUE)
+            throw new InternalException(new ArithmeticException("CLOB length exceeds 2 GB. Use getLongLength() instead."));
+        return (int)length;
+    }
+
+    /**
+     * Returns the length of the CLOB data in characters.
+     *
+     * @return Returns the length of the CLOB data in characters
+     */
+    public long getLongLength()
     {
         return length;
     }
 
+    /**
+     * Copies the CLOB data to a writer in chunks.
+     * 
+     * @param writer the writer
+     * @return the number of characters copied
+     */
+    public long copyTo(Writer writer)
+    {
+        try
+        {   // copy
+            Reader reader = getReader();
+            char[] buffer = new char[8192];
+            long count = 0;
+            int n;
+            while ((n = reader.read(buffer)) >= 0)
+            {
+                writer.write(buffer, 0, n);
+                count += n;
+            }
+            return count;
+        }
+        catch (IOException e)
+        {
+            throw new InternalException(e);
+        }
+    }
+
+    /**
+     * Reads the CLOB data into a String.
+     * 
+     * @return the text
+     */
+    public String getText()
+    {
+        StringWriter writer = new StringWriter((length > 0 && length < Integer.MAX_VALUE) ? (int)length : 8192);
+        copyTo(writer);
+        return writer.toString();
+    }
+
     /**
      * Returns a CLOB String.
      *
@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import org.apache.empire.exceptions.InvalidArgumentException;
+import org.apache.empire.exceptions.ItemNotFoundException;
+
+/**
+ * This class holds a compiled command, i.e. the rendered SQL statement of a DBCommand
+ * together with its parameters in the order of their occurrence and the select expression list.<br>
+ * Do not create instances of this class yourself, rather use DBCommand.compileSelect(), compileUpdate(), compileInsert() or compileDelete().
+ * <P>
+ * A DBCmdPlan is immutable and may be shared between threads.
+ * Changes made to the command after compilation do not affect the plan.<br>
+ * Parameter values are not stored with the plan but supplied with each execution
+ * using an array obtained from {@link #getParamValues()} or {@link #bind(Object...)}, e.g.:
+ * <pre>
+ *   Object[] values = plan.getParamValues();
+ *   plan.setParamValue(values, idParam, id);
+ *   reader.open(plan, values, conn);
+ * </pre>
+ * Parameterized subqueries are not supported.
+ */
+public final class DBCmdPlan
+{
+    private final DBDatabase     db;
+    private final String         sql;
+    private final DBCmdParam[]   params;
+    private final Object[]       paramValues;
+    private final DBColumnExpr[] selectExprList;
+
+    /**
+     * Package private constructor used by DBCommand.compile...()
+     * @param db the database
+     * @param sql the rendered sql statement
+     * @param params the command params in the order of their occurrence (may be null)
+     * @param selectExprList the select expressions (null for update, insert and delete statements)
+     */
+    DBCmdPlan(DBDatabase db, String sql, DBCmdParam[] params, DBColumnExpr[] selectExprList)
+    {
+        this.db = db;
+        this.sql = sql;
+        this.params = (params!=null ? params : new DBCmdParam[0]);
+        this.selectExprList = selectExprList;
+        // initial values
+        this.paramValues = new Object[this.params.length];
+        for (int i=0; i<this.params.length; i++)
+            this.paramValues[i] = this.params[i].getValue();
+    }
+
+    /**
+     * Returns the database this plan belongs to
+     * @return the database
+     */
+    public DBDatabase getDatabase()
+    {
+        return db;
+    }
+
+    /**
+     * Returns the rendered SQL statement
+     * @return the SQL statement
+     */
+    public String getSql()
+    {
+        return sql;
+    }
+
+    /**
+     * Returns whether this plan is a query i.e. has a select expression list
+     * @return true if the plan was compiled from a select statement
+     */
+    public boolean isQuery()
+    {
+        return (selectExprList!=null);
+    }
+
+    /**
+     * Returns a copy of the select expression list
+     * @return the select expressions or null if the plan is not a query
+     */
+    public DBColumnExpr[] getSelectExprList()
+    {
+        return (selectExprList!=null ? selectExprList.clone() : null);
+    }
+
+    /**
+     * Internally used to access the select expression list without copying
+     */
+    final DBColumnExpr[] selectExprList()
+    {
+        return selectExprList;
+    }
+
+    /**
+     * Returns the number of parameters of the statement
+     * @return the number of parameters
+     */
+    public int getParamCount()
+    {
+        return params.length;
+    }
+
+    /**
+     * Returns the position of a command parameter in the parameter value array
+     * @param param the command parameter
+     * @return the zero based index of the parameter or -1 if the parameter is not part of this plan
+     */
+    public int getParamIndex(DBCmdParam param)
+    {
+        for (int i=0; i<params.length; i++)
+        {
+            if (params[i]==param)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns a new array holding the parameter values at the time of compilation.<br>
+     * The array may be modified using {@link #setParamValue(Object[], DBCmdParam, Object)}
+     * and passed to the execute methods together with the sql statement.
+     * @return the parameter values or null if the statement has no parameters
+     */
+    public Object[] getParamValues()
+    {
+        if (paramValues.length==0)
+            return null;
+        return paramValues.clone();
+    }
+
+    /**
+     * Sets the value of a command parameter in a parameter value array
+     * @param values the parameter value array obtained from {@link #getParamValues()}
+     * @param param the command parameter
+     * @param value the new value
+     */
+    public void setParamValue(Object[] values, DBCmdParam param, Object value)
+    {
+        int index = getParamIndex(param);
+        if (index<0)
+            throw new ItemNotFoundException(param);
+        if (values==null || values.length!=params.length)
+            throw new InvalidArgumentException("values", values);
+        // set value
+        values[index] = param.getCmdParamValue(value);
+    }
+
+    /**
+     * Creates a parameter value array from values supplied in the order of the parameter's occurrence in the statement
+     * @param values the parameter values
+     * @return the parameter value array
+     */
+    public Object[] bind(Object... values)
+    {
+        if (values==null || values.length!=params.length)
+            throw new InvalidArgumentException("values", values);
+        if (values.length==0)
+            return null;
+        // wrap values
+        Object[] result = new Object[values.length];
+        for (int i=0; i<values.length; i++)
+            result[i] = params[i].getCmdParamValue(values[i]);
+        return result;
+    }
+
+    @Override
+    public String toString()
+    {
+        return sql;
+    }
+}
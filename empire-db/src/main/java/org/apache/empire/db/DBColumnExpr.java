@@ -58,8 +58,9 @@ public abstract class DBColumnExpr extends DBExpr
     public static final String DBCOLATTR_TYPE      = "type";
 
     // Properties
-    protected Attributes  attributes = null;
-    protected Options     options = null;
+    // attributes are copied on write: a published Attributes object must not be modified 
+    protected volatile Attributes  attributes = null;
+    protected volatile Options     options = null;
     protected String      beanPropertyName = null;
 
     /**
@@ -113,10 +114,11 @@ public abstract class DBColumnExpr extends DBExpr
      * @return value of the attribute if it exists or null otherwise
      */
     @Override
-    public synchronized Object getAttribute(String name)
+    public Object getAttribute(String name)
     {
-        if (attributes != null && attributes.indexOf(name)>=0)
-            return attributes.get(name);
+        Attributes.Attribute a = (attributes != null ? attributes.find(name) : null);
+        if (a != null)
+            return a.getValue();
         // Otherwise ask expression
         DBColumn column = getUpdateColumn();
         if (column==null || column==this)
@@ -126,15 +128,32 @@ public abstract class DBColumnExpr extends DBExpr
 
     /**
      * Sets the value of a column attribute.
+     * The attributes are copied and replaced, hence readers never see a partially modified set of attributes.
      * 
      * @param name the attribute name
      * @param value the value of the attribute
      */
     public synchronized void setAttribute(String name, Object value)
     {
-        if (attributes== null)
-            attributes = new Attributes();
-        attributes.set(name, value);
+        Attributes copy = new Attributes();
+        if (attributes != null)
+            copy.addAll(attributes);
+        copy.set(name, value);
+        attributes = copy;
+    }
+
+    /**
+     * Removes a column attribute.
+     * 
+     * @param name the attribute name
+     */
+    protected synchronized void removeAttribute(String name)
+    {
+        if (attributes == null || attributes.find(name) == null)
+            return;
+        Attributes copy = attributes.clone();
+        copy.remove(name);
+        attributes = copy;
     }
 
     /**
@@ -144,7 +163,7 @@ public abstract class DBColumnExpr extends DBExpr
      * @return the list of options
      */
     @Override
-    public synchronized Options getOptions()
+    public Options getOptions()
     {
         if (options != null)
             return options;
@@ -160,7 +179,7 @@ public abstract class DBColumnExpr extends DBExpr
      * 
      * @param options the list of options
      */
-    public synchronized void setOptions(Options options)
+    public void setOptions(Options options)
     {
         this.options = options;
     }
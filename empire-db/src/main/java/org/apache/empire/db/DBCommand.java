@@ -26,10 +26,11 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.List;
 import java.util.Set;
-import java.util.Vector;
 
 import org.apache.empire.commons.StringUtils;
 import org.apache.empire.data.DataType;
@@ -52,6 +53,10 @@ import org.slf4j.LoggerFactory;
  * This abstract class handles the creation of the SQL-Commands. 
  * There are methods to create SQL-Commands, like update, insert,
  * delete and select.
+ * <P>
+ * Rendering a statement does not modify the command. The state of a rendering
+ * (e.g. the order in which the command parameters occur) is kept in a {@link RenderContext}.
+ * Hence a command that is no longer modified may render its statements from several threads at once.
  */
 public abstract class DBCommand extends DBCommandExpr
     implements Cloneable
@@ -70,8 +75,11 @@ public abstract class DBCommand extends DBCommandExpr
     protected List<DBCompareExpr>    having         = null;
     protected List<DBColumnExpr>     groupBy        = null;
     // Parameters for prepared Statements
-    protected Vector<DBCmdParam>     cmdParams      = null;
-    private int                      paramUsageCount= 0;
+    protected List<DBCmdParam>       cmdParams      = null;
+    // Parameter order of the last rendering
+    private transient volatile DBCmdParam[] paramOrder = null;
+    // Maps the params referenced by cloned expressions to the params of this command
+    private Map<DBCmdParam, DBCmdParam> clonedParams = null;
     // Database
     private transient DBDatabase     db;
 
@@ -129,31 +137,142 @@ public abstract class DBCommand extends DBCommandExpr
         strm.defaultReadObject();
     }
     
+    /**
+     * The state of a single rendering of a command.<br>
+     * A render context is created by beginRender() and bound to the current thread until endRender() is called.
+     * It records the command parameters in the order of their occurrence in the statement.
+     */
+    protected static final class RenderContext
+    {
+        private final DBCommand cmd;
+        private final RenderContext outer;
+        private final List<DBCmdParam> params = new ArrayList<DBCmdParam>();
+        private final Set<DBCmdParam> used = Collections.newSetFromMap(new IdentityHashMap<DBCmdParam, Boolean>());
+        // the parameter order of the last statement of the same command rendered within this context
+        private DBCmdParam[] nestedParams = null;
+
+        private RenderContext(DBCommand cmd, RenderContext outer)
+        {
+            this.cmd = cmd;
+            this.outer = outer;
+        }
+
+        /**
+         * Returns the command which is rendered
+         * @return the command
+         */
+        public DBCommand getCommand()
+        {
+            return cmd;
+        }
+
+        /**
+         * Returns the number of command parameters used so far
+         * @return the parameter usage count
+         */
+        public int getParamUsageCount()
+        {
+            return params.size();
+        }
+
+        /**
+         * Returns the command parameters in the order of their occurrence
+         * @return the parameters used so far
+         */
+        public DBCmdParam[] getParams()
+        {
+            return params.toArray(new DBCmdParam[params.size()]);
+        }
+    }
+
+    // the render contexts of the current thread
+    private static final ThreadLocal<RenderContext> renderContext = new ThreadLocal<RenderContext>();
+
+    /**
+     * Starts rendering a statement of this command on the current thread.<br>
+     * Every call must be followed by a call to endRender() in a finally block.
+     * @return the render context
+     */
+    protected RenderContext beginRender()
+    {
+        RenderContext ctx = new RenderContext(this, renderContext.get());
+        renderContext.set(ctx);
+        return ctx;
+    }
+
+    /**
+     * Ends rendering a statement of this command and publishes the parameter order
+     * @param ctx the render context returned by beginRender()
+     */
+    protected void endRender(RenderContext ctx)
+    {
+        if (ctx.outer!=null)
+            renderContext.set(ctx.outer);
+        else
+            renderContext.remove();
+        // pass the parameter order to an enclosing context of this command (see compileSelect())
+        DBCmdParam[] params = (ctx.params.isEmpty() && ctx.nestedParams!=null) ? ctx.nestedParams : ctx.getParams();
+        if (ctx.outer!=null && ctx.outer.cmd==this)
+            ctx.outer.nestedParams = params;
+        // publish the parameter order
+        this.paramOrder = params;
+    }
+
+    /**
+     * Returns the render context of this command on the current thread
+     * @return the render context or null if this command is not being rendered
+     */
+    protected RenderContext getRenderContext()
+    {
+        for (RenderContext ctx = renderContext.get(); ctx!=null; ctx = ctx.outer)
+        {
+            if (ctx.cmd==this)
+                return ctx;
+        }
+        return null;
+    }
+
     /**
      * internally used to reset the command param usage count.
-     * Note: Only one thread my generate an SQL statement 
+     * @deprecated the param usage is now kept in a RenderContext. Use beginRender() and endRender() instead.
      */
+    @Deprecated
     protected void resetParamUsage()
     {
-        paramUsageCount = 0;
+        // nothing to do
     }
     
     /**
-     * internally used to reorder the command params to match their order of occurance
+     * internally used to record the order of occurrence of the command params
      */
-    protected synchronized void notifyParamUsage(DBCmdParam param)
+    protected void notifyParamUsage(DBCmdParam param)
     {
-        int index = cmdParams.indexOf(param);
-        if (index < paramUsageCount)
-        {   // Error: parameter probably used twice in statement!
-            throw new MiscellaneousErrorException("A parameter may only be used once in a command.");
-        }
-        if (index > paramUsageCount)
-        {   // Correct parameter order
-            cmdParams.remove(index);
-            cmdParams.insertElementAt(param, paramUsageCount);
+        for (RenderContext ctx = renderContext.get(); ctx!=null; ctx = ctx.outer)
+        {   // find the command to which the param belongs
+            DBCmdParam p = ctx.cmd.getCommandParam(param);
+            if (p==null)
+                continue;
+            if (!ctx.used.add(p))
+            {   // Error: parameter probably used twice in statement!
+                throw new MiscellaneousErrorException("A parameter may only be used once in a command.");
+            }
+            ctx.params.add(p);
+            return;
         }
-        paramUsageCount++;
+        // Parameter is not rendered as part of this command
+    }
+
+    /**
+     * internally used to resolve a param referenced by an expression of this command.<br>
+     * The expressions of a cloned command still reference the params of the original command.
+     * These are mapped to the corresponding params of the clone.
+     * @return the command param or null if the param does not belong to this command
+     */
+    private DBCmdParam getCommandParam(DBCmdParam param)
+    {
+        if (param.cmd==this)
+            return param;
+        return (clonedParams!=null ? clonedParams.get(param) : null);
     }
 
     /**
@@ -162,7 +281,12 @@ public abstract class DBCommand extends DBCommandExpr
    	private void removeCommandParam(DBCompareColExpr cmp) 
    	{
         if (cmdParams!=null && (cmp.getValue() instanceof DBCmdParam))
-   			cmdParams.remove(cmp.getValue());
+   			cmdParams.remove(getCommandParam((DBCmdParam)cmp.getValue()));
+        if (cmdParams!=null && (cmp.getValue() instanceof DBCmdParam[]))
+        {   // IN list
+            for (DBCmdParam param : (DBCmdParam[])cmp.getValue())
+                cmdParams.remove(getCommandParam(param));
+        }
    	}
 
     /**
@@ -207,12 +331,38 @@ public abstract class DBCommand extends DBCommandExpr
                 clone.having = new ArrayList<DBCompareExpr>(having);
             if (cmdParams!=null)
             {   // clone params
-                clone.paramUsageCount = 0;
-                clone.cmdParams = new Vector<DBCmdParam>();
+                Map<DBCmdParam, DBCmdParam> paramMap = new IdentityHashMap<DBCmdParam, DBCmdParam>(); 
+                clone.cmdParams = new ArrayList<DBCmdParam>();
                 for (DBCmdParam p : cmdParams)
                 {
-                    DBCmdParam param = new DBCmdParam(this, p.getDataType(), p.getValue());
+                    DBCmdParam param = new DBCmdParam(clone, p.getDataType(), p.getValue());
                     clone.cmdParams.add(param);
+                    paramMap.put(p, param);
+                }
+                // the cloned expressions reference the params of this command or of the command this one was cloned from
+                if (clonedParams!=null)
+                {
+                    for (Map.Entry<DBCmdParam, DBCmdParam> e : clonedParams.entrySet())
+                    {
+                        DBCmdParam param = paramMap.get(e.getValue());
+                        if (param!=null)
+                            paramMap.put(e.getKey(), param);
+                    }
+                }
+                clone.clonedParams = paramMap;
+                // inherit the parameter order
+                DBCmdParam[] order = paramOrder;
+                clone.paramOrder = null;
+                if (order!=null)
+                {
+                    List<DBCmdParam> cloneOrder = new ArrayList<DBCmdParam>(order.length);
+                    for (DBCmdParam p : order)
+                    {
+                        DBCmdParam param = paramMap.get(p);
+                        if (param!=null)
+                            cloneOrder.add(param);
+                    }
+                    clone.paramOrder = cloneOrder.toArray(new DBCmdParam[cloneOrder.size()]);
                 }
             }
             // done
@@ -370,6 +520,62 @@ public abstract class DBCommand extends DBCommandExpr
         return ( dt==DataType.BLOB || dt==DataType.CLOB );
     }
     
+    /**
+     * Replaces the values of an IN or NOT IN constraint by command params if prepared statements are enabled.<br>
+     * In order to limit the number of distinct statements, the number of params is rounded up to the next power of two
+     * and the remaining params are set to the last value. 
+     * If the list exceeds the maximum number of IN list params of the driver, the values are bound as a single array param
+     * if supported by the driver (see {@link DBDatabaseDriver#getArrayCompareExpr(DBCmpType)}) or are rendered as literals otherwise.
+     * @param expr the constraint
+     * @return the constraint to add
+     */
+    protected DBCompareExpr prepareInList(DBCompareExpr expr)
+    {
+        if (!(expr instanceof DBCompareColExpr) || !isPreparedStatementsEnabled())
+            return expr;
+        DBCompareColExpr cmp = (DBCompareColExpr)expr;
+        if (cmp.getCmpop()!=DBCmpType.IN && cmp.getCmpop()!=DBCmpType.NOTIN)
+            return expr;
+        // get the values
+        Object value = cmp.getValue();
+        if (value instanceof Collection<?>)
+            value = ((Collection<?>)value).toArray();
+        if (!(value instanceof Object[]) || (value instanceof DBCmdParam[]))
+            return expr;
+        Object[] values = ((Object[])value).clone();
+        if (values.length==0)
+            return expr;
+        DataType dataType = cmp.getColumnExpr().getDataType();
+        for (int i=0; i<values.length; i++)
+        {   // Expressions and null cannot be bound
+            if (values[i]==null || values[i] instanceof DBExpr)
+                return expr;
+            if (values[i].getClass().isEnum())
+                values[i] = (dataType.isNumeric() ? ((Enum<?>)values[i]).ordinal() : ((Enum<?>)values[i]).name());
+        }
+        // Bind as individual params
+        DBDatabaseDriver driver = db.getDriver();
+        int maxParams = driver.getMaxInListParams();
+        if (values.length<=maxParams)
+        {   // round up to bucket size
+            int size = 1;
+            while (size<values.length)
+                size <<= 1;
+            if (size>maxParams)
+                size = maxParams;
+            DBCmdParam[] params = new DBCmdParam[size];
+            for (int i=0; i<size; i++)
+                params[i] = addParam(dataType, values[Math.min(i, values.length-1)]);
+            return new DBCompareColExpr(cmp.getColumnExpr(), cmp.getCmpop(), params);
+        }
+        // Bind as array
+        if (driver.getArrayCompareExpr(cmp.getCmpop())!=null)
+            return new DBCompareColExpr(cmp.getColumnExpr(), cmp.getCmpop(), addParam(dataType, values));
+        // Use literals
+        log.debug("IN list of {} values exceeds the maximum number of params. Values are rendered as literals.", values.length);
+        return expr;
+    }
+    
     /**
      * Adds a single set expressions to this command
      * Use column.to(...) to create a set expression 
@@ -453,7 +659,7 @@ public abstract class DBCommand extends DBCommandExpr
     public DBCmdParam addParam(DataType type, Object value)
     {
         if (cmdParams==null)
-            cmdParams= new Vector<DBCmdParam>();
+            cmdParams= new ArrayList<DBCmdParam>();
         // Adds the parameter 
         DBCmdParam param = new DBCmdParam(this, type, value);
         if (cmdParams.add(param)==false)
@@ -733,7 +939,7 @@ public abstract class DBCommand extends DBCommandExpr
         checkDatabase(expr);
         if (where == null)
             where = new ArrayList<DBCompareExpr>();
-        setConstraint(where, expr);
+        setConstraint(where, prepareInList(expr));
     }
     
     /**
@@ -748,6 +954,24 @@ public abstract class DBCommand extends DBCommandExpr
             where(exprs[i]);
     }
 
+    /**
+     * Adds a keyset pagination constraint to the where phrase of the sql statement.<br>
+     * The statement will only return the rows following (or preceding) the row identified by the key
+     * (see {@link #getSeekConstraint(Object[], boolean)}).
+     * Other than where() the constraint does not replace an existing restriction on the same column.
+     *
+     * @param key the values of the order by expressions of the boundary row
+     * @param reverse true to select the rows preceding the boundary row
+     */
+    public void whereSeek(Object[] key, boolean reverse)
+    {
+        DBCompareExpr seek = getSeekConstraint(key, reverse);
+        checkDatabase(seek);
+        if (where == null)
+            where = new ArrayList<DBCompareExpr>();
+        where.add(seek);
+    }
+
     /**
      * Returns true if the command has constraints or false if not.
      * 
@@ -811,7 +1035,7 @@ public abstract class DBCommand extends DBCommandExpr
         checkDatabase(expr);
         if (having == null)
             having = new ArrayList<DBCompareExpr>();
-        setConstraint(having, expr);
+        setConstraint(having, prepareInList(expr));
     }
     
     /**
@@ -862,21 +1086,25 @@ public abstract class DBCommand extends DBCommandExpr
     }
     
     @Override
-    public synchronized void getSelect(StringBuilder buf)
+    public void getSelect(StringBuilder buf)
     {
-        resetParamUsage();
         if (select == null)
             throw new ObjectNotValidException(this); // invalid!
-        // Prepares statement
-        addSelect(buf);
-        // From clause
-        addFrom(buf);
-        // Add Where
-        addWhere(buf);
-        // Add Grouping
-        addGrouping(buf);
-        // Add Order
-        addOrder(buf);
+        RenderContext ctx = beginRender();
+        try
+        {   // Prepares statement
+            addSelect(buf);
+            // From clause
+            addFrom(buf);
+            // Add Where
+            addWhere(buf);
+            // Add Grouping
+            addGrouping(buf);
+            // Add Order
+            addOrder(buf);
+        } finally {
+            endRender(ctx);
+        }
     }
     
     /**
@@ -972,7 +1200,7 @@ public abstract class DBCommand extends DBCommandExpr
         clearGroupBy();
         clearOrderBy();
         clearLimit();
-        resetParamUsage();
+        paramOrder = null;
     }
 
     /**
@@ -1024,6 +1252,18 @@ public abstract class DBCommand extends DBCommandExpr
         }
     }
     
+    /**
+     * Returns the rowset modified by the set expressions of this command (i.e. by an insert or update statement).
+     *  
+     * @return the rowset or null if no set expressions have been added
+     */
+    protected DBRowSet getUpdateRowSet()
+    {
+        if (set==null || set.isEmpty() || set.get(0)==null)
+            return null;
+        return set.get(0).getTable();
+    }
+    
     /**
      * Gets a list of all tables referenced by the query.
      *  
@@ -1078,22 +1318,23 @@ public abstract class DBCommand extends DBCommandExpr
     
     /**
      * Returns an array of parameter values for a prepared statement.
-     * To ensure that all values are in the order of their occurrence, getSelect() should be called first.
+     * To ensure that all values are in the order of their occurrence, getSelect() should be called first.<br>
+     * The order is taken from the statement rendered last. Hence the values only match the statement
+     * if the command is not rendered by other threads at the same time.
+     * Use compileSelect(), compileUpdate(), compileInsert() or compileDelete() in order to obtain
+     * the SQL and its parameters consistently.
      * @return an array of parameter values for a prepared statement 
      */
     @Override
     public Object[] getParamValues()
     {
-        if (cmdParams==null || cmdParams.size()==0)
+        DBCmdParam[] params = getCmdParamArray(paramOrder);
+        if (params==null)
             return null;
-        // Check whether all parameters have been used
-        if (paramUsageCount>0 && paramUsageCount!=cmdParams.size())
-	        log.warn("DBCommand parameter count ("+String.valueOf(cmdParams.size())
-	        	   + ") does not match parameter use count ("+String.valueOf(paramUsageCount)+")");
         // Create result array
-        Object[] values = new Object[cmdParams.size()];
+        Object[] values = new Object[params.length];
         for (int i=0; i<values.length; i++)
-            values[i]=cmdParams.get(i).getValue();
+            values[i]=params[i].getValue();
         // values
         return values;
     }
@@ -1103,37 +1344,42 @@ public abstract class DBCommand extends DBCommandExpr
      * 
      * @return the update SQL-Command
      */
-    public synchronized String getUpdate()
+    public String getUpdate()
     {
-        resetParamUsage();
         if (set == null)
             return null;
-        StringBuilder buf = new StringBuilder("UPDATE ");
-        DBRowSet table =  set.get(0).getTable();
-        if (joins!=null && !joins.isEmpty())
-        {   // Join Update
-            buf.append( table.getAlias() );
-            long context = CTX_DEFAULT;
-            // Set Expressions
-            buf.append("\r\nSET ");
-            addListExpr(buf, set, context, ", ");
-            // From clause
-            addFrom(buf);
-            // Add Where
-            addWhere(buf, context);
-        }
-        else
-        {   // Simple Statement
-            table.addSQL(buf, CTX_FULLNAME);
-            long context = CTX_NAME | CTX_VALUE;
-            // Set Expressions
-            buf.append("\r\nSET ");
-            addListExpr(buf, set, context, ", ");
-            // Add Where
-            addWhere(buf, context);
+        RenderContext ctx = beginRender();
+        try
+        {
+            StringBuilder buf = new StringBuilder("UPDATE ");
+            DBRowSet table =  set.get(0).getTable();
+            if (joins!=null && !joins.isEmpty())
+            {   // Join Update
+                buf.append( table.getAlias() );
+                long context = CTX_DEFAULT;
+                // Set Expressions
+                buf.append("\r\nSET ");
+                addListExpr(buf, set, context, ", ");
+                // From clause
+                addFrom(buf);
+                // Add Where
+                addWhere(buf, context);
+            }
+            else
+            {   // Simple Statement
+                table.addSQL(buf, CTX_FULLNAME);
+                long context = CTX_NAME | CTX_VALUE;
+                // Set Expressions
+                buf.append("\r\nSET ");
+                addListExpr(buf, set, context, ", ");
+                // Add Where
+                addWhere(buf, context);
+            }
+            // done
+            return buf.toString();
+        } finally {
+            endRender(ctx);
         }
-        // done
-        return buf.toString();
     }
 
     /**
@@ -1142,56 +1388,61 @@ public abstract class DBCommand extends DBCommandExpr
      * @return the insert SQL-Command
      */
     // get Insert
-    public synchronized String getInsert()
+    public String getInsert()
     {
-        resetParamUsage();
         if (set==null || set.get(0)==null)
             return null;
-        StringBuilder buf = new StringBuilder("INSERT INTO ");
-        // addTableExpr(buf, CTX_NAME);
-        DBRowSet table =  set.get(0).getTable();
-        table.addSQL(buf, CTX_FULLNAME);
-        // Set Expressions
-        buf.append("( ");
-        // Set Expressions
-        ArrayList<DBCompareColExpr> compexpr = null;
-        if (where!=null && !where.isEmpty())
-        {   // Convert ColumnExpression List to Column List
-            compexpr = new ArrayList<DBCompareColExpr>(where.size());
-            for (DBCompareExpr expr : where)
-            {   if (expr instanceof DBCompareColExpr)
-                {   DBColumn column = ((DBCompareColExpr)expr).getColumnExpr().getUpdateColumn();
-                    if (column!=null && hasSetExprOn(column)==false)
-                        compexpr.add((DBCompareColExpr)expr);
+        RenderContext ctx = beginRender();
+        try
+        {
+            StringBuilder buf = new StringBuilder("INSERT INTO ");
+            // addTableExpr(buf, CTX_NAME);
+            DBRowSet table =  set.get(0).getTable();
+            table.addSQL(buf, CTX_FULLNAME);
+            // Set Expressions
+            buf.append("( ");
+            // Set Expressions
+            ArrayList<DBCompareColExpr> compexpr = null;
+            if (where!=null && !where.isEmpty())
+            {   // Convert ColumnExpression List to Column List
+                compexpr = new ArrayList<DBCompareColExpr>(where.size());
+                for (DBCompareExpr expr : where)
+                {   if (expr instanceof DBCompareColExpr)
+                    {   DBColumn column = ((DBCompareColExpr)expr).getColumnExpr().getUpdateColumn();
+                        if (column!=null && hasSetExprOn(column)==false)
+                            compexpr.add((DBCompareColExpr)expr);
+                    }
+                }
+                // Add Column Names from where clause
+                if (compexpr.size()>0)
+                {
+                    // add List
+                    addListExpr(buf, compexpr, CTX_NAME, ", ");
+                    // add separator
+                    if (set != null)
+                        buf.append(", ");
+                }
+                else
+                {   // No columns to set
+                    compexpr = null;
                 }
             }
-            // Add Column Names from where clause
-            if (compexpr.size()>0)
-            {
-                // add List
-                addListExpr(buf, compexpr, CTX_NAME, ", ");
-                // add separator
-                if (set != null)
-                    buf.append(", ");
-            }
-            else
-            {   // No columns to set
-                compexpr = null;
-            }
+            if (set != null)
+                addListExpr(buf, set, CTX_NAME, ", ");
+            // Values
+            buf.append(") VALUES ( ");
+            if (compexpr != null)
+                addListExpr(buf, compexpr, CTX_VALUE, ", ");
+            if (compexpr != null && set != null)
+                buf.append(", ");
+            if (set != null)
+                addListExpr(buf, set, CTX_VALUE, ", ");
+            // End
+            buf.append(")");
+            return buf.toString();
+        } finally {
+            endRender(ctx);
         }
-        if (set != null)
-            addListExpr(buf, set, CTX_NAME, ", ");
-        // Values
-        buf.append(") VALUES ( ");
-        if (compexpr != null)
-            addListExpr(buf, compexpr, CTX_VALUE, ", ");
-        if (compexpr != null && set != null)
-            buf.append(", ");
-        if (set != null)
-            addListExpr(buf, set, CTX_VALUE, ", ");
-        // End
-        buf.append(")");
-        return buf.toString();
     }
     
     /**
@@ -1201,20 +1452,136 @@ public abstract class DBCommand extends DBCommandExpr
      * 
      * @return the delete SQL-Command
      */
-    public synchronized String getDelete(DBTable table)
+    public String getDelete(DBTable table)
     {
-        resetParamUsage();
-        StringBuilder buf = new StringBuilder("DELETE FROM ");
-        table.addSQL(buf, CTX_FULLNAME);
-        // Set Expressions
-        if (where!=null && !where.isEmpty())
-        { // add where condition
-            buf.append("\r\nWHERE ");
-            addListExpr(buf, where, CTX_NAME|CTX_VALUE, " AND ");
+        RenderContext ctx = beginRender();
+        try
+        {
+            StringBuilder buf = new StringBuilder("DELETE FROM ");
+            table.addSQL(buf, CTX_FULLNAME);
+            // Set Expressions
+            if (where!=null && !where.isEmpty())
+            { // add where condition
+                buf.append("\r\nWHERE ");
+                addListExpr(buf, where, CTX_NAME|CTX_VALUE, " AND ");
+            }
+            return buf.toString();
+        } finally {
+            endRender(ctx);
         }
-        return buf.toString();
     }
-    
+
+    // ------- Compiled Commands -------
+
+    /**
+     * Compiles the select statement of this command into an immutable plan.<br>
+     * The plan holds the SQL text, the command parameters and the select expression list
+     * and can be executed repeatedly with different parameter values without rendering the SQL again.
+     *
+     * @return the compiled select command
+     */
+    public DBCmdPlan compileSelect()
+    {
+        RenderContext ctx = beginRender();
+        try
+        {   // the parameter order is taken from this rendering
+            String sql = getSelect();
+            return new DBCmdPlan(db, sql, getCmdParamArray(ctx.nestedParams), getSelectExprList());
+        } finally {
+            endRender(ctx);
+        }
+    }
+
+    /**
+     * Compiles the update statement of this command into an immutable plan.
+     * @see DBCommand#compileSelect()
+     *
+     * @return the compiled update command
+     */
+    public DBCmdPlan compileUpdate()
+    {
+        RenderContext ctx = beginRender();
+        try
+        {   // the parameter order is taken from this rendering
+            String sql = getUpdate();
+            if (sql==null)
+                throw new ObjectNotValidException(this);
+            return new DBCmdPlan(db, sql, getCmdParamArray(ctx.nestedParams), null);
+        } finally {
+            endRender(ctx);
+        }
+    }
+
+    /**
+     * Compiles the insert statement of this command into an immutable plan.
+     * @see DBCommand#compileSelect()
+     *
+     * @return the compiled insert command
+     */
+    public DBCmdPlan compileInsert()
+    {
+        RenderContext ctx = beginRender();
+        try
+        {   // the parameter order is taken from this rendering
+            String sql = getInsert();
+            if (sql==null)
+                throw new ObjectNotValidException(this);
+            return new DBCmdPlan(db, sql, getCmdParamArray(ctx.nestedParams), null);
+        } finally {
+            endRender(ctx);
+        }
+    }
+
+    /**
+     * Compiles the delete statement of this command into an immutable plan.
+     * @see DBCommand#compileSelect()
+     *
+     * @param table the table from which to delete
+     * @return the compiled delete command
+     */
+    public DBCmdPlan compileDelete(DBTable table)
+    {
+        RenderContext ctx = beginRender();
+        try
+        {   // the parameter order is taken from this rendering
+            String sql = getDelete(table);
+            return new DBCmdPlan(db, sql, getCmdParamArray(ctx.nestedParams), null);
+        } finally {
+            endRender(ctx);
+        }
+    }
+
+    /**
+     * returns the command params in the given order of their occurrence in a statement.
+     * Params which have not been used are appended in the order in which they have been added.
+     */
+    private DBCmdParam[] getCmdParamArray(DBCmdParam[] order)
+    {
+        if (cmdParams==null || cmdParams.isEmpty())
+            return null;
+        if (order==null)
+            return cmdParams.toArray(new DBCmdParam[cmdParams.size()]);
+        // Check whether all parameters have been used
+        if (order.length!=cmdParams.size())
+            log.warn("DBCommand parameter count ("+String.valueOf(cmdParams.size())
+                   + ") does not match parameter use count ("+String.valueOf(order.length)+")");
+        // Used params first
+        Set<DBCmdParam> known = Collections.newSetFromMap(new IdentityHashMap<DBCmdParam, Boolean>(cmdParams.size()));
+        known.addAll(cmdParams);
+        List<DBCmdParam> params = new ArrayList<DBCmdParam>(cmdParams.size());
+        for (DBCmdParam p : order)
+        {
+            if (known.remove(p))
+                params.add(p);
+        }
+        for (DBCmdParam p : cmdParams)
+        {
+            if (known.remove(p))
+                params.add(p);
+        }
+        return params.toArray(new DBCmdParam[params.size()]);
+    }
+
     // ------- Select Statement Parts -------
 
     protected void addSelect(StringBuilder buf)
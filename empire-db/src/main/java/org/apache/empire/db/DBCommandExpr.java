@@ -21,11 +21,14 @@ package org.apache.empire.db;
 // java
 import java.sql.Connection;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 
+import org.apache.empire.commons.Attributes;
 import org.apache.empire.commons.Options;
 import org.apache.empire.data.DataType;
+import org.apache.empire.db.expr.compare.DBCompareExpr;
 import org.apache.empire.db.expr.order.DBOrderByExpr;
 import org.apache.empire.exceptions.InvalidArgumentException;
 import org.apache.empire.exceptions.NotSupportedException;
@@ -257,8 +260,9 @@ public abstract class DBCommandExpr extends DBExpr
         @Override
         public Object getAttribute(String name)
         {
-            if (attributes != null && attributes.indexOf(name)>=0)
-                return attributes.get(name);
+            Attributes.Attribute a = (attributes != null ? attributes.find(name) : null);
+            if (a != null)
+                return a.getValue();
             // Otherwise ask expression
             DBColumn column = expr.getUpdateColumn();
             if (column!=null)
@@ -304,6 +308,7 @@ public abstract class DBCommandExpr extends DBExpr
     // Members
     protected DBCmdQuery          cmdQuery = null;
     protected List<DBOrderByExpr> orderBy  = null;
+    protected boolean             streaming = false;
 
     /** Constructs an empty DBCommandExpr object */
     public DBCommandExpr()
@@ -311,6 +316,27 @@ public abstract class DBCommandExpr extends DBExpr
         // Default Constructor
     }
 
+    /**
+     * Returns whether the result of this command should be streamed when opened with a DBReader.
+     * @return true if the result should be streamed
+     */
+    public boolean isStreaming()
+    {
+        return streaming;
+    }
+
+    /**
+     * Sets whether the result of this command should be streamed when opened with a DBReader.<br>
+     * If enabled the JDBC driver is asked to fetch rows in portions instead of reading the whole result into memory
+     * (see {@link DBDatabaseDriver#setStreamingHints(java.sql.Statement, java.sql.Connection)}).
+     * Streaming readers are not scrollable.
+     * @param streaming true if the result should be streamed
+     */
+    public void setStreaming(boolean streaming)
+    {
+        this.streaming = streaming;
+    }
+
     // get Select SQL
     public abstract boolean isValid();
 
@@ -505,6 +531,81 @@ public abstract class DBCommandExpr extends DBExpr
         orderBy(new DBOrderByExpr(expr, desc));
     }
 
+    /**
+     * Returns a copy of the defined order by expressions.
+     *
+     * @return list of order by expressions
+     */
+    public List<DBOrderByExpr> getOrderBy()
+    {
+        return (this.orderBy!=null ? Collections.unmodifiableList(this.orderBy) : null);
+    }
+
+    /**
+     * Returns the values of the order by expressions for the current row of a query result.<br>
+     * The key may be used to seek the following rows with {@link #getSeekConstraint(Object[], boolean)}.
+     *
+     * @param data the record data (e.g. a DBReader) positioned on a row
+     * @return the key values or null if an order by expression is not part of the select list
+     */
+    public Object[] getSeekKey(DBRecordData data)
+    {
+        if (orderBy == null || orderBy.isEmpty())
+            throw new ObjectNotValidException(this);
+        // collect values
+        Object[] key = new Object[orderBy.size()];
+        for (int i=0; i<key.length; i++)
+        {
+            int index = data.getFieldIndex(orderBy.get(i).getColumnExpr());
+            if (index<0)
+                return null; // not selected
+            key[i] = data.getValue(index);
+        }
+        return key;
+    }
+
+    /**
+     * Creates a constraint for keyset (seek) pagination.<br>
+     * The constraint selects all rows that follow (or precede if reverse is true) the row identified by the key
+     * in the order given by the order by expressions, e.g. for "ORDER BY A, B DESC" the constraint is
+     * "A &gt; ? OR (A = ? AND B &lt; ?)".<br>
+     * Unlike skipRows() the database can use an index on the order by expressions instead of reading and discarding all previous rows.
+     * <P>
+     * The order by expressions must uniquely identify a row. Hence the primary key should be added as the last order by expression.
+     * Key values must not be null.
+     *
+     * @param key the values of the order by expressions of the boundary row (see {@link #getSeekKey(DBRecordData)})
+     * @param reverse true to select the rows preceding the boundary row
+     * @return the seek constraint
+     */
+    public DBCompareExpr getSeekConstraint(Object[] key, boolean reverse)
+    {
+        if (orderBy == null || orderBy.isEmpty())
+            throw new ObjectNotValidException(this);
+        if (key == null || key.length != orderBy.size())
+            throw new InvalidArgumentException("key", key);
+        // Build constraint
+        DBCompareExpr seek = null;
+        DBCompareExpr equal = null;
+        for (int i=0; i<key.length; i++)
+        {
+            if (key[i]==null)
+                throw new InvalidArgumentException("key["+String.valueOf(i)+"]", key[i]);
+            // compare
+            DBOrderByExpr ob = orderBy.get(i);
+            DBColumnExpr expr = ob.getColumnExpr();
+            DBCmpType cmpType = (ob.isDescending()==reverse) ? DBCmpType.GREATERTHAN : DBCmpType.LESSTHAN;
+            DBCompareExpr cmp = expr.cmp(cmpType, key[i]);
+            if (equal!=null)
+                cmp = equal.and(cmp);
+            seek = (seek!=null) ? seek.or(cmp) : cmp;
+            // tie-breaker
+            DBCompareExpr eq = expr.cmp(DBCmpType.EQUAL, key[i]);
+            equal = (equal!=null) ? equal.and(eq) : eq;
+        }
+        return seek;
+    }
+
     /**
      * Create the insert into SQL-Command which copies data
      * from a select statement to a destination table.
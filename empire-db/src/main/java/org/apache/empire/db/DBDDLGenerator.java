@@ -62,17 +62,17 @@ public abstract class DBDDLGenerator<T extends DBDatabaseDriver>
     protected void addCreateTableStmt(DBTable table, StringBuilder sql, DBSQLScript script)
     {
         log.info("Adding create statmement for table {}.", table.getName());
-        script.addStmt(sql);
+        script.addStmt(sql, table);
     }
     protected void addCreateIndexStmt(DBIndex index, StringBuilder sql, DBSQLScript script)
     {
         log.info("Adding create statmement for index {}.", index.getName());
-        script.addStmt(sql);
+        script.addStmt(sql, index.getTable());
     }
     protected void addCreateRelationStmt(DBRelation rel, StringBuilder sql, DBSQLScript script)
     {
         log.info("Adding create statmement for relation {}.", rel.getName());
-        script.addStmt(sql);
+        script.addStmt(sql, rel.getForeignKeyTable(), rel.getReferencedTable());
     }
     protected void addCreateViewStmt(DBView v, StringBuilder sql, DBSQLScript script)
     {
@@ -82,7 +82,7 @@ public abstract class DBDDLGenerator<T extends DBDatabaseDriver>
     protected void addAlterTableStmt(DBColumn col, StringBuilder sql, DBSQLScript script)
     {
         log.info("Adding alter statmement for column {}.", col.getFullName());
-        script.addStmt(sql);
+        script.addStmt(sql, col.getRowSet());
     }
 
     
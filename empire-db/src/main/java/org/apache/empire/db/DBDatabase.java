@@ -92,6 +92,12 @@ public abstract class DBDatabase extends DBObject
     // Threshold for long running queries in milliseconds
     protected long longRunndingStmtThreshold = 30000;
     
+    // Cache for option lists (optional)
+    private transient DBOptionsCache optionsCache = null;
+    
+    // Router for read-only queries (optional)
+    private transient DBReadReplicaRouter readReplicaRouter = null;
+    
     // Database specific date
     public static final DBSystemDate SYSDATE  = new DBSystemDate();
     
@@ -780,12 +786,20 @@ public abstract class DBDatabase extends DBObject
         return driver.getUpdateTimestamp(conn);
     }
 
-    // Sequences
+    /**
+     * Returns the next value of a named sequence.<br>
+     * Depending on the sequence block size values may be taken from a block reserved in advance
+     * (see {@link DBDatabaseDriver#setSequenceBlockSize(String, int)}).
+     * 
+     * @param seqName the name of the sequence
+     * @param conn the connection
+     * @return the next sequence value
+     */
     public Object getNextSequenceValue(String seqName, Connection conn)
     {
         // Ask driver
         checkOpen(); 
-        return driver.getNextSequenceValue(this, seqName, 1, conn);
+        return driver.allocateSequenceValue(this, seqName, 1, conn);
     }
 
     /**
@@ -812,14 +826,20 @@ public abstract class DBDatabase extends DBObject
             rs = driver.executeQuery(sqlCmd, sqlParams, false, conn);
             if (rs == null)
                 throw new UnexpectedReturnValueException(rs, "driver.executeQuery()");
+            DBInstrumentation instr = driver.getInstrumentation();
+            long fetchStart = (instr!=null) ? System.nanoTime() : 0;
             // Check Result
             if (rs.next() == false)
             {   // no result
                 log.debug("querySingleValue returned no result");
+                if (instr!=null)
+                    instr.resultFetched(sqlCmd, System.nanoTime() - fetchStart, 0);
                 return ObjectUtils.NO_VALUE;
             }
             // Read value
             Object result = driver.getResultValue(rs, 1, dataType);
+            if (instr!=null)
+                instr.resultFetched(sqlCmd, System.nanoTime() - fetchStart, 1);
             // Debug
             long queryTime = (System.currentTimeMillis() - start);
             if (log.isDebugEnabled())
@@ -833,7 +853,7 @@ public abstract class DBDatabase extends DBObject
             throw new QueryFailedException(this, sqlCmd, sqle);
         } finally
         { // Cleanup
-            closeResultSet(rs);
+            closeResultSet(rs, sqlCmd);
         }
     }
 
@@ -1061,6 +1081,8 @@ public abstract class DBDatabase extends DBObject
             rs = driver.executeQuery(sqlCmd, sqlParams, false, conn);
             if (rs == null)
                 throw new UnexpectedReturnValueException(rs, "driver.executeQuery()");
+            DBInstrumentation instr = driver.getInstrumentation();
+            long fetchStart = (instr!=null) ? System.nanoTime() : 0;
             // Check Result
             int count=0;
             while (rs.next() && (maxRows<0 || count<maxRows))
@@ -1069,6 +1091,8 @@ public abstract class DBDatabase extends DBObject
                 result.add(item);
                 count++;
             }
+            if (instr!=null)
+                instr.resultFetched(sqlCmd, System.nanoTime() - fetchStart, count);
             // Debug
             long queryTime = (System.currentTimeMillis() - start);
             if (log.isDebugEnabled())
@@ -1085,7 +1109,7 @@ public abstract class DBDatabase extends DBObject
             throw new QueryFailedException(this, sqlCmd, sqle);
         } finally
         { // Cleanup
-            closeResultSet(rs);
+            closeResultSet(rs, sqlCmd);
         }
     }
     
@@ -1158,6 +1182,8 @@ public abstract class DBDatabase extends DBObject
             rs = driver.executeQuery(sqlCmd, sqlParams, false, conn);
             if (rs == null)
                 throw new UnexpectedReturnValueException(rs, "driver.executeQuery()");
+            DBInstrumentation instr = driver.getInstrumentation();
+            long fetchStart = (instr!=null) ? System.nanoTime() : 0;
             if (rs.getMetaData().getColumnCount()<2)
                 throw new InvalidArgumentException("sqlCmd", sqlCmd);
             // Check Result
@@ -1169,6 +1195,8 @@ public abstract class DBDatabase extends DBObject
                 result.add(value, text, true);
                 count++;
             }
+            if (instr!=null)
+                instr.resultFetched(sqlCmd, System.nanoTime() - fetchStart, count);
             // Debug
             long queryTime = (System.currentTimeMillis() - start);
             if (log.isDebugEnabled())
@@ -1182,7 +1210,7 @@ public abstract class DBDatabase extends DBObject
             throw new QueryFailedException(this, sqlCmd, sqle);
         } finally
         { // Cleanup
-            closeResultSet(rs);
+            closeResultSet(rs, sqlCmd);
         }
     }
     
@@ -1214,6 +1242,62 @@ public abstract class DBDatabase extends DBObject
         return options; 
     }
     
+    /**
+     * Returns a list of key value pairs from an sql query using the options cache.<br>
+     * If no options cache has been set, the query is executed like for queryOptionList(). 
+     * <P>
+     * The options returned may be shared with other callers and thus must not be modified! 
+     * 
+     * @param cmd the Command object that contains the select statement
+     * @param conn a valid connection to the database.
+     * @return an Options object containing a set a of values and their corresponding names 
+     */
+    public final Options queryCachedOptionList(DBCommand cmd, Connection conn)
+    {
+        DBOptionsCache cache = optionsCache;
+        if (cache==null)
+            return queryOptionList(cmd, conn);
+        // use cache
+        return cache.getOptions(cmd, conn);
+    }
+    
+    /**
+     * Returns the cache used by queryCachedOptionList()
+     * @return the options cache or null if option lists are not cached
+     */
+    public DBOptionsCache getOptionsCache()
+    {
+        return optionsCache;
+    }
+
+    /**
+     * Sets the cache used by queryCachedOptionList()
+     * @param optionsCache the options cache or null to disable caching
+     */
+    public void setOptionsCache(DBOptionsCache optionsCache)
+    {
+        this.optionsCache = optionsCache;
+    }
+
+    /**
+     * Returns the router which distributes read-only queries between the primary and its read replicas
+     * @return the read replica router or null if all queries are executed on the primary
+     */
+    public DBReadReplicaRouter getReadReplicaRouter()
+    {
+        return readReplicaRouter;
+    }
+
+    /**
+     * Sets the router which distributes read-only queries between the primary and its read replicas.<br>
+     * Statements executed with executeSQL() or executeBatch() are marked as writes on the router.
+     * @param readReplicaRouter the read replica router or null to execute all queries on the primary
+     */
+    public void setReadReplicaRouter(DBReadReplicaRouter readReplicaRouter)
+    {
+        this.readReplicaRouter = readReplicaRouter;
+    }
+    
     /**
      * Adds the result of a query to a given collection.<br>
      * The individual rows will be added as an array of objects (object[])
@@ -1237,6 +1321,8 @@ public abstract class DBDatabase extends DBObject
             rs = driver.executeQuery(sqlCmd, sqlParams, false, conn);
             if (rs == null)
                 throw new UnexpectedReturnValueException(rs, "driver.executeQuery()");
+            DBInstrumentation instr = driver.getInstrumentation();
+            long fetchStart = (instr!=null) ? System.nanoTime() : 0;
             // Read List
             int colCount = rs.getMetaData().getColumnCount();
             int count = 0;
@@ -1250,6 +1336,8 @@ public abstract class DBDatabase extends DBObject
                 result.add(item);
                 count++;
             }
+            if (instr!=null)
+                instr.resultFetched(sqlCmd, System.nanoTime() - fetchStart, count);
             // Debug
             long queryTime = (System.currentTimeMillis() - start);
             if (log.isDebugEnabled())
@@ -1263,7 +1351,7 @@ public abstract class DBDatabase extends DBObject
             throw new QueryFailedException(this, sqlCmd, sqle);
         } finally
         { // Cleanup
-            closeResultSet(rs);
+            closeResultSet(rs, sqlCmd);
         }
     } 
 
@@ -1347,6 +1435,9 @@ public abstract class DBDatabase extends DBObject
         {   // Check argument
             if (conn==null)
                 throw new InvalidArgumentException("conn", conn);
+            // Mark write
+            if (readReplicaRouter!=null)
+                readReplicaRouter.markWrite();
             // Debug
             if (log.isInfoEnabled())
                 log.info("Executing: " + sqlCmd);
@@ -1378,6 +1469,51 @@ public abstract class DBDatabase extends DBObject
     {
         return executeSQL(sqlCmd, sqlParams, conn, null); 
     }
+
+    /**
+     * Executes a list of update, insert or delete SQL-Statements as a batch.<BR>
+     * Consecutive identical statements are executed using a single prepared statement.<BR>
+     * <P>
+     * @param sqlCmd the SQL-Commands
+     * @param sqlCmdParams the command parameters for each statement (may be null if no statement has parameters)
+     * @param conn a valid connection to the database.
+     * @return the row count of each statement (may be Statement.SUCCESS_NO_INFO if not provided by the driver)
+     */
+    public int[] executeBatch(String[] sqlCmd, Object[][] sqlCmdParams, Connection conn)
+    {
+        checkOpen();
+        try
+        {   // Check argument
+            if (conn==null)
+                throw new InvalidArgumentException("conn", conn);
+            if (sqlCmd==null || (sqlCmdParams!=null && sqlCmdParams.length!=sqlCmd.length))
+                throw new InvalidArgumentException("sqlCmd", sqlCmd);
+            // Mark write
+            if (readReplicaRouter!=null)
+                readReplicaRouter.markWrite();
+            // Debug
+            if (log.isInfoEnabled())
+                log.info("Executing batch containing {} statements.", sqlCmd.length);
+            // execute SQL
+            long start = System.currentTimeMillis();
+            int[] affected = driver.executeBatch(sqlCmd, sqlCmdParams, conn);
+            // Log
+            long execTime = (System.currentTimeMillis() - start);
+            if (log.isInfoEnabled())
+                log.info("executeBatch completed {} statements in {} ms ", sqlCmd.length, execTime);
+            else if (execTime>=longRunndingStmtThreshold)
+                log.warn("Long running batch took {} seconds for {} statements.", execTime / 1000, sqlCmd.length);
+            // Return number of affected records
+            return affected;
+
+        } catch (SQLIntegrityConstraintViolationException sqle) {
+            // ConstraintViolation
+            throw new ConstraintViolationException(this, sqlCmd[0], sqle);
+        } catch (SQLException sqle) {
+            // Other error
+            throw new StatementFailedException(this, sqlCmd[0], sqle);
+        }
+    }
     
     /**
      * @deprecated This method has be deprecated in order to avoid missing command parameters for prepared statements  
@@ -1409,7 +1545,9 @@ public abstract class DBDatabase extends DBObject
      */
     public final int executeInsert(DBCommand cmd, Connection conn)
     {
-        return executeSQL(cmd.getInsert(), cmd.getParamValues(), conn); 
+        int affected = executeSQL(cmd.getInsert(), cmd.getParamValues(), conn);
+        onRecordsModified(cmd.getUpdateRowSet(), conn);
+        return affected;
     }
 
     /**
@@ -1421,7 +1559,9 @@ public abstract class DBDatabase extends DBObject
      */
     public final int executeInsertInto(DBTable table, DBCommand cmd, Connection conn)
     {
-        return executeSQL(cmd.getInsertInto(table), cmd.getParamValues(), conn); 
+        int affected = executeSQL(cmd.getInsertInto(table), cmd.getParamValues(), conn);
+        onRecordsModified(table, conn);
+        return affected;
     }
 
     /**
@@ -1432,7 +1572,9 @@ public abstract class DBDatabase extends DBObject
      */
     public final int executeUpdate(DBCommand cmd, Connection conn)
     {
-        return executeSQL(cmd.getUpdate(), cmd.getParamValues(), conn); 
+        int affected = executeSQL(cmd.getUpdate(), cmd.getParamValues(), conn);
+        onRecordsModified(cmd.getUpdateRowSet(), conn);
+        return affected;
     }
 
     /**
@@ -1444,7 +1586,34 @@ public abstract class DBDatabase extends DBObject
      */
     public final int executeDelete(DBTable from, DBCommand cmd, Connection conn)
     {
-        return executeSQL(cmd.getDelete(from), cmd.getParamValues(), conn); 
+        int affected = executeSQL(cmd.getDelete(from), cmd.getParamValues(), conn);
+        onRecordsModified(from, conn);
+        return affected;
+    }
+    
+    /**
+     * Notifies a rowset that any number of its records may have been modified
+     * @param rowset the rowset (may be null)
+     * @param conn the connection used to modify the records
+     */
+    protected void onRecordsModified(DBRowSet rowset, Connection conn)
+    {
+        if (rowset!=null)
+            rowset.onRecordsModified(null, conn);
+    }
+
+    /**
+     * Notifies all tables that a transaction has been committed or rolled back
+     * @param conn the connection of the transaction
+     * @param commit true if the transaction has been committed or false if it has been rolled back
+     */
+    protected void onTransactionComplete(Connection conn, boolean commit)
+    {
+        // Sequence blocks may have been reserved by this transaction
+        if (driver!=null)
+            driver.onTransactionComplete(conn, commit);
+        for (DBTable table : tables)
+            table.onTransactionComplete(conn, commit);
     }
     
     /**
@@ -1459,6 +1628,34 @@ public abstract class DBDatabase extends DBObject
      * @return the JDBC ResutSet
      */
     public ResultSet executeQuery(String sqlCmd, Object[] sqlParams, boolean scrollable, Connection conn)
+    {
+        return openResultSet(sqlCmd, sqlParams, scrollable, false, conn);
+    }
+
+    /**
+     * Executes a select SQL-Statement and returns a ResultSet containing the query results.<BR>
+     * If streaming is true the driver is asked to stream the result rather than reading all rows into memory.<BR>
+     * Instead of using this function directly you should use a DBReader object instead.<BR>
+     * <P>
+     * @param sqlCmd the SQL-Command
+     * @param sqlParams a list of parameters for parameter queries (may depend on driver)
+     * @param scrollable true if the reader should be scrollable or false if not
+     * @param streaming true if the result should be streamed (scrollable is ignored)
+     * @param conn a valid connection to the database.
+     * @return the JDBC ResutSet
+     */
+    public ResultSet executeQuery(String sqlCmd, Object[] sqlParams, boolean scrollable, boolean streaming, Connection conn)
+    {
+        if (!streaming)
+            return executeQuery(sqlCmd, sqlParams, scrollable, conn);
+        // streamed
+        return openResultSet(sqlCmd, sqlParams, false, true, conn);
+    }
+
+    /**
+     * internally used to execute a query
+     */
+    private ResultSet openResultSet(String sqlCmd, Object[] sqlParams, boolean scrollable, boolean streaming, Connection conn)
     {
         checkOpen();
         try
@@ -1470,7 +1667,8 @@ public abstract class DBDatabase extends DBObject
     	        log.debug("Executing: " + sqlCmd);
             // Execute the Statement
             long start = System.currentTimeMillis();
-            ResultSet rs = driver.executeQuery(sqlCmd, sqlParams, scrollable, conn);
+            ResultSet rs = (streaming) ? driver.executeQuery(sqlCmd, sqlParams, false, true, conn)
+                                       : driver.executeQuery(sqlCmd, sqlParams, scrollable, conn);
             if (rs == null)
                 throw new UnexpectedReturnValueException(rs, "driver.executeQuery()");
             // Debug
@@ -1504,6 +1702,8 @@ public abstract class DBDatabase extends DBObject
             // Commit
             if (conn.getAutoCommit()==false)
                 conn.commit();
+            // Notify
+            onTransactionComplete(conn, true);
             // Done
             return;
         } catch (SQLException sqle) { 
@@ -1528,6 +1728,8 @@ public abstract class DBDatabase extends DBObject
             // rollback
             log.info("Database rollback issued!");
             conn.rollback();
+            // Notify
+            onTransactionComplete(conn, false);
             // Done
             return;
         } catch (SQLException sqle) { 
@@ -1546,8 +1748,13 @@ public abstract class DBDatabase extends DBObject
     {
         try
         { // Statement close
-            if (stmt != null)
-                stmt.close();
+            if (stmt == null)
+                return;
+            // return to statement cache
+            if (driver != null && driver.releaseCachedStatement(stmt))
+                return;
+            // close Statement
+            stmt.close();
             // done
             return;
         } catch (SQLException sqle) { 
@@ -1574,6 +1781,9 @@ public abstract class DBDatabase extends DBObject
             // check Statement
             if (stmt == null)
                 return;
+            // return to statement cache
+            if (driver != null && driver.releaseCachedStatement(stmt))
+                return;
             // close Statement
             stmt.close();
             // done
@@ -1584,6 +1794,24 @@ public abstract class DBDatabase extends DBObject
         }
     }
     
+    /**
+     * Closes a ResultSet and notifies the instrumentation (if set) 
+     * @param rset the result set (may be null)
+     * @param sqlCmd the SQL-Command of the query
+     */
+    protected void closeResultSet(ResultSet rset, String sqlCmd)
+    {
+        DBInstrumentation instr = (driver!=null) ? driver.getInstrumentation() : null;
+        if (instr==null || rset==null)
+        {   // no instrumentation
+            closeResultSet(rset);
+            return;
+        }
+        long start = System.nanoTime();
+        closeResultSet(rset);
+        instr.statementClosed(sqlCmd, System.nanoTime() - start);
+    }
+    
     /**
      * Detects the DataType of a given value.
      * @param value the value to detect
@@ -28,9 +28,17 @@ import java.sql.Timestamp;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.empire.commons.DateUtils;
 import org.apache.empire.commons.ObjectUtils;
@@ -39,6 +47,7 @@ import org.apache.empire.data.DataMode;
 import org.apache.empire.data.DataType;
 import org.apache.empire.db.exceptions.EmpireSQLException;
 import org.apache.empire.exceptions.InvalidArgumentException;
+import org.apache.empire.exceptions.MiscellaneousErrorException;
 import org.apache.empire.exceptions.NotImplementedException;
 import org.apache.empire.exceptions.NotSupportedException;
 import org.slf4j.Logger;
@@ -112,6 +121,26 @@ public abstract class DBDatabaseDriver implements Serializable
     // Flag whether or not to set column defaults when crating DDL statements
     protected boolean ddlColumnDefaults = false;
 
+    // Maximum number of cached prepared statements per connection (0 = disabled)
+    protected int statementCacheSize = 0;
+    private transient Map<Connection, DBStatementCache> statementCacheMap = null;
+
+    // Fetch size used for streaming queries
+    protected int streamingFetchSize = 1000;
+
+    // Instrumentation notified about statement execution (optional)
+    protected transient DBInstrumentation instrumentation = null;
+
+    // LOBs up to this size (bytes or characters) are materialized by getResultBlobData() and getResultClobData()
+    protected int lobMaterializeThreshold = 0;
+
+    // Number of sequence values reserved at once (by sequence name)
+    protected int defaultSequenceBlockSize = 1;
+    private final Map<String, Integer> sequenceBlockSizeMap = new ConcurrentHashMap<String, Integer>();
+    private transient volatile ConcurrentMap<String, DBSequenceBlock> sequenceBlockMap = null;
+    // Blocks reserved by uncommitted transactions (by connection)
+    private transient Map<Connection, Map<String, DBSequenceBlock>> pendingSequenceBlockMap = null;
+
     // Illegal name chars and reserved SQL keywords
     protected static final char[]   ILLEGAL_NAME_CHARS   = new char[] { '@', '?', '>', '=', '<', ';', ':', 
                                                                     '/', '.', '-', ',', '+', '*', ')', '(',
@@ -163,6 +192,24 @@ public abstract class DBDatabaseDriver implements Serializable
         // Overrideable
         public Object getNextValue(String SeqName, long minValue, Connection conn)
         {
+            return getNextValue(SeqName, minValue, 1, conn);
+        }
+
+        /**
+         * Reserves a block of sequence values and returns the first value of the block.<br>
+         * The stored sequence value is incremented by count, hence the caller may use
+         * all values from the returned value up to the returned value + count - 1.
+         * 
+         * @param SeqName the name of the sequence
+         * @param minValue the minimum value of the sequence
+         * @param count the number of values to reserve
+         * @param conn a valid database connection
+         * @return the first value of the reserved block
+         */
+        public Object getNextValue(String SeqName, long minValue, int count, Connection conn)
+        {
+            if (count<1)
+                throw new InvalidArgumentException("count", count);
             DBDatabaseDriver driver = db.getDriver();
             // Create a Command
             PreparedStatement stmt = null;
@@ -192,7 +239,7 @@ public abstract class DBDatabaseDriver implements Serializable
                         cmd.clear();
                         DBCmdParam name = cmd.addParam(SeqName);
                         DBCmdParam time = cmd.addParam(current);
-                        cmd.set(C_SEQVALUE.to(seqValue));
+                        cmd.set(C_SEQVALUE.to(seqValue + count - 1));
                         cmd.set(C_TIMESTAMP.to(DBDatabase.SYSDATE));
                         cmd.where(C_SEQNAME.is(name));
                         cmd.where(C_TIMESTAMP.is(time));
@@ -208,7 +255,7 @@ public abstract class DBDatabaseDriver implements Serializable
                         // create a new sequence entry
                         cmd.clear();
                         cmd.set(C_SEQNAME.to(SeqName));
-                        cmd.set(C_SEQVALUE.to(seqValue));
+                        cmd.set(C_SEQVALUE.to(seqValue + count - 1));
                         cmd.set(C_TIMESTAMP.to(DBDatabase.SYSDATE));
                         if (driver.executeSQL(cmd.getInsert(), cmd.getParamValues(), conn, null) < 1)
                             seqValue = 0; // Try again
@@ -222,7 +269,7 @@ public abstract class DBDatabaseDriver implements Serializable
                     rs = null;
                 }
                 if (log.isInfoEnabled())
-                    log.info("Sequence {} incremented to {}.", SeqName, seqValue);
+                    log.info("Sequence {} incremented to {}.", SeqName, seqValue + count - 1);
                 return new Long(seqValue);
             } catch (SQLException e) {
                 // throw exception
@@ -234,6 +281,32 @@ public abstract class DBDatabaseDriver implements Serializable
         }
     }
     
+    /**
+     * This class holds a block of sequence values that have been reserved in the database.
+     * Values are taken from the block without locking.
+     */
+    protected static final class DBSequenceBlock
+    {
+        private final AtomicLong next;
+        private final long last;
+
+        public DBSequenceBlock(long first, long last)
+        {
+            this.next = new AtomicLong(first);
+            this.last = last;
+        }
+
+        /**
+         * Returns the next value of the block or null if the block is exhausted
+         * @return the next value or null
+         */
+        public Long nextValue()
+        {
+            long value = next.getAndIncrement();
+            return (value<=last ? Long.valueOf(value) : null);
+        }
+    }
+    
     /**
      * Constructor
      */
@@ -368,6 +441,247 @@ public abstract class DBDatabaseDriver implements Serializable
      * @return an expression for the next sequence value
      */
     public abstract DBColumnExpr getNextSequenceValueExpr(DBTableColumn column);
+
+    /**
+     * Returns the next value of a named sequence.<br>
+     * If the block size for the sequence is greater than 1, values are taken from a block of values held in memory
+     * and the database is only accessed when the block is exhausted.
+     * In this case getNextSequenceValue() must reserve a block of values and return the first value of the block.<br>
+     * Before the first block of a native sequence is reserved, its increment is checked against the block size (see getSequenceIncrement()).<br>
+     * If the reservation is part of an uncommitted transaction (see isSequenceBlockTransactional()), the block is only used by
+     * the reserving connection until the transaction has been committed.
+     * 
+     * @param db the database
+     * @param seqName the name of the sequence
+     * @param minValue the minimum value of the sequence
+     * @param conn a valid database connection
+     * @return a new unique sequence value or null if an error occurred
+     */
+    public Object allocateSequenceValue(DBDatabase db, String seqName, int minValue, Connection conn)
+    {
+        int blockSize = getSequenceBlockSize(seqName);
+        if (blockSize<=1)
+            return getNextSequenceValue(db, seqName, minValue, conn);
+        String key = db.getId() + "." + seqName;
+        // Take a value from a block reserved by the current transaction
+        boolean pending = (isSequenceBlockTransactional(db, seqName) && isAutoCommit(conn)==false);
+        if (pending)
+        {   // block of this connection
+            DBSequenceBlock own = getPendingSequenceBlock(conn, key);
+            Long value = (own!=null ? own.nextValue() : null);
+            if (value!=null)
+                return value;
+        }
+        // Take a value from the current block
+        ConcurrentMap<String, DBSequenceBlock> blockMap = getSequenceBlockMap();
+        DBSequenceBlock block = blockMap.get(key);
+        if (block!=null)
+        {   // next value
+            Long value = block.nextValue();
+            if (value!=null)
+                return value;
+        }
+        else
+        {   // Check the increment of the sequence
+            Long increment = getSequenceIncrement(db, seqName, conn);
+            if (increment!=null && increment.longValue()!=blockSize)
+                throw new MiscellaneousErrorException("The increment of sequence "+seqName+" is "+String.valueOf(increment)+" but the sequence block size is "+String.valueOf(blockSize)+".");
+        }
+        // Reserve a new block
+        Object first = getNextSequenceValue(db, seqName, minValue, conn);
+        if (ObjectUtils.isEmpty(first))
+            return first;
+        long start = ObjectUtils.getLong(first);
+        DBSequenceBlock next = new DBSequenceBlock(start + 1, start + blockSize - 1);
+        if (pending)
+        {   // The reservation may still be rolled back
+            setPendingSequenceBlock(conn, key, next);
+            return Long.valueOf(start);
+        }
+        boolean replaced = (block==null) ? (blockMap.putIfAbsent(key, next)==null) : blockMap.replace(key, block, next);
+        if (!replaced)
+            log.debug("Sequence block of {} has been replaced concurrently. Values {} to {} are not used.", new Object[] { seqName, start + 1, start + blockSize - 1 });
+        return Long.valueOf(start);
+    }
+
+    /**
+     * Returns the increment of a native sequence as defined in the database.<br>
+     * This is used to verify that the increment matches the sequence block size.<br>
+     * The default implementation returns null. Drivers using native sequences should override this function.
+     * @param db the database
+     * @param seqName the name of the sequence
+     * @param conn a valid database connection
+     * @return the increment of the sequence or null if it cannot be determined
+     */
+    protected Long getSequenceIncrement(DBDatabase db, String seqName, Connection conn)
+    {
+        return null;
+    }
+
+    /**
+     * Returns whether a sequence value is reserved as part of the current transaction.<br>
+     * This is the case for a sequence table, since the reservation is undone by a rollback.
+     * Values of native sequences are never given back, hence the default implementation returns false.
+     * @param db the database
+     * @param seqName the name of the sequence
+     * @return true if a reservation is undone by a rollback or false otherwise
+     */
+    protected boolean isSequenceBlockTransactional(DBDatabase db, String seqName)
+    {
+        return false;
+    }
+
+    /**
+     * Returns the number of sequence values reserved at once for a particular sequence.
+     * @param seqName the name of the sequence
+     * @return the sequence block size
+     */
+    public int getSequenceBlockSize(String seqName)
+    {
+        Integer blockSize = (seqName!=null ? sequenceBlockSizeMap.get(seqName) : null);
+        return (blockSize!=null ? blockSize.intValue() : defaultSequenceBlockSize);
+    }
+
+    /**
+     * Sets the number of sequence values reserved at once for a particular sequence.<br>
+     * For native sequences the sequence must be created with an increment of the same size (see DDL generator).<br>
+     * The block size must be set before the sequence is used for the first time.<br>
+     * Please note: A block reserved in a sequence table is part of the current transaction.
+     * Hence it is only used by the reserving connection until {@link DBDatabase#commit(Connection)} and
+     * discarded by {@link DBDatabase#rollback(Connection)}.
+     * If a transaction is rolled back directly on the JDBC connection, discardSequenceBlocks(Connection) must be called.
+     * @param seqName the name of the sequence
+     * @param blockSize the sequence block size (must be greater than 0)
+     */
+    public void setSequenceBlockSize(String seqName, int blockSize)
+    {
+        if (StringUtils.isEmpty(seqName))
+            throw new InvalidArgumentException("seqName", seqName);
+        if (blockSize<1)
+            throw new InvalidArgumentException("blockSize", blockSize);
+        sequenceBlockSizeMap.put(seqName, blockSize);
+    }
+
+    /**
+     * Returns the number of sequence values reserved at once for sequences without an explicit block size.
+     * @return the default sequence block size
+     */
+    public int getDefaultSequenceBlockSize()
+    {
+        return defaultSequenceBlockSize;
+    }
+
+    /**
+     * Sets the number of sequence values reserved at once for sequences without an explicit block size.
+     * @param defaultSequenceBlockSize the default sequence block size (must be greater than 0)
+     */
+    public void setDefaultSequenceBlockSize(int defaultSequenceBlockSize)
+    {
+        if (defaultSequenceBlockSize<1)
+            throw new InvalidArgumentException("defaultSequenceBlockSize", defaultSequenceBlockSize);
+        this.defaultSequenceBlockSize = defaultSequenceBlockSize;
+    }
+
+    /**
+     * Discards all sequence values held in memory.<br>
+     * The next call to allocateSequenceValue() will reserve a new block.
+     */
+    public void discardSequenceBlocks()
+    {
+        getSequenceBlockMap().clear();
+        synchronized(this)
+        {
+            pendingSequenceBlockMap = null;
+        }
+    }
+
+    /**
+     * Discards the sequence values reserved by the uncommitted transaction of a connection.<br>
+     * This must be called if a transaction is rolled back directly on the JDBC connection.
+     * @param conn the connection
+     */
+    public void discardSequenceBlocks(Connection conn)
+    {
+        removePendingSequenceBlocks(conn);
+    }
+
+    /**
+     * Called by the database when a transaction has been committed or rolled back.<br>
+     * Blocks reserved by the transaction are made available to all connections on commit and discarded on rollback.
+     * @param conn the connection of the transaction
+     * @param commit true if the transaction has been committed or false if it has been rolled back
+     */
+    protected void onTransactionComplete(Connection conn, boolean commit)
+    {
+        Map<String, DBSequenceBlock> blocks = removePendingSequenceBlocks(conn);
+        if (blocks==null || commit==false)
+            return;
+        // publish
+        getSequenceBlockMap().putAll(blocks);
+    }
+
+    /**
+     * Returns the block reserved by the uncommitted transaction of a connection
+     */
+    private synchronized DBSequenceBlock getPendingSequenceBlock(Connection conn, String key)
+    {
+        Map<String, DBSequenceBlock> blocks = (pendingSequenceBlockMap!=null ? pendingSequenceBlockMap.get(conn) : null);
+        return (blocks!=null ? blocks.get(key) : null);
+    }
+
+    /**
+     * Sets the block reserved by the uncommitted transaction of a connection
+     */
+    private synchronized void setPendingSequenceBlock(Connection conn, String key, DBSequenceBlock block)
+    {
+        if (pendingSequenceBlockMap==null)
+            pendingSequenceBlockMap = new WeakHashMap<Connection, Map<String, DBSequenceBlock>>();
+        Map<String, DBSequenceBlock> blocks = pendingSequenceBlockMap.get(conn);
+        if (blocks==null)
+        {   blocks = new HashMap<String, DBSequenceBlock>();
+            pendingSequenceBlockMap.put(conn, blocks);
+        }
+        blocks.put(key, block);
+    }
+
+    /**
+     * Removes the blocks reserved by the uncommitted transaction of a connection
+     */
+    private synchronized Map<String, DBSequenceBlock> removePendingSequenceBlocks(Connection conn)
+    {
+        return (pendingSequenceBlockMap!=null ? pendingSequenceBlockMap.remove(conn) : null);
+    }
+
+    /**
+     * Returns whether a connection is in auto-commit mode
+     */
+    private boolean isAutoCommit(Connection conn)
+    {
+        try {
+            return (conn!=null && conn.getAutoCommit());
+        } catch (SQLException e) {
+            // unknown: assume a transaction
+            return false;
+        }
+    }
+
+    /**
+     * Returns the map holding the reserved sequence blocks
+     */
+    private ConcurrentMap<String, DBSequenceBlock> getSequenceBlockMap()
+    {
+        ConcurrentMap<String, DBSequenceBlock> blockMap = sequenceBlockMap;
+        if (blockMap==null)
+        {   // create once
+            synchronized(this)
+            {
+                if (sequenceBlockMap==null)
+                    sequenceBlockMap = new ConcurrentHashMap<String, DBSequenceBlock>();
+                blockMap = sequenceBlockMap;
+            }
+        }
+        return blockMap;
+    }
     
     /**
      * Returns an auto-generated value for a particular column
@@ -436,7 +750,10 @@ public abstract class DBDatabaseDriver implements Serializable
         {
             // handling for blobs
             DBBlobData blobData = (DBBlobData)value;
-            pstmt.setBinaryStream(paramIndex, blobData.getInputStream(), blobData.getLength());
+            if (blobData.getLongLength() > Integer.MAX_VALUE)
+                pstmt.setBinaryStream(paramIndex, blobData.getInputStream(), blobData.getLongLength());
+            else
+                pstmt.setBinaryStream(paramIndex, blobData.getInputStream(), blobData.getLength());
             // log
             if (log.isDebugEnabled())
                 log.debug("Statement param {} set to BLOB data", paramIndex);
@@ -445,7 +762,10 @@ public abstract class DBDatabaseDriver implements Serializable
         {
             // handling for clobs
             DBClobData clobData = (DBClobData)value;
-            pstmt.setCharacterStream(paramIndex, clobData.getReader(), clobData.getLength());
+            if (clobData.getLongLength() > Integer.MAX_VALUE)
+                pstmt.setCharacterStream(paramIndex, clobData.getReader(), clobData.getLongLength());
+            else
+                pstmt.setCharacterStream(paramIndex, clobData.getReader(), clobData.getLength());
             // log
             if (log.isDebugEnabled())
                 log.debug("Statement param {} set to CLOB data", paramIndex);
@@ -515,18 +835,218 @@ public abstract class DBDatabaseDriver implements Serializable
         else if (dataType == DataType.CLOB)
         {
             java.sql.Clob clob = rset.getClob(columnIndex);
-            return ((clob != null) ? clob.getSubString(1, (int) clob.length()) : null);
+            return ((clob != null) ? clob.getSubString(1, getLobLength(clob.length())) : null);
         } 
         else if (dataType == DataType.BLOB)
         { // Get bytes of a binary large object
             java.sql.Blob blob = rset.getBlob(columnIndex);
-            return ((blob != null) ? blob.getBytes(1, (int) blob.length()) : null);
+            return ((blob != null) ? blob.getBytes(1, getLobLength(blob.length())) : null);
         } 
         else
         {
         	return rset.getObject(columnIndex);
         }
     }
+
+    /**
+     * Reads a binary large object from the given JDBC ResultSet without loading it into memory.<BR>
+     * The input stream of the returned object is backed by the ResultSet and only valid until the ResultSet is moved or closed.<BR>
+     * Objects up to the size of the lobMaterializeThreshold are loaded into memory.
+     * For data types other than BLOB the value is obtained with getResultValue().
+     * 
+     * @param rset the sql Resultset with the current data row
+     * @param columnIndex one based column Index of the desired column
+     * @param dataType the data type of the column
+     * @return the blob data or null if the value is null
+     * @throws SQLException if a database access error occurs
+     */
+    public DBBlobData getResultBlobData(ResultSet rset, int columnIndex, DataType dataType)
+        throws SQLException
+    {
+        if (dataType == DataType.BLOB)
+        {   // Get a handle of the binary large object
+            java.sql.Blob blob = rset.getBlob(columnIndex);
+            if (blob == null)
+                return null;
+            long length = blob.length();
+            if (length <= lobMaterializeThreshold)
+                return new DBBlobData(blob.getBytes(1, (int)length));
+            return new DBBlobData(blob.getBinaryStream(), length);
+        }
+        // Other types
+        Object value = getResultValue(rset, columnIndex, dataType);
+        if (value == null)
+            return null;
+        return (value instanceof byte[]) ? new DBBlobData((byte[])value) : new DBBlobData(value.toString());
+    }
+
+    /**
+     * Reads a character large object from the given JDBC ResultSet without loading it into memory.<BR>
+     * see {@link #getResultBlobData(ResultSet, int, DataType)}
+     * 
+     * @param rset the sql Resultset with the current data row
+     * @param columnIndex one based column Index of the desired column
+     * @param dataType the data type of the column
+     * @return the clob data or null if the value is null
+     * @throws SQLException if a database access error occurs
+     */
+    public DBClobData getResultClobData(ResultSet rset, int columnIndex, DataType dataType)
+        throws SQLException
+    {
+        if (dataType == DataType.CLOB)
+        {   // Get a handle of the character large object
+            java.sql.Clob clob = rset.getClob(columnIndex);
+            if (clob == null)
+                return null;
+            long length = clob.length();
+            if (length <= lobMaterializeThreshold)
+                return new DBClobData(clob.getSubString(1, (int)length));
+            return new DBClobData(clob.getCharacterStream(), length);
+        }
+        // Other types
+        Object value = getResultValue(rset, columnIndex, dataType);
+        return (value != null) ? new DBClobData(value.toString()) : null;
+    }
+
+    /**
+     * Returns the size up to which large objects are loaded into memory by getResultBlobData() and getResultClobData()
+     * @return the threshold in bytes or characters
+     */
+    public int getLobMaterializeThreshold()
+    {
+        return lobMaterializeThreshold;
+    }
+
+    /**
+     * Sets the size up to which large objects are loaded into memory by getResultBlobData() and getResultClobData()
+     * @param lobMaterializeThreshold the threshold in bytes or characters (0 = never)
+     */
+    public void setLobMaterializeThreshold(int lobMaterializeThreshold)
+    {
+        if (lobMaterializeThreshold<0)
+            throw new InvalidArgumentException("lobMaterializeThreshold", lobMaterializeThreshold);
+        this.lobMaterializeThreshold = lobMaterializeThreshold;
+    }
+
+    /**
+     * Checks the length of a large object that is to be loaded into memory
+     * @param length the length of the large object
+     * @return the length as int
+     */
+    protected int getLobLength(long length)
+    {
+        if (length > Integer.MAX_VALUE)
+            throw new NotSupportedException(this, "getResultValue() for large objects exceeding 2 GB. Use getResultBlobData() or getResultClobData() instead");
+        return (int)length;
+    }
+    
+    /**
+     * Reads a single column value from the given JDBC ResultSet as an int.<BR>
+     * For numeric data types the value is obtained with ResultSet.getInt() in order to avoid boxing.
+     * Otherwise the value is obtained with getResultValue() and converted.<BR>
+     * Null values are returned as 0.
+     * 
+     * @param rset the sql Resultset with the current data row
+     * @param columnIndex one based column Index of the desired column
+     * @param dataType the data type of the column
+     * @return the int value of the column
+     * @throws SQLException if a database access error occurs
+     */
+    public int getResultInt(ResultSet rset, int columnIndex, DataType dataType)
+        throws SQLException
+    {
+        if (dataType.isNumeric())
+            return rset.getInt(columnIndex);
+        // convert
+        return ObjectUtils.getInteger(getResultValue(rset, columnIndex, dataType));
+    }
+
+    /**
+     * Reads a single column value from the given JDBC ResultSet as a long.<BR>
+     * see {@link #getResultInt(ResultSet, int, DataType)}
+     * 
+     * @param rset the sql Resultset with the current data row
+     * @param columnIndex one based column Index of the desired column
+     * @param dataType the data type of the column
+     * @return the long value of the column
+     * @throws SQLException if a database access error occurs
+     */
+    public long getResultLong(ResultSet rset, int columnIndex, DataType dataType)
+        throws SQLException
+    {
+        if (dataType.isNumeric())
+            return rset.getLong(columnIndex);
+        // convert
+        return ObjectUtils.getLong(getResultValue(rset, columnIndex, dataType));
+    }
+
+    /**
+     * Reads a single column value from the given JDBC ResultSet as a double.<BR>
+     * see {@link #getResultInt(ResultSet, int, DataType)}
+     * 
+     * @param rset the sql Resultset with the current data row
+     * @param columnIndex one based column Index of the desired column
+     * @param dataType the data type of the column
+     * @return the double value of the column
+     * @throws SQLException if a database access error occurs
+     */
+    public double getResultDouble(ResultSet rset, int columnIndex, DataType dataType)
+        throws SQLException
+    {
+        if (dataType.isNumeric())
+            return rset.getDouble(columnIndex);
+        // convert
+        return ObjectUtils.getDouble(getResultValue(rset, columnIndex, dataType));
+    }
+
+    /**
+     * Reads a single column value from the given JDBC ResultSet as a boolean.<BR>
+     * For the data type BOOL the value is obtained with ResultSet.getBoolean().
+     * Drivers that emulate boolean values must override this method.<BR>
+     * Null values are returned as false.
+     * 
+     * @param rset the sql Resultset with the current data row
+     * @param columnIndex one based column Index of the desired column
+     * @param dataType the data type of the column
+     * @return the boolean value of the column
+     * @throws SQLException if a database access error occurs
+     */
+    public boolean getResultBoolean(ResultSet rset, int columnIndex, DataType dataType)
+        throws SQLException
+    {
+        if (dataType==DataType.BOOL)
+            return rset.getBoolean(columnIndex);
+        // convert
+        return ObjectUtils.getBoolean(getResultValue(rset, columnIndex, dataType));
+    }
+
+    /**
+     * Checks whether a column value of the given JDBC ResultSet is null.<BR>
+     * The value is read with a primitive getter where possible and checked with ResultSet.wasNull().
+     * 
+     * @param rset the sql Resultset with the current data row
+     * @param columnIndex one based column Index of the desired column
+     * @param dataType the data type of the column
+     * @return true if the value is null
+     * @throws SQLException if a database access error occurs
+     */
+    public boolean isResultNull(ResultSet rset, int columnIndex, DataType dataType)
+        throws SQLException
+    {
+        switch(dataType)
+        {
+            case INTEGER:
+            case AUTOINC:
+                rset.getLong(columnIndex);
+                break;
+            case FLOAT:
+                rset.getDouble(columnIndex);
+                break;
+            default:
+                rset.getObject(columnIndex);
+        }
+        return rset.wasNull();
+    }
     
     /**
      * Executes the select, update or delete SQL-Command with a Statement object.
@@ -543,26 +1063,30 @@ public abstract class DBDatabaseDriver implements Serializable
     public int executeSQL(String sqlCmd, Object[] sqlParams, Connection conn, DBSetGenKeys genKeys)
         throws SQLException
     {   // Execute the Statement
+        DBInstrumentation instr = instrumentation;
         Statement stmt = null;
         try
         {
             int count = 0;
+            long start;
             if (sqlParams!=null)
             {   // Use a prepared statement
-                PreparedStatement pstmt = (genKeys!=null) 
-                    ? conn.prepareStatement(sqlCmd, Statement.RETURN_GENERATED_KEYS)
-                    : conn.prepareStatement(sqlCmd);
+                PreparedStatement pstmt = prepareStatement(conn, sqlCmd, ResultSet.TYPE_FORWARD_ONLY, (genKeys!=null));
     	        stmt = pstmt;
 	            prepareStatement(pstmt, sqlParams); 
+	            start = (instr!=null) ? System.nanoTime() : 0;
 	            count = pstmt.executeUpdate(); 
             }
             else
             {   // Execute a simple statement
                 stmt = conn.createStatement();
+                start = (instr!=null) ? System.nanoTime() : 0;
                 count = (genKeys!=null)
                     ? stmt.executeUpdate(sqlCmd, Statement.RETURN_GENERATED_KEYS)
                     : stmt.executeUpdate(sqlCmd);
             }
+            if (instr!=null)
+                instr.statementExecuted(sqlCmd, System.nanoTime() - start, count);
             // Retrieve any auto-generated keys
             if (genKeys!=null && count>0)
             {   // Return Keys
@@ -580,7 +1104,7 @@ public abstract class DBDatabaseDriver implements Serializable
             return count;
         } finally
         {
-            close(stmt);
+            close(stmt, sqlCmd);
         }
     }
 
@@ -595,6 +1119,7 @@ public abstract class DBDatabaseDriver implements Serializable
     public int[] executeBatch(String[] sqlCmd, Object[][] sqlCmdParams, Connection conn)
         throws SQLException
     {   // Execute the Statement
+        DBInstrumentation instr = instrumentation;
         if (sqlCmdParams!=null)
         {   // Use a prepared statement
         	PreparedStatement pstmt = null;
@@ -611,11 +1136,14 @@ public abstract class DBDatabaseDriver implements Serializable
             			if (pstmt!=null)
             			{	// execute and close
 			        		log.debug("Executing batch containing {} statements", i-pos);
+			        		long start = (instr!=null) ? System.nanoTime() : 0;
             				int[] res = pstmt.executeBatch();
+            				if (instr!=null)
+            				    instr.batchExecuted(lastCmd, System.nanoTime() - start, i-pos);
             				for (int j=0; j<res.length; j++)
             					result[pos+j]=res[j];
             				pos+=res.length;
-            				close(pstmt);
+            				close(pstmt, lastCmd);
             				pstmt = null;
             			}
             			// has next?
@@ -623,7 +1151,7 @@ public abstract class DBDatabaseDriver implements Serializable
 	        				break;
 	        			// new statement
 	        			log.debug("Creating prepared statement for batch: "+cmd);
-            			pstmt = conn.prepareStatement(cmd);
+            			pstmt = prepareStatement(conn, cmd, ResultSet.TYPE_FORWARD_ONLY, false);
             			lastCmd = cmd;
             		}
             		// add batch
@@ -650,7 +1178,10 @@ public abstract class DBDatabaseDriver implements Serializable
             		stmt.addBatch(cmd);
             	}
         		log.debug("Executing batch containing {} statements", sqlCmd.length);
+        		long start = (instr!=null) ? System.nanoTime() : 0;
 	            int result[] = stmt.executeBatch();
+	            if (instr!=null && sqlCmd.length>0)
+	                instr.batchExecuted(sqlCmd[0], System.nanoTime() - start, sqlCmd.length);
 	            return result;
             } finally {
 	            close(stmt);
@@ -670,14 +1201,14 @@ public abstract class DBDatabaseDriver implements Serializable
             // Create an execute a query statement
 	        if (sqlParams!=null)
 	        {	// Use prepared statement
-	            PreparedStatement pstmt = conn.prepareStatement(sqlCmd, type, ResultSet.CONCUR_READ_ONLY);
+	            PreparedStatement pstmt = prepareStatement(conn, sqlCmd, type, false);
 	            stmt = pstmt;
 	            prepareStatement(pstmt, sqlParams); 
-	            return pstmt.executeQuery();
+	            return executeQueryStatement(pstmt, sqlCmd, true);
 	        } else
 	        {	// Use simple statement
 	            stmt = conn.createStatement(type, ResultSet.CONCUR_READ_ONLY);
-	            return stmt.executeQuery(sqlCmd);
+	            return executeQueryStatement(stmt, sqlCmd, false);
 	        }
         } catch(SQLException e) {
             // close statement (if not null)
@@ -686,13 +1217,127 @@ public abstract class DBDatabaseDriver implements Serializable
             throw e;
         }
     }
+
+    /**
+     * Executes a query and optionally sets driver specific hints in order to stream the result rather than reading it into memory.<br>
+     * Streaming queries are always forward only and do not use the statement cache.
+     * <P>
+     * @param sqlCmd the SQL-Command
+     * @param sqlParams array of sql command parameters used for prepared statements (Optional).
+     * @param scrollable true if the result should be scrollable (ignored if streaming is true)
+     * @param streaming true if the result should be streamed
+     * @param conn a valid connection to the database.
+     * @return the JDBC ResultSet
+     * @throws SQLException if a database access error occurs
+     */
+    public ResultSet executeQuery(String sqlCmd, Object[] sqlParams, boolean scrollable, boolean streaming, Connection conn)
+        throws SQLException
+    {
+        if (streaming==false)
+            return executeQuery(sqlCmd, sqlParams, scrollable, conn);
+        // Streaming query
+        Statement stmt = null;
+        try
+        {   // Create an execute a query statement
+            if (sqlParams!=null)
+            {   // Use prepared statement
+                PreparedStatement pstmt = conn.prepareStatement(sqlCmd, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                stmt = pstmt;
+                setStreamingHints(pstmt, conn);
+                prepareStatement(pstmt, sqlParams); 
+                return executeQueryStatement(pstmt, sqlCmd, true);
+            } else
+            {   // Use simple statement
+                stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                setStreamingHints(stmt, conn);
+                return executeQueryStatement(stmt, sqlCmd, false);
+            }
+        } catch(SQLException e) {
+            // close statement (if not null)
+            log.error("Error executing query '"+sqlCmd+"' --> "+e.getMessage(), e);
+            close(stmt);
+            throw e;
+        }
+    }
+
+    /**
+     * Executes a query statement and notifies the instrumentation (if set) 
+     * @param stmt the statement
+     * @param sqlCmd the SQL-Command
+     * @param prepared true if stmt is a prepared statement
+     * @return the JDBC ResultSet
+     * @throws SQLException if a database access error occurs
+     */
+    private ResultSet executeQueryStatement(Statement stmt, String sqlCmd, boolean prepared)
+        throws SQLException
+    {
+        DBInstrumentation instr = instrumentation;
+        long start = (instr!=null) ? System.nanoTime() : 0;
+        ResultSet rs = (prepared) ? ((PreparedStatement)stmt).executeQuery() : stmt.executeQuery(sqlCmd);
+        if (instr!=null)
+            instr.statementExecuted(sqlCmd, System.nanoTime() - start, -1);
+        return rs;
+    }
+
+    /**
+     * Sets the hints on a statement that enable the JDBC driver to stream the result of a query.<br>
+     * The default implementation sets the fetch direction to forward and the fetch size to the streaming fetch size.<br>
+     * Override this method in order to provide database specific hints. 
+     * @param stmt the statement (not yet executed)
+     * @param conn the connection
+     * @throws SQLException if a database access error occurs
+     */
+    protected void setStreamingHints(Statement stmt, Connection conn)
+        throws SQLException
+    {
+        stmt.setFetchDirection(ResultSet.FETCH_FORWARD);
+        stmt.setFetchSize(streamingFetchSize);
+    }
+
+    /**
+     * Returns the number of rows fetched from the database at once for streaming queries.
+     * @return the streaming fetch size
+     */
+    public int getStreamingFetchSize()
+    {
+        return streamingFetchSize;
+    }
+
+    /**
+     * Sets the number of rows fetched from the database at once for streaming queries.
+     * @param streamingFetchSize the streaming fetch size (must be greater than 0)
+     */
+    public void setStreamingFetchSize(int streamingFetchSize)
+    {
+        if (streamingFetchSize<1)
+            throw new InvalidArgumentException("streamingFetchSize", streamingFetchSize);
+        this.streamingFetchSize = streamingFetchSize;
+    }
+    
+    /**
+     * Closes a statement and notifies the instrumentation (if set)
+     * @param stmt the statement (may be null)
+     * @param sqlCmd the SQL-Command
+     */
+    protected void close(Statement stmt, String sqlCmd)
+    {
+        DBInstrumentation instr = instrumentation;
+        if (instr==null || stmt==null)
+        {   // no instrumentation
+            close(stmt);
+            return;
+        }
+        long start = System.nanoTime();
+        close(stmt);
+        instr.statementClosed(sqlCmd, System.nanoTime() - start);
+    }
     
     // close
     protected void close(Statement stmt)
     {
         try
         { // Statement close
-            if (stmt != null)
+            if (stmt != null && !releaseCachedStatement(stmt))
                 stmt.close();
         } catch (SQLException sqle) 
         {
@@ -700,6 +1345,196 @@ public abstract class DBDatabaseDriver implements Serializable
         }
     }
     
+    /**
+     * Returns the instrumentation notified about statement execution
+     * @return the instrumentation or null if no instrumentation is set
+     */
+    public DBInstrumentation getInstrumentation()
+    {
+        return instrumentation;
+    }
+
+    /**
+     * Sets an instrumentation that is notified about the prepare, execute, fetch and close phases of all statements.<br>
+     * Use {@link DBStatementMetrics} in order to collect statistics per statement. 
+     * @param instrumentation the instrumentation or null to disable instrumentation
+     */
+    public void setInstrumentation(DBInstrumentation instrumentation)
+    {
+        this.instrumentation = instrumentation;
+        // log
+        log.info("Instrumentation is {}", (instrumentation!=null ? instrumentation.getClass().getName() : "disabled"));
+    }
+    
+    /**
+     * Returns the maximum number of prepared statements cached per connection.
+     * @return the statement cache size or 0 if statement caching is disabled
+     */
+    public int getStatementCacheSize()
+    {
+        return statementCacheSize;
+    }
+
+    /**
+     * Sets the maximum number of prepared statements cached per connection.<br>
+     * If enabled, prepared statements used by executeSQL() and executeQuery() will be kept open and reused
+     * for subsequent executions of the same SQL text.<br>
+     * Cached statements are bound to their connection. Hence releaseStatementCache() must be called 
+     * before a connection is closed or returned to a connection pool. 
+     * @param statementCacheSize the maximum number of statements per connection or 0 to disable statement caching
+     */
+    public void setStatementCacheSize(int statementCacheSize)
+    {
+        if (statementCacheSize<0)
+            throw new InvalidArgumentException("statementCacheSize", statementCacheSize);
+        this.statementCacheSize = statementCacheSize;
+        // log 
+        log.info("Statement cache size is {}", statementCacheSize);
+    }
+    
+    /**
+     * Returns the statement cache for a particular connection
+     * @param conn the connection
+     * @return the statement cache or null if no statements have been cached for this connection
+     */
+    public DBStatementCache getStatementCache(Connection conn)
+    {
+        synchronized(this)
+        {
+            return (statementCacheMap!=null) ? statementCacheMap.get(conn) : null;
+        }
+    }
+    
+    /**
+     * Closes all cached statements of a connection and removes the statement cache.<br>
+     * This must be called before a connection is closed or returned to a connection pool.
+     * @param conn the connection
+     */
+    public void releaseStatementCache(Connection conn)
+    {
+        DBStatementCache cache;
+        synchronized(this)
+        {
+            if (statementCacheMap==null)
+                return; // nothing cached
+            cache = statementCacheMap.remove(conn);
+        }
+        if (cache==null)
+            return;
+        // log
+        if (log.isDebugEnabled())
+            log.debug("Releasing statement cache {}", cache);
+        cache.clear();
+    }
+    
+    /**
+     * Creates a prepared statement for the given sql command.<br>
+     * If statement caching is enabled, the statement will be obtained from the connection's statement cache.<br>
+     * The statement must be closed by calling close(stmt).
+     * @param conn the connection
+     * @param sqlCmd the SQL-Command
+     * @param resultSetType the result set type (e.g. ResultSet.TYPE_FORWARD_ONLY)
+     * @param returnGenKeys flag whether auto generated keys should be returned
+     * @return the prepared statement
+     * @throws SQLException if a database access error occurs
+     */
+    protected PreparedStatement prepareStatement(Connection conn, String sqlCmd, int resultSetType, boolean returnGenKeys)
+        throws SQLException
+    {
+        DBInstrumentation instr = instrumentation;
+        long start = (instr!=null) ? System.nanoTime() : 0;
+        if (statementCacheSize<=0)
+        {   // Statement caching is disabled
+            PreparedStatement pstmt = (returnGenKeys) 
+                ? conn.prepareStatement(sqlCmd, Statement.RETURN_GENERATED_KEYS)
+                : conn.prepareStatement(sqlCmd, resultSetType, ResultSet.CONCUR_READ_ONLY);
+            if (instr!=null)
+                instr.statementPrepared(sqlCmd, System.nanoTime() - start, false);
+            return pstmt;
+        }
+        // Get statement cache
+        DBStatementCache cache;
+        synchronized(this)
+        {
+            if (statementCacheMap==null)
+                statementCacheMap = new IdentityHashMap<Connection, DBStatementCache>();
+            cache = statementCacheMap.get(conn);
+            if (cache==null)
+            {   // remove caches of closed connections
+                purgeStatementCaches();
+                cache = new DBStatementCache(conn, statementCacheSize);
+                statementCacheMap.put(conn, cache);
+            }
+        }
+        if (instr==null)
+            return cache.prepareStatement(sqlCmd, resultSetType, returnGenKeys);
+        // Detect cache hits
+        PreparedStatement pstmt = cache.getIdleStatement(sqlCmd, resultSetType, returnGenKeys);
+        boolean cached = (pstmt!=null); 
+        if (pstmt==null)
+            pstmt = cache.prepareStatement(sqlCmd, resultSetType, returnGenKeys);
+        instr.statementPrepared(sqlCmd, System.nanoTime() - start, cached);
+        return pstmt;
+    }
+    
+    /**
+     * Returns a statement to the statement cache it was obtained from
+     * @param stmt the statement
+     * @return true if the statement was returned to a statement cache or false if it must be closed by the caller 
+     */
+    protected boolean releaseCachedStatement(Statement stmt)
+    {
+        synchronized(this)
+        {
+            if (statementCacheMap==null || statementCacheMap.isEmpty())
+                return false;
+        }
+        // find cache
+        DBStatementCache cache = null;
+        try {
+            cache = getStatementCache(stmt.getConnection());
+        } catch(SQLException e) {
+            log.debug("Unable to detect statement connection: "+e.getMessage());
+        }
+        if (cache!=null && cache.release(stmt))
+            return true;
+        // Connection may be wrapped: try all caches
+        DBStatementCache[] caches;
+        synchronized(this)
+        {
+            caches = statementCacheMap.values().toArray(new DBStatementCache[statementCacheMap.size()]);
+        }
+        for (int i=0; i<caches.length; i++)
+        {
+            if (caches[i]!=cache && caches[i].release(stmt))
+                return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Removes the statement caches of all connections that have been closed.
+     * Must be called while holding the lock on the driver.
+     */
+    private void purgeStatementCaches()
+    {
+        Iterator<DBStatementCache> i = statementCacheMap.values().iterator();
+        while (i.hasNext())
+        {
+            DBStatementCache cache = i.next();
+            try {
+                if (cache.getConnection().isClosed()==false)
+                    continue;
+            } catch(SQLException e) {
+                log.debug("Unable to detect connection state: "+e.getMessage());
+            }
+            // Connection is closed
+            log.warn("Statement cache was not released before the connection was closed!");
+            cache.clear();
+            i.remove();
+        }
+    }
+    
     /**
      * Creates a sql string for a given value. 
      * Text will be enclosed in single quotes and existing single quotes will be doubled.
@@ -899,6 +1734,9 @@ public abstract class DBDatabaseDriver implements Serializable
      */
     protected void detachDatabase(DBDatabase db, Connection conn)
     {
+        // Release cached statements
+        if (conn!=null)
+            releaseStatementCache(conn);
         // Override to implement closing behaviour
     }
 
@@ -960,6 +1798,118 @@ public abstract class DBDatabaseDriver implements Serializable
         this.ddlColumnDefaults = ddlColumnDefaults;
     }
 
+    /**
+     * Returns the maximum number of parameters allowed in a single statement.
+     * 
+     * @return the maximum number of statement parameters or 0 if there is no limit
+     */
+    public int getMaxStatementParams()
+    {
+        return 0;
+    }
+
+    /**
+     * Returns the maximum number of rows inserted by a single statement created with getBulkInsertStmt().
+     * 
+     * @return the maximum number of rows or 1 if multi-row inserts are not supported
+     */
+    public int getMaxBulkInsertRows()
+    {
+        return 1000;
+    }
+
+    /**
+     * Returns the maximum number of values of an IN list that are bound as individual parameters.<br>
+     * By default this is 1024 or half of the maximum number of statement parameters, whichever is smaller.
+     * @see DBCommand#prepareInList(org.apache.empire.db.expr.compare.DBCompareExpr)
+     *
+     * @return the maximum number of IN list parameters
+     */
+    public int getMaxInListParams()
+    {
+        int maxParams = getMaxStatementParams();
+        return (maxParams > 0 && maxParams / 2 < 1024) ? Math.max(maxParams / 2, 1) : 1024;
+    }
+
+    /**
+     * Returns the template for comparing a column with an array parameter.<br>
+     * The placeholder {0} is replaced by the parameter, e.g. "= ANY({0})".<br>
+     * Array parameters are used for IN lists that exceed getMaxInListParams().
+     * The parameter value is an Object array which must be bound by addStatementParam().
+     *
+     * @param op the compare operator (IN or NOTIN)
+     * @return the template or null if array parameters are not supported
+     */
+    public String getArrayCompareExpr(DBCmpType op)
+    {
+        return null;
+    }
+
+    /**
+     * Creates an insert statement for multiple rows.<br>
+     * The statement must contain one parameter for each column of each row in the order of the rows.<br>
+     * By default a multi-row VALUES clause is used:
+     * <pre>
+     *   INSERT INTO table (col1, col2) VALUES (?, ?), (?, ?), ...
+     * </pre>
+     * @see DBBulkInsert
+     * 
+     * @param table the table into which to insert
+     * @param columns the columns to insert
+     * @param rowCount the number of rows
+     * 
+     * @return the insert statement
+     */
+    public String getBulkInsertStmt(DBTable table, DBColumn[] columns, int rowCount)
+    {
+        StringBuilder buf = new StringBuilder("INSERT INTO ");
+        addBulkInsertTarget(buf, table, columns);
+        buf.append("\r\nVALUES ");
+        for (int i=0; i<rowCount; i++)
+        {
+            if (i>0)
+                buf.append(", ");
+            addBulkInsertValues(buf, columns.length);
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Appends the table name and the column list of an insert statement
+     * @param buf the SQL statement
+     * @param table the table into which to insert
+     * @param columns the columns to insert
+     */
+    protected void addBulkInsertTarget(StringBuilder buf, DBTable table, DBColumn[] columns)
+    {
+        table.addSQL(buf, DBExpr.CTX_FULLNAME);
+        buf.append(" (");
+        for (int i=0; i<columns.length; i++)
+        {
+            if (i>0)
+                buf.append(", ");
+            columns[i].addSQL(buf, DBExpr.CTX_NAME);
+        }
+        buf.append(")");
+    }
+
+    /**
+     * Appends the parameter list for a single row of an insert statement
+     * @param buf the SQL statement
+     * @param columnCount the number of columns
+     */
+    protected void addBulkInsertValues(StringBuilder buf, int columnCount)
+    {
+        buf.append("(");
+        for (int i=0; i<columnCount; i++)
+        {
+            if (i>0)
+                buf.append(", ");
+            buf.append("?");
+        }
+        buf.append(")");
+    }
+
     /**
      * Returns a timestamp that is used for record updates.
      * 
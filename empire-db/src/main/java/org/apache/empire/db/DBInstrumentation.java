@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+/**
+ * DBInstrumentation<br>
+ * This interface is notified by the {@link DBDatabaseDriver}, the {@link DBDatabase} and the {@link DBReader}
+ * about the individual phases of every JDBC statement executed.<br>
+ * All times are measured with System.nanoTime() and passed in nanoseconds.
+ * <P>
+ * An instrumentation is set for a driver using {@link DBDatabaseDriver#setInstrumentation(DBInstrumentation)}.
+ * If no instrumentation is set, no times are measured.<br>
+ * Implementations must be thread safe and should return quickly since they are called synchronously from the executing thread.
+ * The default implementation is {@link DBStatementMetrics} which aggregates the measurements per statement.
+ */
+public interface DBInstrumentation
+{
+    /**
+     * Called after a prepared statement has been created or obtained from the statement cache
+     * @param sqlCmd the SQL-Command
+     * @param nanos the time required to prepare the statement
+     * @param cached true if the statement was obtained from the statement cache
+     */
+    void statementPrepared(String sqlCmd, long nanos, boolean cached);
+
+    /**
+     * Called after a statement has been executed
+     * @param sqlCmd the SQL-Command
+     * @param nanos the time required to execute the statement
+     * @param affected the number of rows affected by an insert, update or delete statement or -1 for queries
+     */
+    void statementExecuted(String sqlCmd, long nanos, int affected);
+
+    /**
+     * Called after a batch of statements has been executed
+     * @param sqlCmd the SQL-Command of the batch statements
+     * @param nanos the time required to execute the batch
+     * @param batchSize the number of statements in the batch
+     */
+    void batchExecuted(String sqlCmd, long nanos, int batchSize);
+
+    /**
+     * Called after the rows of a query have been read
+     * @param sqlCmd the SQL-Command
+     * @param nanos the time spent fetching rows from the result set
+     * @param rows the number of rows read
+     */
+    void resultFetched(String sqlCmd, long nanos, int rows);
+
+    /**
+     * Called after a result set or a statement has been closed (or returned to the statement cache)
+     * @param sqlCmd the SQL-Command
+     * @param nanos the time required to close the result set and the statement
+     */
+    void statementClosed(String sqlCmd, long nanos);
+}
@@ -0,0 +1,280 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.empire.commons.Options;
+import org.apache.empire.exceptions.InvalidArgumentException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * DBOptionsCache<br>
+ * This class caches option lists obtained by {@link DBDatabase#queryOptionList(String, Object[], Connection, Options)}.<br>
+ * Option lists are identified by the SQL statement and the parameter values of the command.
+ * A cached list expires as soon as any of the tables referenced by the command is modified through Empire-db
+ * (see {@link DBRowSet#getModificationCount()}) or when the optional time to live has elapsed.
+ * Changes made by other applications or by plain SQL statements are not detected.
+ * <P>
+ * The options returned are shared between all callers and must not be modified!<br>
+ * The cache is bounded: if the maximum size is exceeded, the least recently used list is removed.
+ * <pre>
+ *   db.setOptionsCache(new DBOptionsCache(100, 0));
+ *   ...
+ *   Options options = db.queryCachedOptionList(cmd, conn);
+ * </pre>
+ */
+public class DBOptionsCache
+{
+    // Logger
+    private static final Logger log = LoggerFactory.getLogger(DBOptionsCache.class);
+
+    /**
+     * The key of a cached option list
+     */
+    private static final class OptionsKey
+    {
+        private final String   sqlCmd;
+        private final Object[] params;
+        private final int      hash;
+
+        public OptionsKey(String sqlCmd, Object[] params)
+        {
+            this.sqlCmd = sqlCmd;
+            this.params = params;
+            this.hash = sqlCmd.hashCode() * 31 + Arrays.hashCode(params);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other)
+        {
+            if (other == this)
+                return true;
+            if (!(other instanceof OptionsKey))
+                return false;
+            OptionsKey key = (OptionsKey) other;
+            return (hash == key.hash && sqlCmd.equals(key.sqlCmd) && Arrays.equals(params, key.params));
+        }
+    }
+
+    /**
+     * A cached option list along with the modification counters of the rowsets it depends on
+     */
+    private static final class OptionsEntry
+    {
+        private final Options    options;
+        private final DBRowSet[] rowsets;
+        private final long[]     modCounts;
+        private final long       created;
+
+        public OptionsEntry(Options options, DBRowSet[] rowsets, long[] modCounts)
+        {
+            this.options = options;
+            this.rowsets = rowsets;
+            this.modCounts = modCounts;
+            this.created = System.currentTimeMillis();
+        }
+
+        public boolean isModified()
+        {
+            for (int i=0; i<rowsets.length; i++)
+                if (rowsets[i].getModificationCount()!=modCounts[i])
+                    return true;
+            return false;
+        }
+    }
+
+    private final int  maxSize;
+    private final long timeToLive;
+    private final Map<OptionsKey, OptionsEntry> entries;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long expirations = 0;
+
+    /**
+     * Creates an option list cache
+     * @param maxSize the maximum number of option lists cached
+     * @param timeToLive the time in milliseconds after which a list expires or 0 if lists only expire when a table is modified
+     */
+    public DBOptionsCache(int maxSize, long timeToLive)
+    {
+        if (maxSize<1)
+            throw new InvalidArgumentException("maxSize", maxSize);
+        if (timeToLive<0)
+            throw new InvalidArgumentException("timeToLive", timeToLive);
+        this.maxSize = maxSize;
+        this.timeToLive = timeToLive;
+        this.entries = new LinkedHashMap<OptionsKey, OptionsEntry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<OptionsKey, OptionsEntry> eldest)
+            {
+                return (size() > DBOptionsCache.this.maxSize);
+            }
+        };
+    }
+
+    /**
+     * Returns the maximum number of option lists cached
+     * @return the maximum size
+     */
+    public int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    /**
+     * Returns the time after which a cached list expires
+     * @return the time to live in milliseconds or 0
+     */
+    public long getTimeToLive()
+    {
+        return timeToLive;
+    }
+
+    /**
+     * Returns the number of option lists currently cached
+     * @return the number of lists
+     */
+    public synchronized int getSize()
+    {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of option lists served from the cache
+     * @return the number of hits
+     */
+    public synchronized long getHitCount()
+    {
+        return hits;
+    }
+
+    /**
+     * Returns the number of option lists that had to be queried
+     * @return the number of misses
+     */
+    public synchronized long getMissCount()
+    {
+        return misses;
+    }
+
+    /**
+     * Returns the number of option lists that have expired
+     * @return the number of expirations
+     */
+    public synchronized long getExpirationCount()
+    {
+        return expirations;
+    }
+
+    /**
+     * Returns the option list for a command.<br>
+     * If the list is not cached or has expired, the command is executed and the result is cached.
+     * The options returned must not be modified.
+     * @param cmd the command selecting the option values (first column) and texts (second column)
+     * @param conn a valid connection to the database
+     * @return the option list
+     */
+    public Options getOptions(DBCommand cmd, Connection conn)
+    {
+        String sqlCmd = cmd.getSelect();
+        Object[] params = cmd.getParamValues();
+        OptionsKey key = new OptionsKey(sqlCmd, params);
+        synchronized(this)
+        {
+            OptionsEntry entry = entries.get(key);
+            if (entry!=null && (entry.isModified() || (timeToLive>0 && System.currentTimeMillis() - entry.created >= timeToLive)))
+            {   // expired
+                entries.remove(key);
+                expirations++;
+                entry = null;
+            }
+            if (entry!=null)
+            {   // found
+                hits++;
+                return entry.options;
+            }
+            misses++;
+        }
+        // Collect dependencies before query
+        List<DBRowSet> rowsets = new ArrayList<DBRowSet>();
+        addRowSets(cmd, rowsets);
+        DBRowSet[] rowsetArray = rowsets.toArray(new DBRowSet[rowsets.size()]);
+        long[] modCounts = new long[rowsetArray.length];
+        for (int i=0; i<rowsetArray.length; i++)
+            modCounts[i] = rowsetArray[i].getModificationCount();
+        // Query
+        Options options = new Options();
+        cmd.getDatabase().queryOptionList(sqlCmd, params, conn, options);
+        if (log.isDebugEnabled())
+            log.debug("Caching {} options depending on {} rowsets.", options.size(), rowsetArray.length);
+        synchronized(this)
+        {
+            entries.put(key, new OptionsEntry(options, rowsetArray, modCounts));
+        }
+        return options;
+    }
+
+    /**
+     * Removes all option lists from the cache
+     */
+    public synchronized void clear()
+    {
+        entries.clear();
+    }
+
+    /**
+     * Collects all rowsets referenced by a command including the rowsets of referenced queries 
+     * @param cmd the command
+     * @param list the list of rowsets
+     */
+    protected void addRowSets(DBCommandExpr cmd, List<DBRowSet> list)
+    {
+        if (!(cmd instanceof DBCommand))
+            return;
+        for (DBRowSet rowset : ((DBCommand)cmd).getRowSetList())
+        {
+            if (list.contains(rowset))
+                continue;
+            list.add(rowset);
+            if (rowset instanceof DBQuery)
+                addRowSets(((DBQuery)rowset).getCommandExpr(), list);
+        }
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return "DBOptionsCache[size="+String.valueOf(entries.size())+", hits="+String.valueOf(hits)+", misses="+String.valueOf(misses)+"]";
+    }
+}
@@ -523,6 +523,9 @@ public class DBQuery extends DBRowSet
             
             // Execute SQL
             int affected = db.executeSQL(upd.getUpdate(), upd.getParamValues(), conn);
+            DBRowSet updRowSet = upd.getUpdateRowSet();
+            if (updRowSet!=null)
+                updRowSet.onRecordsModified(null, conn);
             if (affected <= 0)
             {   // Error
                 if (affected == 0)
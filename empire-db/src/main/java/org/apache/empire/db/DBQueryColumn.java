@@ -18,6 +18,7 @@
  */
 package org.apache.empire.db;
 
+import org.apache.empire.commons.Attributes;
 import org.apache.empire.commons.Options;
 import org.apache.empire.data.DataType;
 import org.w3c.dom.Element;
@@ -99,8 +100,9 @@ public class DBQueryColumn extends DBColumn
     @Override
     public Object getAttribute(String name)
     {
-        if (attributes != null && attributes.contains(name))
-            return attributes.get(name);
+        Attributes.Attribute a = (attributes != null ? attributes.find(name) : null);
+        if (a != null)
+            return a.getValue();
         // Otherwise ask expression
         DBColumn column = expr.getUpdateColumn();
         if (column==null)
@@ -0,0 +1,368 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.sql.DataSource;
+
+import org.apache.empire.exceptions.InvalidArgumentException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * DBReadReplicaRouter<br>
+ * This class distributes read-only queries between a primary DataSource and a number of read replicas.<br>
+ * Replicas are selected round-robin. A replica which fails to provide a valid connection is ejected
+ * for the eject time and the next replica is tried. If no replica is available, the primary is used.
+ * <P>
+ * In order to read your own writes, the router sticks to the primary for the sticky time after a write
+ * has been executed by the current thread. DBDatabase marks writes automatically for all statements
+ * executed with executeSQL() and executeBatch().
+ * <P>
+ * A router is set on the database using DBDatabase.setReadReplicaRouter().
+ * It is then used by the web and spring integration for queries outside a transaction.
+ */
+public class DBReadReplicaRouter
+{
+    // Logger
+    private static final Logger log = LoggerFactory.getLogger(DBReadReplicaRouter.class);
+
+    private final DataSource   primary;
+    private final DataSource[] replicas;
+
+    // replica state
+    private final AtomicLongArray ejectedUntil;
+    private final AtomicInteger   next = new AtomicInteger(0);
+
+    private long ejectTime = 30000;         // 30 seconds
+    private long stickyTime = 5000;         // 5 seconds
+    private int  validationTimeout = 0;     // do not validate
+
+    // time of the last write of the current thread
+    private final ThreadLocal<Long> lastWrite = new ThreadLocal<Long>();
+
+    // DataSource for read connections
+    private final DataSource readDataSource = new ReadDataSource();
+
+    /**
+     * Creates a read replica router
+     * @param primary the primary DataSource used for writes
+     * @param replicas the DataSources of the read replicas
+     */
+    public DBReadReplicaRouter(DataSource primary, DataSource... replicas)
+    {
+        if (primary==null)
+            throw new InvalidArgumentException("primary", primary);
+        if (replicas==null)
+            replicas = new DataSource[0];
+        for (int i=0; i<replicas.length; i++)
+        {   // check replica
+            if (replicas[i]==null)
+                throw new InvalidArgumentException("replicas", replicas);
+        }
+        this.primary = primary;
+        this.replicas = replicas.clone();
+        this.ejectedUntil = new AtomicLongArray(replicas.length);
+    }
+
+    /**
+     * Returns the primary DataSource
+     * @return the primary DataSource
+     */
+    public DataSource getPrimary()
+    {
+        return primary;
+    }
+
+    /**
+     * Returns a DataSource which provides read connections as returned by getReadConnection()
+     * @return the DataSource for read connections
+     */
+    public DataSource getReadDataSource()
+    {
+        return readDataSource;
+    }
+
+    /**
+     * Returns the number of read replicas
+     * @return the number of replicas
+     */
+    public int getReplicaCount()
+    {
+        return replicas.length;
+    }
+
+    /**
+     * Returns the number of read replicas which are currently not ejected
+     * @return the number of healthy replicas
+     */
+    public int getHealthyReplicaCount()
+    {
+        long now = System.currentTimeMillis();
+        int count = 0;
+        for (int i=0; i<replicas.length; i++)
+        {
+            if (ejectedUntil.get(i)<=now)
+                count++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the time for which a failed replica is excluded
+     * @return the eject time in milliseconds
+     */
+    public long getEjectTime()
+    {
+        return ejectTime;
+    }
+
+    /**
+     * Sets the time for which a failed replica is excluded
+     * @param ejectTime the eject time in milliseconds
+     */
+    public void setEjectTime(long ejectTime)
+    {
+        if (ejectTime < 0)
+            throw new InvalidArgumentException("ejectTime", ejectTime);
+        this.ejectTime = ejectTime;
+    }
+
+    /**
+     * Returns the time for which reads stick to the primary after a write
+     * @return the sticky time in milliseconds
+     */
+    public long getStickyTime()
+    {
+        return stickyTime;
+    }
+
+    /**
+     * Sets the time for which reads stick to the primary after a write
+     * @param stickyTime the sticky time in milliseconds. 0 disables stickiness.
+     */
+    public void setStickyTime(long stickyTime)
+    {
+        if (stickyTime < 0)
+            throw new InvalidArgumentException("stickyTime", stickyTime);
+        this.stickyTime = stickyTime;
+    }
+
+    /**
+     * Returns the timeout used to validate replica connections
+     * @return the validation timeout in seconds or 0 if connections are not validated
+     */
+    public int getValidationTimeout()
+    {
+        return validationTimeout;
+    }
+
+    /**
+     * Sets the timeout used to validate replica connections using Connection.isValid()
+     * @param validationTimeout the validation timeout in seconds or 0 if connections should not be validated
+     */
+    public void setValidationTimeout(int validationTimeout)
+    {
+        if (validationTimeout < 0)
+            throw new InvalidArgumentException("validationTimeout", validationTimeout);
+        this.validationTimeout = validationTimeout;
+    }
+
+    /**
+     * Marks a write for the current thread.<br>
+     * Subsequent reads of this thread will use the primary until the sticky time has elapsed. 
+     */
+    public void markWrite()
+    {
+        if (stickyTime>0)
+            lastWrite.set(System.currentTimeMillis());
+    }
+
+    /**
+     * Clears the write mark of the current thread.<br>
+     * This should be called at the end of a request if threads are reused.
+     */
+    public void clearWrite()
+    {
+        lastWrite.remove();
+    }
+
+    /**
+     * Returns whether reads of the current thread must use the primary due to a recent write
+     * @return true if the primary must be used for reads or false otherwise
+     */
+    public boolean isStickyToPrimary()
+    {
+        Long time = lastWrite.get();
+        if (time==null)
+            return false;
+        if (System.currentTimeMillis() - time.longValue() < stickyTime)
+            return true;
+        // expired
+        lastWrite.remove();
+        return false;
+    }
+
+    /**
+     * Ejects a replica for the eject time
+     * @param index the index of the replica
+     */
+    public void ejectReplica(int index)
+    {
+        if (index<0 || index>=replicas.length)
+            throw new InvalidArgumentException("index", index);
+        ejectedUntil.set(index, System.currentTimeMillis() + ejectTime);
+    }
+
+    /**
+     * Returns a connection for read-only queries.<br>
+     * The connection is obtained from the next healthy replica or from the primary
+     * if no replica is available or a write has recently been performed by the current thread.
+     * <P>
+     * The connection must be closed by the caller.
+     * @return a connection for read-only queries
+     * @throws SQLException if the connection cannot be obtained from the primary
+     */
+    public Connection getReadConnection()
+        throws SQLException
+    {
+        if (replicas.length==0 || isStickyToPrimary())
+            return primary.getConnection();
+        // try replicas
+        long now = System.currentTimeMillis();
+        int start = next.getAndIncrement() & Integer.MAX_VALUE;
+        for (int n=0; n<replicas.length; n++)
+        {
+            int index = (start + n) % replicas.length;
+            if (ejectedUntil.get(index)>now)
+                continue; // ejected
+            Connection conn = openReplicaConnection(index);
+            if (conn!=null)
+                return conn;
+        }
+        // no replica available
+        log.debug("No read replica available. Using primary.");
+        return primary.getConnection();
+    }
+
+    /**
+     * Opens a connection to a replica and ejects the replica on failure.
+     * @param index the index of the replica
+     * @return the connection or null if the replica has failed
+     */
+    protected Connection openReplicaConnection(int index)
+    {
+        Connection conn = null;
+        try
+        {   // get connection
+            conn = replicas[index].getConnection();
+            if (conn==null)
+                throw new SQLException("DataSource returned no connection.");
+            // validate
+            if (validationTimeout>0 && !conn.isValid(validationTimeout))
+                throw new SQLException("Connection is not valid.");
+            return conn;
+        } catch (SQLException e) {
+            log.warn("Read replica {} failed and is ejected for {} ms: {}", new Object[] { index, ejectTime, e.getMessage() });
+            ejectReplica(index);
+            closeQuietly(conn);
+            return null;
+        }
+    }
+
+    private void closeQuietly(Connection conn)
+    {
+        if (conn==null)
+            return;
+        try
+        {   // close
+            conn.close();
+        } catch (SQLException e) {
+            log.debug("Failed to close replica connection.", e);
+        }
+    }
+
+    /**
+     * DataSource which provides the read connections of the router
+     */
+    private class ReadDataSource implements DataSource
+    {
+        public Connection getConnection()
+            throws SQLException
+        {
+            return getReadConnection();
+        }
+
+        public Connection getConnection(String username, String password)
+            throws SQLException
+        {
+            throw new SQLFeatureNotSupportedException("getConnection(username, password)");
+        }
+
+        public PrintWriter getLogWriter()
+            throws SQLException
+        {
+            return primary.getLogWriter();
+        }
+
+        public void setLogWriter(PrintWriter out)
+            throws SQLException
+        {
+            primary.setLogWriter(out);
+        }
+
+        public void setLoginTimeout(int seconds)
+            throws SQLException
+        {
+            primary.setLoginTimeout(seconds);
+        }
+
+        public int getLoginTimeout()
+            throws SQLException
+        {
+            return primary.getLoginTimeout();
+        }
+
+        public java.util.logging.Logger getParentLogger()
+            throws SQLFeatureNotSupportedException
+        {
+            throw new SQLFeatureNotSupportedException("getParentLogger");
+        }
+
+        public <T> T unwrap(Class<T> iface)
+            throws SQLException
+        {
+            if (iface.isInstance(this))
+                return iface.cast(this);
+            return primary.unwrap(iface);
+        }
+
+        public boolean isWrapperFor(Class<?> iface)
+            throws SQLException
+        {
+            return iface.isInstance(this) || primary.isWrapperFor(iface);
+        }
+    }
+}
@@ -18,8 +18,10 @@
  */
 package org.apache.empire.db;
 
+import java.io.OutputStream;
+import java.io.Writer;
 import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -37,15 +39,17 @@ import org.apache.empire.data.DataType;
 import org.apache.empire.db.exceptions.EmpireSQLException;
 import org.apache.empire.db.exceptions.QueryNoResultException;
 import org.apache.empire.db.expr.join.DBJoinExpr;
-import org.apache.empire.exceptions.BeanInstantiationException;
+import org.apache.empire.exceptions.InternalException;
 import org.apache.empire.exceptions.InvalidArgumentException;
 import org.apache.empire.exceptions.MiscellaneousErrorException;
 import org.apache.empire.exceptions.ObjectNotValidException;
 import org.apache.empire.xml.XMLUtil;
+import org.apache.empire.xml.XMLWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
 
 
 /**
@@ -236,13 +240,25 @@ public class DBReader extends DBRecordData
      * Support for finding code errors where a DBRecordSet is opened but not closed
      */
     private static ThreadLocal<Map<DBReader, Exception>> threadLocalOpenResultSets = new ThreadLocal<Map<DBReader, Exception>>();
+
+    /**
+     * The number of readers opened and not yet closed on the current thread
+     */
+    private static ThreadLocal<int[]> threadLocalOpenReaderCount = new ThreadLocal<int[]>();
     
     // Object references
     private DBDatabase     db      = null;
     private DBColumnExpr[] colList = null;
     private ResultSet      rset    = null;
+    // instrumentation (only if set for the driver)
+    private transient DBInstrumentation instrumentation = null;
+    private transient String sqlCmd     = null;
+    private transient long   fetchNanos = 0;
+    private transient int    fetchRows  = 0;
     // the field index map
     private Map<ColumnExpr, Integer> fieldIndexMap = null;
+    // whether getValue() is overridden by a subclass (determined on demand)
+    private transient Boolean valueOverridden = null;
 
     /**
      * Constructs a default DBReader object with the fieldIndexMap enabled.
@@ -352,10 +368,12 @@ public class DBReader extends DBRecordData
             log.error("Index out of range: " + index);
             return true;
         }
+        if (isValueOverridden())
+            return super.isNull(index);
         try
         { // Check Value on Resultset
-            rset.getObject(index + 1);
-            return rset.wasNull();
+            DataType dataType = colList[index].getDataType();
+            return db.driver.isResultNull(rset, index + 1, dataType);
         } catch (Exception e)
         {
             log.error("isNullValue exception", e);
@@ -386,6 +404,169 @@ public class DBReader extends DBRecordData
         }
     }
 
+    /**
+     * Returns whether a subclass has overridden getValue().<br>
+     * In this case the typed getters and isNull() use getValue() instead of reading the ResultSet directly.
+     * @return true if getValue() has been overridden
+     */
+    protected boolean isValueOverridden()
+    {
+        if (valueOverridden==null)
+        {   // find the implementation of getValue()
+            try {
+                Method m = getClass().getMethod("getValue", int.class);
+                valueOverridden = (m.getDeclaringClass()!=DBReader.class);
+            } catch (NoSuchMethodException e) {
+                throw new InternalException(e);
+            }
+        }
+        return valueOverridden.booleanValue();
+    }
+
+    /**
+     * Returns the value of a binary large object without loading it into memory.<br>
+     * The input stream of the returned object is only valid until the reader is moved to the next row or closed.
+     * Objects smaller than the lobMaterializeThreshold of the driver are loaded into memory.
+     * 
+     * @param index index of the column
+     * @return the blob data or null if the value is null
+     */
+    @Override
+    public DBBlobData getBlobData(int index)
+    {
+        // Check params
+        if (index < 0 || index >= colList.length)
+            throw new InvalidArgumentException("index", index);
+        try
+        {   // Get Value from Resultset
+            return db.driver.getResultBlobData(rset, index + 1, colList[index].getDataType());
+
+        } catch (SQLException e)
+        { // Operation failed
+            throw new EmpireSQLException(this, e);
+        }
+    }
+
+    /**
+     * Returns the value of a character large object without loading it into memory.<br>
+     * The reader of the returned object is only valid until the reader is moved to the next row or closed.
+     * Objects smaller than the lobMaterializeThreshold of the driver are loaded into memory.
+     * 
+     * @param index index of the column
+     * @return the clob data or null if the value is null
+     */
+    @Override
+    public DBClobData getClobData(int index)
+    {
+        // Check params
+        if (index < 0 || index >= colList.length)
+            throw new InvalidArgumentException("index", index);
+        try
+        {   // Get Value from Resultset
+            return db.driver.getResultClobData(rset, index + 1, colList[index].getDataType());
+
+        } catch (SQLException e)
+        { // Operation failed
+            throw new EmpireSQLException(this, e);
+        }
+    }
+
+    /**
+     * Returns the value of the column at the given index as an int without boxing.
+     * 
+     * @param index index of the column
+     * @return the int value or 0 if the value is null
+     */
+    @Override
+    public int getInt(int index)
+    {
+        // Check params
+        if (index < 0 || index >= colList.length)
+            throw new InvalidArgumentException("index", index);
+        if (isValueOverridden())
+            return super.getInt(index);
+        try
+        {   // Get Value from Resultset
+            return db.driver.getResultInt(rset, index + 1, colList[index].getDataType());
+
+        } catch (SQLException e)
+        { // Operation failed
+            throw new EmpireSQLException(this, e);
+        }
+    }
+
+    /**
+     * Returns the value of the column at the given index as a long without boxing.
+     * 
+     * @param index index of the column
+     * @return the long value or 0 if the value is null
+     */
+    @Override
+    public long getLong(int index)
+    {
+        // Check params
+        if (index < 0 || index >= colList.length)
+            throw new InvalidArgumentException("index", index);
+        if (isValueOverridden())
+            return super.getLong(index);
+        try
+        {   // Get Value from Resultset
+            return db.driver.getResultLong(rset, index + 1, colList[index].getDataType());
+
+        } catch (SQLException e)
+        { // Operation failed
+            throw new EmpireSQLException(this, e);
+        }
+    }
+
+    /**
+     * Returns the value of the column at the given index as a double without boxing.
+     * 
+     * @param index index of the column
+     * @return the double value or 0.0 if the value is null
+     */
+    @Override
+    public double getDouble(int index)
+    {
+        // Check params
+        if (index < 0 || index >= colList.length)
+            throw new InvalidArgumentException("index", index);
+        if (isValueOverridden())
+            return super.getDouble(index);
+        try
+        {   // Get Value from Resultset
+            return db.driver.getResultDouble(rset, index + 1, colList[index].getDataType());
+
+        } catch (SQLException e)
+        { // Operation failed
+            throw new EmpireSQLException(this, e);
+        }
+    }
+
+    /**
+     * Returns the value of the column at the given index as a boolean without boxing.
+     * 
+     * @param index index of the column
+     * @return the boolean value or false if the value is null
+     */
+    @Override
+    public boolean getBoolean(int index)
+    {
+        // Check params
+        if (index < 0 || index >= colList.length)
+            throw new InvalidArgumentException("index", index);
+        if (isValueOverridden())
+            return super.getBoolean(index);
+        try
+        {   // Get Value from Resultset
+            return db.driver.getResultBoolean(rset, index + 1, colList[index].getDataType());
+
+        } catch (SQLException e)
+        { // Operation failed
+            throw new EmpireSQLException(this, e);
+        }
+    }
+
     /** 
      * Checks if the rowset is open
      *  
@@ -410,6 +591,25 @@ public class DBReader extends DBRecordData
      * @param conn a valid JDBC connection.
      */
     public void open(DBCommandExpr cmd, boolean scrollable, Connection conn)
+    {
+        open(cmd, scrollable, cmd.isStreaming(), conn);
+    }
+
+    /**
+     * Opens the reader by executing the given SQL command.<BR>
+     * If streaming is true, the JDBC driver is asked to fetch the rows in portions 
+     * instead of reading the whole result into memory before the first row is returned.<BR>
+     * This allows to process large results in constant memory.
+     * Streaming readers are forward only.<BR>
+     * <P>
+     * see {@link DBReader#open(DBCommandExpr, boolean, Connection)}
+     * </P>
+     * @param cmd the SQL-Command with cmd.getSelect()
+     * @param scrollable true if the reader should be scrollable or false if not
+     * @param streaming true if the result should be streamed
+     * @param conn a valid JDBC connection.
+     */
+    public void open(DBCommandExpr cmd, boolean scrollable, boolean streaming, Connection conn)
     {
         if (isOpen())
             close();
@@ -427,11 +627,30 @@ public class DBReader extends DBRecordData
         }
         // Execute the query
         DBDatabase queryDb   = cmd.getDatabase();
-        ResultSet  queryRset = queryDb.executeQuery(sqlCmd, paramValues, scrollable, conn);
+        if (scrollable && streaming)
+        {   // Streaming results are forward only
+            log.warn("A scrollable reader cannot be streamed. Streaming is ignored.");
+            streaming = false;
+        }
+        ResultSet  queryRset = queryDb.executeQuery(sqlCmd, paramValues, scrollable, streaming, conn);
         if (queryRset==null)
             throw new QueryNoResultException(sqlCmd);
         // init
         init(queryDb, cmd.getSelectExprList(), queryRset);
+        initInstrumentation(sqlCmd);
+    }
+
+    /**
+     * Opens the reader by executing the given SQL command and streams the result.<BR>
+     * <P>
+     * see {@link DBReader#open(DBCommandExpr, boolean, boolean, Connection)}
+     * </P>
+     * @param cmd the SQL-Command with cmd.getSelect()
+     * @param conn a valid JDBC connection.
+     */
+    public final void openStreaming(DBCommandExpr cmd, Connection conn)
+    {
+        open(cmd, false, true, conn);
     }
 
     /**
@@ -447,6 +666,48 @@ public class DBReader extends DBRecordData
         open(cmd, false, conn);
     }
 
+    /**
+     * Opens the reader by executing a compiled command.<BR>
+     * Unlike open(DBCommandExpr, ...) this does not render the SQL statement again.<BR>
+     * <P>
+     * see {@link DBReader#open(DBCommandExpr, boolean, Connection)}
+     * </P>
+     * @param plan the compiled select command (see {@link DBCommand#compileSelect()})
+     * @param paramValues the parameter values obtained from the plan (see {@link DBCmdPlan#getParamValues()})
+     * @param scrollable true if the reader should be scrollable or false if not
+     * @param conn a valid JDBC connection.
+     */
+    public void open(DBCmdPlan plan, Object[] paramValues, boolean scrollable, Connection conn)
+    {
+        if (isOpen())
+            close();
+        // Check plan
+        if (plan.isQuery()==false)
+            throw new InvalidArgumentException("plan", plan);
+        // Execute the query
+        DBDatabase queryDb   = plan.getDatabase();
+        ResultSet  queryRset = queryDb.executeQuery(plan.getSql(), paramValues, scrollable, conn);
+        if (queryRset==null)
+            throw new QueryNoResultException(plan.getSql());
+        // init
+        init(queryDb, plan.selectExprList(), queryRset);
+        initInstrumentation(plan.getSql());
+    }
+
+    /**
+     * Opens the reader by executing a compiled command.<BR>
+     * <P>
+     * see {@link DBReader#open(DBCmdPlan, Object[], boolean, Connection)}
+     * </P>
+     * @param plan the compiled select command
+     * @param paramValues the parameter values obtained from the plan
+     * @param conn a valid JDBC connection.
+     */
+    public final void open(DBCmdPlan plan, Object[] paramValues, Connection conn)
+    {
+        open(plan, paramValues, false, conn);
+    }
+
     /**
      * <P>
      * Opens the reader by executing the given SQL command and moves to the first row.<BR>
@@ -487,13 +748,26 @@ public class DBReader extends DBRecordData
             // Close Recordset
             if (rset != null)
             {
-                getDatabase().closeResultSet(rset);
+                if (instrumentation!=null && sqlCmd!=null)
+                {   // notify and close
+                    instrumentation.resultFetched(sqlCmd, fetchNanos, fetchRows);
+                    if (fetchNanos / 1000000L >= getDatabase().longRunndingStmtThreshold)
+                        log.warn("Long running fetch of {} rows took {} seconds for statement {}.", new Object[] { fetchRows, fetchNanos / 1000000000L, sqlCmd });
+                    getDatabase().closeResultSet(rset, sqlCmd);
+                }
+                else
+                    getDatabase().closeResultSet(rset);
                 // remove from tracking-list
                 endTrackingThisResultSet();
+                int[] count = threadLocalOpenReaderCount.get();
+                if (count != null && count[0] > 0)
+                    count[0]--;
             }
             // Detach columns
             colList = null;
             rset = null;
+            instrumentation = null;
+            sqlCmd = null;
             // clear FieldIndexMap
             if (fieldIndexMap!=null)
                 fieldIndexMap.clear();
@@ -534,7 +808,7 @@ public class DBReader extends DBRecordData
             // Scrollable Cursor
             if (count > 0)
             { // Move a single record first
-                if (rset.next() == false)
+                if (nextRow() == false)
                     return false;
                 // Move relative
                 if (count > 1)
@@ -568,7 +842,7 @@ public class DBReader extends DBRecordData
             if (rset == null)
                 throw new ObjectNotValidException(this);
             // Move Next
-            if (rset.next() == false)
+            if (nextRow() == false)
             { // Close recordset automatically after last record
                 close();
                 return false;
@@ -581,6 +855,35 @@ public class DBReader extends DBRecordData
         }
     }
 
+    /**
+     * Moves the result set to the next row and measures the fetch time if instrumentation is enabled
+     */
+    private boolean nextRow()
+        throws SQLException
+    {
+        if (instrumentation==null)
+            return rset.next();
+        // measure
+        long start = System.nanoTime();
+        boolean valid = rset.next();
+        fetchNanos += (System.nanoTime() - start);
+        if (valid)
+            fetchRows++;
+        return valid;
+    }
+
+    /**
+     * Enables instrumentation for the current query if an instrumentation is set for the driver 
+     */
+    private void initInstrumentation(String sqlCmd)
+    {
+        DBDatabaseDriver driver = db.getDriver();
+        this.instrumentation = (driver!=null) ? driver.getInstrumentation() : null;
+        this.sqlCmd = sqlCmd;
+        this.fetchNanos = 0;
+        this.fetchRows = 0;
+    }
+
     private DBReaderIterator iterator = null; // there can only be one!
 
     /**
@@ -642,7 +945,6 @@ public class DBReader extends DBRecordData
      * 
      * @return the list of T
      */
-    @SuppressWarnings("unchecked")
     public <C extends Collection<T>, T> C getBeanList(C c, Class<T> t, int maxCount)
     {
         // Check Recordset
@@ -650,47 +952,18 @@ public class DBReader extends DBRecordData
         {   // Resultset not available
             throw new ObjectNotValidException(this);
         }
-        // Query List
-        try
-        {
-            // Check whether we can use a constructor
-            Class<?>[] paramTypes = new Class[getFieldCount()];
-            for (int i = 0; i < colList.length; i++)
-                paramTypes[i] = DBExpr.getValueClass(colList[i].getDataType()); 
-            // Find Constructor
-            Constructor<?> ctor = findMatchingAccessibleConstructor(t, paramTypes);
-            Object[] args = (ctor!=null) ? new Object[getFieldCount()] : null; 
-            
-            // Create a list of beans
-            while (moveNext() && maxCount != 0)
-            { // Create bean an init
-                if (ctor!=null)
-                {   // Use Constructor
-                    Class<?>[] ctorParamTypes = ctor.getParameterTypes();
-                    for (int i = 0; i < getFieldCount(); i++)
-                        args[i] = ObjectUtils.convert(ctorParamTypes[i], getValue(i));
-                    T bean = (T)ctor.newInstance(args);
-                    c.add(bean);
-                }
-                else
-                {   // Use Property Setters
-                    T bean = t.newInstance();
-                    setBeanProperties(bean);
-                    c.add(bean);
-                }
-                // Decrease count
-                if (maxCount > 0)
-                    maxCount--;
-            }
-            // done
-            return c;
-        } catch (InvocationTargetException e) {
-            throw new BeanInstantiationException(t, e);
-        } catch (IllegalAccessException e) {
-            throw new BeanInstantiationException(t, e);
-        } catch (InstantiationException e) {
-            throw new BeanInstantiationException(t, e);
+        // Get the mapper (constructor or setters are resolved only once)
+        DBBeanMapper<T> mapper = DBBeanMapper.getMapper(t, colList);
+        // Create a list of beans
+        while (moveNext() && maxCount != 0)
+        {   // Create bean an init
+            c.add(mapper.map(this));
+            // Decrease count
+            if (maxCount > 0)
+                maxCount--;
         }
+        // done
+        return c;
     }
     
     /**
@@ -745,10 +1018,10 @@ public class DBReader extends DBRecordData
         if (rset == null)
             throw new ObjectNotValidException(this);
         // Add all children
+        String idColumnAttr = getXmlDictionary().getRowIdColumnAttribute();
         for (int i = 0; i < colList.length; i++)
         { // Read all
             String name = colList[i].getName();
-            String idColumnAttr = getXmlDictionary().getRowIdColumnAttribute();
             if (name.equalsIgnoreCase("id"))
             { // Add Attribute
                 parent.setAttribute(idColumnAttr, getString(i));
@@ -786,6 +1059,98 @@ public class DBReader extends DBRecordData
         return count;
     }
     
+    /**
+     * Writes the field description and all remaining rows as XML to an output stream.<br>
+     * The output is the same as printing the document returned by getXmlDocument() with an XMLWriter,
+     * but rows are written as they are read, hence the memory used does not depend on the number of rows. 
+     * 
+     * @param out the output stream
+     * @return the number of rows written
+     */
+    public int writeXml(OutputStream out)
+    {
+        return writeXml(new XMLWriter(out));
+    }
+
+    /**
+     * Writes the field description and all remaining rows as XML to a writer.<br>
+     * See {@link #writeXml(OutputStream)}
+     * 
+     * @param writer the writer
+     * @param charsetEncoding the encoding declared in the xml declaration (e.g. "utf-8")
+     * @return the number of rows written
+     */
+    public int writeXml(Writer writer, String charsetEncoding)
+    {
+        return writeXml(new XMLWriter(writer, charsetEncoding));
+    }
+
+    /**
+     * Writes the field description and all remaining rows as XML using an XMLWriter.<br>
+     * See {@link #writeXml(OutputStream)}
+     * 
+     * @param xmlWriter the XMLWriter
+     * @return the number of rows written
+     */
+    public int writeXml(XMLWriter xmlWriter)
+    {
+        if (rset == null)
+            throw new ObjectNotValidException(this);
+        DBXmlDictionary xmlDic = getXmlDictionary();
+        String rowsetElementName = xmlDic.getRowSetElementName();
+        String rowElementName = xmlDic.getRowElementName();
+        String idColumnAttr = xmlDic.getRowIdColumnAttribute();
+        // Field Description (small, hence a DOM is used)
+        Element root = XMLUtil.createDocument(rowsetElementName);
+        addColumnDesc(root);
+        NodeList columnDesc = root.getChildNodes();
+        // Element names of the row values (same as addRowValues)
+        String[] names = new String[colList.length];
+        int idIndex = -1;
+        boolean rowChildren = false;
+        for (int i = 0; i < colList.length; i++)
+        {
+            String name = colList[i].getName();
+            if (name.equalsIgnoreCase("id"))
+            {   // Attribute
+                idIndex = i;
+                continue;
+            }
+            names[i] = name.replace(' ', '_');
+            rowChildren = true;
+        }
+        // Write
+        boolean hasRow = moveNext();
+        boolean rootChildren = (columnDesc.getLength() > 0 || hasRow);
+        xmlWriter.printProlog(null);
+        xmlWriter.printStartTag(rowsetElementName, null, null, rootChildren);
+        for (int i = 0; i < columnDesc.getLength(); i++)
+            xmlWriter.print(columnDesc.item(i), 1);
+        int count = 0;
+        while (hasRow)
+        {   // Write row
+            String idValue = (idIndex >= 0 ? getString(idIndex) : null);
+            xmlWriter.printStartTag(rowElementName, (idIndex >= 0 ? idColumnAttr : null), idValue, rowChildren);
+            for (int i = 0; i < names.length; i++)
+            {
+                if (names[i] == null)
+                    continue; // Attribute
+                String value = getString(i);
+                xmlWriter.printIndent(1);
+                if (value == null)
+                    xmlWriter.printTextElement(names[i], "null", "yes", null); // Null-Value
+                else
+                    xmlWriter.printTextElement(names[i], null, null, value);
+            }
+            xmlWriter.printEndTag(rowElementName, 1, rowChildren);
+            count++;
+            hasRow = moveNext();
+        }
+        xmlWriter.printEndTag(rowsetElementName, 0, rootChildren);
+        xmlWriter.flush();
+        return count;
+    }
+    
     /**
      * returns the DBXmlDictionary that should used to generate XMLDocuments<BR>
      * @return the DBXmlDictionary
@@ -834,6 +1199,11 @@ public class DBReader extends DBRecordData
         this.db = db;
         this.colList = colList;
         this.rset = rset;
+        // count
+        int[] count = threadLocalOpenReaderCount.get();
+        if (count == null)
+            threadLocalOpenReaderCount.set(count = new int[1]);
+        count[0]++;
         // add to tracking list (if enabled)
         trackThisResultSet();
     }
@@ -1059,6 +1429,29 @@ public class DBReader extends DBRecordData
         return null;
     }
 
+    /**
+     * Returns the number of readers which have been opened but not yet closed on the current thread.
+     * @return the number of open readers
+     */
+    public static int getOpenReaderCount()
+    {
+        int[] count = threadLocalOpenReaderCount.get();
+        return (count != null) ? count[0] : 0;
+    }
+
+    /**
+     * Resets the number of open readers of the current thread.<br>
+     * This should be called at the end of a request since readers which have not been closed
+     * would otherwise be counted for all subsequent requests processed by the same thread.
+     * @return the number of readers which have been opened but not closed
+     */
+    public static int resetOpenReaderCount()
+    {
+        int[] count = threadLocalOpenReaderCount.get();
+        threadLocalOpenReaderCount.remove();
+        return (count != null) ? count[0] : 0;
+    }
+
     /**
      * Enables or disabled tracking of open ResultSets
      * @param enable true to enable or false otherwise
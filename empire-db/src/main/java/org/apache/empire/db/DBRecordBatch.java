@@ -0,0 +1,278 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.empire.db.DBRowSet.DBRecordUpdate;
+import org.apache.empire.exceptions.InvalidArgumentException;
+import org.apache.empire.exceptions.ObjectNotValidException;
+import org.apache.empire.exceptions.UnexpectedReturnValueException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * DBRecordBatch<br>
+ * This class collects new and modified records and writes them to the database in a single flush.<br>
+ * Consecutive records that produce identical SQL statements are executed as a JDBC batch
+ * (see {@link DBDatabase#executeBatch(String[], Object[][], Connection)}).
+ * In order to combine statements, prepared statements should be enabled for the database.
+ * <P>
+ * The number of records affected by each statement is checked in the same way as for {@link DBRecord#update(Connection)}.
+ * Hence concurrent changes are detected by the timestamp column and will result in a RecordUpdateInvalidException.<br>
+ * Some JDBC drivers do not report the row counts of a batch (Statement.SUCCESS_NO_INFO). In this case the change cannot be detected 
+ * and flush() throws an UnexpectedReturnValueException for updates of records with a timestamp column.
+ * For such drivers set batchTimestampUpdates to false in order to execute these updates individually.<br>
+ * Records that require an auto-generated key from the JDBC driver (AUTOINC columns without sequence support)
+ * as well as records of rowsets other than tables are updated individually.<br>
+ * Records are written in the order in which they have been added.
+ * <P>
+ * If flush() fails, some statements may already have been executed. Hence the transaction should be rolled back.
+ * <pre>
+ *   DBRecordBatch batch = new DBRecordBatch();
+ *   for (...)
+ *   {
+ *       DBRecord rec = new DBRecord();
+ *       rec.create(db.EMPLOYEES);
+ *       ...
+ *       batch.add(rec);
+ *   }
+ *   batch.flush(conn);
+ * </pre>
+ */
+public class DBRecordBatch
+{
+    // Logger
+    private static final Logger log = LoggerFactory.getLogger(DBRecordBatch.class);
+
+    private final List<DBRecord> records = new ArrayList<DBRecord>();
+    private final Set<DBRecord>  recordSet = Collections.newSetFromMap(new IdentityHashMap<DBRecord, Boolean>());
+    private int maxBatchSize = 1000;
+    private boolean batchTimestampUpdates = true;
+
+    /**
+     * Creates an empty record batch
+     */
+    public DBRecordBatch()
+    {
+        // nothing
+    }
+
+    /**
+     * Returns the maximum number of statements executed in a single JDBC batch
+     * @return the maximum batch size
+     */
+    public int getMaxBatchSize()
+    {
+        return maxBatchSize;
+    }
+
+    /**
+     * Sets the maximum number of statements executed in a single JDBC batch
+     * @param maxBatchSize the maximum batch size (must be greater than 0)
+     */
+    public void setMaxBatchSize(int maxBatchSize)
+    {
+        if (maxBatchSize<1)
+            throw new InvalidArgumentException("maxBatchSize", maxBatchSize);
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Returns whether updates of records with a timestamp column are executed as a batch
+     * @return true if such updates are executed as a batch or false if they are executed individually
+     */
+    public boolean isBatchTimestampUpdates()
+    {
+        return batchTimestampUpdates;
+    }
+
+    /**
+     * Sets whether updates of records with a timestamp column are executed as a batch.<br>
+     * Set this to false if the JDBC driver does not report the row counts of a batch.
+     * @param batchTimestampUpdates true to execute such updates as a batch or false to execute them individually
+     */
+    public void setBatchTimestampUpdates(boolean batchTimestampUpdates)
+    {
+        this.batchTimestampUpdates = batchTimestampUpdates;
+    }
+
+    /**
+     * Returns the number of records waiting to be written
+     * @return the number of records
+     */
+    public int getCount()
+    {
+        return records.size();
+    }
+
+    /**
+     * Adds a new or modified record to the batch.<br>
+     * The record's statement will be created when flush() is called, hence subsequent changes to the record will be included.
+     * Adding the same record twice has no effect.
+     * @param rec the record to write
+     */
+    public void add(DBRecord rec)
+    {
+        if (rec==null)
+            throw new InvalidArgumentException("rec", rec);
+        if (rec.isValid()==false)
+            throw new ObjectNotValidException(rec);
+        // add
+        if (recordSet.add(rec))
+            records.add(rec);
+    }
+
+    /**
+     * Removes all records from the batch without writing them
+     */
+    public void clear()
+    {
+        records.clear();
+        recordSet.clear();
+    }
+
+    /**
+     * Writes all records to the database.<br>
+     * After successful completion the batch is empty and all records are in the state valid.
+     * @param conn a valid JDBC connection
+     * @return the number of records written
+     */
+    public int flush(Connection conn)
+    {
+        if (conn==null)
+            throw new InvalidArgumentException("conn", conn);
+        // Write all records
+        List<DBRecordUpdate> pending = new ArrayList<DBRecordUpdate>();
+        DBDatabase pendingDb = null;
+        Timestamp timestamp = null;
+        int count = 0;
+        for (DBRecord rec : records)
+        {
+            if (rec.isValid()==false || rec.isModified()==false)
+                continue; // Nothing to do
+            DBRowSet rowset = rec.getRowSet();
+            DBDatabase db = rowset.getDatabase();
+            if (pendingDb!=db)
+            {   // different database
+                count += executePending(pendingDb, pending, conn);
+                pendingDb = db;
+            }
+            if (!(rowset instanceof DBTable))
+            {   // update individually
+                count += executePending(db, pending, conn);
+                rec.update(conn);
+                count++;
+                continue;
+            }
+            // Get the Timestamp (once per flush)
+            if (timestamp==null && rowset.getTimestampColumn()!=null)
+                timestamp = db.getUpdateTimestamp(conn);
+            // prepare the statement
+            DBRecordUpdate stmt = rowset.prepareUpdate(rec, timestamp, conn);
+            if (stmt==null)
+                continue;
+            if (stmt.getSetGenKeys()!=null || (batchTimestampUpdates==false && isTimestampChecked(stmt)))
+            {   // Generated key or row count is required: execute individually
+                count += executePending(db, pending, conn);
+                int affected = db.executeSQL(stmt.getSql(), stmt.getParams(), conn, stmt.getSetGenKeys());
+                rowset.completeUpdate(stmt, affected, conn);
+                count++;
+                continue;
+            }
+            // add to batch
+            pending.add(stmt);
+            if (pending.size()>=maxBatchSize)
+                count += executePending(db, pending, conn);
+        }
+        // execute remaining
+        count += executePending(pendingDb, pending, conn);
+        // done
+        clear();
+        return count;
+    }
+
+    /**
+     * Executes all pending statements as a batch and checks the number of affected records for each statement.
+     * @param db the database
+     * @param pending the pending statements
+     * @param conn a valid JDBC connection
+     * @return the number of records written
+     */
+    protected int executePending(DBDatabase db, List<DBRecordUpdate> pending, Connection conn)
+    {
+        int count = pending.size();
+        if (count==0)
+            return 0;
+        // Collect statements
+        String[] sqlCmd = new String[count];
+        Object[][] sqlCmdParams = null;
+        for (int i=0; i<count; i++)
+        {
+            DBRecordUpdate stmt = pending.get(i);
+            sqlCmd[i] = stmt.getSql();
+            if (stmt.getParams()!=null)
+            {
+                if (sqlCmdParams==null)
+                    sqlCmdParams = new Object[count][];
+                sqlCmdParams[i] = stmt.getParams();
+            }
+        }
+        // Execute batch
+        int[] affected = db.executeBatch(sqlCmd, sqlCmdParams, conn);
+        // Check and complete
+        for (int i=0; i<count; i++)
+        {
+            DBRecordUpdate stmt = pending.get(i);
+            int rows = (i<affected.length ? affected[i] : Statement.SUCCESS_NO_INFO);
+            if (rows==Statement.SUCCESS_NO_INFO)
+            {   // Driver does not supply row count
+                if (isTimestampChecked(stmt))
+                {   // concurrent changes cannot be detected
+                    log.error("Batch statement {} executed but no row count is available to check the timestamp. Use setBatchTimestampUpdates(false).", i);
+                    throw new UnexpectedReturnValueException(rows, "db.executeBatch()");
+                }
+                log.debug("Batch statement {} executed successfully but no row count is available.", i);
+                rows = 1;
+            }
+            stmt.getRecord().getRowSet().completeUpdate(stmt, rows, conn);
+        }
+        pending.clear();
+        return count;
+    }
+
+    /**
+     * Returns whether the row count of a statement is required in order to detect concurrent changes.<br>
+     * This is the case for updates of records with a timestamp column.
+     * @param stmt the statement
+     * @return true if the row count must be checked or false otherwise
+     */
+    protected boolean isTimestampChecked(DBRecordUpdate stmt)
+    {
+        DBRecord rec = stmt.getRecord();
+        return (rec.isNew()==false && rec.getRowSet().getTimestampColumn()!=null);
+    }
+}
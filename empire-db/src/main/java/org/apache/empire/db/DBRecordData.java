@@ -55,6 +55,9 @@ public abstract class DBRecordData extends DBObject
     // Logger
     private static final Logger log = LoggerFactory.getLogger(DBRecordData.class);
     
+    // whether setBeanProperty() is overridden by a subclass (determined on demand)
+    private transient Boolean beanPropertyOverridden = null;
+    
     // Field Info
     @Override
     public abstract int     getFieldCount();
@@ -368,6 +371,84 @@ public abstract class DBRecordData extends DBObject
         return isNull(getFieldIndex(column));
     }
 
+    /**
+     * Returns the value of a binary large object identified by the column index.<br>
+     * The data can be read from the input stream of the returned object
+     * or copied using {@link DBBlobData#copyTo(java.io.OutputStream)}.
+     * 
+     * @param index index of the column
+     * @return the blob data or null if the value is null
+     */
+    public DBBlobData getBlobData(int index)
+    {
+        Object value = getValue(index);
+        if (value == null || value instanceof DBBlobData)
+            return (DBBlobData)value;
+        return (value instanceof byte[]) ? new DBBlobData((byte[])value) : new DBBlobData(value.toString());
+    }
+
+    /**
+     * Returns the value of a binary large object for the desired column.
+     * 
+     * @param column identifying the column
+     * @return the blob data or null if the value is null
+     */
+    public final DBBlobData getBlobData(ColumnExpr column)
+    {
+        return getBlobData(getFieldIndex(column));
+    }
+
+    /**
+     * Returns the value of a character large object identified by the column index.<br>
+     * The data can be read from the reader of the returned object
+     * or copied using {@link DBClobData#copyTo(java.io.Writer)}.
+     * 
+     * @param index index of the column
+     * @return the clob data or null if the value is null
+     */
+    public DBClobData getClobData(int index)
+    {
+        Object value = getValue(index);
+        if (value == null || value instanceof DBClobData)
+            return (DBClobData)value;
+        return new DBClobData(value.toString());
+    }
+
+    /**
+     * Returns the value of a character large object for the desired column.
+     * 
+     * @param column identifying the column
+     * @return the clob data or null if the value is null
+     */
+    public final DBClobData getClobData(ColumnExpr column)
+    {
+        return getClobData(getFieldIndex(column));
+    }
+
+    /**
+     * Returns whether a subclass has overridden setBeanProperty().<br>
+     * In this case bean mappers (see {@link DBBeanMapper}) set all property values using setBeanProperty().
+     * @return true if setBeanProperty() has been overridden
+     */
+    protected boolean isBeanPropertyOverridden()
+    {
+        if (beanPropertyOverridden==null)
+        {   // find the implementation of setBeanProperty()
+            boolean overridden = false;
+            for (Class<?> c = getClass(); c!=DBRecordData.class && !overridden; c = c.getSuperclass())
+            {
+                try {
+                    c.getDeclaredMethod("setBeanProperty", ColumnExpr.class, Object.class, String.class, Object.class);
+                    overridden = true;
+                } catch (NoSuchMethodException e) {
+                    // not declared by this class
+                }
+            }
+            beanPropertyOverridden = Boolean.valueOf(overridden);
+        }
+        return beanPropertyOverridden.booleanValue();
+    }
+
     /**
      * Set a single property value of a java bean object used by readProperties.
      */
@@ -0,0 +1,315 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.empire.exceptions.InvalidArgumentException;
+
+/**
+ * DBRowCache<br>
+ * This class caches the field values of table rows by their primary key.<br>
+ * The cache is bounded: if the maximum size is exceeded, the least recently used row is removed.
+ * Optionally rows expire after a given time to live.
+ * <P>
+ * A row cache is assigned to a table using {@link DBTable#setRowCache(DBRowCache)}.
+ * Afterwards {@link DBTable#readRecord(DBRecord, Object[], java.sql.Connection)} reads rows from the cache if available.<br>
+ * All writes performed through Empire-db (record updates and deletes as well as 
+ * {@link DBDatabase#executeUpdate(DBCommand, java.sql.Connection)}, {@link DBDatabase#executeDelete(DBTable, DBCommand, java.sql.Connection)} etc.)
+ * invalidate the affected rows.
+ * Changes made by other applications or by plain SQL statements are not detected.
+ * Hence the cache should only be used for read-mostly tables and a time to live should be set 
+ * if such changes may occur.
+ * <P>
+ * Rows are invalidated when the statement is executed. If the connection is not in auto-commit mode 
+ * the cache is bypassed for this connection and cleared again when the transaction is completed 
+ * by {@link DBDatabase#commit(Connection)} or {@link DBDatabase#rollback(Connection)}. 
+ * Hence uncommitted rows are never cached and rows cached by other connections before the commit are discarded.
+ * <P>
+ * Note: If a transaction is completed directly on the JDBC connection, the cache is bypassed for this connection 
+ * until the next commit or rollback issued through the database.
+ */
+public class DBRowCache
+{
+    /**
+     * A cached row
+     */
+    private static final class Row
+    {
+        private final Object[] fields;
+        private final long     created;
+
+        public Row(Object[] fields, long created)
+        {
+            this.fields = fields;
+            this.created = created;
+        }
+    }
+
+    private final int  maxSize;
+    private final long timeToLive;
+    private final Map<Object, Row> rows;
+    // connections with uncommitted writes
+    private final Map<Connection, Boolean> pendingWrites = new WeakHashMap<Connection, Boolean>();
+    
+    private long version = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long invalidations = 0;
+
+    /**
+     * Creates a row cache
+     * @param maxSize the maximum number of rows cached
+     * @param timeToLive the time in milliseconds after which a cached row expires or 0 if rows never expire
+     */
+    public DBRowCache(int maxSize, long timeToLive)
+    {
+        if (maxSize<1)
+            throw new InvalidArgumentException("maxSize", maxSize);
+        if (timeToLive<0)
+            throw new InvalidArgumentException("timeToLive", timeToLive);
+        this.maxSize = maxSize;
+        this.timeToLive = timeToLive;
+        this.rows = new LinkedHashMap<Object, Row>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Row> eldest)
+            {
+                if (size() <= DBRowCache.this.maxSize)
+                    return false;
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns the maximum number of rows cached
+     * @return the maximum size
+     */
+    public int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    /**
+     * Returns the time after which a cached row expires
+     * @return the time to live in milliseconds or 0 if rows never expire
+     */
+    public long getTimeToLive()
+    {
+        return timeToLive;
+    }
+
+    /**
+     * Returns the number of rows currently cached
+     * @return the number of rows
+     */
+    public synchronized int getSize()
+    {
+        return rows.size();
+    }
+
+    /**
+     * Returns the number of rows served from the cache
+     * @return the number of hits
+     */
+    public synchronized long getHitCount()
+    {
+        return hits;
+    }
+
+    /**
+     * Returns the number of rows that were not found in the cache
+     * @return the number of misses
+     */
+    public synchronized long getMissCount()
+    {
+        return misses;
+    }
+
+    /**
+     * Returns the number of rows removed because the maximum size was exceeded 
+     * @return the number of evictions
+     */
+    public synchronized long getEvictionCount()
+    {
+        return evictions;
+    }
+
+    /**
+     * Returns the number of invalidations caused by writes
+     * @return the number of invalidations
+     */
+    public synchronized long getInvalidationCount()
+    {
+        return invalidations;
+    }
+    
+    /**
+     * Returns the ratio of hits to the total number of lookups 
+     * @return the hit rate between 0 and 1
+     */
+    public synchronized double getHitRate()
+    {
+        long total = hits + misses;
+        return (total>0 ? (double)hits / total : 0);
+    }
+
+    /**
+     * Returns the current version of the cache.<br>
+     * The version is incremented with every invalidation. 
+     * It must be obtained before a row is read from the database and passed to put().
+     * @return the cache version
+     */
+    public synchronized long getVersion()
+    {
+        return version;
+    }
+    
+    /**
+     * Returns a copy of the cached field values of a row
+     * @param key the primary key of the row
+     * @return the field values or null if the row is not cached or has expired
+     */
+    public synchronized Object[] get(Object[] key)
+    {
+        Object rowKey = getRowKey(key);
+        Row row = rows.get(rowKey);
+        if (row!=null && timeToLive>0 && System.currentTimeMillis() - row.created >= timeToLive)
+        {   // expired
+            rows.remove(rowKey);
+            row = null;
+        }
+        if (row==null)
+        {   misses++;
+            return null;
+        }
+        hits++;
+        return row.fields.clone();
+    }
+
+    /**
+     * Adds a row to the cache.<br>
+     * The row is not added if the cache has been invalidated since the version was obtained.
+     * @param key the primary key of the row
+     * @param fields the field values (will be copied)
+     * @param version the cache version obtained before the row was read
+     */
+    public synchronized void put(Object[] key, Object[] fields, long version)
+    {
+        if (version!=this.version)
+            return; // invalidated in the meantime
+        rows.put(getRowKey(key), new Row(fields.clone(), System.currentTimeMillis()));
+    }
+
+    /**
+     * Removes a row from the cache
+     * @param key the primary key of the row
+     */
+    public synchronized void remove(Object[] key)
+    {
+        version++;
+        invalidations++;
+        rows.remove(getRowKey(key));
+    }
+
+    /**
+     * Removes all rows from the cache
+     */
+    public synchronized void clear()
+    {
+        version++;
+        invalidations++;
+        rows.clear();
+    }
+
+    /**
+     * Registers a connection that has written uncommitted rows.<br>
+     * Connections in auto-commit mode are ignored.
+     * @param conn the connection
+     */
+    public synchronized void addPendingWrites(Connection conn)
+    {
+        try {
+            if (conn.getAutoCommit())
+                return;
+        } catch (SQLException e) {
+            // unknown: assume uncommitted
+        }
+        pendingWrites.put(conn, Boolean.TRUE);
+    }
+
+    /**
+     * Returns whether a connection has written uncommitted rows
+     * @param conn the connection
+     * @return true if the connection has uncommitted writes or false otherwise
+     */
+    public synchronized boolean hasPendingWrites(Connection conn)
+    {
+        return (!pendingWrites.isEmpty() && pendingWrites.containsKey(conn));
+    }
+
+    /**
+     * Unregisters a connection after its transaction has been completed
+     * @param conn the connection
+     * @return true if the connection had uncommitted writes or false otherwise
+     */
+    public synchronized boolean removePendingWrites(Connection conn)
+    {
+        return (pendingWrites.remove(conn)!=null);
+    }
+
+    /**
+     * Returns the map key for a primary key.<br>
+     * Integer values are converted to Long in order to make keys of different number types match.
+     * @param key the primary key
+     * @return the map key
+     */
+    protected Object getRowKey(Object[] key)
+    {
+        if (key==null || key.length==0)
+            throw new InvalidArgumentException("key", key);
+        if (key.length==1)
+            return getKeyValue(key[0]);
+        Object[] values = new Object[key.length];
+        for (int i=0; i<key.length; i++)
+            values[i] = getKeyValue(key[i]);
+        return Arrays.asList(values);
+    }
+    
+    private Object getKeyValue(Object value)
+    {
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte)
+            return Long.valueOf(((Number)value).longValue());
+        return value;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return "DBRowCache[size="+String.valueOf(rows.size())+", hits="+String.valueOf(hits)+", misses="+String.valueOf(misses)+", evictions="+String.valueOf(evictions)+"]";
+    }
+}
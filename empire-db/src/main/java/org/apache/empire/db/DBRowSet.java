@@ -27,6 +27,7 @@ import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -45,6 +46,7 @@ import org.apache.empire.db.exceptions.RecordNotFoundException;
 import org.apache.empire.db.exceptions.RecordUpdateFailedException;
 import org.apache.empire.db.exceptions.RecordUpdateInvalidException;
 import org.apache.empire.db.expr.column.DBCountExpr;
+import org.apache.empire.db.expr.compare.DBCompareExpr;
 import org.apache.empire.exceptions.InvalidArgumentException;
 import org.apache.empire.exceptions.ItemNotFoundException;
 import org.apache.empire.exceptions.NotSupportedException;
@@ -85,6 +87,75 @@ public abstract class DBRowSet extends DBExpr
             fields[index]=value;
         }
     }
+
+    /**
+     * This class holds the insert or update statement for a single record.
+     * It is created by prepareUpdate() and must be passed to completeUpdate() after execution.
+     */
+    protected static final class DBRecordUpdate
+    {
+        private final DBRecord  record;
+        private final String    sql;
+        private final Object[]  params;
+        private final DBDatabaseDriver.DBSetGenKeys setGenKeys;
+        private final Timestamp timestamp;
+        public DBRecordUpdate(DBRecord record, String sql, Object[] params, DBDatabaseDriver.DBSetGenKeys setGenKeys, Timestamp timestamp)
+        {
+            this.record = record;
+            this.sql = sql;
+            this.params = params;
+            this.setGenKeys = setGenKeys;
+            this.timestamp = timestamp;
+        }
+        public DBRecord getRecord()
+        {
+            return record;
+        }
+        public String getSql()
+        {
+            return sql;
+        }
+        public Object[] getParams()
+        {
+            return params;
+        }
+        public DBDatabaseDriver.DBSetGenKeys getSetGenKeys()
+        {
+            return setGenKeys;
+        }
+        public Timestamp getTimestamp()
+        {
+            return timestamp;
+        }
+    }
+    
+    /**
+     * This class maps the columns of a rowset to their index by identity.
+     * It is reset whenever a column is added or removed.
+     * As subclasses may modify the column list directly, it is also rebuilt if the list has been replaced or changed in size. 
+     */
+    private static final class DBColumnIndex
+    {
+        private final List<DBColumn> columns;
+        private final int size;
+        private final Map<DBColumn, Integer> indexMap;
+        public DBColumnIndex(List<DBColumn> columns)
+        {
+            this.columns = columns;
+            this.size = columns.size();
+            this.indexMap = new IdentityHashMap<DBColumn, Integer>(size);
+            for (int i=size-1; i>=0; i--)
+                indexMap.put(columns.get(i), i); // first occurrence wins
+        }
+        public boolean isValid(List<DBColumn> columns)
+        {
+            return (this.columns==columns && this.size==columns.size());
+        }
+        public Integer get(DBColumn column)
+        {
+            return indexMap.get(column);
+        }
+    }
     
     // Logger
     protected static final Logger log = LoggerFactory.getLogger(DBRowSet.class);
@@ -96,6 +167,10 @@ public abstract class DBRowSet extends DBExpr
     protected Map<DBColumn, DBColumn> columnReferences = null;
     // The column List
     protected List<DBColumn> columns          = new ArrayList<DBColumn>();
+    // Column index
+    private transient volatile DBColumnIndex columnIndex = null;
+    // incremented whenever records are modified (lost updates are irrelevant since only changes are detected)
+    private transient volatile long modificationCount = 0;
 
     /**
      * Constructs a DBRecord object set the current database object.
@@ -184,9 +259,14 @@ public abstract class DBRowSet extends DBExpr
     
     @Override 
     public int hashCode() 
-    {
-    	String nameWithAlias = getFullName()+"_"+getAlias();
-    	return nameWithAlias.hashCode();
+    {   // combine the hash codes of schema, name and alias (String caches its hash code)
+        String schema = (db!=null) ? db.getSchema() : null;
+        String name   = getName();
+        String alias  = getAlias();
+        int hash = (schema!=null) ? schema.hashCode() : 0;
+        hash = hash * 31 + ((name!=null)  ? name.hashCode()  : 0);
+        hash = hash * 31 + ((alias!=null) ? alias.hashCode() : 0);
+        return hash;
     }
 
     @Override
@@ -273,8 +353,45 @@ public abstract class DBRowSet extends DBExpr
      */
     public int getColumnIndex(DBColumn column)
     {
+        DBColumnIndex index = columnIndex;
+        if (index==null || index.isValid(columns)==false)
+        {   // (re)build the index
+            index = new DBColumnIndex(columns);
+            columnIndex = index;
+        }
+        Integer i = index.get(column);
+        if (i!=null)
+            return i.intValue();
+        // Not found: a different instance of an equal column (e.g. after deserialization) may only be found by name
+        if (column==null || column.getRowSet()==null)
+            return -1;
+        if (column.getRowSet()!=this && column.getRowSet().equals(this)==false)
+            return -1; // column of another rowset
         return columns.indexOf(column);
     }
+
+    /**
+     * Removes a column from the column list.
+     * <P>
+     * @param column the column to remove
+     */
+    protected void removeColumn(DBColumn column)
+    {
+        if (column==null || column.getRowSet()!=this)
+            throw new InvalidArgumentException("column", column);
+        if (columns.remove(column)==false)
+            throw new ItemNotFoundException(column.getName());
+        resetColumnIndex();
+    }
+
+    /**
+     * Resets the column index used by getColumnIndex().
+     * Must be called whenever the column list has been modified.
+     */
+    protected void resetColumnIndex()
+    {
+        columnIndex = null;
+    }
     
     /**
      * Gets the index of a particular column expression.
@@ -694,6 +811,30 @@ public abstract class DBRowSet extends DBExpr
      * @param conn a valid JDBC connection.
      */
     public void updateRecord(DBRecord rec, Connection conn)
+    {
+        // Get the new Timestamp
+        Timestamp timestamp = (timestampColumn!=null && conn!=null) ? db.getUpdateTimestamp(conn) : null;
+        // Prepare the statement
+        DBRecordUpdate stmt = prepareUpdate(rec, timestamp, conn);
+        if (stmt==null)
+            return; // Nothing to do
+        // Perform action
+        int affected = db.executeSQL(stmt.getSql(), stmt.getParams(), conn, stmt.getSetGenKeys());
+        // Complete
+        completeUpdate(stmt, affected, conn);
+    }
+
+    /**
+     * Creates the insert or update statement for a record without executing it.<BR>
+     * This is used by updateRecord() and by {@link DBRecordBatch} in order to execute multiple statements in a batch.<BR>
+     * After the statement has been executed, completeUpdate() must be called with the number of affected records.
+     * <P>
+     * @param rec the DBRecord object. contains all fields and the field properties
+     * @param timestamp the update timestamp (required only if the rowset has a timestamp column)
+     * @param conn a valid JDBC connection.
+     * @return the statement or null if the record has not been modified or there is nothing to update
+     */
+    protected DBRecordUpdate prepareUpdate(DBRecord rec, Timestamp timestamp, Connection conn)
     {
         // check updateable
         if (isUpdateable()==false)
@@ -705,9 +846,8 @@ public abstract class DBRowSet extends DBExpr
             throw new ObjectNotValidException(rec);
         if (conn == null)
             throw new InvalidArgumentException("conn", conn);
-        // Get the new Timestamp
+        // Get the name
         String name = getName();
-        Timestamp timestamp = (timestampColumn!=null) ? db.getUpdateTimestamp(conn) : null;
         DBDatabaseDriver.DBSetGenKeys setGenKey = null;
         // Get the fields and the flags
         Object[] fields = rec.getFields();
@@ -815,15 +955,29 @@ public abstract class DBRowSet extends DBExpr
         else
         {	// Not modified
             log.info("updateRecord: " + name + " record has not been modified! ");
-            return;
+            return null;
         }
         if (setCount == 0)
         {   // Nothing to update
             log.info("updateRecord: " + name + " nothing to update or insert!");
-            return;
+            return null;
         }
-        // Perform action
-        int affected = db.executeSQL(sql, cmd.getParamValues(), conn, setGenKey);
+        // The statement
+        return new DBRecordUpdate(rec, sql, cmd.getParamValues(), setGenKey, timestamp);
+    }
+
+    /**
+     * Checks the number of affected records of an insert or update statement and sets the record state to valid.<BR>
+     * <P>
+     * @param stmt the statement obtained from prepareUpdate()
+     * @param affected the number of records affected by the statement
+     * @param conn the connection used to execute the statement
+     */
+    protected void completeUpdate(DBRecordUpdate stmt, int affected, Connection conn)
+    {
+        DBRecord rec = stmt.getRecord();
+        // Notify
+        onRecordsModified(getRecordKey(rec), conn);
         if (affected < 0)
         {   // Update Failed
             throw new UnexpectedReturnValueException(affected, "db.executeSQL()");
@@ -841,12 +995,48 @@ public abstract class DBRowSet extends DBExpr
         { // Set the correct Timestamp
             int i = rec.getFieldIndex(timestampColumn);
             if (i >= 0)
-                fields[i] = timestamp;
+                rec.getFields()[i] = stmt.getTimestamp();
         }
         // Change State
         rec.updateComplete(rec.getRowSetData());
     }
     
+    /**
+     * Called after records of this rowset have been inserted, updated or deleted.<BR>
+     * Override this function in order to invalidate data derived from this rowset. Overrides must call the base implementation.
+     * <P>
+     * @param key the primary key of the record modified or null if any number of records may have been modified
+     * @param conn the connection used to modify the records
+     */
+    protected void onRecordsModified(Object[] key, Connection conn)
+    {
+        modificationCount++;
+    }
+
+    /**
+     * Called after a transaction has been committed or rolled back by {@link DBDatabase#commit(Connection)} or {@link DBDatabase#rollback(Connection)}.<BR>
+     * Override this function in order to release data that depends on uncommitted changes. Overrides must call the base implementation.
+     * <P>
+     * @param conn the connection of the transaction
+     * @param commit true if the transaction has been committed or false if it has been rolled back
+     */
+    protected void onTransactionComplete(Connection conn, boolean commit)
+    {
+        // nothing to do
+    }
+
+    /**
+     * Returns a counter that is incremented whenever records of this rowset are inserted, updated or deleted through Empire-db.<BR>
+     * This may be used to detect whether data derived from this rowset is outdated. 
+     * Only the fact that the value has changed is significant.
+     * <P>
+     * @return the modification counter
+     */
+    public long getModificationCount()
+    {
+        return modificationCount;
+    }
+    
     /**
      * Deletes a single record from the database.<BR>
      * <P>
@@ -861,18 +1051,53 @@ public abstract class DBRowSet extends DBExpr
     /**
      * Deletes all records which reference this table.
      * <P>
+     * Referencing records are deleted set based, i.e. with a single delete statement per table
+     * using a subquery to identify the records of the next level.<br>
+     * This must be enabled for each referencing table (see {@link DBTable#setCascadeDeleteSetBased(boolean)}).
+     * For all other tables deleteReferenceRecords() is called instead.
+     * <P>
      * @param key the key the record to be deleted
      * @param conn a valid connection
      */
     protected final void deleteAllReferences(Object[] key, Connection conn)
     {
-        // Merge Sub-Records
-        List<DBRelation> relations = db.getRelations();
         DBColumn[] keyColumns = getKeyColumns();
         if (keyColumns==null)
             return; // No primary key - no references!
-        // Find all relations
-        for (DBRelation rel : relations)
+        // Build the cascade graph once
+        Map<DBRowSet, List<DBReference[]>> cascadeMap = getCascadeDeleteMap();
+        List<DBReference[]> refsList = cascadeMap.get(this);
+        if (refsList==null)
+            return; // No cascading references
+        // Delete all references
+        Set<DBRowSet> path = Collections.newSetFromMap(new IdentityHashMap<DBRowSet, Boolean>());
+        path.add(this);
+        for (DBReference[] refs : refsList)
+        {
+            DBRowSet rs = refs[0].getSourceColumn().getRowSet(); 
+            if (refs.length==key.length && rs.isCascadeDeleteSetBased())
+            {   // Set based delete
+                DBCompareExpr[] constraints = new DBCompareExpr[refs.length];
+                for (int i=0; i<refs.length; i++)
+                    constraints[i] = refs[i].getSourceColumn().is(key[i]);
+                rs.deleteReferenceSet(constraints, cascadeMap, path, conn);
+            }
+            else
+            {   // Delete record by record
+                rs.deleteReferenceRecords(refs, key, conn);
+            }
+        }
+    }
+
+    /**
+     * Returns a map of all rowsets referenced by relations with cascade action CASCADE_RECORDS.
+     * For each referenced rowset the map contains the references of all relations targeting the first key column.
+     * @return the cascade map
+     */
+    private Map<DBRowSet, List<DBReference[]>> getCascadeDeleteMap()
+    {
+        Map<DBRowSet, List<DBReference[]>> cascadeMap = new IdentityHashMap<DBRowSet, List<DBReference[]>>();
+        for (DBRelation rel : db.getRelations())
         {   // Check cascade
             if (rel.getOnDeleteAction()!=DBCascadeAction.CASCADE_RECORDS)
                 continue;
@@ -880,13 +1105,111 @@ public abstract class DBRowSet extends DBExpr
             DBReference[] refs = rel.getReferences();
             for (int i=0; i<refs.length; i++)
             {
-                if (refs[i].getTargetColumn().equals(keyColumns[0]))
+                DBRowSet target = refs[i].getTargetColumn().getRowSet();
+                DBColumn[] targetKey = target.getKeyColumns();
+                if (targetKey!=null && refs[i].getTargetColumn().equals(targetKey[0]))
                 {   // Found a reference on RowSet
-                    DBRowSet rs = refs[0].getSourceColumn().getRowSet(); 
-                    rs.deleteReferenceRecords(refs, key, conn);
+                    List<DBReference[]> refsList = cascadeMap.get(target);
+                    if (refsList==null)
+                    {   refsList = new ArrayList<DBReference[]>();
+                        cascadeMap.put(target, refsList);
+                    }
+                    refsList.add(refs);
                 }
             }
         }
+        return cascadeMap;
+    }
+
+    /**
+     * Returns whether referencing records of this rowset may be deleted with a single statement by a cascade delete.<br>
+     * Otherwise records are deleted one by one by calling deleteReferenceRecords().<br>
+     * The default is false. Tables may enable set based deletion (see {@link DBTable#setCascadeDeleteSetBased(boolean)}).
+     * @return true if set based deletion is allowed or false otherwise
+     */
+    protected boolean isCascadeDeleteSetBased()
+    {
+        return false;
+    }
+
+    /**
+     * Deletes all records of this rowset matching the given constraints as well as all records referencing them.<br>
+     * Referencing records are deleted first, i.e. the cascade is performed bottom-up.
+     * <P>
+     * @param constraints the constraints identifying the records to delete
+     * @param cascadeMap the cascade map of the database
+     * @param path the rowsets on the current cascade path (used to detect cycles)
+     * @param conn a valid connection
+     */
+    protected void deleteReferenceSet(DBCompareExpr[] constraints, Map<DBRowSet, List<DBReference[]>> cascadeMap, Set<DBRowSet> path, Connection conn)
+    {
+        // Delete references first
+        DBColumn[] keyColumns = getKeyColumns();
+        List<DBReference[]> refsList = cascadeMap.get(this);
+        if (refsList!=null && keyColumns!=null)
+        {   // Process all references
+            path.add(this);
+            for (DBReference[] refs : refsList)
+            {
+                DBRowSet rs = refs[0].getSourceColumn().getRowSet();
+                if (refs.length==1 && !path.contains(rs) && rs.isCascadeDeleteSetBased())
+                {   // Select keys with subquery
+                    DBCommand sub = db.createCommand();
+                    sub.select(refs[0].getTargetColumn());
+                    sub.where(constraints);
+                    DBCompareExpr subConstraint = refs[0].getSourceColumn().in(new DBSubQueryExpr(sub));
+                    rs.deleteReferenceSet(new DBCompareExpr[] { subConstraint }, cascadeMap, path, conn);
+                }
+                else
+                {   // Query parent keys and delete record by record
+                    DBCommand cmd = db.createCommand();
+                    for (int i=0; i<refs.length; i++)
+                        cmd.select(refs[i].getTargetColumn());
+                    cmd.where(constraints);
+                    List<Object[]> parentKeys = db.queryObjectList(cmd, conn);
+                    for (Object[] parentKey : parentKeys)
+                        rs.deleteReferenceRecords(refs, parentKey, conn);
+                }
+            }
+            path.remove(this);
+        }
+        // Delete records
+        DBCommand cmd = db.createCommand();
+        cmd.where(constraints);
+        int affected = db.executeSQL(cmd.getDelete((DBTable)this), cmd.getParamValues(), conn);
+        if (affected<0)
+            throw new UnexpectedReturnValueException(affected, "db.executeSQL()");
+        onRecordsModified(null, conn);
+        // Done
+        log.info("Cascade delete removed {} records from table {}", affected, getName());
+    }
+
+    /**
+     * This class renders a subquery without enclosing parentheses for use with the IN operator.
+     */
+    private static class DBSubQueryExpr extends DBExpr
+    {
+        private final static long serialVersionUID = 1L;
+        private final DBCommand cmd;
+        public DBSubQueryExpr(DBCommand cmd)
+        {
+            this.cmd = cmd;
+        }
+        @Override
+        public DBDatabase getDatabase()
+        {
+            return cmd.getDatabase();
+        }
+        @Override
+        public void addReferencedColumns(Set<DBColumn> list)
+        {
+            // nothing to do
+        }
+        @Override
+        public void addSQL(StringBuilder buf, long context)
+        {
+            cmd.getSelect(buf);
+        }
     }
     
     /**
@@ -910,6 +1233,7 @@ public abstract class DBRowSet extends DBExpr
                 cmd.where(refs[i].getSourceColumn().is(parentKey[i]));
             if (db.executeSQL(cmd.getDelete((DBTable)this), cmd.getParamValues(), conn)<0)
                 throw new UnexpectedReturnValueException(-1, "db.executeSQL()");
+            onRecordsModified(null, conn);
         }
         else
         {   // Query all keys
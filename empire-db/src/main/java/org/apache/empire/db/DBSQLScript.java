@@ -21,9 +21,16 @@ package org.apache.empire.db;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
 
 import org.apache.empire.db.exceptions.EmpireSQLException;
+import org.apache.empire.exceptions.InternalException;
 import org.apache.empire.exceptions.InvalidArgumentException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,6 +40,11 @@ import org.slf4j.LoggerFactory;
  * This class is a collection of sql command strings.<br>
  * The class is used for obtaining and executing DDL commands supplied by the
  * database driver (@see {@link DBDatabaseDriver#getDDLScript(DBCmdType, DBObject, DBSQLScript)})
+ * <P>
+ * Statements may be tagged with the database object they create or modify and the objects they require.
+ * This information is used by executeParallel() in order to execute independent statements concurrently.
+ * Scripts containing statements that change the state of a connection (e.g. USE database or ALTER SESSION) 
+ * must not be executed in parallel.
  */
 public class DBSQLScript implements Iterable<String>
 {
@@ -48,6 +60,8 @@ public class DBSQLScript implements Iterable<String>
     {
         private String   cmd;
         private Object[] params;
+        private DBObject object;
+        private DBObject[] requires;
 
         public SQLStmt(String cmd, Object[] params)
         {
@@ -55,6 +69,14 @@ public class DBSQLScript implements Iterable<String>
             this.params = params;
         }
 
+        public SQLStmt(String cmd, Object[] params, DBObject object, DBObject[] requires)
+        {
+            this.cmd = cmd;
+            this.params = params;
+            this.object = object;
+            this.requires = requires;
+        }
+
         public String getCmd()
         {
             return cmd;
@@ -74,6 +96,40 @@ public class DBSQLScript implements Iterable<String>
         {
             this.params = params;
         }
+
+        public DBObject getObject()
+        {
+            return object;
+        }
+
+        public DBObject[] getRequires()
+        {
+            return requires;
+        }
+    }
+
+    /**
+     * Receives notifications about the statements executed by executeParallel().<br>
+     * The methods may be called from several threads concurrently.
+     */
+    public interface ExecutionListener
+    {
+        /**
+         * Called after a statement has been executed successfully
+         * @param index the index of the statement
+         * @param sql the statement
+         * @param affected the number of records affected
+         * @param nanos the execution time in nanoseconds
+         */
+        void stmtExecuted(int index, String sql, int affected, long nanos);
+
+        /**
+         * Called after a statement has failed
+         * @param index the index of the statement
+         * @param sql the statement
+         * @param e the exception
+         */
+        void stmtFailed(int index, String sql, SQLException e);
     }
 
     /**
@@ -144,6 +200,23 @@ public class DBSQLScript implements Iterable<String>
         sqlStmtList.add(new SQLStmt(sql, params));
     }
 
+    /**
+     * Adds a statement which creates or modifies a particular database object.<br>
+     * Statements on the same object are executed in the order in which they have been added.
+     * A statement is executed only after all previous statements on the objects it requires
+     * and a statement on an object only after all previous statements requiring this object.
+     * Statements without an object are executed after all previous statements and before all subsequent statements.
+     * 
+     * @param sql the statement
+     * @param params the statement parameters (may be null)
+     * @param object the object created or modified by the statement (e.g. the table)
+     * @param requires the objects which must have been created or modified before (e.g. referenced tables)
+     */
+    public void addStmt(String sql, Object[] params, DBObject object, DBObject... requires)
+    {
+        sqlStmtList.add(new SQLStmt(sql, params, object, requires));
+    }
+
     /**
      * Adds a statement to the script.<br>
      * The supplied StringBuilder will be reset to a length of 0
@@ -157,6 +230,22 @@ public class DBSQLScript implements Iterable<String>
         sql.setLength(0);
     }
 
+    /**
+     * Adds a statement which creates or modifies a particular database object.<br>
+     * The supplied StringBuilder will be reset to a length of 0
+     * @see DBSQLScript#addStmt(String, Object[], DBObject, DBObject...)
+     * 
+     * @param sql the statement
+     * @param object the object created or modified by the statement
+     * @param requires the objects which must have been created or modified before
+     */
+    public final void addStmt(StringBuilder sql, DBObject object, DBObject... requires)
+    {
+        addStmt(sql.toString(), null, object, requires);
+        // Clear Builder
+        sql.setLength(0);
+    }
+
     /**
      * Adds an insert statement 
      * @param cmd the insert command
@@ -165,7 +254,12 @@ public class DBSQLScript implements Iterable<String>
     {
         if (cmd == null)
             throw new InvalidArgumentException("cmd", cmd);
-        addStmt(cmd.getInsert(), cmd.getParamValues());
+        String sql = cmd.getInsert();
+        DBRowSet rowset = cmd.getUpdateRowSet();
+        if (rowset!=null)
+            addStmt(sql, cmd.getParamValues(), rowset, getReferencedTables(rowset));
+        else
+            addStmt(sql, cmd.getParamValues());
     }
 
     /**
@@ -399,6 +493,342 @@ public class DBSQLScript implements Iterable<String>
         }
     }
 
+    /**
+     * Executes the SQL Statements concurrently using connections obtained from a data source.<br>
+     * The order of execution is determined by the objects supplied with each statement 
+     * (see {@link #addStmt(String, Object[], DBObject, DBObject...)}). 
+     * Hence e.g. the indexes of different tables may be created concurrently.<br>
+     * Each thread uses its own connection. If a connection is not in auto-commit mode, 
+     * each statement is committed after execution so that it is visible to the other connections.
+     * Statements which change the state of a connection (e.g. USE database or ALTER SESSION) only affect the connection on which they are executed.
+     * Hence scripts containing such statements are not safe for parallel execution and must be executed by run() instead.
+     * 
+     * @param driver the driver used for statement execution
+     * @param dataSource the data source providing the connections
+     * @param maxThreads the maximum number of statements executed concurrently
+     * @param ignoreErrors true if errors should be ignored
+     * @param listener a listener that is notified about each statement (may be null)
+     * @return number of records affected
+     */
+    public int executeParallel(DBDatabaseDriver driver, DataSource dataSource, int maxThreads, boolean ignoreErrors, ExecutionListener listener)
+    {
+        if (driver==null)
+            throw new InvalidArgumentException("driver", driver);
+        if (dataSource==null)
+            throw new InvalidArgumentException("dataSource", dataSource);
+        if (maxThreads<1)
+            throw new InvalidArgumentException("maxThreads", maxThreads);
+        int count = sqlStmtList.size();
+        if (count==0)
+            return 0;
+        log.debug("Running script containing {} statements using {} threads.", count, maxThreads);
+        long start = System.currentTimeMillis();
+        // Start workers
+        ParallelExecution execution = new ParallelExecution(getStmtDependencies(), ignoreErrors);
+        Thread[] workers = new Thread[Math.min(maxThreads, count)];
+        for (int i=0; i<workers.length; i++)
+        {
+            workers[i] = new Thread(new ParallelWorker(execution, driver, dataSource, listener), "DBSQLScript-"+String.valueOf(i+1));
+            workers[i].start();
+        }
+        // Wait for completion
+        try {
+            for (Thread worker : workers)
+                worker.join();
+        } catch (InterruptedException e) {
+            execution.abort(e);
+            Thread.currentThread().interrupt();
+            throw new InternalException(e);
+        }
+        // Check error
+        Throwable error = execution.getError();
+        if (error instanceof SQLException)
+            throw new EmpireSQLException(driver, (SQLException)error);
+        if (error instanceof RuntimeException)
+            throw (RuntimeException)error;
+        if (error!=null)
+            throw new InternalException(error);
+        log.debug("Script completed in {} ms. {} records affected.", System.currentTimeMillis()-start, execution.getAffected());
+        return execution.getAffected();
+    }
+
+    /**
+     * Executes the SQL Statements concurrently using connections obtained from a data source.
+     * @see DBSQLScript#executeParallel(DBDatabaseDriver, DataSource, int, boolean, ExecutionListener)
+     * 
+     * @param driver the driver used for statement execution
+     * @param dataSource the data source providing the connections
+     * @param maxThreads the maximum number of statements executed concurrently
+     * @return number of records affected
+     */
+    public final int executeParallel(DBDatabaseDriver driver, DataSource dataSource, int maxThreads)
+    {
+        return executeParallel(driver, dataSource, maxThreads, false, null);
+    }
+
+    /**
+     * Returns the indexes of the statements which must be executed before each statement.
+     * 
+     * @return an array containing the indexes of the preceding statements for each statement
+     */
+    protected int[][] getStmtDependencies()
+    {
+        int count = sqlStmtList.size();
+        int[][] dependencies = new int[count][];
+        Map<DBObject, Integer> lastStmt = new IdentityHashMap<DBObject, Integer>();
+        Map<DBObject, List<Integer>> readers = new IdentityHashMap<DBObject, List<Integer>>();
+        int barrier = -1;
+        for (int i=0; i<count; i++)
+        {
+            SQLStmt stmt = sqlStmtList.get(i);
+            List<Integer> preds = new ArrayList<Integer>();
+            if (stmt.getObject()==null)
+            {   // depends on all statements since the last barrier
+                for (int j=Math.max(barrier, 0); j<i; j++)
+                    preds.add(j);
+                lastStmt.clear();
+                readers.clear();
+                barrier = i;
+            }
+            else
+            {   // depends on the last statement of each object
+                if (barrier>=0)
+                    preds.add(barrier);
+                addLastStmt(preds, lastStmt.get(stmt.getObject()));
+                for (int r=0; stmt.getRequires()!=null && r<stmt.getRequires().length; r++)
+                    addLastStmt(preds, lastStmt.get(stmt.getRequires()[r]));
+                // and on all statements which require the object since it was last modified
+                List<Integer> objectReaders = readers.remove(stmt.getObject());
+                for (int r=0; objectReaders!=null && r<objectReaders.size(); r++)
+                    addLastStmt(preds, objectReaders.get(r));
+                lastStmt.put(stmt.getObject(), i);
+                // remember readers
+                for (int r=0; stmt.getRequires()!=null && r<stmt.getRequires().length; r++)
+                {
+                    DBObject required = stmt.getRequires()[r];
+                    if (required==null || required==stmt.getObject())
+                        continue;
+                    List<Integer> list = readers.get(required);
+                    if (list==null)
+                    {   list = new ArrayList<Integer>();
+                        readers.put(required, list);
+                    }
+                    list.add(i);
+                }
+            }
+            dependencies[i] = new int[preds.size()];
+            for (int p=0; p<dependencies[i].length; p++)
+                dependencies[i][p] = preds.get(p);
+        }
+        return dependencies;
+    }
+
+    private static void addLastStmt(List<Integer> preds, Integer index)
+    {
+        if (index!=null && !preds.contains(index))
+            preds.add(index);
+    }
+
+    /**
+     * Returns the tables referenced by the foreign keys of a rowset
+     * @param rowset the rowset
+     * @return the referenced tables
+     */
+    protected static DBObject[] getReferencedTables(DBRowSet rowset)
+    {
+        if (!(rowset instanceof DBTable))
+            return null;
+        List<DBRelation> relations = ((DBTable)rowset).getForeignKeyRelations();
+        List<DBObject> tables = new ArrayList<DBObject>(relations.size());
+        for (DBRelation r : relations)
+        {
+            DBTable table = r.getReferencedTable();
+            if (table!=null && table!=rowset && !tables.contains(table))
+                tables.add(table);
+        }
+        return tables.toArray(new DBObject[tables.size()]);
+    }
+
+    /**
+     * Schedules the statements of a parallel execution
+     */
+    private static final class ParallelExecution
+    {
+        private final int[][] successors;
+        private final int[] pending;
+        private final LinkedList<Integer> ready = new LinkedList<Integer>();
+        private final boolean ignoreErrors;
+        private int completed = 0;
+        private int affected = 0;
+        private Throwable error = null;
+        private boolean aborted = false;
+
+        public ParallelExecution(int[][] dependencies, boolean ignoreErrors)
+        {
+            this.ignoreErrors = ignoreErrors;
+            int count = dependencies.length;
+            this.pending = new int[count];
+            int[] succCount = new int[count];
+            for (int i=0; i<count; i++)
+            {
+                pending[i] = dependencies[i].length;
+                for (int p : dependencies[i])
+                    succCount[p]++;
+                if (pending[i]==0)
+                    ready.add(i);
+            }
+            this.successors = new int[count][];
+            for (int i=0; i<count; i++)
+                successors[i] = new int[succCount[i]];
+            for (int i=0; i<count; i++)
+            {
+                for (int p : dependencies[i])
+                    successors[p][--succCount[p]] = i;
+            }
+        }
+
+        /**
+         * Returns the index of the next statement to execute or -1 if there is none
+         */
+        public synchronized int next()
+            throws InterruptedException
+        {
+            while (true)
+            {
+                if (aborted || completed==pending.length)
+                    return -1;
+                if (!ready.isEmpty())
+                    return ready.removeFirst();
+                wait();
+            }
+        }
+
+        public synchronized void complete(int index, int count, SQLException e)
+        {
+            completed++;
+            affected += (count >= 0 ? count : 0);
+            if (e!=null && ignoreErrors==false)
+            {   // stop execution
+                abort(e);
+                return;
+            }
+            for (int s : successors[index])
+            {
+                if (--pending[s]==0)
+                    ready.add(s);
+            }
+            notifyAll();
+        }
+
+        public synchronized void abort(Throwable e)
+        {
+            if (error==null)
+                error = e;
+            aborted = true;
+            notifyAll();
+        }
+
+        public synchronized Throwable getError()
+        {
+            return error;
+        }
+
+        public synchronized int getAffected()
+        {
+            return affected;
+        }
+    }
+
+    private static void close(Connection conn)
+    {
+        try
+        {   // close connection
+            if (conn!=null)
+                conn.close();
+        } catch (SQLException e) {
+            log.warn("Unable to close connection: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Rolls back the current transaction of a connection which is not in auto-commit mode
+     */
+    private static void rollback(Connection conn)
+    {
+        try
+        {   // rollback
+            if (conn!=null && conn.getAutoCommit()==false)
+                conn.rollback();
+        } catch (SQLException e) {
+            log.warn("Unable to rollback connection: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Executes statements of a parallel execution on its own connection
+     */
+    private final class ParallelWorker implements Runnable
+    {
+        private final ParallelExecution execution;
+        private final DBDatabaseDriver driver;
+        private final DataSource dataSource;
+        private final ExecutionListener listener;
+
+        public ParallelWorker(ParallelExecution execution, DBDatabaseDriver driver, DataSource dataSource, ExecutionListener listener)
+        {
+            this.execution = execution;
+            this.driver = driver;
+            this.dataSource = dataSource;
+            this.listener = listener;
+        }
+
+        @Override
+        public void run()
+        {
+            Connection conn = null;
+            try
+            {   // Obtain connection
+                conn = dataSource.getConnection();
+                for (int i = execution.next(); i>=0; i = execution.next())
+                {
+                    SQLStmt stmt = sqlStmtList.get(i);
+                    try
+                    {   // Execute Statement
+                        log.debug("Executing: {}", stmt.getCmd());
+                        long start = System.nanoTime();
+                        int count = driver.executeSQL(stmt.getCmd(), stmt.getParams(), conn, null);
+                        if (conn.getAutoCommit()==false)
+                            conn.commit();
+                        long nanos = System.nanoTime() - start;
+                        if (listener!=null)
+                            listener.stmtExecuted(i, stmt.getCmd(), count, nanos);
+                        execution.complete(i, count, null);
+                    }
+                    catch (SQLException e)
+                    {   // SQLException
+                        log.error(e.toString(), e);
+                        // the transaction may be unusable after an error (e.g. on PostgreSQL)
+                        rollback(conn);
+                        if (listener!=null)
+                            listener.stmtFailed(i, stmt.getCmd(), e);
+                        execution.complete(i, 0, e);
+                    }
+                }
+            } catch (SQLException e) {
+                log.error("Unable to obtain a connection for script execution.", e);
+                execution.abort(e);
+            } catch (InterruptedException e) {
+                execution.abort(e);
+            } catch (RuntimeException e) {
+                log.error(e.toString(), e);
+                execution.abort(e);
+            } finally {
+                rollback(conn);
+                close(conn);
+            }
+        }
+    }
+
     /**
      * Executes all statements one by one. Replaced by executeAll()
      * 
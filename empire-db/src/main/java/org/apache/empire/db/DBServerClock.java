@@ -0,0 +1,269 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+
+import org.apache.empire.db.exceptions.EmpireSQLException;
+import org.apache.empire.exceptions.InvalidArgumentException;
+import org.apache.empire.exceptions.UnexpectedReturnValueException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * DBServerClock<br>
+ * This class provides update timestamps based on the clock of the database server without querying the server for every timestamp.<br>
+ * The server time is queried once per resync interval. In between, timestamps are calculated locally from the elapsed
+ * System.nanoTime() and the drift between the local and the server clock measured at the previous synchronizations.
+ * <P>
+ * Timestamps are strictly increasing, even if the server clock is set back.<br>
+ * If a precision is set, timestamps are truncated to it and never decrease, but successive timestamps may be equal.
+ * This must be used if the timestamp columns store a lower precision than milliseconds (e.g. Oracle DATE columns),
+ * since otherwise the timestamp kept in a record would differ from the value stored in the database.<br>
+ * If the estimated drift since the last synchronization exceeds the maximum drift,
+ * the server time is queried again. Hence for an unstable clock the server is queried for every timestamp.
+ * <P>
+ * A server clock is used by drivers whose update timestamps are provided by the database server (e.g. Oracle).
+ */
+public class DBServerClock implements Serializable
+{
+    private final static long serialVersionUID = 1L;
+
+    // Logger
+    private static final Logger log = LoggerFactory.getLogger(DBServerClock.class);
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    private final DBDatabaseDriver driver;
+    private final String timeQuery;
+
+    private long   resyncInterval = 60000; // 1 minute
+    private long   maxDrift = 500;         // 0.5 seconds
+    private long   precision = 1;          // 1 millisecond
+
+    // calibration
+    private boolean synced     = false;
+    private long    syncNanos  = 0;
+    private long    syncMillis = 0;
+    private double  driftRate  = 0.0d;
+    private long    lastMillis = 0;
+    private int     syncCount  = 0;
+
+    /**
+     * Creates a server clock
+     * @param driver the driver used to query the server time
+     * @param timeQuery the statement which returns the current time of the database server, e.g. "select systimestamp from dual"
+     */
+    public DBServerClock(DBDatabaseDriver driver, String timeQuery)
+    {
+        this.driver = driver;
+        this.timeQuery = timeQuery;
+    }
+
+    /**
+     * Returns the interval after which the clock is synchronized with the server
+     * @return the resync interval in milliseconds
+     */
+    public long getResyncInterval()
+    {
+        return resyncInterval;
+    }
+
+    /**
+     * Sets the interval after which the clock is synchronized with the server
+     * @param resyncInterval the resync interval in milliseconds. 0 queries the server for every timestamp.
+     */
+    public synchronized void setResyncInterval(long resyncInterval)
+    {
+        if (resyncInterval < 0)
+            throw new InvalidArgumentException("resyncInterval", resyncInterval);
+        this.resyncInterval = resyncInterval;
+    }
+
+    /**
+     * Returns the maximum drift tolerated between two synchronizations
+     * @return the maximum drift in milliseconds
+     */
+    public long getMaxDrift()
+    {
+        return maxDrift;
+    }
+
+    /**
+     * Sets the maximum drift tolerated between two synchronizations.
+     * @param maxDrift the maximum drift in milliseconds
+     */
+    public synchronized void setMaxDrift(long maxDrift)
+    {
+        if (maxDrift < 0)
+            throw new InvalidArgumentException("maxDrift", maxDrift);
+        this.maxDrift = maxDrift;
+    }
+
+    /**
+     * Returns the precision of the timestamps
+     * @return the precision in milliseconds
+     */
+    public long getPrecision()
+    {
+        return precision;
+    }
+
+    /**
+     * Sets the precision of the timestamps. Timestamps are truncated to a multiple of the precision.<br>
+     * For a precision of more than one millisecond timestamps are not strictly increasing.
+     * @param precision the precision in milliseconds, e.g. 1000 for timestamps in seconds
+     */
+    public synchronized void setPrecision(long precision)
+    {
+        if (precision < 1)
+            throw new InvalidArgumentException("precision", precision);
+        this.precision = precision;
+    }
+
+    /**
+     * Returns the measured drift of the server clock relative to the local clock
+     * @return the drift in milliseconds per millisecond
+     */
+    public synchronized double getDriftRate()
+    {
+        return driftRate;
+    }
+
+    /**
+     * Returns the number of times the server time has been queried
+     * @return the number of synchronizations
+     */
+    public synchronized int getSyncCount()
+    {
+        return syncCount;
+    }
+
+    /**
+     * Discards the calibration. The next timestamp will query the server time.
+     */
+    public synchronized void reset()
+    {
+        synced = false;
+        driftRate = 0.0d;
+    }
+
+    /**
+     * Returns the current time of the database server.
+     * @param conn a valid connection to the database, used if the clock needs to be synchronized
+     * @return the timestamp
+     */
+    public synchronized Timestamp getTimestamp(Connection conn)
+    {
+        long now = System.nanoTime();
+        long elapsed = (now - syncNanos) / NANOS_PER_MILLI;
+        if (!synced || elapsed >= resyncInterval || Math.abs(driftRate * elapsed) > maxDrift)
+        {   // synchronize now
+            sync(conn);
+            now = System.nanoTime();
+            elapsed = (now - syncNanos) / NANOS_PER_MILLI;
+        }
+        // calculate
+        long millis = syncMillis + elapsed + Math.round(driftRate * elapsed);
+        if (precision > 1)
+        {   // truncate
+            millis -= (millis % precision);
+            if (millis < lastMillis)
+                millis = lastMillis; // never decreasing
+        }
+        else if (millis <= lastMillis)
+            millis = lastMillis + 1; // strictly increasing
+        lastMillis = millis;
+        return new Timestamp(millis);
+    }
+
+    /**
+     * Queries the server time and updates the calibration
+     * @param conn a valid connection to the database
+     */
+    protected void sync(Connection conn)
+    {
+        long start = System.nanoTime();
+        Timestamp serverTime = queryServerTime(conn);
+        long end = System.nanoTime();
+        if (serverTime == null)
+            throw new UnexpectedReturnValueException(serverTime, timeQuery);
+        syncCount++;
+        // assume the server time was taken in the middle of the round trip
+        long nanos = start + (end - start) / 2;
+        long millis = serverTime.getTime();
+        if (synced)
+        {   // measure drift
+            long elapsed = (nanos - syncNanos) / NANOS_PER_MILLI;
+            long deviation = millis - (syncMillis + elapsed + Math.round(driftRate * elapsed));
+            if (Math.abs(deviation) > maxDrift || elapsed <= 0)
+            {   // clock has been adjusted
+                if (Math.abs(deviation) > maxDrift)
+                    log.warn("Server clock deviates by {} ms from the calibrated clock. Recalibrating.", deviation);
+                driftRate = 0.0d;
+            }
+            else
+            {   // drift between the local and the server clock
+                driftRate = (double)(millis - syncMillis - elapsed) / elapsed;
+            }
+        }
+        // calibrate
+        syncNanos  = nanos;
+        syncMillis = millis;
+        synced = true;
+        if (log.isDebugEnabled())
+            log.debug("Server clock synchronized. Offset is {} ms. Drift is {} ms/s.", millis - System.currentTimeMillis(), driftRate * 1000);
+    }
+
+    /**
+     * Queries the current time of the database server
+     * @param conn a valid connection to the database
+     * @return the server time
+     */
+    protected Timestamp queryServerTime(Connection conn)
+    {
+        ResultSet rs = null;
+        try
+        {   // Timestamp query
+            rs = driver.executeQuery(timeQuery, null, false, conn);
+            return (rs.next() ? rs.getTimestamp(1) : null);
+        } catch (SQLException e) {
+            // throw exception
+            throw new EmpireSQLException(driver, e);
+        } finally
+        { // Cleanup
+            try
+            { // ResultSet close
+                Statement stmt = (rs!=null) ?  rs.getStatement() : null;
+                if (rs != null)
+                    rs.close();
+                if (stmt != null)
+                    stmt.close();
+            } catch (SQLException e) {
+                // throw exception
+                throw new EmpireSQLException(driver, e);
+            }
+        }
+    }
+}
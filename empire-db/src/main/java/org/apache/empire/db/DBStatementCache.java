@@ -0,0 +1,311 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * DBStatementCache<br>
+ * This class caches prepared statements for a single JDBC connection.<br>
+ * Statements are identified by their SQL text, the result set type and whether or not generated keys are requested.<br>
+ * A statement is removed from the cache while it is in use and put back when released.
+ * Hence the same statement can never be used twice at a time.<br>
+ * If the cache exceeds its maximum size, the least recently used statement is closed.
+ * <P>
+ * Instances of this class are created and managed by the {@link DBDatabaseDriver}.
+ * Use {@link DBDatabaseDriver#setStatementCacheSize(int)} to enable statement caching
+ * and call {@link DBDatabaseDriver#releaseStatementCache(Connection)} before a connection is closed or returned to a pool.
+ */
+public class DBStatementCache
+{
+    // Logger
+    private static final Logger log = LoggerFactory.getLogger(DBStatementCache.class);
+
+    /**
+     * The key of a cached statement
+     */
+    protected static final class StatementKey
+    {
+        private final String  sqlCmd;
+        private final int     resultSetType;
+        private final boolean returnGenKeys;
+        private final int     hash;
+
+        public StatementKey(String sqlCmd, int resultSetType, boolean returnGenKeys)
+        {
+            this.sqlCmd = sqlCmd;
+            this.resultSetType = resultSetType;
+            this.returnGenKeys = returnGenKeys;
+            this.hash = (sqlCmd.hashCode() * 31 + resultSetType) * 31 + (returnGenKeys ? 1 : 0);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other)
+        {
+            if (other == this)
+                return true;
+            if (!(other instanceof StatementKey))
+                return false;
+            StatementKey key = (StatementKey) other;
+            return (hash == key.hash && resultSetType == key.resultSetType
+                    && returnGenKeys == key.returnGenKeys && sqlCmd.equals(key.sqlCmd));
+        }
+
+        @Override
+        public String toString()
+        {
+            return sqlCmd;
+        }
+    }
+
+    private final Connection conn;
+    private final int maxSize;
+    private final LinkedHashMap<StatementKey, PreparedStatement> idle;
+    private final Map<Statement, StatementKey> inUse = new IdentityHashMap<Statement, StatementKey>();
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * Creates a statement cache for a connection
+     * @param conn the connection for which to cache the statements
+     * @param maxSize the maximum number of idle statements to keep
+     */
+    public DBStatementCache(Connection conn, int maxSize)
+    {
+        this.conn = conn;
+        this.maxSize = maxSize;
+        this.idle = new LinkedHashMap<StatementKey, PreparedStatement>(16, 0.75f, true)
+        {
+            private final static long serialVersionUID = 1L;
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<StatementKey, PreparedStatement> eldest)
+            {
+                if (size() <= DBStatementCache.this.maxSize)
+                    return false;
+                // close the least recently used statement
+                if (log.isDebugEnabled())
+                    log.debug("Evicting statement from cache: {}", eldest.getKey());
+                closeStatement(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns the connection this cache belongs to
+     * @return the connection
+     */
+    public Connection getConnection()
+    {
+        return conn;
+    }
+
+    /**
+     * Returns the maximum number of idle statements held by this cache
+     * @return the maximum cache size
+     */
+    public int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    /**
+     * Returns the number of idle statements currently held by this cache
+     * @return the number of idle statements
+     */
+    public synchronized int getSize()
+    {
+        return idle.size();
+    }
+
+    /**
+     * Returns the number of requests that have been served from the cache
+     * @return the hit count
+     */
+    public synchronized long getHitCount()
+    {
+        return hits;
+    }
+
+    /**
+     * Returns the number of requests that required a new statement to be prepared
+     * @return the miss count
+     */
+    public synchronized long getMissCount()
+    {
+        return misses;
+    }
+
+    /**
+     * Obtains a prepared statement from the cache or prepares a new one if no idle statement is available.<br>
+     * The statement must be given back by calling {@link #release(Statement)}.
+     *
+     * @param sqlCmd the sql command
+     * @param resultSetType the result set type (e.g. ResultSet.TYPE_FORWARD_ONLY)
+     * @param returnGenKeys flag whether auto generated keys should be returned
+     * @return the prepared statement
+     * @throws SQLException if a database access error occurs
+     */
+    public PreparedStatement prepareStatement(String sqlCmd, int resultSetType, boolean returnGenKeys)
+        throws SQLException
+    {
+        PreparedStatement idleStmt = getIdleStatement(sqlCmd, resultSetType, returnGenKeys);
+        if (idleStmt!=null)
+            return idleStmt;
+        // not found
+        StatementKey key = new StatementKey(sqlCmd, resultSetType, returnGenKeys);
+        synchronized(this)
+        {
+            misses++;
+        }
+        // prepare a new statement
+        PreparedStatement pstmt = (returnGenKeys)
+            ? conn.prepareStatement(sqlCmd, Statement.RETURN_GENERATED_KEYS)
+            : conn.prepareStatement(sqlCmd, resultSetType, ResultSet.CONCUR_READ_ONLY);
+        synchronized(this)
+        {
+            inUse.put(pstmt, key);
+        }
+        return pstmt;
+    }
+
+    /**
+     * Returns an idle statement from the cache without preparing a new statement.<br>
+     * Like for prepareStatement() the statement must be released after use.
+     *
+     * @param sqlCmd the sql command
+     * @param resultSetType the result set type (e.g. ResultSet.TYPE_FORWARD_ONLY)
+     * @param returnGenKeys flag whether auto generated keys should be returned
+     * @return the prepared statement or null if no idle statement is available
+     * @throws SQLException if a database access error occurs
+     */
+    public PreparedStatement getIdleStatement(String sqlCmd, int resultSetType, boolean returnGenKeys)
+        throws SQLException
+    {
+        StatementKey key = new StatementKey(sqlCmd, resultSetType, returnGenKeys);
+        synchronized(this)
+        {   // find idle statement
+            PreparedStatement pstmt = idle.remove(key);
+            if (pstmt!=null && !pstmt.isClosed())
+            {   // found
+                hits++;
+                inUse.put(pstmt, key);
+                return pstmt;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Returns a statement obtained from {@link #prepareStatement(String, int, boolean)} to the cache.
+     * If an idle statement with the same key already exists, the statement will be closed.
+     *
+     * @param stmt the statement to release
+     * @return true if the statement was managed by this cache or false otherwise
+     */
+    public boolean release(Statement stmt)
+    {
+        StatementKey key;
+        synchronized(this)
+        {
+            key = inUse.remove(stmt);
+            if (key==null)
+                return false; // not one of ours
+        }
+        PreparedStatement pstmt = (PreparedStatement)stmt;
+        try
+        {   // reset parameters
+            if (pstmt.isClosed())
+                return true;
+            pstmt.clearParameters();
+        } catch(SQLException e) {
+            log.warn("Unable to reset cached statement. Statement will be closed. Message is "+e.getMessage());
+            closeStatement(pstmt);
+            return true;
+        }
+        synchronized(this)
+        {
+            if (maxSize>0 && !idle.containsKey(key))
+            {   // put back
+                idle.put(key, pstmt);
+                return true;
+            }
+        }
+        // already have one
+        closeStatement(pstmt);
+        return true;
+    }
+
+    /**
+     * Closes all idle statements held by this cache.
+     * Statements currently in use are closed when they are released.
+     */
+    public void clear()
+    {
+        synchronized(this)
+        {
+            Iterator<PreparedStatement> i = idle.values().iterator();
+            while (i.hasNext())
+            {
+                closeStatement(i.next());
+                i.remove();
+            }
+            // Statements in use will not be returned
+            inUse.clear();
+        }
+    }
+
+    /**
+     * closes a statement and logs errors
+     * @param stmt the statement to close
+     */
+    protected void closeStatement(Statement stmt)
+    {
+        try
+        {   // Statement close
+            stmt.close();
+        } catch (SQLException sqle)
+        {
+            log.error("close cached statement:" + sqle.toString());
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "DBStatementCache[size="+String.valueOf(getSize())+", hits="+String.valueOf(getHitCount())+", misses="+String.valueOf(getMissCount())+"]";
+    }
+}
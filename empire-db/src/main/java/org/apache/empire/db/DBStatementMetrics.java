@@ -0,0 +1,420 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.empire.db.DBStatementStats.Phase;
+import org.apache.empire.exceptions.InternalException;
+import org.apache.empire.exceptions.InvalidArgumentException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * DBStatementMetrics<br>
+ * This class is the default implementation of {@link DBInstrumentation}.<br>
+ * It aggregates the measurements per SQL shape, i.e. the statement text with all literals replaced by '?' (see {@link #normalizeSql(String)}).
+ * For each shape the number of executions, rows and cache hits as well as a latency histogram per phase is kept (see {@link DBStatementStats}).<br>
+ * Statistics are updated without locking and may be obtained at any time using {@link #getStatistics()} 
+ * or through JMX after calling {@link #register(String)}.
+ * <pre>
+ *   DBStatementMetrics metrics = new DBStatementMetrics();
+ *   driver.setInstrumentation(metrics);
+ *   metrics.register("myDatabase");
+ *   ...
+ *   for (DBStatementStats stats : metrics.getStatistics())
+ *       log.info(stats.toString());
+ * </pre>
+ * In order to limit memory consumption the number of shapes is limited (see {@link #setMaxShapes(int)}).
+ * Statements exceeding this limit are aggregated under the shape {@link #OTHER_SHAPE}.
+ */
+public class DBStatementMetrics implements DBInstrumentation, DBStatementMetricsMBean
+{
+    // Logger
+    private static final Logger log = LoggerFactory.getLogger(DBStatementMetrics.class);
+    
+    /**
+     * The shape under which all statements are recorded once the maximum number of shapes has been reached
+     */
+    public static final String OTHER_SHAPE = "<other>";
+    
+    private final ConcurrentMap<String, DBStatementStats> shapeMap = new ConcurrentHashMap<String, DBStatementStats>();
+    private final ConcurrentMap<String, DBStatementStats> sqlMap = new ConcurrentHashMap<String, DBStatementStats>();
+    private int  maxShapes = 1000;
+    private long slowThresholdNanos = 1000L * 1000000L;
+    private ObjectName objectName = null;
+    
+    /**
+     * Creates a new metrics object
+     */
+    public DBStatementMetrics()
+    {
+        // nothing
+    }
+
+    /**
+     * Returns the maximum number of statement shapes recorded individually
+     * @return the maximum number of shapes
+     */
+    public int getMaxShapes()
+    {
+        return maxShapes;
+    }
+
+    /**
+     * Sets the maximum number of statement shapes recorded individually
+     * @param maxShapes the maximum number of shapes
+     */
+    public void setMaxShapes(int maxShapes)
+    {
+        if (maxShapes<1)
+            throw new InvalidArgumentException("maxShapes", maxShapes);
+        this.maxShapes = maxShapes;
+    }
+
+    @Override
+    public long getSlowThresholdMillis()
+    {
+        return slowThresholdNanos / 1000000L;
+    }
+
+    @Override
+    public void setSlowThresholdMillis(long millis)
+    {
+        if (millis<0)
+            throw new InvalidArgumentException("millis", millis);
+        this.slowThresholdNanos = millis * 1000000L;
+    }
+    
+    /**
+     * Returns the statistics of all statement shapes
+     * @return a list of statistics 
+     */
+    public List<DBStatementStats> getStatistics()
+    {
+        return new ArrayList<DBStatementStats>(shapeMap.values());
+    }
+    
+    /**
+     * Returns the statistics of a particular statement
+     * @param sqlCmd the SQL-Command (will be normalized)
+     * @return the statistics or null if the statement has not been recorded
+     */
+    public DBStatementStats getStatistics(String sqlCmd)
+    {
+        return shapeMap.get(normalizeSql(sqlCmd));
+    }
+    
+    /**
+     * Returns the statistics with the highest total execution and fetch time
+     * @param count the maximum number of statistics to return
+     * @return a list of statistics ordered by total time
+     */
+    public List<DBStatementStats> getTopStatistics(int count)
+    {
+        List<DBStatementStats> list = getStatistics();
+        Collections.sort(list, new Comparator<DBStatementStats>() {
+            @Override
+            public int compare(DBStatementStats s1, DBStatementStats s2)
+            {
+                long t1 = s1.getTimer(Phase.EXECUTE).getTotalNanos() + s1.getTimer(Phase.FETCH).getTotalNanos();
+                long t2 = s2.getTimer(Phase.EXECUTE).getTotalNanos() + s2.getTimer(Phase.FETCH).getTotalNanos();
+                return (t1 < t2) ? 1 : ((t1 == t2) ? 0 : -1);
+            }
+        });
+        return (list.size()>count) ? list.subList(0, count) : list;
+    }
+    
+    /*
+     * DBStatementMetricsMBean
+     */
+
+    @Override
+    public int getStatementShapeCount()
+    {
+        return shapeMap.size();
+    }
+
+    @Override
+    public long getExecutionCount()
+    {
+        long n = 0;
+        for (DBStatementStats stats : shapeMap.values())
+            n += stats.getExecutionCount();
+        return n;
+    }
+
+    @Override
+    public long getTotalExecutionMillis()
+    {
+        return getTotalNanos(Phase.EXECUTE) / 1000000L;
+    }
+
+    @Override
+    public long getTotalFetchMillis()
+    {
+        return getTotalNanos(Phase.FETCH) / 1000000L;
+    }
+
+    @Override
+    public long getRowsFetched()
+    {
+        long n = 0;
+        for (DBStatementStats stats : shapeMap.values())
+            n += stats.getRowsFetched();
+        return n;
+    }
+
+    @Override
+    public long getCacheHitCount()
+    {
+        long n = 0;
+        for (DBStatementStats stats : shapeMap.values())
+            n += stats.getCacheHitCount();
+        return n;
+    }
+
+    @Override
+    public long getCacheMissCount()
+    {
+        long n = 0;
+        for (DBStatementStats stats : shapeMap.values())
+            n += stats.getCacheMissCount();
+        return n;
+    }
+
+    @Override
+    public long getSlowCount()
+    {
+        long n = 0;
+        for (DBStatementStats stats : shapeMap.values())
+            n += stats.getSlowCount();
+        return n;
+    }
+
+    @Override
+    public String[] getTopStatements(int count)
+    {
+        List<DBStatementStats> list = getTopStatistics(count);
+        String[] result = new String[list.size()];
+        for (int i=0; i<result.length; i++)
+            result[i] = list.get(i).toString();
+        return result;
+    }
+
+    @Override
+    public void reset()
+    {
+        shapeMap.clear();
+        sqlMap.clear();
+    }
+    
+    /*
+     * JMX
+     */
+    
+    /**
+     * Registers this object with the platform MBean server.
+     * @param name the name of the metrics (e.g. the database id)
+     */
+    public synchronized void register(String name)
+    {
+        if (objectName!=null)
+            unregister();
+        try
+        {
+            ObjectName on = new ObjectName("org.apache.empire.db:type=DBStatementMetrics,name="+ObjectName.quote(name));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(this, on);
+            objectName = on;
+            log.info("DBStatementMetrics registered as {}", on);
+        } catch (JMException e) {
+            throw new InternalException(e);
+        }
+    }
+
+    /**
+     * Unregisters this object from the platform MBean server
+     */
+    public synchronized void unregister()
+    {
+        if (objectName==null)
+            return;
+        try
+        {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            log.warn("Unable to unregister {}: {}", objectName, e.getMessage());
+        }
+        objectName = null;
+    }
+    
+    /*
+     * DBInstrumentation
+     */
+
+    @Override
+    public void statementPrepared(String sqlCmd, long nanos, boolean cached)
+    {
+        getStats(sqlCmd).recordPrepare(nanos, cached);
+    }
+
+    @Override
+    public void statementExecuted(String sqlCmd, long nanos, int affected)
+    {
+        getStats(sqlCmd).recordExecute(nanos, affected, (nanos>=slowThresholdNanos));
+    }
+
+    @Override
+    public void batchExecuted(String sqlCmd, long nanos, int batchSize)
+    {
+        getStats(sqlCmd).recordBatch(nanos, batchSize, (nanos>=slowThresholdNanos));
+    }
+
+    @Override
+    public void resultFetched(String sqlCmd, long nanos, int rows)
+    {
+        getStats(sqlCmd).recordFetch(nanos, rows, (nanos>=slowThresholdNanos));
+    }
+
+    @Override
+    public void statementClosed(String sqlCmd, long nanos)
+    {
+        getStats(sqlCmd).recordClose(nanos);
+    }
+    
+    /**
+     * Returns the statistics object for an SQL-Command.<br>
+     * The statistics are looked up by the original SQL text first in order to avoid normalizing the statement each time.
+     * @param sqlCmd the SQL-Command
+     * @return the statistics for the shape of the statement
+     */
+    protected DBStatementStats getStats(String sqlCmd)
+    {
+        DBStatementStats stats = sqlMap.get(sqlCmd);
+        if (stats!=null)
+            return stats;
+        // find by shape
+        String shape = normalizeSql(sqlCmd);
+        stats = shapeMap.get(shape);
+        if (stats==null)
+        {   // Check limit
+            if (shapeMap.size()>=maxShapes)
+                shape = OTHER_SHAPE;
+            stats = new DBStatementStats(shape);
+            DBStatementStats prev = shapeMap.putIfAbsent(shape, stats);
+            if (prev!=null)
+                stats = prev;
+        }
+        // remember statement text (statements with literals may produce many variants)
+        if (sqlMap.size()>=maxShapes * 4)
+            sqlMap.clear();
+        sqlMap.put(sqlCmd, stats);
+        return stats;
+    }
+    
+    /**
+     * Returns the shape of a SQL statement.<br>
+     * String and numeric literals are replaced by '?' and whitespace is collapsed to a single blank.
+     * Quoted identifiers are not changed.
+     * @param sqlCmd the SQL-Command
+     * @return the normalized statement
+     */
+    public static String normalizeSql(String sqlCmd)
+    {
+        if (sqlCmd==null)
+            return "";
+        int len = sqlCmd.length();
+        StringBuilder b = new StringBuilder(len);
+        boolean space = false;
+        for (int i=0; i<len; i++)
+        {
+            char c = sqlCmd.charAt(i);
+            if (Character.isWhitespace(c))
+            {   // collapse whitespace
+                space = (b.length()>0);
+                continue;
+            }
+            if (space)
+            {   b.append(' ');
+                space = false;
+            }
+            if (c=='\'')
+            {   // string literal
+                for (i++; i<len; i++)
+                {
+                    if (sqlCmd.charAt(i)=='\'')
+                    {   // escaped quote?
+                        if (i+1<len && sqlCmd.charAt(i+1)=='\'')
+                            i++;
+                        else
+                            break;
+                    }
+                }
+                b.append('?');
+            }
+            else if (c=='"')
+            {   // quoted identifier
+                int end = sqlCmd.indexOf('"', i+1);
+                if (end<0)
+                    end = len - 1;
+                b.append(sqlCmd, i, end + 1);
+                i = end;
+            }
+            else if (Character.isDigit(c) && (i==0 || !isIdentifierChar(sqlCmd.charAt(i-1))))
+            {   // numeric literal
+                while (i+1<len && (Character.isDigit(sqlCmd.charAt(i+1)) || sqlCmd.charAt(i+1)=='.'))
+                    i++;
+                b.append('?');
+            }
+            else
+                b.append(c);
+        }
+        return b.toString();
+    }
+    
+    private static boolean isIdentifierChar(char c)
+    {
+        return (Character.isLetterOrDigit(c) || c=='_' || c=='$' || c=='#' || c=='.');
+    }
+    
+    private long getTotalNanos(Phase phase)
+    {
+        long n = 0;
+        for (DBStatementStats stats : shapeMap.values())
+            n += stats.getTimer(phase).getTotalNanos();
+        return n;
+    }
+    
+    @Override
+    public String toString()
+    {
+        return "DBStatementMetrics[shapes="+String.valueOf(getStatementShapeCount())+", executions="+String.valueOf(getExecutionCount())+"]";
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+/**
+ * DBStatementMetricsMBean<br>
+ * The management interface of {@link DBStatementMetrics}.
+ */
+public interface DBStatementMetricsMBean
+{
+    /**
+     * Returns the number of distinct statement shapes recorded
+     * @return the number of statement shapes
+     */
+    int getStatementShapeCount();
+
+    /**
+     * Returns the total number of statements executed
+     * @return the number of statements executed
+     */
+    long getExecutionCount();
+
+    /**
+     * Returns the total time spent executing statements
+     * @return the execution time in milliseconds
+     */
+    long getTotalExecutionMillis();
+
+    /**
+     * Returns the total time spent fetching query results
+     * @return the fetch time in milliseconds
+     */
+    long getTotalFetchMillis();
+
+    /**
+     * Returns the total number of rows read from query results
+     * @return the number of rows fetched
+     */
+    long getRowsFetched();
+
+    /**
+     * Returns the total number of prepared statements obtained from the statement cache
+     * @return the number of statement cache hits
+     */
+    long getCacheHitCount();
+
+    /**
+     * Returns the total number of prepared statements that had to be created
+     * @return the number of statement cache misses
+     */
+    long getCacheMissCount();
+
+    /**
+     * Returns the total number of executions or fetches exceeding the slow statement threshold
+     * @return the number of slow statements
+     */
+    long getSlowCount();
+
+    /**
+     * Returns the slow statement threshold
+     * @return the threshold in milliseconds
+     */
+    long getSlowThresholdMillis();
+
+    /**
+     * Sets the slow statement threshold
+     * @param millis the threshold in milliseconds
+     */
+    void setSlowThresholdMillis(long millis);
+
+    /**
+     * Returns a description of the statements with the highest total execution and fetch time
+     * @param count the maximum number of statements to return
+     * @return the statement descriptions
+     */
+    String[] getTopStatements(int count);
+
+    /**
+     * Clears all statistics
+     */
+    void reset();
+}
@@ -0,0 +1,364 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.empire.exceptions.InvalidArgumentException;
+
+/**
+ * DBStatementStats<br>
+ * This class holds the statistics of all statements sharing the same SQL shape (see {@link DBStatementMetrics#normalizeSql(String)}).<br>
+ * All counters are updated without locking and may be read at any time.
+ * Hence values read while statements are executed may be slightly inconsistent with each other.
+ */
+public class DBStatementStats
+{
+    /**
+     * The phases of statement execution
+     */
+    public enum Phase
+    {
+        PREPARE,
+        EXECUTE,
+        FETCH,
+        CLOSE
+    }
+    
+    /**
+     * PhaseTimer<br>
+     * Counts the number of executions of a phase, the total and the maximum time
+     * and records the times in a histogram that allows to obtain percentiles.<br>
+     * The histogram uses four buckets for each power of two, hence percentiles have an accuracy of about 20 percent.
+     */
+    public static class PhaseTimer
+    {
+        private static final int BUCKET_COUNT = 248;
+        
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+        
+        /**
+         * Records a time
+         * @param nanos the time in nanoseconds
+         */
+        public void record(long nanos)
+        {
+            if (nanos<0)
+                nanos = 0;
+            count.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            buckets.incrementAndGet(getBucketIndex(nanos));
+            // update max
+            long max = maxNanos.get();
+            while (nanos>max && !maxNanos.compareAndSet(max, nanos))
+                max = maxNanos.get();
+        }
+        
+        /**
+         * Returns the number of times recorded
+         * @return the number of times recorded
+         */
+        public long getCount()
+        {
+            return count.get();
+        }
+        
+        /**
+         * Returns the sum of all times recorded
+         * @return the total time in nanoseconds
+         */
+        public long getTotalNanos()
+        {
+            return totalNanos.get();
+        }
+
+        /**
+         * Returns the maximum time recorded
+         * @return the maximum time in nanoseconds
+         */
+        public long getMaxNanos()
+        {
+            return maxNanos.get();
+        }
+
+        /**
+         * Returns the average time recorded
+         * @return the average time in nanoseconds
+         */
+        public long getAverageNanos()
+        {
+            long n = count.get();
+            return (n>0 ? totalNanos.get() / n : 0);
+        }
+
+        /**
+         * Returns the time below or equal to which the given percentage of all recorded times lies.
+         * @param percentile the percentile (e.g. 0.99)
+         * @return the percentile time in nanoseconds or 0 if no time has been recorded
+         */
+        public long getPercentileNanos(double percentile)
+        {
+            if (percentile<0 || percentile>1)
+                throw new InvalidArgumentException("percentile", percentile);
+            long n = count.get();
+            if (n==0)
+                return 0;
+            long rank = Math.max(1, (long)Math.ceil(percentile * n));
+            long sum = 0;
+            for (int i=0; i<BUCKET_COUNT; i++)
+            {
+                sum += buckets.get(i);
+                if (sum>=rank)
+                    return Math.min(getBucketUpperBound(i), maxNanos.get());
+            }
+            return maxNanos.get();
+        }
+        
+        /**
+         * Clears all recorded times
+         */
+        public void reset()
+        {
+            count.set(0);
+            totalNanos.set(0);
+            maxNanos.set(0);
+            for (int i=0; i<BUCKET_COUNT; i++)
+                buckets.set(i, 0);
+        }
+        
+        private static int getBucketIndex(long nanos)
+        {
+            if (nanos<4)
+                return (int)nanos;
+            int exp = 63 - Long.numberOfLeadingZeros(nanos);
+            int sub = (int)((nanos >>> (exp - 2)) & 3);
+            return exp * 4 + sub - 4;
+        }
+
+        private static long getBucketUpperBound(int index)
+        {
+            if (index<4)
+                return index;
+            int exp = (index + 4) / 4;
+            int sub = (index + 4) % 4;
+            return ((5L + sub) << (exp - 2)) - 1;
+        }
+    }
+    
+    private final String sqlShape;
+    private final PhaseTimer[] timers;
+    private final AtomicLong rowsAffected = new AtomicLong();
+    private final AtomicLong rowsFetched = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong batchStatements = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+    private final AtomicLong slowCount = new AtomicLong();
+    
+    /**
+     * Creates the statistics for a statement shape
+     * @param sqlShape the normalized SQL statement
+     */
+    public DBStatementStats(String sqlShape)
+    {
+        this.sqlShape = sqlShape;
+        this.timers = new PhaseTimer[Phase.values().length];
+        for (int i=0; i<timers.length; i++)
+            timers[i] = new PhaseTimer();
+    }
+
+    /**
+     * Returns the normalized SQL statement
+     * @return the SQL shape
+     */
+    public String getSqlShape()
+    {
+        return sqlShape;
+    }
+    
+    /**
+     * Returns the timer of a particular phase
+     * @param phase the phase
+     * @return the phase timer
+     */
+    public PhaseTimer getTimer(Phase phase)
+    {
+        return timers[phase.ordinal()];
+    }
+    
+    /**
+     * Returns the number of executions
+     * @return the number of times the statement has been executed (batch statements are counted individually)
+     */
+    public long getExecutionCount()
+    {
+        return getTimer(Phase.EXECUTE).getCount() - batchCount.get() + batchStatements.get();
+    }
+
+    /**
+     * Returns the total number of rows affected by insert, update or delete statements
+     * @return the number of rows affected
+     */
+    public long getRowsAffected()
+    {
+        return rowsAffected.get();
+    }
+    
+    /**
+     * Returns the total number of rows read from query results
+     * @return the number of rows fetched
+     */
+    public long getRowsFetched()
+    {
+        return rowsFetched.get();
+    }
+    
+    /**
+     * Returns the number of batches executed
+     * @return the number of batches
+     */
+    public long getBatchCount()
+    {
+        return batchCount.get();
+    }
+    
+    /**
+     * Returns the average number of statements per batch
+     * @return the average batch size
+     */
+    public double getAverageBatchSize()
+    {
+        long n = batchCount.get();
+        return (n>0 ? (double)batchStatements.get() / n : 0);
+    }
+
+    /**
+     * Returns the number of prepared statements obtained from the statement cache
+     * @return the number of statement cache hits
+     */
+    public long getCacheHitCount()
+    {
+        return cacheHits.get();
+    }
+
+    /**
+     * Returns the number of prepared statements that had to be created
+     * @return the number of statements prepared
+     */
+    public long getCacheMissCount()
+    {
+        return cacheMisses.get();
+    }
+    
+    /**
+     * Returns the number of executions or fetches exceeding the slow statement threshold
+     * @return the number of slow executions 
+     */
+    public long getSlowCount()
+    {
+        return slowCount.get();
+    }
+    
+    /**
+     * Clears all counters
+     */
+    public void reset()
+    {
+        for (int i=0; i<timers.length; i++)
+            timers[i].reset();
+        rowsAffected.set(0);
+        rowsFetched.set(0);
+        batchCount.set(0);
+        batchStatements.set(0);
+        cacheHits.set(0);
+        cacheMisses.set(0);
+        slowCount.set(0);
+    }
+    
+    /*
+     * Recording (called by DBStatementMetrics)
+     */
+    
+    void recordPrepare(long nanos, boolean cached)
+    {
+        getTimer(Phase.PREPARE).record(nanos);
+        if (cached)
+            cacheHits.incrementAndGet();
+        else
+            cacheMisses.incrementAndGet();
+    }
+
+    void recordExecute(long nanos, int affected, boolean slow)
+    {
+        getTimer(Phase.EXECUTE).record(nanos);
+        if (affected>0)
+            rowsAffected.addAndGet(affected);
+        if (slow)
+            slowCount.incrementAndGet();
+    }
+
+    void recordBatch(long nanos, int batchSize, boolean slow)
+    {
+        getTimer(Phase.EXECUTE).record(nanos);
+        batchCount.incrementAndGet();
+        batchStatements.addAndGet(batchSize);
+        if (slow)
+            slowCount.incrementAndGet();
+    }
+
+    void recordFetch(long nanos, int rows, boolean slow)
+    {
+        getTimer(Phase.FETCH).record(nanos);
+        rowsFetched.addAndGet(rows);
+        if (slow)
+            slowCount.incrementAndGet();
+    }
+
+    void recordClose(long nanos)
+    {
+        getTimer(Phase.CLOSE).record(nanos);
+    }
+
+    @Override
+    public String toString()
+    {
+        PhaseTimer exec = getTimer(Phase.EXECUTE);
+        PhaseTimer fetch = getTimer(Phase.FETCH);
+        StringBuilder b = new StringBuilder();
+        b.append("executions=").append(getExecutionCount());
+        b.append(", avg=").append(exec.getAverageNanos() / 1000).append("us");
+        b.append(", p50=").append(exec.getPercentileNanos(0.5) / 1000).append("us");
+        b.append(", p99=").append(exec.getPercentileNanos(0.99) / 1000).append("us");
+        b.append(", max=").append(exec.getMaxNanos() / 1000).append("us");
+        if (fetch.getCount()>0)
+        {   b.append(", fetchAvg=").append(fetch.getAverageNanos() / 1000).append("us");
+            b.append(", rowsFetched=").append(getRowsFetched());
+        }
+        if (batchCount.get()>0)
+            b.append(", batches=").append(getBatchCount());
+        if (slowCount.get()>0)
+            b.append(", slow=").append(getSlowCount());
+        b.append(": ").append(sqlShape);
+        return b.toString();
+    }
+}
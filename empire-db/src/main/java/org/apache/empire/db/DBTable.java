@@ -20,18 +20,30 @@ package org.apache.empire.db;
 
 // java
 import java.lang.reflect.Field;
+import java.math.BigDecimal;
 import java.sql.Connection;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.empire.commons.ObjectUtils;
 import org.apache.empire.data.DataMode;
 import org.apache.empire.data.DataType;
 import org.apache.empire.db.DBRelation.DBCascadeAction;
 import org.apache.empire.db.exceptions.NoPrimaryKeyException;
 import org.apache.empire.db.exceptions.RecordDeleteFailedException;
 import org.apache.empire.db.exceptions.RecordUpdateInvalidException;
+import org.apache.empire.db.expr.compare.DBCompareExpr;
 import org.apache.empire.exceptions.InvalidArgumentException;
 import org.apache.empire.exceptions.ItemExistsException;
 import org.apache.empire.exceptions.UnexpectedReturnValueException;
@@ -50,6 +62,9 @@ public class DBTable extends DBRowSet implements Cloneable
     public static final int MEDIUMINT = 4;
     public static final int BIGINT    = 8;
 
+    // Maximum number of record and index combinations checked with a single query by checkUniqueConstraints() 
+    public static final int MAX_UNIQUE_CHECK_PROBES = 100;
+
     private final static long    serialVersionUID    = 1L;
     private static AtomicInteger tableCount          = new AtomicInteger(0);
 
@@ -58,6 +73,8 @@ public class DBTable extends DBRowSet implements Cloneable
     private final List<DBIndex>  indexes             = new ArrayList<DBIndex>();
     private Boolean              quoteName           = null;
     private DBCascadeAction      cascadeDeleteAction = DBCascadeAction.NONE;
+    private transient DBRowCache rowCache            = null;
+    private boolean              cascadeDeleteSetBased = false;
     
     /**
      * Construct a new DBTable object set the specified parameters
@@ -211,6 +228,7 @@ public class DBTable extends DBRowSet implements Cloneable
             throw new ItemExistsException(column.getName());
         // add now
         columns.add(column);
+        resetColumnIndex();
     }
 
     /**
@@ -422,48 +440,297 @@ public class DBTable extends DBRowSet implements Cloneable
         completeInitRecord(rec);
     }
     
+    /**
+     * Reads the record with the given primary key.<BR>
+     * If a row cache has been set for this table, the record is read from the cache if available.
+     * Otherwise it is read from the database and added to the cache.<BR>
+     * The cache is bypassed if the connection has uncommitted changes on this table.
+     * <P>
+     * @param rec the DBRecord object which will hold the record data
+     * @param key the primary key values
+     * @param conn a valid JDBC connection.
+     */
+    @Override
+    public void readRecord(DBRecord rec, Object[] key, Connection conn)
+    {
+        DBRowCache cache = rowCache;
+        if (cache==null)
+        {   // No cache
+            super.readRecord(rec, key, conn);
+            return;
+        }
+        // Check Arguments
+        if (conn == null || rec == null)
+            throw new InvalidArgumentException("conn|rec", null);
+        // Uncommitted changes must neither be cached nor hidden by cached rows
+        Object[] cacheKey = getRowCacheKey(key);
+        if (cacheKey==null || cache.hasPendingWrites(conn))
+        {   // Read from database
+            super.readRecord(rec, key, conn);
+            return;
+        }
+        // Find in cache
+        Object[] cached = cache.get(cacheKey);
+        if (cached!=null)
+        {   // Init from cache
+            prepareInitRecord(rec, null, false);
+            Object[] fields = rec.getFields();
+            System.arraycopy(cached, 0, fields, 0, fields.length);
+            completeInitRecord(rec);
+            return;
+        }
+        // Read from database
+        long version = cache.getVersion();
+        super.readRecord(rec, key, conn);
+        cache.put(cacheKey, rec.getFields(), version);
+    }
+
+    /**
+     * Returns a primary key with values converted to the data types of the key columns.<BR>
+     * This makes keys passed by the caller (e.g. as String) match the key values read from the database.
+     * <P>
+     * @param key the primary key values
+     * @return the key used for the row cache or null if a key value cannot be converted
+     */
+    protected Object[] getRowCacheKey(Object[] key)
+    {
+        DBColumn[] keyColumns = (primaryKey!=null ? primaryKey.getColumns() : null);
+        if (keyColumns==null || key==null || key.length!=keyColumns.length)
+            return null;
+        Object[] cacheKey = new Object[key.length];
+        try
+        {   // convert
+            for (int i=0; i<key.length; i++)
+            {
+                Object value = key[i];
+                if (ObjectUtils.isEmpty(value))
+                    return null;
+                switch(keyColumns[i].getDataType())
+                {
+                    case AUTOINC:
+                    case INTEGER:
+                        value = Long.valueOf(ObjectUtils.toLong(value));
+                        break;
+                    case DECIMAL:
+                        value = ObjectUtils.toDecimal(value);
+                        break;
+                    case FLOAT:
+                        value = Double.valueOf(ObjectUtils.toDouble(value));
+                        break;
+                    case TEXT:
+                    case CHAR:
+                        value = (value instanceof Enum<?>) ? ((Enum<?>)value).name() : value.toString();
+                        break;
+                    default:
+                        break;
+                }
+                cacheKey[i] = getUniqueKeyValue(value);
+            }
+            return cacheKey;
+        } catch (NumberFormatException e) {
+            // not a valid key
+            return null;
+        }
+    }
+    
     /**
      * Checks weather a unique constraint is violated when inserting or updating a record.<BR>
+     * All unique indexes affected by the record are checked with a single query.
      * <P>
-     * @param id the record's primary key
+     * @param rec the record to check
      * @param conn a valid JDBC connection
+     * @return the first index that is violated or null if no violation was detected
      */
     public DBIndex checkUniqueConstraints(DBRecord rec, Connection conn)
     {
+        List<DBIndex> violated = checkUniqueConstraints(Collections.singletonList(rec), conn).get(rec);
+        return (violated!=null ? violated.get(0) : null);
+    }
+    
+    /**
+     * Checks weather unique constraints are violated when inserting or updating a batch of records.<BR>
+     * Records are checked against each other as well as against the current content of the table.
+     * The database is probed with as few queries as possible, each counting the matches of up to 
+     * MAX_UNIQUE_CHECK_PROBES record and index combinations.
+     * <P>
+     * Note: Records of the batch that change an index value are not considered to release the value for other records.
+     * Records with a null value for any column of a unique index are not checked against this index, since the database permits multiple such rows. 
+     * <P>
+     * @param records the records to check (all records must belong to this table)
+     * @param conn a valid JDBC connection
+     * @return a map containing all violating records along with the indexes violated (in the order of getIndexes()).
+     *         If no violation was detected the map is empty.
+     */
+    public Map<DBRecord, List<DBIndex>> checkUniqueConstraints(Collection<DBRecord> records, Connection conn)
+    {
+        // Collect probes and check within batch
+        Map<DBRecord, Set<DBIndex>> violations = new IdentityHashMap<DBRecord, Set<DBIndex>>();
+        List<DBRecord> probeRecords = new ArrayList<DBRecord>();
+        List<DBIndex>  probeIndexes = new ArrayList<DBIndex>();
         for (DBIndex idx : getIndexes())
         {
-            if (idx.getType()==DBIndex.PRIMARYKEY)
-            {   // Only for new records
-                if (!rec.isNew())
-                    continue; // not new
-            }
-            else if (idx.getType()==DBIndex.UNIQUE)
-            {   // check if any of the fields were actually changed
-                if (!rec.isNew() && !rec.wasAnyModified(idx.getColumns()))
-                    continue; // not modified
-            }
-            else 
-            {   // No unique index
-                continue;
+            Map<List<Object>, DBRecord> keys = new HashMap<List<Object>, DBRecord>();
+            for (DBRecord rec : records)
+            {
+                if (rec==null || rec.getRowSet()!=this)
+                    throw new InvalidArgumentException("records", rec);
+                if (!isUniqueCheckRequired(idx, rec))
+                    continue;
+                // Check batch
+                List<Object> key = getUniqueKey(idx, rec);
+                if (key==null)
+                    continue; // null values are not unique
+                DBRecord other = keys.get(key);
+                if (other==null)
+                    keys.put(key, rec);
+                else if (other!=rec)
+                {   // Both records are violating the index
+                    addUniqueViolation(violations, other, idx);
+                    addUniqueViolation(violations, rec, idx);
+                }
+                // Check database
+                probeRecords.add(rec);
+                probeIndexes.add(idx);
             }
-            // Check index
+        }
+        // Probe the database
+        int count = probeRecords.size();
+        for (int start = 0; start < count; start += MAX_UNIQUE_CHECK_PROBES)
+        {
+            int end = Math.min(start + MAX_UNIQUE_CHECK_PROBES, count);
             DBCommand cmd = db.createCommand();
-            cmd.select(count());
-            for (DBColumn c : idx.getColumns())
-            {
-                Object value = rec.getValue(c);
-                cmd.where(c.is(value));
+            DBColumnExpr one = db.getValueExpr(1);
+            DBCompareExpr any = null;
+            for (int i = start; i < end; i++)
+            {   // Count matches of each probe
+                DBCompareExpr match = getUniqueKeyExpr(probeIndexes.get(i), probeRecords.get(i));
+                cmd.select(one.when(match, 0).sum());
+                any = (any==null ? match : any.or(match));
             }
-            int count = db.querySingleInt(cmd, conn);
-            if (count>0)
-            {   // Index is violated
-                return idx;
+            cmd.where(any);
+            // Query
+            List<Object[]> result = new ArrayList<Object[]>(1);
+            db.queryObjectList(cmd, conn, result);
+            if (result.isEmpty())
+                continue;
+            Object[] counts = result.get(0);
+            for (int i = start; i < end; i++)
+            {   // Check count
+                if (ObjectUtils.getInteger(counts[i - start])>0)
+                    addUniqueViolation(violations, probeRecords.get(i), probeIndexes.get(i));
             }
         }
-        // no index violation detected
-        return null;
+        // Collect result
+        Map<DBRecord, List<DBIndex>> result = new LinkedHashMap<DBRecord, List<DBIndex>>();
+        for (DBRecord rec : records)
+        {
+            Set<DBIndex> violated = violations.get(rec);
+            if (violated==null || result.containsKey(rec))
+                continue;
+            List<DBIndex> list = new ArrayList<DBIndex>(violated.size());
+            for (DBIndex idx : getIndexes())
+                if (violated.contains(idx))
+                    list.add(idx);
+            result.put(rec, list);
+        }
+        return result;
+    }
+
+    /**
+     * Returns true if a record must be checked for a particular index 
+     */
+    private boolean isUniqueCheckRequired(DBIndex idx, DBRecord rec)
+    {
+        if (idx.getType()==DBIndex.PRIMARYKEY)
+        {   // Only for new records
+            return rec.isNew();
+        }
+        if (idx.getType()==DBIndex.UNIQUE)
+        {   // check if any of the fields were actually changed
+            return (rec.isNew() || rec.wasAnyModified(idx.getColumns()));
+        }
+        // No unique index
+        return false;
+    }
+
+    /**
+     * Returns the constraint matching the index values of a record 
+     */
+    private DBCompareExpr getUniqueKeyExpr(DBIndex idx, DBRecord rec)
+    {
+        DBCompareExpr match = null;
+        for (DBColumn c : idx.getColumns())
+        {
+            DBCompareExpr cmp = c.is(rec.getValue(c));
+            match = (match==null ? cmp : match.and(cmp));
+        }
+        return match;
+    }
+
+    /**
+     * Returns the index values of a record or null if any of the values is null.<br>
+     * The values are normalized in order to match values that are equal according to ObjectUtils.compareEqual()
+     */
+    private List<Object> getUniqueKey(DBIndex idx, DBRecord rec)
+    {
+        DBColumn[] columns = idx.getColumns();
+        Object[] key = new Object[columns.length];
+        for (int i=0; i<columns.length; i++)
+        {
+            Object value = rec.getValue(columns[i]);
+            if (value==null)
+                return null;
+            key[i] = getUniqueKeyValue(value);
+        }
+        return Arrays.asList(key);
+    }
+
+    /**
+     * Returns a normalized index value 
+     */
+    private Object getUniqueKeyValue(Object value)
+    {
+        if ((value instanceof Double) || (value instanceof Float))
+        {   // not a number
+            double d = ((Number)value).doubleValue();
+            if (Double.isNaN(d) || Double.isInfinite(d))
+                return Double.valueOf(d);
+        }
+        if (value instanceof Number)
+        {   // same number regardless of type and scale
+            BigDecimal dec = (value instanceof BigDecimal) ? (BigDecimal)value : new BigDecimal(value.toString());
+            return (dec.signum()==0 ? BigDecimal.ZERO : dec.stripTrailingZeros());
+        }
+        if (value instanceof Date)
+            return Long.valueOf(((Date)value).getTime());
+        if (value instanceof Enum<?>)
+            return ((Enum<?>)value).name();
+        return value;
+    }
+    
+    private void addUniqueViolation(Map<DBRecord, Set<DBIndex>> violations, DBRecord rec, DBIndex idx)
+    {
+        Set<DBIndex> set = violations.get(rec);
+        if (set==null)
+        {   set = new HashSet<DBIndex>();
+            violations.put(rec, set);
+        }
+        set.add(idx);
     }
     
+    /**
+     * Creates a bulk insert for this table.<br>
+     * The bulk insert collects rows and inserts them using multi-row insert statements.
+     * @see DBBulkInsert
+     * 
+     * @param columns the columns to insert or none for all columns
+     * @return the bulk insert
+     */
+    public DBBulkInsert createBulkInsert(DBColumn... columns)
+    {
+        return new DBBulkInsert(this, columns);
+    }
+
     /**
      * returns the default cascade action for deletes on this table.
      * This is used as the default for newly created relations on this table and does not affect existing relations.
@@ -474,6 +741,81 @@ public class DBTable extends DBRowSet implements Cloneable
         return cascadeDeleteAction;
     }
 
+    /**
+     * Returns the row cache used by readRecord()
+     * @return the row cache or null if rows are not cached
+     */
+    public DBRowCache getRowCache()
+    {
+        return rowCache;
+    }
+
+    /**
+     * Sets a row cache for this table.<BR>
+     * The cache should only be used for small, read-mostly tables (see {@link DBRowCache}).
+     * @param rowCache the row cache or null to disable caching
+     */
+    public void setRowCache(DBRowCache rowCache)
+    {
+        this.rowCache = rowCache;
+    }
+
+    /**
+     * Invalidates the cached rows (if any) after records have been modified.
+     */
+    @Override
+    protected void onRecordsModified(Object[] key, Connection conn)
+    {
+        super.onRecordsModified(key, conn);
+        // Invalidate cache
+        DBRowCache cache = rowCache;
+        if (cache==null)
+            return;
+        Object[] cacheKey = (key!=null ? getRowCacheKey(key) : null);
+        if (cacheKey!=null)
+            cache.remove(cacheKey);
+        else
+            cache.clear();
+        // Changes are pending until commit or rollback
+        if (conn!=null)
+            cache.addPendingWrites(conn);
+    }
+
+    /**
+     * Clears the cached rows (if any) after a transaction with pending writes to this table has been completed.
+     */
+    @Override
+    protected void onTransactionComplete(Connection conn, boolean commit)
+    {
+        super.onTransactionComplete(conn, commit);
+        // Release pending writes
+        DBRowCache cache = rowCache;
+        if (cache!=null && cache.removePendingWrites(conn))
+            cache.clear();
+    }
+
+    /**
+     * Returns whether records of this table may be deleted with a single statement when a referenced record is deleted.
+     * @return true if cascade deletes are set based or false if records are deleted one by one
+     */
+    @Override
+    public boolean isCascadeDeleteSetBased()
+    {
+        return cascadeDeleteSetBased;
+    }
+
+    /**
+     * Sets whether records of this table may be deleted with a single statement when a referenced record is deleted.<br>
+     * This requires that the records can be removed without calling deleteRecord() or deleteReferenceRecords() for each record,
+     * i.e. that the table does not override them in order to perform additional work.<br>
+     * If disabled (default) the records are deleted one by one.
+     * @param cascadeDeleteSetBased true to delete set based or false to delete record by record
+     */
+    public void setCascadeDeleteSetBased(boolean cascadeDeleteSetBased)
+    {
+        this.cascadeDeleteSetBased = cascadeDeleteSetBased;
+    }
+
     /**
      * sets the default cascade action for deletes on foreign key relations.
      * @param cascadeDeleteAction cascade action for deletes (DBRelation.DBCascadeAction.CASCADE_RECORDS)
@@ -513,6 +855,7 @@ public class DBTable extends DBRowSet implements Cloneable
         // Perform delete
         String sqlCmd = cmd.getDelete(this);
         int affected  = db.executeSQL(sqlCmd, cmd.getParamValues(), conn);
+        onRecordsModified(key, conn);
         if (affected < 0)
         { // Delete Failed
             throw new UnexpectedReturnValueException(affected, "db.executeSQL()");
@@ -108,8 +108,9 @@ public class DBTableColumn extends DBColumn
         this.size = other.size;
         this.dataMode = other.dataMode;
         this.defValue = other.defValue;
-        this.attributes = new Attributes();
-        this.attributes.addAll(other.attributes);
+        Attributes attributes = new Attributes();
+        attributes.addAll(other.attributes);
+        this.attributes = attributes;
         this.options = other.options;
         if (newTable != null)
         {
@@ -205,9 +206,9 @@ public class DBTableColumn extends DBColumn
             // Remove sign
             size = Math.abs(size);
         }
-        else if (attributes!=null && attributes.contains(DBCOLATTR_SINGLEBYTECHARS))
+        else
         {   // Remove single by chars attribute
-            attributes.remove(DBCOLATTR_SINGLEBYTECHARS);
+            removeAttribute(DBCOLATTR_SINGLEBYTECHARS);
         }
         // set now
         this.size = size;
@@ -330,8 +331,7 @@ public class DBTableColumn extends DBColumn
         }
         else  
         {   // Remove Attribute
-            if (attributes!=null)
-                attributes.remove(DBCOLATTR_READONLY);
+            removeAttribute(DBCOLATTR_READONLY);
         }
     }
     
@@ -346,12 +346,14 @@ public class DBTableColumn extends DBColumn
         log.debug("Creating options for enum type {}.", enumType.getName());            
         @SuppressWarnings({ "rawtypes", "unchecked" })
         Enum<?>[] items = ((Class<Enum>)enumType).getEnumConstants();
-        this.options = new Options();
+        Options options = new Options();
         for (int i=0; i<items.length; i++)
         {
             Enum<?> item = items[i];
             options.add(item, item.toString(), true);
         }
+        // publish when complete
+        this.options = options;
         // set enumType
         setAttribute(Column.COLATTR_ENUMTYPE, enumType);
     }
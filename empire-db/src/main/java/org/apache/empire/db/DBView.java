@@ -21,6 +21,7 @@ package org.apache.empire.db;
 import java.sql.Connection;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.empire.commons.Attributes;
 import org.apache.empire.commons.Options;
 import org.apache.empire.data.DataType;
 import org.apache.empire.db.expr.column.DBValueExpr;
@@ -132,8 +133,9 @@ public abstract class DBView extends DBRowSet
         @Override
         public Object getAttribute(String name)
         {
-            if (attributes != null && attributes.contains(name))
-                return attributes.get(name);
+            Attributes.Attribute a = (attributes != null ? attributes.find(name) : null);
+            if (a != null)
+                return a.getValue();
             // Otherwise ask expression
             if (updateColumn==null)
                 return null;
@@ -296,6 +298,7 @@ public abstract class DBView extends DBRowSet
             throw new ItemExistsException(col.getName());
         // add now
         columns.add(col);
+        resetColumnIndex();
     }
 
     /**
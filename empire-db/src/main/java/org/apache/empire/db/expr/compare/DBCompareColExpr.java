@@ -19,6 +19,8 @@
 package org.apache.empire.db.expr.compare;
 
 // java
+import org.apache.empire.commons.StringUtils;
+import org.apache.empire.db.DBCmdParam;
 import org.apache.empire.db.DBCmpType;
 import org.apache.empire.db.DBColumn;
 import org.apache.empire.db.DBColumnExpr;
@@ -151,6 +153,17 @@ public class DBCompareColExpr extends DBCompareExpr
         { // Null oder Not Null!
             op = DBCmpType.getNullType(op);
         }
+        // Array param (see DBCommand.prepareInList)
+        if ((op==DBCmpType.IN || op==DBCmpType.NOTIN) && (value instanceof DBCmdParam) && (((DBCmdParam)value).getValue() instanceof Object[]))
+        {   // compare with array
+            String template = getDatabase().getDriver().getArrayCompareExpr(op);
+            if (template != null)
+            {   // e.g. " = ANY(?)"
+                buf.append(" ");
+                buf.append(StringUtils.replace(template, "{0}", valsql));
+                return;
+            }
+        }
         // Add comparison operator and value
         switch (op)
         {
@@ -313,6 +313,16 @@ public class DBDatabaseDriverH2 extends DBDatabaseDriver
         }
     }
     
+    /**
+     * A block reserved in the sequence table is undone by a rollback.
+     * @see DBDatabaseDriver#isSequenceBlockTransactional(DBDatabase, String)
+     */
+    @Override
+    protected boolean isSequenceBlockTransactional(DBDatabase db, String seqName)
+    {
+        return useSequenceTable;
+    }
+
     /**
      * @see DBDatabaseDriver#getNextSequenceValue(DBDatabase, String, int, Connection)
      */
@@ -322,7 +332,7 @@ public class DBDatabaseDriverH2 extends DBDatabaseDriver
         if (useSequenceTable)
         {   // Use a sequence Table to generate Sequences
             DBTable t = db.getTable(sequenceTableName);
-            return ((DBSeqTable)t).getNextValue(seqName, minValue, conn);
+            return ((DBSeqTable)t).getNextValue(seqName, minValue, getSequenceBlockSize(seqName), conn);
         }
         else
         {   // Post Detection
@@ -21,6 +21,7 @@ package org.apache.empire.db.hsql;
 import java.sql.Connection;
 import java.util.GregorianCalendar;
 
+import org.apache.empire.commons.ObjectUtils;
 import org.apache.empire.data.DataType;
 import org.apache.empire.db.DBCmdType;
 import org.apache.empire.db.DBColumnExpr;
@@ -249,6 +250,17 @@ public class DBDatabaseDriverHSql extends DBDatabaseDriver
         return val;
     }
 
+    /**
+     * @see DBDatabaseDriver#getSequenceIncrement(DBDatabase, String, Connection)
+     */
+    @Override
+    protected Long getSequenceIncrement(DBDatabase db, String seqName, Connection conn)
+    {
+        String sql = "SELECT INCREMENT FROM INFORMATION_SCHEMA.SYSTEM_SEQUENCES WHERE SEQUENCE_NAME='"+seqName+"'";
+        Object val = db.querySingleValue(sql, null, conn);
+        return (ObjectUtils.isEmpty(val) ? null : ObjectUtils.getLong(val));
+    }
+
     /**
      * @see DBDatabaseDriver#getNextSequenceValueExpr(DBTableColumn col)
      */
@@ -258,6 +270,17 @@ public class DBDatabaseDriverHSql extends DBDatabaseDriver
         throw new NotSupportedException(this, "getNextSequenceValueExpr");
     }
 
+    /**
+     * Returns the maximum number of rows of a multi-row insert statement.<br>
+     * HSQLDB 1.8 does not support multi-row VALUES clauses, hence each row is inserted by a separate statement.
+     * @see DBDatabaseDriver#getMaxBulkInsertRows()
+     */
+    @Override
+    public int getMaxBulkInsertRows()
+    {
+        return 1;
+    }
+
     /**
      * Overridden. Returns a timestamp that is used for record updates created by the database server.
      * 
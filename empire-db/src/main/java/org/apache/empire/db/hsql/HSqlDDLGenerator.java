@@ -96,6 +96,9 @@ public class HSqlDDLGenerator extends DBDDLGenerator<DBDatabaseDriverHSql>
         sql.append("CREATE SEQUENCE ");
         db.appendQualifiedName(sql, seqName, detectQuoteName(seqName));
         sql.append(" START WITH 1");
+        int blockSize = driver.getSequenceBlockSize(seqName);
+        if (blockSize>1)
+            sql.append(" INCREMENT BY ").append(blockSize);
         // executeDLL
         script.addStmt(sql);
     }
@@ -20,6 +20,7 @@ package org.apache.empire.db.mysql;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.GregorianCalendar;
 
 import org.apache.empire.commons.StringUtils;
@@ -108,7 +109,7 @@ public class DBDatabaseDriverMySQL extends DBDatabaseDriver
          * @return the delete SQL-Command
          */
         @Override
-        public synchronized String getDelete(DBTable table)
+        public String getDelete(DBTable table)
         {
         	if (joins == null) {
         		// Default
@@ -117,12 +118,17 @@ public class DBDatabaseDriverMySQL extends DBDatabaseDriver
         	
         	// DELETE with Multiple-Table Syntax
         	// http://dev.mysql.com/doc/refman/5.7/en/delete.html
-            resetParamUsage();
-            StringBuilder buf = new StringBuilder("DELETE ");
-            buf.append(table.getAlias());
-            addFrom(buf);
-            addWhere(buf);
-            return buf.toString();
+            RenderContext ctx = beginRender();
+            try
+            {
+                StringBuilder buf = new StringBuilder("DELETE ");
+                buf.append(table.getAlias());
+                addFrom(buf);
+                addWhere(buf);
+                return buf.toString();
+            } finally {
+                endRender(ctx);
+            }
         }
     }
     
@@ -1079,6 +1085,16 @@ public class DBDatabaseDriverMySQL extends DBDatabaseDriver
         }
     }
     
+    /**
+     * A block reserved in the sequence table is undone by a rollback.
+     * @see DBDatabaseDriver#isSequenceBlockTransactional(DBDatabase, String)
+     */
+    @Override
+    protected boolean isSequenceBlockTransactional(DBDatabase db, String seqName)
+    {
+        return useSequenceTable;
+    }
+
     /**
      * @see DBDatabaseDriver#getNextSequenceValue(DBDatabase, String, int, Connection)
      */
@@ -1088,7 +1104,7 @@ public class DBDatabaseDriverMySQL extends DBDatabaseDriver
         if (useSequenceTable)
         {   // Use a sequence Table to generate Sequences
             DBTable t = db.getTable(sequenceTableName);
-            return ((DBSeqTable)t).getNextValue(seqName, minValue, conn);
+            return ((DBSeqTable)t).getNextValue(seqName, minValue, getSequenceBlockSize(seqName), conn);
         }
         else
         {   // Post Detection
@@ -1105,6 +1121,16 @@ public class DBDatabaseDriverMySQL extends DBDatabaseDriver
         throw new NotSupportedException(this, "getNextSequenceValueExpr");
     }
 
+    /**
+     * Returns the maximum number of placeholders of a prepared statement.
+     * @see DBDatabaseDriver#getMaxStatementParams()
+     */
+    @Override
+    public int getMaxStatementParams()
+    {
+        return 65535;
+    }
+
     /**
      * Overridden. Returns a timestamp that is used for record updates created by the database server.
      * 
@@ -1118,6 +1144,17 @@ public class DBDatabaseDriverMySQL extends DBDatabaseDriver
         return new java.sql.Timestamp(cal.getTimeInMillis());
     }
 
+    /**
+     * Overridden. MySQL Connector/J only streams results row by row if the fetch size is set to Integer.MIN_VALUE.<br>
+     * Note: While a streaming result is open, no other statement may be executed on the same connection. 
+     */
+    @Override
+    protected void setStreamingHints(Statement stmt, Connection conn)
+        throws SQLException
+    {
+        stmt.setFetchSize(Integer.MIN_VALUE);
+    }
+
     /**
      * @see DBDatabaseDriver#getDDLScript(DBCmdType, DBObject, DBSQLScript)  
      */
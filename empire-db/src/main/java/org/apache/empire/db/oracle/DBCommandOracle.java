@@ -157,67 +157,72 @@ public class DBCommandOracle extends DBCommand
      * @param buf the SQL statement
      */
     @Override
-    public synchronized void getSelect(StringBuilder buf)
+    public void getSelect(StringBuilder buf)
     {        
-        resetParamUsage();
         if (select == null)
             throw new ObjectNotValidException(this);
-        // limit rows
-        boolean usePreparedStatements = isPreparedStatementsEnabled();
-        if (limitRows>=0)
-        {   // add limitRows and skipRows wrapper
-            buf.append("SELECT * FROM (");
-            if (skipRows>0)
-                buf.append("SELECT row_.*, rownum rownum_ FROM (");
-        }
-        // Prepares statement
-        buf.append("SELECT ");
-        if (StringUtils.isNotEmpty(optimizerHint))
-        {   // Append an optimizer hint to the select statement e.g. SELECT /*+ RULE */
-            buf.append("/*+ ").append(optimizerHint).append(" */ ");
-        }
-        if (selectDistinct)
-            buf.append("DISTINCT ");
-        // Add Select Expressions
-        addListExpr(buf, select, CTX_ALL, ", ");
-        // Join
-        addFrom(buf);
-        // Where
-        addWhere(buf);
-        // Connect By
-        if (connectBy != null)
-        {   // Add 'Connect By Prior' Expression
-        	buf.append("\r\nCONNECT BY PRIOR ");
-            connectBy.addSQL(buf, CTX_DEFAULT | CTX_NOPARENTHESES);
-            // Start With
-            if (startWith != null)
-            {	// Add 'Start With' Expression
-            	buf.append("\r\nSTART WITH ");
-                startWith.addSQL(buf, CTX_DEFAULT);
+        RenderContext ctx = beginRender();
+        try
+        {
+            // limit rows
+            boolean usePreparedStatements = isPreparedStatementsEnabled();
+            if (limitRows>=0)
+            {   // add limitRows and skipRows wrapper
+                buf.append("SELECT * FROM (");
+                if (skipRows>0)
+                    buf.append("SELECT row_.*, rownum rownum_ FROM (");
             }
-        }
-        // Grouping
-        addGrouping(buf);
-        // Order
-        if (orderBy != null)
-        { // Having
+            // Prepares statement
+            buf.append("SELECT ");
+            if (StringUtils.isNotEmpty(optimizerHint))
+            {   // Append an optimizer hint to the select statement e.g. SELECT /*+ RULE */
+                buf.append("/*+ ").append(optimizerHint).append(" */ ");
+            }
+            if (selectDistinct)
+                buf.append("DISTINCT ");
+            // Add Select Expressions
+            addListExpr(buf, select, CTX_ALL, ", ");
+            // Join
+            addFrom(buf);
+            // Where
+            addWhere(buf);
+            // Connect By
             if (connectBy != null)
-                buf.append("\r\nORDER SIBLINGS BY ");
-            else
-                buf.append("\r\nORDER BY ");
-            // Add List of Order By Expressions
-            addListExpr(buf, orderBy, CTX_DEFAULT, ", ");
-        }
-        // limit rows end
-        if (limitRows>=0)
-        {   // add limitRows and skipRows constraints
-            buf.append(") row_ WHERE rownum<=");
-            buf.append(usePreparedStatements ? "?" : String.valueOf(skipRows+limitRows));
-            if (skipRows>0)
-            {   // add skip rows
-                buf.append(") WHERE rownum_>");
-                buf.append(usePreparedStatements ? "?" : String.valueOf(skipRows));
+            {   // Add 'Connect By Prior' Expression
+            	buf.append("\r\nCONNECT BY PRIOR ");
+                connectBy.addSQL(buf, CTX_DEFAULT | CTX_NOPARENTHESES);
+                // Start With
+                if (startWith != null)
+                {	// Add 'Start With' Expression
+                	buf.append("\r\nSTART WITH ");
+                    startWith.addSQL(buf, CTX_DEFAULT);
+                }
+            }
+            // Grouping
+            addGrouping(buf);
+            // Order
+            if (orderBy != null)
+            { // Having
+                if (connectBy != null)
+                    buf.append("\r\nORDER SIBLINGS BY ");
+                else
+                    buf.append("\r\nORDER BY ");
+                // Add List of Order By Expressions
+                addListExpr(buf, orderBy, CTX_DEFAULT, ", ");
             }
+            // limit rows end
+            if (limitRows>=0)
+            {   // add limitRows and skipRows constraints
+                buf.append(") row_ WHERE rownum<=");
+                buf.append(usePreparedStatements ? "?" : String.valueOf(skipRows+limitRows));
+                if (skipRows>0)
+                {   // add skip rows
+                    buf.append(") WHERE rownum_>");
+                    buf.append(usePreparedStatements ? "?" : String.valueOf(skipRows));
+                }
+            }
+        } finally {
+            endRender(ctx);
         }
     }
 
@@ -246,7 +251,7 @@ public class DBCommandOracle extends DBCommand
      * If a join is required, this method creates a "MERGE INTO" expression 
      */
     @Override
-    public synchronized String getUpdate()
+    public String getUpdate()
     {
         // No Joins: Use Default
         if (joins==null || set==null)
@@ -257,120 +262,130 @@ public class DBCommandOracle extends DBCommand
 
     protected String getSimpleUpdate()
     {
-        resetParamUsage();
         if (set == null)
             return null;
-        StringBuilder buf = new StringBuilder("UPDATE ");
-        DBRowSet table =  set.get(0).getTable();
-        long context = CTX_FULLNAME;
-        // Optimizer Hint
-        if (StringUtils.isNotEmpty(optimizerHint))
-        {   // Append an optimizer hint to the select statement e.g. SELECT /*+ RULE */
-            buf.append("/*+ ").append(optimizerHint).append(" */ ");
-            // Append alias (if necessary)
-            if (optimizerHint.contains(table.getAlias()))
-                context |= CTX_ALIAS;
+        RenderContext ctx = beginRender();
+        try
+        {
+            StringBuilder buf = new StringBuilder("UPDATE ");
+            DBRowSet table =  set.get(0).getTable();
+            long context = CTX_FULLNAME;
+            // Optimizer Hint
+            if (StringUtils.isNotEmpty(optimizerHint))
+            {   // Append an optimizer hint to the select statement e.g. SELECT /*+ RULE */
+                buf.append("/*+ ").append(optimizerHint).append(" */ ");
+                // Append alias (if necessary)
+                if (optimizerHint.contains(table.getAlias()))
+                    context |= CTX_ALIAS;
+            }
+            // table
+            table.addSQL(buf, context);
+            // Simple Statement
+            context = CTX_NAME | CTX_VALUE;
+            // Set Expressions
+            buf.append("\r\nSET ");
+            addListExpr(buf, set, context, ", ");
+            // Add Where
+            addWhere(buf, context);
+            // done
+            return buf.toString();
+        } finally {
+            endRender(ctx);
         }
-        // table
-        table.addSQL(buf, context);
-        // Simple Statement
-        context = CTX_NAME | CTX_VALUE;
-        // Set Expressions
-        buf.append("\r\nSET ");
-        addListExpr(buf, set, context, ", ");
-        // Add Where
-        addWhere(buf, context);
-        // done
-        return buf.toString();
     }
     
     protected String getUpdateWithJoins()
     {
         // Generate Merge expression
-        resetParamUsage();
-        StringBuilder buf = new StringBuilder("MERGE INTO ");
-        DBRowSet table =  set.get(0).getTable();
-        table.addSQL(buf, CTX_FULLNAME|CTX_ALIAS);
-        // join (only one allowed yet)
-        DBColumnJoinExpr updateJoin = null;
-        for (DBJoinExpr jex : joins)
-        {   // The join
-            if (!(jex instanceof DBColumnJoinExpr))
-                continue;
-            if (jex.isJoinOn(table)==false)
-                continue;
-            // found the join
-            updateJoin = (DBColumnJoinExpr)jex;
-            break;
-        }
-        if (updateJoin==null)
-            throw new ObjectNotValidException(this);
-        Set<DBColumn> joinColumns = new HashSet<DBColumn>();
-        updateJoin.addReferencedColumns(joinColumns);
-        // using
-        buf.append("\r\nUSING ");
-        DBCommand inner = this.clone();
-        inner.clearSelect();
-        inner.clearOrderBy();
-        for (DBColumn jcol : joinColumns)
-        {   // Select join columns
-            if (jcol.getRowSet()!=table)
-                inner.select(jcol);
-        }
-        // find the source table
-        DBColumnExpr left  = updateJoin.getLeft();
-        DBColumnExpr right = updateJoin.getRight();
-        DBRowSet source = right.getUpdateColumn().getRowSet();
-        if (source==table)
-            source = left.getUpdateColumn().getRowSet();
-        // Add set expressions
-        String sourceAliasPrefix = source.getAlias()+".";
-        List<DBSetExpr> mergeSet = new ArrayList<DBSetExpr>(set.size());   
-        for (DBSetExpr sex : set)
-        {   // Select set expressions
-            Object val = sex.getValue();
-            if (val instanceof DBColumnExpr)
-            {
-                DBColumnExpr expr = ((DBColumnExpr)val);
-                if (!(expr instanceof DBColumn) && !(expr instanceof DBAliasExpr))
-                {   // rename column
-                    String name = "COL_"+String.valueOf(mergeSet.size());
-                    expr = expr.as(name);
+        RenderContext ctx = beginRender();
+        try
+        {
+            StringBuilder buf = new StringBuilder("MERGE INTO ");
+            DBRowSet table =  set.get(0).getTable();
+            table.addSQL(buf, CTX_FULLNAME|CTX_ALIAS);
+            // join (only one allowed yet)
+            DBColumnJoinExpr updateJoin = null;
+            for (DBJoinExpr jex : joins)
+            {   // The join
+                if (!(jex instanceof DBColumnJoinExpr))
+                    continue;
+                if (jex.isJoinOn(table)==false)
+                    continue;
+                // found the join
+                updateJoin = (DBColumnJoinExpr)jex;
+                break;
+            }
+            if (updateJoin==null)
+                throw new ObjectNotValidException(this);
+            Set<DBColumn> joinColumns = new HashSet<DBColumn>();
+            updateJoin.addReferencedColumns(joinColumns);
+            // using
+            buf.append("\r\nUSING ");
+            DBCommand inner = this.clone();
+            inner.clearSelect();
+            inner.clearOrderBy();
+            for (DBColumn jcol : joinColumns)
+            {   // Select join columns
+                if (jcol.getRowSet()!=table)
+                    inner.select(jcol);
+            }
+            // find the source table
+            DBColumnExpr left  = updateJoin.getLeft();
+            DBColumnExpr right = updateJoin.getRight();
+            DBRowSet source = right.getUpdateColumn().getRowSet();
+            if (source==table)
+                source = left.getUpdateColumn().getRowSet();
+            // Add set expressions
+            String sourceAliasPrefix = source.getAlias()+".";
+            List<DBSetExpr> mergeSet = new ArrayList<DBSetExpr>(set.size());   
+            for (DBSetExpr sex : set)
+            {   // Select set expressions
+                Object val = sex.getValue();
+                if (val instanceof DBColumnExpr)
+                {
+                    DBColumnExpr expr = ((DBColumnExpr)val);
+                    if (!(expr instanceof DBColumn) && !(expr instanceof DBAliasExpr))
+                    {   // rename column
+                        String name = "COL_"+String.valueOf(mergeSet.size());
+                        expr = expr.as(name);
+                    }
+                    // select
+                    inner.select(expr);
+                    // Name
+                    DBValueExpr NAME_EXPR = getDatabase().getValueExpr(sourceAliasPrefix+expr.getName(), DataType.UNKNOWN);
+                    mergeSet.add(sex.getColumn().to(NAME_EXPR));
+                }
+                else
+                {   // add original
+                    mergeSet.add(sex);
                 }
-                // select
-                inner.select(expr);
-                // Name
-                DBValueExpr NAME_EXPR = getDatabase().getValueExpr(sourceAliasPrefix+expr.getName(), DataType.UNKNOWN);
-                mergeSet.add(sex.getColumn().to(NAME_EXPR));
             }
-            else
-            {   // add original
-                mergeSet.add(sex);
+            // remove join (if not necessary)
+            if (inner.hasConstraintOn(table)==false)
+                inner.removeJoinsOn(table);
+            // add SQL for inner statement
+            inner.addSQL(buf, CTX_DEFAULT);
+            // add Alias
+            buf.append(" ");
+            buf.append(source.getAlias());
+            buf.append("\r\nON (");
+            left.addSQL(buf, CTX_DEFAULT);
+            buf.append(" = ");
+            right.addSQL(buf, CTX_DEFAULT);
+            // Compare Expression
+            if (updateJoin.getWhere() != null)
+            {   buf.append(" AND ");
+                updateJoin.getWhere().addSQL(buf, CTX_DEFAULT);
             }
+            // Set Expressions
+            buf.append(")\r\nWHEN MATCHED THEN UPDATE ");
+            buf.append("\r\nSET ");
+            addListExpr(buf, mergeSet, CTX_DEFAULT, ", ");
+            // done
+            return buf.toString();
+        } finally {
+            endRender(ctx);
         }
-        // remove join (if not necessary)
-        if (inner.hasConstraintOn(table)==false)
-            inner.removeJoinsOn(table);
-        // add SQL for inner statement
-        inner.addSQL(buf, CTX_DEFAULT);
-        // add Alias
-        buf.append(" ");
-        buf.append(source.getAlias());
-        buf.append("\r\nON (");
-        left.addSQL(buf, CTX_DEFAULT);
-        buf.append(" = ");
-        right.addSQL(buf, CTX_DEFAULT);
-        // Compare Expression
-        if (updateJoin.getWhere() != null)
-        {   buf.append(" AND ");
-            updateJoin.getWhere().addSQL(buf, CTX_DEFAULT);
-        }
-        // Set Expressions
-        buf.append(")\r\nWHEN MATCHED THEN UPDATE ");
-        buf.append("\r\nSET ");
-        addListExpr(buf, mergeSet, CTX_DEFAULT, ", ");
-        // done
-        return buf.toString();
     }
     
     /**
@@ -378,24 +393,29 @@ public class DBCommandOracle extends DBCommand
      * @return the delete SQL-Command
      */
     @Override
-    public synchronized String getDelete(DBTable table)
+    public String getDelete(DBTable table)
     {
-        resetParamUsage();
-        StringBuilder buf = new StringBuilder("DELETE ");
-        if (optimizerHint != null)
-        {   // Append an optimizer hint to the select statement e.g. SELECT /*+ RULE */
-            buf.append("/*+ ").append(optimizerHint).append(" */ ");
-        }
-        buf.append("FROM ");
-        table.addSQL(buf, CTX_FULLNAME);
-        // Set Expressions
-        if (where != null || having != null)
-        { // add where condition
-            buf.append("\r\nWHERE ");
-            if (where != null)
-                addListExpr(buf, where, CTX_NAME|CTX_VALUE, " AND ");
+        RenderContext ctx = beginRender();
+        try
+        {
+            StringBuilder buf = new StringBuilder("DELETE ");
+            if (optimizerHint != null)
+            {   // Append an optimizer hint to the select statement e.g. SELECT /*+ RULE */
+                buf.append("/*+ ").append(optimizerHint).append(" */ ");
+            }
+            buf.append("FROM ");
+            table.addSQL(buf, CTX_FULLNAME);
+            // Set Expressions
+            if (where != null || having != null)
+            { // add where condition
+                buf.append("\r\nWHERE ");
+                if (where != null)
+                    addListExpr(buf, where, CTX_NAME|CTX_VALUE, " AND ");
+            }
+            return buf.toString();
+        } finally {
+            endRender(ctx);
         }
-        return buf.toString();
     }
 
 }
\ No newline at end of file
@@ -23,6 +23,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 
+import org.apache.empire.commons.ObjectUtils;
 import org.apache.empire.commons.StringUtils;
 import org.apache.empire.data.DataType;
 import org.apache.empire.db.DBCmdType;
@@ -38,6 +39,7 @@ import org.apache.empire.db.DBObject;
 import org.apache.empire.db.DBReader;
 import org.apache.empire.db.DBRelation;
 import org.apache.empire.db.DBSQLScript;
+import org.apache.empire.db.DBServerClock;
 import org.apache.empire.db.DBTable;
 import org.apache.empire.db.DBTableColumn;
 import org.apache.empire.db.DBView;
@@ -70,6 +72,8 @@ public class DBDatabaseDriverOracle extends DBDatabaseDriver
     
     private DBDDLGenerator<?> ddlGenerator = null; // lazy creation
 
+    private DBServerClock serverClock = null; // query server time for every update
+
     /**
      * Constructor for the Oracle database driver.<br>
      * 
@@ -101,6 +105,39 @@ public class DBDatabaseDriverOracle extends DBDatabaseDriver
         log.info("DBDatabaseDriverOracle Boolean Type set to " + booleanType);
     }
 
+    /**
+     * Returns the server clock used for update timestamps
+     * @return the server clock or null if the server time is queried for every update
+     */
+    public DBServerClock getServerClock()
+    {
+        return serverClock;
+    }
+
+    /**
+     * Sets the server clock used for update timestamps.<br>
+     * The precision of the clock must match the timestamp columns. 
+     * For DATE columns use a clock created by createServerClock().
+     * @param serverClock the server clock or null to query the server time for every update
+     */
+    public void setServerClock(DBServerClock serverClock)
+    {
+        this.serverClock = serverClock;
+    }
+
+    /**
+     * Creates a server clock for update timestamps stored in DATE columns (the default for DataType.DATETIME).<br>
+     * The clock is calibrated with sysdate and provides timestamps with a precision of one second.<br>
+     * Use setServerClock(driver.createServerClock()) in order to use it.
+     * @return the server clock
+     */
+    public DBServerClock createServerClock()
+    {
+        DBServerClock clock = new DBServerClock(this, "select sysdate from dual");
+        clock.setPrecision(1000);
+        return clock;
+    }
+
     /**
      * Returns whether or not a particular feature is supported by this driver
      * @param type type of requested feature. @see DBDriverFeature
@@ -301,6 +338,16 @@ public class DBDatabaseDriverOracle extends DBDatabaseDriver
         return super.getResultValue(rset, columnIndex, dataType);
     }
 
+    /**
+     * Overridden. Boolean values are emulated as characters (see getResultValue).
+     */
+    @Override
+    public boolean getResultBoolean(ResultSet rset, int columnIndex, DataType dataType)
+        throws SQLException
+    {
+        return ObjectUtils.getBoolean(getResultValue(rset, columnIndex, dataType));
+    }
+
     /**
      * @see DBDatabaseDriver#getNextSequenceValue(DBDatabase, String, int, Connection)
      */
@@ -320,6 +367,23 @@ public class DBDatabaseDriverOracle extends DBDatabaseDriver
         return val;
     }
 
+    /**
+     * @see DBDatabaseDriver#getSequenceIncrement(DBDatabase, String, Connection)
+     */
+    @Override
+    protected Long getSequenceIncrement(DBDatabase db, String seqName, Connection conn)
+    {
+        StringBuilder sql = new StringBuilder(80);
+        String schema = db.getSchema();
+        if (StringUtils.isNotEmpty(schema))
+            sql.append("SELECT INCREMENT_BY FROM ALL_SEQUENCES WHERE SEQUENCE_OWNER='").append(schema.toUpperCase()).append("' AND ");
+        else
+            sql.append("SELECT INCREMENT_BY FROM USER_SEQUENCES WHERE ");
+        sql.append("SEQUENCE_NAME='").append(detectQuoteName(seqName) ? seqName : seqName.toUpperCase()).append("'");
+        Object val = db.querySingleValue(sql.toString(), null, conn);
+        return (ObjectUtils.isEmpty(val) ? null : ObjectUtils.getLong(val));
+    }
+
     /**
      * @see DBDatabaseDriver#getNextSequenceValueExpr(DBTableColumn col)
      */
@@ -335,15 +399,62 @@ public class DBDatabaseDriverOracle extends DBDatabaseDriver
         return new DBValueExpr(column.getDatabase(), sql.toString(), DataType.UNKNOWN);
     }
     
+    /**
+     * Returns the maximum number of bind variables of a statement.
+     * @see DBDatabaseDriver#getMaxStatementParams()
+     */
+    @Override
+    public int getMaxStatementParams()
+    {
+        return 65535;
+    }
+
+    /**
+     * Returns the maximum number of IN list parameters.<br>
+     * Oracle does not allow more than 1000 expressions in an IN list (ORA-01795).
+     * @see DBDatabaseDriver#getMaxInListParams()
+     */
+    @Override
+    public int getMaxInListParams()
+    {
+        return 1000;
+    }
+
+    /**
+     * Creates an Oracle specific multi-row insert statement using INSERT ALL.
+     * <pre>
+     *   INSERT ALL INTO table (col1, col2) VALUES (?, ?) INTO table (col1, col2) VALUES (?, ?) SELECT 1 FROM DUAL
+     * </pre>
+     * @see DBDatabaseDriver#getBulkInsertStmt(DBTable, DBColumn[], int)
+     */
+    @Override
+    public String getBulkInsertStmt(DBTable table, DBColumn[] columns, int rowCount)
+    {
+        StringBuilder buf = new StringBuilder("INSERT ALL");
+        for (int i=0; i<rowCount; i++)
+        {
+            buf.append("\r\nINTO ");
+            addBulkInsertTarget(buf, table, columns);
+            buf.append(" VALUES ");
+            addBulkInsertValues(buf, columns.length);
+        }
+        buf.append("\r\nSELECT 1 FROM DUAL");
+        return buf.toString();
+    }
+
     /**
      * Overridden. Returns a timestamp that is used for record updates created by the database server.
+     * Unless the server clock has been set to null, the timestamp is provided by the calibrated server clock.
      * 
      * @return the current date and time of the database server.
      */
     @Override
     public java.sql.Timestamp getUpdateTimestamp(Connection conn)
     {
-        // Default implementation
+        // Calibrated server clock
+        if (serverClock!=null)
+            return serverClock.getTimestamp(conn);
+        // Query server time
         ResultSet rs = null;
         try
         {   // Oracle Timestamp query
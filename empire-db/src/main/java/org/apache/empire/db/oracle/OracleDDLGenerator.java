@@ -23,6 +23,7 @@ import org.apache.empire.db.DBColumn;
 import org.apache.empire.db.DBDDLGenerator;
 import org.apache.empire.db.DBDatabase;
 import org.apache.empire.db.DBExpr;
+import org.apache.empire.db.DBObject;
 import org.apache.empire.db.DBSQLScript;
 import org.apache.empire.db.DBTable;
 import org.apache.empire.db.DBTableColumn;
@@ -127,7 +128,9 @@ public class OracleDDLGenerator extends DBDDLGenerator<DBDatabaseDriverOracle>
         sql.append(" --\r\n");
         sql.append("CREATE SEQUENCE ");
         db.appendQualifiedName(sql, seqName, detectQuoteName(seqName));
-        sql.append(" INCREMENT BY 1 START WITH 1 MINVALUE 0 NOCYCLE NOCACHE NOORDER");
+        sql.append(" INCREMENT BY ");
+        sql.append(String.valueOf(driver.getSequenceBlockSize(seqName)));
+        sql.append(" START WITH 1 MINVALUE 0 NOCYCLE NOCACHE NOORDER");
         // executeDLL
         script.addStmt(sql);
     }
@@ -165,8 +168,9 @@ public class OracleDDLGenerator extends DBDDLGenerator<DBDatabaseDriverOracle>
         sql.append(" IS '");
         sql.append(comment);
         sql.append("'");
-        // Create Index
-        script.addStmt(sql);
+        // Create Comment
+        DBObject object = (expr instanceof DBColumn) ? ((DBColumn)expr).getRowSet() : expr;
+        script.addStmt(sql, object);
     }
     
 }
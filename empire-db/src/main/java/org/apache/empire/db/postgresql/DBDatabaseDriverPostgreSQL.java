@@ -19,13 +19,21 @@
 package org.apache.empire.db.postgresql;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Date;
 import java.util.GregorianCalendar;
 
+import org.apache.empire.commons.ObjectUtils;
 import org.apache.empire.commons.StringUtils;
 import org.apache.empire.data.DataType;
+import org.apache.empire.db.DBBlobData;
+import org.apache.empire.db.DBClobData;
 import org.apache.empire.db.DBCmdType;
+import org.apache.empire.db.DBCmpType;
 import org.apache.empire.db.DBColumnExpr;
 import org.apache.empire.db.DBCommand;
 import org.apache.empire.db.DBDDLGenerator;
@@ -432,6 +440,22 @@ public class DBDatabaseDriverPostgreSQL extends DBDatabaseDriver
         return val;
     }
 
+    /**
+     * @see DBDatabaseDriver#getSequenceIncrement(DBDatabase, String, Connection)
+     */
+    @Override
+    protected Long getSequenceIncrement(DBDatabase db, String seqName, Connection conn)
+    {
+        StringBuilder sql = new StringBuilder(80);
+        sql.append("SELECT increment FROM information_schema.sequences WHERE sequence_name='");
+        sql.append(detectQuoteName(seqName) ? seqName : seqName.toLowerCase()).append("'");
+        String schema = db.getSchema();
+        if (StringUtils.isNotEmpty(schema))
+            sql.append(" AND sequence_schema='").append(schema.toLowerCase()).append("'");
+        Object val = db.querySingleValue(sql.toString(), null, conn);
+        return (ObjectUtils.isEmpty(val) ? null : ObjectUtils.getLong(val));
+    }
+
     /**
      * @see DBDatabaseDriver#getNextSequenceValueExpr(DBTableColumn col)
      */
@@ -448,6 +472,64 @@ public class DBDatabaseDriverPostgreSQL extends DBDatabaseDriver
         return new DBValueExpr(column.getDatabase(), sql.toString(), DataType.UNKNOWN);
     }
 
+    /**
+     * Returns the maximum number of parameters of a statement.
+     * @see DBDatabaseDriver#getMaxStatementParams()
+     */
+    @Override
+    public int getMaxStatementParams()
+    {
+        return 32767;
+    }
+
+    /**
+     * Large IN lists are bound as a single array parameter.
+     * @see DBDatabaseDriver#getArrayCompareExpr(DBCmpType)
+     */
+    @Override
+    public String getArrayCompareExpr(DBCmpType op)
+    {
+        return (op==DBCmpType.NOTIN) ? "<> ALL ({0})" : "= ANY ({0})";
+    }
+
+    /**
+     * Overridden in order to bind Object arrays as SQL arrays.
+     * @see DBDatabaseDriver#addStatementParam(PreparedStatement, int, Object)
+     */
+    @Override
+    protected void addStatementParam(PreparedStatement pstmt, int paramIndex, Object value)
+        throws SQLException
+    {
+        if (value instanceof Object[])
+        {   // create SQL array
+            Object[] values = (Object[])value;
+            String typeName = "varchar";
+            Object first = (values.length > 0 ? values[0] : null);
+            if (first instanceof Integer || first instanceof Short)
+                typeName = "int4";
+            else if (first instanceof Long)
+                typeName = "int8";
+            else if (first instanceof Number)
+                typeName = "numeric";
+            else if (first instanceof Boolean)
+                typeName = "bool";
+            else if (first instanceof Date)
+            {   // convert dates
+                typeName = "timestamp";
+                Object[] ts = new Object[values.length];
+                for (int i=0; i<values.length; i++)
+                    ts[i] = (values[i] instanceof Date) ? new Timestamp(((Date)values[i]).getTime()) : values[i];
+                values = ts;
+            }
+            pstmt.setArray(paramIndex, pstmt.getConnection().createArrayOf(typeName, values));
+            // log
+            if (log.isDebugEnabled())
+                log.debug("Statement param {} set to {} array of {} elements", new Object[] { paramIndex, typeName, values.length });
+            return;
+        }
+        super.addStatementParam(pstmt, paramIndex, value);
+    }
+
     /**
      * Overridden. Returns a timestamp that is used for record updates created by the database server.
      * 
@@ -461,6 +543,20 @@ public class DBDatabaseDriverPostgreSQL extends DBDatabaseDriver
         return new java.sql.Timestamp(cal.getTimeInMillis());
     }
 
+    /**
+     * Overridden. The PostgreSQL JDBC driver only uses a cursor to fetch the rows in portions 
+     * if autocommit is disabled on the connection. Otherwise the whole result is read into memory.
+     */
+    @Override
+    protected void setStreamingHints(Statement stmt, Connection conn)
+        throws SQLException
+    {
+        if (conn.getAutoCommit())
+            log.warn("Streaming query requested but autocommit is enabled. PostgreSQL will read the whole result into memory.");
+        // set fetch size
+        super.setStreamingHints(stmt, conn);
+    }
+
     /**
      * @see DBDatabaseDriver#getDDLScript(DBCmdType, DBObject, DBSQLScript)  
      */
@@ -488,5 +584,31 @@ public class DBDatabaseDriverPostgreSQL extends DBDatabaseDriver
     	}
     }
 
+    /**
+     * Postgre stores BLOBs as bytea which is always transferred completely
+     */
+    @Override
+    public DBBlobData getResultBlobData(ResultSet rset, int columnIndex, DataType dataType)
+        throws SQLException
+    {
+        if (dataType != DataType.BLOB)
+            return super.getResultBlobData(rset, columnIndex, dataType);
+        byte[] value = rset.getBytes(columnIndex);
+        return (value != null) ? new DBBlobData(value) : null;
+    }
+
+    /**
+     * Postgre stores CLOBs as text which is always transferred completely
+     */
+    @Override
+    public DBClobData getResultClobData(ResultSet rset, int columnIndex, DataType dataType)
+        throws SQLException
+    {
+        if (dataType != DataType.CLOB)
+            return super.getResultClobData(rset, columnIndex, dataType);
+        String value = rset.getString(columnIndex);
+        return (value != null) ? new DBClobData(value) : null;
+    }
+
     
 }
@@ -424,7 +424,7 @@ public class DBDatabaseDriverSQLite extends DBDatabaseDriver
         {
             if (sqlParams != null)
             { // Use a prepared statement
-                PreparedStatement pstmt = conn.prepareStatement(sqlCmd);
+                PreparedStatement pstmt = prepareStatement(conn, sqlCmd, ResultSet.TYPE_FORWARD_ONLY, false);
                 stmt = pstmt;
                 prepareStatement(pstmt, sqlParams);
                 count = pstmt.executeUpdate();
@@ -479,12 +479,12 @@ public class DBDatabaseDriverSQLite extends DBDatabaseDriver
         else if (dataType == DataType.CLOB)
         {
             java.sql.Clob clob = rset.getClob(columnIndex);
-            return ((clob != null) ? clob.getSubString(1, (int) clob.length()) : null);
+            return ((clob != null) ? clob.getSubString(1, getLobLength(clob.length())) : null);
         }
         else if (dataType == DataType.BLOB)
         { // Get bytes of a binary large object
             java.sql.Blob blob = rset.getBlob(columnIndex);
-            return ((blob != null) ? blob.getBytes(1, (int) blob.length()) : null);
+            return ((blob != null) ? blob.getBytes(1, getLobLength(blob.length())) : null);
         }
         else
         {
@@ -535,6 +535,27 @@ public class DBDatabaseDriverSQLite extends DBDatabaseDriver
         }
     }
     
+    /**
+     * Returns the maximum number of host parameters (SQLITE_MAX_VARIABLE_NUMBER).
+     * @see DBDatabaseDriver#getMaxStatementParams()
+     */
+    @Override
+    public int getMaxStatementParams()
+    {
+        return 999;
+    }
+
+    /**
+     * Returns the maximum number of rows of a VALUES clause.<br>
+     * Older versions of SQLite limit multi-row VALUES clauses to SQLITE_MAX_COMPOUND_SELECT (500) rows.
+     * @see DBDatabaseDriver#getMaxBulkInsertRows()
+     */
+    @Override
+    public int getMaxBulkInsertRows()
+    {
+        return 500;
+    }
+
     /**
      * Overridden. Returns a timestamp that is used for record updates created
      * by the database server.
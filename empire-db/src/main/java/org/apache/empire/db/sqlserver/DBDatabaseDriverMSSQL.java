@@ -361,6 +361,16 @@ public class DBDatabaseDriverMSSQL extends DBDatabaseDriver
         }
     }
 
+    /**
+     * A block reserved in the sequence table is undone by a rollback.
+     * @see DBDatabaseDriver#isSequenceBlockTransactional(DBDatabase, String)
+     */
+    @Override
+    protected boolean isSequenceBlockTransactional(DBDatabase db, String seqName)
+    {
+        return useSequenceTable;
+    }
+
     /**
      * @see DBDatabaseDriver#getNextSequenceValue(DBDatabase, String, int, Connection)
      */
@@ -370,7 +380,7 @@ public class DBDatabaseDriverMSSQL extends DBDatabaseDriver
         if (useSequenceTable)
         {   // Use a sequence Table to generate Sequences
             DBTable t = db.getTable(sequenceTableName);
-            return ((DBSeqTable)t).getNextValue(seqName, minValue, conn);
+            return ((DBSeqTable)t).getNextValue(seqName, minValue, getSequenceBlockSize(seqName), conn);
         }
         else
         {   // Post Detection
@@ -405,6 +415,17 @@ public class DBDatabaseDriverMSSQL extends DBDatabaseDriver
         return valBuf.toString();
     }
     
+    /**
+     * Returns the maximum number of parameters of a statement.<br>
+     * SQL Server rejects requests with 2100 or more parameters.
+     * @see DBDatabaseDriver#getMaxStatementParams()
+     */
+    @Override
+    public int getMaxStatementParams()
+    {
+        return 2099;
+    }
+
     /**
      * Overridden. Returns a timestamp that is used for record updates created by the database server.
      * 
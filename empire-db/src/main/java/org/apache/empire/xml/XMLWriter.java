@@ -360,6 +360,21 @@ public class XMLWriter
      * @param styleSheet the XML-DOM-Document to print
      */
     public void print(Document doc, String styleSheet)
+    {
+        printProlog(styleSheet);
+        // Print the Document
+        print(doc.getDocumentElement(), 0);
+        out.flush();
+    }
+
+    /**
+     * Prints the xml declaration and the stylesheet processing instruction (if any).<br>
+     * Use together with printStartTag, printTextElement and printEndTag in order to write 
+     * a document without building a DOM tree first. The output is the same as for print(Document).
+     * 
+     * @param styleSheet the stylesheet (optional)
+     */
+    public void printProlog(String styleSheet)
     {
         if (!canonical)
         {
@@ -374,11 +389,97 @@ public class XMLWriter
             out.print(styleSheet);
             out.println("\"?>");
         }
-        // Print the Document
-        print(doc.getDocumentElement(), 0);
+    }
+
+    /**
+     * Prints the start tag of an element with an optional attribute.
+     * 
+     * @param name the element name
+     * @param attrName the attribute name (optional)
+     * @param attrValue the attribute value
+     * @param childElements true if child elements will follow
+     */
+    public void printStartTag(String name, String attrName, String attrValue, boolean childElements)
+    {
+        out.print('<');
+        out.print(name);
+        printAttribute(attrName, attrValue);
+        if (childElements)
+            out.println('>');
+        else
+            out.print('>');
+    }
+
+    /**
+     * Prints an element containing text only.
+     * 
+     * @param name the element name
+     * @param attrName the attribute name (optional)
+     * @param attrValue the attribute value
+     * @param text the element text (may be null)
+     */
+    public void printTextElement(String name, String attrName, String attrValue, String text)
+    {
+        printStartTag(name, attrName, attrValue, false);
+        if (text != null)
+            out.print(normalize(text));
+        out.print("</");
+        out.print(name);
+        out.println('>');
+    }
+
+    /**
+     * Prints the end tag of an element started with printStartTag.
+     * 
+     * @param name the element name
+     * @param level the nesting level of the element
+     * @param childElements true if child elements have been printed
+     */
+    public void printEndTag(String name, int level, boolean childElements)
+    {
+        if (childElements)
+        { // padding
+            for (int s = 1; s < level; s++)
+                out.print(" ");
+        }
+        out.print("</");
+        out.print(name);
+        out.println('>');
+    }
+
+    /**
+     * Prints the indent for a child element.
+     * 
+     * @param level the nesting level of the parent element
+     */
+    public void printIndent(int level)
+    {
+        for (int s = 0; s < level; s++)
+            out.print(" ");
+    }
+
+    /**
+     * Flushes the output
+     */
+    public void flush()
+    {
         out.flush();
     }
 
+    /**
+     * Prints an attribute
+     */
+    private void printAttribute(String attrName, String attrValue)
+    {
+        if (attrName == null)
+            return;
+        out.print(' ');
+        out.print(attrName);
+        out.print("=\"");
+        out.print(normalize(attrValue));
+        out.print('"');
+    }
+
     /**
      * Sorts attributes by name.
      * 
@@ -19,7 +19,17 @@
 package org.apache.empire.commons;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Iterator;
 import java.util.Random;
 
 import javax.xml.parsers.DocumentBuilder;
@@ -68,6 +78,45 @@ public class AttributesTest
 		assertEquals(Integer.valueOf(456), attributes.get("test"));
 	}
 
+	/**
+	 * Test method for {@link org.apache.empire.commons.Attributes#find(java.lang.String)}.
+	 */
+	@Test
+	public void testFind() throws IOException, ClassNotFoundException
+	{
+		Attributes attributes = new Attributes();
+		assertNull(attributes.find("test"));
+		attributes.set("Test", null);
+		assertNotNull(attributes.find("TEST"));
+		assertTrue(attributes.contains("test"));
+		attributes.set("test", "value");
+		assertEquals(1, attributes.size());
+		assertEquals("value", attributes.get("tEsT"));
+		// remove
+		attributes.set("other", "otherValue");
+		assertTrue(attributes.remove("OTHER"));
+		assertNull(attributes.find("other"));
+		// remove by iterator
+		Iterator<Attributes.Attribute> it = attributes.iterator();
+		it.next();
+		it.remove();
+		assertFalse(attributes.contains("test"));
+		// clone
+		attributes.set("test", "value");
+		Attributes clone = attributes.clone();
+		clone.remove("test");
+		assertEquals("value", attributes.get("test"));
+		assertNull(clone.find("test"));
+		// serialize
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		ObjectOutputStream oos = new ObjectOutputStream(bos);
+		oos.writeObject(attributes);
+		oos.close();
+		ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()));
+		Attributes copy = (Attributes)ois.readObject();
+		assertEquals("value", copy.get("TEST"));
+	}
+
 	/**
 	 * Test method for {@link org.apache.empire.commons.Attributes#addXml(org.w3c.dom.Element, long)}.
 	 * @throws ParserConfigurationException 
@@ -25,6 +25,7 @@ import static org.junit.Assert.assertTrue;
 
 import java.util.Iterator;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -356,4 +357,73 @@ public class OptionsTest
         assertEquals("txt2", node.getTextContent());
     }
 
+    /**
+     * Test the value index used for larger option lists.
+     */
+    @Test
+    public void testIndexedLookup()
+    {
+        Options options = new Options();
+        options.add(null, "none", true);
+        for (int i=1; i<=100; i++)
+            options.add(Integer.valueOf(i), "txt"+i, true);
+        // equal values of other types
+        assertEquals("txt5", options.get(Integer.valueOf(5)));
+        assertEquals("txt5", options.get(Long.valueOf(5)));
+        assertEquals("txt5", options.get("5"));
+        assertEquals("txt5", options.get(Double.valueOf(5)));
+        assertEquals("none", options.get(null));
+        assertEquals("none", options.get(""));
+        assertEquals("", options.get("05"));
+        assertEquals("", options.get(Integer.valueOf(101)));
+        assertEquals(-1, options.getIndex("x"));
+        // insert at top and remove
+        options.set(Integer.valueOf(0), "txt0", InsertPos.Top);
+        assertEquals(0, options.getIndex(Integer.valueOf(0)));
+        assertEquals(6, options.getIndex(Integer.valueOf(5)));
+        assertTrue(options.remove(Integer.valueOf(0)));
+        assertEquals(5, options.getIndex(Integer.valueOf(5)));
+        Iterator<OptionEntry> it = options.iterator();
+        it.next();
+        it.remove();
+        assertEquals(4, options.getIndex(Integer.valueOf(5)));
+        // mixed types
+        options.add("a", "txtA", false);
+        assertEquals("txtA", options.get("a"));
+        assertEquals("txt7", options.get("7"));
+        assertFalse(options.contains("b"));
+    }
+
+    @Test
+    public void testConcurrentIndexLookup() throws InterruptedException
+    {
+        for (int n=0; n<20; n++)
+        {   // the index is built by the first lookup of any thread
+            final Options options = new Options();
+            for (int i=0; i<1000; i++)
+                options.add(Integer.valueOf(i), "txt"+i, true);
+            final AtomicInteger missing = new AtomicInteger();
+            Thread[] threads = new Thread[4];
+            for (int t=0; t<threads.length; t++)
+            {
+                threads[t] = new Thread()
+                {
+                    @Override
+                    public void run()
+                    {
+                        for (int i=999; i>=0; i--)
+                        {
+                            if (!("txt"+i).equals(options.get(Integer.valueOf(i))))
+                                missing.incrementAndGet();
+                        }
+                    }
+                };
+                threads[t].start();
+            }
+            for (Thread t : threads)
+                t.join();
+            assertEquals(0, missing.get());
+        }
+    }
+
 }
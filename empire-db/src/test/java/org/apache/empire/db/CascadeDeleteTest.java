@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import static org.junit.Assert.assertEquals;
+
+import java.sql.Connection;
+
+import org.apache.empire.DBResource;
+import org.apache.empire.DBResource.DB;
+import org.apache.empire.data.DataMode;
+import org.apache.empire.data.DataType;
+import org.junit.Rule;
+import org.junit.Test;
+
+
+public class CascadeDeleteTest{
+
+    @Rule
+    public DBResource dbResource = new DBResource(DB.HSQL);
+
+    /**
+     * A table that counts the records deleted individually
+     */
+    public static class CountingTable extends DBTable
+    {
+        private final static long serialVersionUID = 1L;
+        public final DBTableColumn ID;
+        public final DBTableColumn PARENT_ID;
+        public int deleteCount = 0;
+
+        public CountingTable(String name, DBDatabase db, boolean hasParent)
+        {
+            super(name, db);
+            ID              = addColumn(name+"_ID",         DataType.AUTOINC,       0, DataMode.AutoGenerated, name+"_SEQ");
+            PARENT_ID       = (hasParent ? addColumn("PARENT_ID", DataType.INTEGER, 0, DataMode.NotNull) : null);
+            addColumn("NAME",                               DataType.TEXT,         40, DataMode.NotNull);
+            // Primary Key
+            setPrimaryKey(ID);
+        }
+
+        @Override
+        public void deleteRecord(Object[] key, Connection conn)
+        {
+            deleteCount++;
+            super.deleteRecord(key, conn);
+        }
+    }
+
+    /**
+     * A database with three levels of cascading relations
+     */
+    public static class CascadeDB extends DBDatabase
+    {
+        private final static long serialVersionUID = 1L;
+        public final CountingTable PARENT     = new CountingTable("PARENT", this, false);
+        public final CountingTable CHILD      = new CountingTable("CHILD", this, true);
+        public final CountingTable GRANDCHILD = new CountingTable("GRANDCHILD", this, true);
+
+        public CascadeDB()
+        {
+            addRelation( CHILD.PARENT_ID.referenceOn( PARENT.ID )).onDeleteCascadeRecords();
+            addRelation( GRANDCHILD.PARENT_ID.referenceOn( CHILD.ID )).onDeleteCascadeRecords();
+        }
+    }
+
+    @Test
+    public void testSetBasedCascade()
+    {
+        Connection conn = dbResource.getConnection();
+        CascadeDB db = openDatabase(conn);
+        db.CHILD.setCascadeDeleteSetBased(true);
+        db.GRANDCHILD.setCascadeDeleteSetBased(true);
+
+        Object[] parents = createRecords(db, conn);
+        db.PARENT.deleteRecord(parents[0], conn);
+
+        // only the parent is deleted individually
+        assertEquals(1, db.PARENT.deleteCount);
+        assertEquals(0, db.CHILD.deleteCount);
+        assertEquals(0, db.GRANDCHILD.deleteCount);
+        assertRowCounts(db, conn, 1, 2, 4);
+    }
+
+    @Test
+    public void testPerRecordCascade()
+    {
+        Connection conn = dbResource.getConnection();
+        CascadeDB db = openDatabase(conn);
+        // set based for the first level only
+        db.CHILD.setCascadeDeleteSetBased(true);
+
+        Object[] parents = createRecords(db, conn);
+        db.PARENT.deleteRecord(parents[0], conn);
+
+        // grandchildren are deleted record by record
+        assertEquals(1, db.PARENT.deleteCount);
+        assertEquals(0, db.CHILD.deleteCount);
+        assertEquals(4, db.GRANDCHILD.deleteCount);
+        assertRowCounts(db, conn, 1, 2, 4);
+
+        // default: record by record on all levels
+        db.CHILD.setCascadeDeleteSetBased(false);
+        db.PARENT.deleteRecord(parents[1], conn);
+        assertEquals(2, db.PARENT.deleteCount);
+        assertEquals(2, db.CHILD.deleteCount);
+        assertEquals(8, db.GRANDCHILD.deleteCount);
+        assertRowCounts(db, conn, 0, 0, 0);
+    }
+
+    private CascadeDB openDatabase(Connection conn)
+    {
+        DBDatabaseDriver driver = dbResource.newDriver();
+        CascadeDB db = new CascadeDB();
+        db.open(driver, conn);
+        DBSQLScript script = new DBSQLScript();
+        db.getCreateDDLScript(db.getDriver(), script);
+        script.run(db.getDriver(), conn, false);
+        return db;
+    }
+
+    /**
+     * Creates two parents with two children each and two grandchildren per child
+     * @return the parent keys
+     */
+    private Object[] createRecords(CascadeDB db, Connection conn)
+    {
+        Object[] parents = new Object[2];
+        for (int p=0; p<parents.length; p++)
+        {
+            parents[p] = createRecord(db.PARENT, null, "parent"+p, conn);
+            for (int c=0; c<2; c++)
+            {
+                Object child = createRecord(db.CHILD, parents[p], "child"+p+c, conn);
+                for (int g=0; g<2; g++)
+                    createRecord(db.GRANDCHILD, child, "grandchild"+p+c+g, conn);
+            }
+        }
+        assertRowCounts(db, conn, 2, 4, 8);
+        return parents;
+    }
+
+    private Object createRecord(CountingTable table, Object parentId, String name, Connection conn)
+    {
+        DBRecord rec = new DBRecord();
+        rec.create(table, conn);
+        if (table.PARENT_ID!=null)
+            rec.setValue(table.PARENT_ID, parentId);
+        rec.setValue(table.getColumn("NAME"), name);
+        rec.update(conn);
+        return rec.getValue(table.ID);
+    }
+
+    private void assertRowCounts(CascadeDB db, Connection conn, int parents, int children, int grandchildren)
+    {
+        assertEquals(parents, countRows(db, db.PARENT, conn));
+        assertEquals(children, countRows(db, db.CHILD, conn));
+        assertEquals(grandchildren, countRows(db, db.GRANDCHILD, conn));
+    }
+
+    private int countRows(CascadeDB db, DBTable table, Connection conn)
+    {
+        DBCommand cmd = db.createCommand();
+        cmd.select(table.count());
+        return db.querySingleInt(cmd, 0, conn);
+    }
+}
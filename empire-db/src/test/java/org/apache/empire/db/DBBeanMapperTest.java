@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.empire.data.ColumnExpr;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DBBeanMapperTest
+{
+    @Before
+    public void clearCache()
+    {
+        DBBeanMapper.clearCache();
+    }
+
+    @Test
+    public void testMapperCache()
+    {
+        CompanyDB db = new CompanyDB();
+        db.open(new MockDriver(), null);
+
+        ClassLoader loader = DepartmentBean.class.getClassLoader();
+        assertEquals(0, DBBeanMapper.getCacheSize(loader));
+
+        // same shape
+        DBBeanMapper<DepartmentBean> mapper = DBBeanMapper.getMapper(DepartmentBean.class, getColumns(db.DEPARTMENT));
+        assertSame(mapper, DBBeanMapper.getMapper(DepartmentBean.class, getColumns(db.DEPARTMENT)));
+        assertEquals(1, DBBeanMapper.getCacheSize(loader));
+
+        // other shape
+        DBColumnExpr[] columns = new DBColumnExpr[] { db.DEPARTMENT.NAME };
+        assertNotSame(mapper, DBBeanMapper.getMapper(DepartmentBean.class, columns));
+        assertEquals(2, DBBeanMapper.getCacheSize(loader));
+
+        // bounded
+        for (int i=0; i<DBBeanMapper.MAX_MAPPERS_PER_CLASSLOADER; i++)
+            DBBeanMapper.getMapper(DepartmentBean.class, new DBColumnExpr[] { db.DEPARTMENT.NAME.as("NAME_" + i) });
+        assertEquals(DBBeanMapper.MAX_MAPPERS_PER_CLASSLOADER, DBBeanMapper.getCacheSize(loader));
+
+        DBBeanMapper.clearCache();
+        assertEquals(0, DBBeanMapper.getCacheSize(loader));
+        assertNotSame(mapper, DBBeanMapper.getMapper(DepartmentBean.class, getColumns(db.DEPARTMENT)));
+    }
+
+    @Test
+    public void testForeignClassLoader() throws Exception
+    {
+        CompanyDB db = new CompanyDB();
+        db.open(new MockDriver(), null);
+        DBColumnExpr[] columns = new DBColumnExpr[] { db.DEPARTMENT.NAME };
+
+        // load the bean class with a separate class loader
+        URL location = NameBean.class.getProtectionDomain().getCodeSource().getLocation();
+        ClassLoader loader = new URLClassLoader(new URL[] { location }, null);
+        Class<?> beanClass = loader.loadClass(NameBean.class.getName());
+        assertNotSame(NameBean.class, beanClass);
+
+        DBBeanMapper<?> mapper = DBBeanMapper.getMapper(beanClass, columns);
+        assertSame(mapper, DBBeanMapper.getMapper(beanClass, columns));
+        assertEquals(1, DBBeanMapper.getCacheSize(loader));
+        assertEquals(0, DBBeanMapper.getCacheSize(NameBean.class.getClassLoader()));
+
+        // the mapper must survive a garbage collection
+        WeakReference<?> mapperRef = new WeakReference<Object>(mapper);
+        mapper = null;
+        System.gc();
+        assertSame(mapperRef.get(), DBBeanMapper.getMapper(beanClass, columns));
+        assertEquals(1, DBBeanMapper.getCacheSize(loader));
+    }
+
+    @Test
+    public void testMapWithSetters()
+    {
+        CompanyDB db = new CompanyDB();
+        db.open(new MockDriver(), null);
+        DBRecord rec = createDepartment(new DBRecord(), db);
+
+        DBBeanMapper<DepartmentBean> mapper = DBBeanMapper.getMapper(DepartmentBean.class, getColumns(db.DEPARTMENT));
+        DepartmentBean bean = mapper.map(rec);
+        assertEquals("Development", bean.getName());
+        assertEquals("ITTK", bean.getBusinessUnit());
+        assertNull(bean.getHead());
+    }
+
+    @Test
+    public void testMapWithOverriddenSetBeanProperty()
+    {
+        CompanyDB db = new CompanyDB();
+        db.open(new MockDriver(), null);
+        final List<String> properties = new ArrayList<String>();
+        DBRecord rec = createDepartment(new DBRecord() {
+            private static final long serialVersionUID = 1L;
+            @Override
+            protected void setBeanProperty(ColumnExpr column, Object bean, String property, Object value)
+            {
+                properties.add(property);
+                if (column.equals(((CompanyDB)getDatabase()).DEPARTMENT.NAME))
+                    value = "Overridden";
+                super.setBeanProperty(column, bean, property, value);
+            }
+        }, db);
+
+        DBBeanMapper<DepartmentBean> mapper = DBBeanMapper.getMapper(DepartmentBean.class, getColumns(db.DEPARTMENT));
+        DepartmentBean bean = mapper.map(rec);
+        assertEquals(db.DEPARTMENT.getColumns().size(), properties.size());
+        assertTrue(properties.contains("name"));
+        assertEquals("Overridden", bean.getName());
+        assertEquals("ITTK", bean.getBusinessUnit());
+    }
+
+    private DBRecord createDepartment(DBRecord rec, CompanyDB db)
+    {
+        rec.create(db.DEPARTMENT);
+        rec.setValue(db.DEPARTMENT.NAME, "Development");
+        rec.setValue(db.DEPARTMENT.BUSINESS_UNIT, "ITTK");
+        return rec;
+    }
+
+    private DBColumnExpr[] getColumns(DBRowSet rowset)
+    {
+        return rowset.getColumns().toArray(new DBColumnExpr[rowset.getColumns().size()]);
+    }
+
+    /**
+     * A department bean with property setters
+     */
+    public static class DepartmentBean
+    {
+        private Long   departmentId;
+        private String name;
+        private String head;
+        private String businessUnit;
+        private Date   updateTimestamp;
+
+        public Long getDepartmentId()
+        {
+            return departmentId;
+        }
+
+        public void setDepartmentId(Long departmentId)
+        {
+            this.departmentId = departmentId;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public void setName(String name)
+        {
+            this.name = name;
+        }
+
+        public String getHead()
+        {
+            return head;
+        }
+
+        public void setHead(String head)
+        {
+            this.head = head;
+        }
+
+        public String getBusinessUnit()
+        {
+            return businessUnit;
+        }
+
+        public void setBusinessUnit(String businessUnit)
+        {
+            this.businessUnit = businessUnit;
+        }
+
+        public Date getUpdateTimestamp()
+        {
+            return updateTimestamp;
+        }
+
+        public void setUpdateTimestamp(Date updateTimestamp)
+        {
+            this.updateTimestamp = updateTimestamp;
+        }
+    }
+
+    /**
+     * A bean depending on java classes only, so it can be loaded by a separate class loader
+     */
+    public static class NameBean
+    {
+        private String name;
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public void setName(String name)
+        {
+            this.name = name;
+        }
+    }
+}
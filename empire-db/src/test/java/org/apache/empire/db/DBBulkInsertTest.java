@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+
+import org.apache.empire.DBResource;
+import org.apache.empire.DBResource.DB;
+import org.apache.empire.exceptions.NotSupportedException;
+import org.junit.Rule;
+import org.junit.Test;
+
+
+public class DBBulkInsertTest{
+
+    @Rule
+    public DBResource dbResource = new DBResource(DB.HSQL);
+
+    @Test
+    public void testBulkInsert()
+    {
+        Connection conn = dbResource.getConnection();
+
+        DBDatabaseDriver driver = dbResource.newDriver();
+        CompanyDB db = new CompanyDB();
+        db.open(driver, conn);
+        DBSQLScript script = new DBSQLScript();
+        db.getCreateDDLScript(db.getDriver(), script);
+        script.run(db.getDriver(), conn, false);
+
+        // rows
+        DBBulkInsert insert = db.DEPARTMENT.createBulkInsert();
+        assertEquals(db.DEPARTMENT.getColumns().size(), insert.getColumns().length);
+        for (int i=0; i<25; i++)
+            insert.addRow(null, "bulk"+i, null, "TEST", null);
+        // records
+        DBRecord[] deps = new DBRecord[5];
+        for (int i=0; i<deps.length; i++)
+        {
+            deps[i] = new DBRecord();
+            deps[i].create(db.DEPARTMENT, conn);
+            deps[i].setValue(db.DEPARTMENT.NAME, "rec"+i);
+            insert.addRecord(deps[i]);
+        }
+        assertEquals(30, insert.getRowCount());
+        assertEquals(30, insert.execute(conn));
+        assertEquals(0, insert.getRowCount());
+        for (int i=0; i<deps.length; i++)
+        {
+            assertFalse(deps[i].isNew());
+            assertFalse(deps[i].isModified());
+        }
+
+        DBCommand cmd = db.createCommand();
+        cmd.select(db.DEPARTMENT.count());
+        assertEquals(30, db.querySingleInt(cmd, 0, conn));
+        cmd.where(db.DEPARTMENT.NAME.is("rec3"));
+        cmd.where(db.DEPARTMENT.UPDATE_TIMESTAMP.isNot(null));
+        assertEquals(1, db.querySingleInt(cmd, 0, conn));
+
+        // script
+        DBSQLScript bulkScript = new DBSQLScript();
+        insert.addRow(null, "script0", null, "TEST", null);
+        insert.addRow(null, "script1", null, "TEST", null);
+        assertEquals(2, insert.addToScript(bulkScript, conn));
+        assertEquals(2, bulkScript.getCount());
+    }
+
+    @Test
+    public void testBulkInsertStmt()
+    {
+        DBDatabaseDriver driver = dbResource.newDriver();
+        CompanyDB db = new CompanyDB();
+        db.open(driver, dbResource.getConnection());
+
+        DBColumn[] columns = new DBColumn[] { db.DEPARTMENT.NAME, db.DEPARTMENT.BUSINESS_UNIT };
+        String sql = driver.getBulkInsertStmt(db.DEPARTMENT, columns, 3);
+        assertTrue(sql.startsWith("INSERT INTO "));
+        assertTrue(sql.endsWith("VALUES (?, ?), (?, ?), (?, ?)"));
+
+        // chunks are limited by the statement parameters
+        DBBulkInsert insert = db.DEPARTMENT.createBulkInsert(columns);
+        insert.setMaxRows(10);
+        assertEquals(1, insert.getChunkSize(driver));
+        assertEquals(10, insert.getChunkSize(new DBDatabaseDriverMock(0)));
+        assertEquals(3, insert.getChunkSize(new DBDatabaseDriverMock(7)));
+    }
+
+    @Test
+    public void testBulkInsertIdentity()
+    {
+        // MockDriver does not support sequences
+        CompanyDB db = new CompanyDB();
+        db.open(new MockDriver(), null);
+
+        // the AUTOINC column is assigned by the database
+        DBBulkInsert insert = db.DEPARTMENT.createBulkInsert();
+        assertEquals(db.DEPARTMENT.getColumns().size()-1, insert.getColumns().length);
+        insert.addRow("bulk", null, "TEST", null);
+        assertEquals(1, insert.getRowCount());
+
+        // records would remain without primary key
+        DBRecord rec = new DBRecord();
+        rec.create(db.DEPARTMENT);
+        rec.setValue(db.DEPARTMENT.NAME, "rec");
+        try {
+            insert.addRecord(rec);
+            fail("NotSupportedException expected");
+        } catch(NotSupportedException e) {
+            // expected
+        }
+        assertEquals(1, insert.getRowCount());
+        assertTrue(rec.isNew());
+    }
+
+    /**
+     * A driver with a parameter limit
+     */
+    private static class DBDatabaseDriverMock extends MockDriver
+    {
+        private static final long serialVersionUID = 1L;
+        private final int maxParams;
+
+        public DBDatabaseDriverMock(int maxParams)
+        {
+            this.maxParams = maxParams;
+        }
+
+        @Override
+        public int getMaxStatementParams()
+        {
+            return maxParams;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.empire.DBResource;
+import org.apache.empire.DBResource.DB;
+import org.junit.Rule;
+import org.junit.Test;
+
+
+public class DBCommandSeekTest{
+
+    @Rule
+    public DBResource dbResource = new DBResource(DB.HSQL);
+
+    @Test
+    public void testSeekPagination()
+    {
+        Connection conn = dbResource.getConnection();
+
+        DBDatabaseDriver driver = dbResource.newDriver();
+        CompanyDB db = new CompanyDB();
+        db.open(driver, conn);
+        DBSQLScript script = new DBSQLScript();
+        db.getCreateDDLScript(db.getDriver(), script);
+        script.run(db.getDriver(), conn, false);
+
+        for (int i=0; i<10; i++)
+        {
+            DBRecord department = new DBRecord();
+            department.create(db.DEPARTMENT);
+            department.setValue(db.DEPARTMENT.NAME, "seek"+i);
+            department.setValue(db.DEPARTMENT.BUSINESS_UNIT, (i % 3==0 ? "A" : "B"));
+            department.update(conn);
+        }
+
+        CompanyDB.Departments DEP = db.DEPARTMENT;
+        DBCommand cmd = db.createCommand();
+        cmd.select(DEP.ID, DEP.NAME, DEP.BUSINESS_UNIT);
+        cmd.orderBy(DEP.BUSINESS_UNIT, true);
+        cmd.orderBy(DEP.NAME);
+
+        // expected order
+        List<String> expected = new ArrayList<String>();
+        DBReader r = new DBReader();
+        try {
+            r.open(cmd, conn);
+            while (r.moveNext())
+                expected.add(r.getString(DEP.NAME));
+        } finally {
+            r.close();
+        }
+        assertEquals(10, expected.size());
+
+        // read pages of 3 rows by seeking the last key
+        List<String> paged = new ArrayList<String>();
+        Object[] key = null;
+        while (true)
+        {
+            DBCommand page = cmd.clone();
+            if (key!=null)
+                page.whereSeek(key, false);
+            int count = 0;
+            try {
+                r.open(page, conn);
+                while (count<3 && r.moveNext())
+                {
+                    paged.add(r.getString(DEP.NAME));
+                    count++;
+                }
+                if (count==3)
+                {
+                    key = page.getSeekKey(r);
+                    assertNotNull(key);
+                }
+            } finally {
+                r.close();
+            }
+            if (count<3)
+                break;
+        }
+        assertEquals(expected, paged);
+    }
+}
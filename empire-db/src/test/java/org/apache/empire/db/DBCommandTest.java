@@ -18,13 +18,20 @@
  */
 package org.apache.empire.db;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.empire.data.DataType;
+import org.apache.empire.db.expr.compare.DBCompareExpr;
 import org.junit.Test;
 
 /**
@@ -59,6 +66,225 @@ public class DBCommandTest
         assertEquals(2, command3.groupBy.size());
 	}
 	
+    @Test
+    public void testParamOrder()
+    {
+        MockDB mock = new MockDB();
+        mock.open(new MockDriver(), null);
+
+        DBCommand cmd = mock.createCommand();
+        DBCmdParam p1 = cmd.addParam(DataType.INTEGER, 1);
+        DBCmdParam p2 = cmd.addParam(DataType.TEXT, "two");
+        cmd.select(mock.TABLE.COL1);
+        cmd.where(mock.TABLE.COL2.is(p2));
+        cmd.where(mock.TABLE.COL1.is(p1));
+        // params are returned in the order of their occurrence
+        String sql = cmd.getSelect();
+        assertTrue(sql, sql.indexOf("COL2=")<sql.indexOf("COL1="));
+        assertArrayEquals(new Object[] { "two", 1 }, cmd.getParamValues());
+        // rendering does not modify the command
+        assertEquals(p1, cmd.cmdParams.get(0));
+        assertEquals(sql, cmd.getSelect());
+    }
+
+    @Test
+    public void testCloneParamOrder()
+    {
+        MockDB mock = new MockDB();
+        mock.open(new MockDriver(), null);
+
+        DBCommand cmd = mock.createCommand();
+        DBCmdParam p1 = cmd.addParam(DataType.INTEGER, 1);
+        DBCmdParam p2 = cmd.addParam(DataType.TEXT, "two");
+        cmd.select(mock.TABLE.COL1);
+        cmd.where(mock.TABLE.COL2.is(p2));
+        cmd.where(mock.TABLE.COL1.is(p1));
+        String sql = cmd.getSelect();
+        // clone inherits the parameter order
+        DBCommand clone = cmd.clone();
+        assertArrayEquals(new Object[] { "two", 1 }, clone.getParamValues());
+        // and keeps it when rendered 
+        assertEquals(sql, clone.getSelect());
+        assertArrayEquals(new Object[] { "two", 1 }, clone.getParamValues());
+        // params of the clone are independent
+        p1.setValue(2);
+        assertArrayEquals(new Object[] { "two", 1 }, clone.getParamValues());
+        // clone of a clone
+        DBCommand clone2 = clone.clone();
+        clone2.where(mock.TABLE.COL3.isNot(null));
+        clone2.getSelect();
+        assertArrayEquals(new Object[] { "two", 1 }, clone2.getParamValues());
+        // replacing a constraint removes the param of the clone
+        clone2.where(mock.TABLE.COL1.is(3));
+        clone2.getSelect();
+        assertArrayEquals(new Object[] { "two" }, clone2.getParamValues());
+        assertEquals(2, clone.getParamValues().length);
+    }
+
+    @Test
+    public void testSeekConstraint()
+    {
+        MockDB mock = new MockDB();
+        mock.open(new MockDriver(), null);
+
+        DBCommand cmd = mock.createCommand();
+        cmd.select(mock.TABLE.COL1, mock.TABLE.COL2);
+        cmd.orderBy(mock.TABLE.COL2, true);
+        cmd.orderBy(mock.TABLE.COL1);
+        DBCompareExpr seek = cmd.getSeekConstraint(new Object[] { "x", 5 }, false);
+        StringBuilder buf = new StringBuilder();
+        seek.addSQL(buf, DBExpr.CTX_DEFAULT);
+        String sql = buf.toString();
+        // descending column is compared with less than, ascending with greater than
+        assertTrue(sql, sql.indexOf("COL2<")>=0);
+        assertTrue(sql, sql.indexOf("COL2=")>=0);
+        assertTrue(sql, sql.indexOf("COL1>5")>=0);
+        assertTrue(sql, sql.indexOf(" OR ")>0);
+        assertTrue(sql, sql.indexOf(" AND ")>0);
+    }
+
+    @Test
+    public void testInListParams()
+    {
+        MockDB mock = new MockDB();
+        mock.open(new MockDriver(), null);
+
+        // literals
+        DBCommand cmd = mock.createCommand();
+        cmd.select(mock.TABLE.COL2);
+        cmd.where(mock.TABLE.COL1.in(Arrays.asList(1, 2, 3)));
+        assertTrue(cmd.getSelect().indexOf("?")<0);
+
+        // params padded to the bucket size
+        mock.setPreparedStatementsEnabled(true);
+        cmd = mock.createCommand();
+        cmd.select(mock.TABLE.COL2);
+        cmd.where(mock.TABLE.COL1.in(Arrays.asList(1, 2, 3, 4, 5)));
+        String sql = cmd.getSelect();
+        assertTrue(sql, sql.indexOf("IN (?, ?, ?, ?, ?, ?, ?, ?)")>0);
+        assertArrayEquals(new Object[] { 1, 2, 3, 4, 5, 5, 5, 5 }, cmd.getParamValues());
+
+        // same statement for another list of the same bucket
+        DBCommand cmd2 = mock.createCommand();
+        cmd2.select(mock.TABLE.COL2);
+        cmd2.where(mock.TABLE.COL1.in(7, 8, 9, 10, 11, 12, 13));
+        assertEquals(sql, cmd2.getSelect());
+
+        // replacing the constraint removes the params
+        cmd2.where(mock.TABLE.COL1.in(1));
+        assertEquals(1, cmd2.getParamValues().length);
+
+        // lists exceeding the maximum are rendered as literals
+        List<Integer> large = new ArrayList<Integer>();
+        for (int i=0; i<=mock.getDriver().getMaxInListParams(); i++)
+            large.add(i);
+        DBCommand cmd3 = mock.createCommand();
+        cmd3.select(mock.TABLE.COL2);
+        cmd3.where(mock.TABLE.COL1.in(large));
+        assertTrue(cmd3.getSelect().indexOf("?")<0);
+    }
+
+    @Test
+    public void testConcurrentRendering() throws InterruptedException
+    {
+        MockDB mock = new MockDB();
+        mock.open(new MockDriver(), null);
+
+        final DBCommand cmd = mock.createCommand();
+        DBCmdParam p1 = cmd.addParam(DataType.INTEGER, 1);
+        DBCmdParam p2 = cmd.addParam(DataType.TEXT, "two");
+        cmd.select(mock.TABLE.COL1, mock.TABLE.COL2);
+        cmd.where(mock.TABLE.COL2.is(p2));
+        cmd.where(mock.TABLE.COL1.is(p1));
+        final String sql = cmd.getSelect();
+        final Object[] values = cmd.getParamValues();
+        // render from several threads
+        final AtomicInteger errors = new AtomicInteger();
+        Thread[] threads = new Thread[8];
+        for (int i=0; i<threads.length; i++)
+        {
+            threads[i] = new Thread() {
+                @Override
+                public void run()
+                {
+                    for (int n=0; n<1000; n++)
+                    {
+                        DBCmdPlan plan = cmd.compileSelect();
+                        if (!sql.equals(plan.getSql()) || !Arrays.equals(values, plan.getParamValues()))
+                            errors.incrementAndGet();
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread t : threads)
+            t.join();
+        assertEquals(0, errors.get());
+    }
+
+    @Test
+    public void testConcurrentCompile() throws InterruptedException
+    {
+        MockDB mock = new MockDB();
+        mock.open(new MockDriver(), null);
+
+        // a command that is rendered by another thread while the select is compiled
+        final AtomicBoolean interleave = new AtomicBoolean(false);
+        final DBCommand cmd = new DBCommand(mock) {
+            private static final long serialVersionUID = 1L;
+            @Override
+            public void getSelect(StringBuilder buf)
+            {
+                super.getSelect(buf);
+                if (interleave.getAndSet(false))
+                    renderUpdate(this);
+            }
+        };
+        // select and update use the params in a different order
+        DBCmdParam p1 = cmd.addParam(DataType.INTEGER, 1);
+        DBCmdParam p2 = cmd.addParam(DataType.TEXT, "two");
+        DBCmdParam p3 = cmd.addParam(DataType.TEXT, "three");
+        cmd.select(mock.TABLE.COL1);
+        cmd.set(mock.TABLE.COL2.to(p3));
+        cmd.where(mock.TABLE.COL2.is(p2));
+        cmd.where(mock.TABLE.COL1.is(p1));
+        DBCmdPlan select = cmd.compileSelect();
+        DBCmdPlan update = cmd.compileUpdate();
+        assertEquals(0, select.getParamIndex(p2));
+        assertEquals(1, select.getParamIndex(p1));
+        assertEquals(0, update.getParamIndex(p3));
+
+        // the plan must not take the param order of the update
+        interleave.set(true);
+        DBCmdPlan plan = cmd.compileSelect();
+        assertFalse(interleave.get());
+        assertEquals(select.getSql(), plan.getSql());
+        assertArrayEquals(select.getParamValues(), plan.getParamValues());
+
+        // the parameter order of the last statement rendered is kept for getParamValues()
+        cmd.getUpdate();
+        assertArrayEquals(update.getParamValues(), cmd.getParamValues());
+        cmd.compileSelect();
+        assertArrayEquals(select.getParamValues(), cmd.getParamValues());
+    }
+
+    private static void renderUpdate(final DBCommand cmd)
+    {
+        Thread t = new Thread() {
+            @Override
+            public void run()
+            {
+                cmd.getUpdate();
+            }
+        };
+        t.start();
+        try {
+            t.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
 	private static class MockDB extends DBDatabase{
         
 	    private static final long serialVersionUID = 1L;
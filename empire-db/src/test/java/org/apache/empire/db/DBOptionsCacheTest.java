@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.sql.Connection;
+
+import org.apache.empire.DBResource;
+import org.apache.empire.DBResource.DB;
+import org.apache.empire.commons.Options;
+import org.junit.Rule;
+import org.junit.Test;
+
+
+public class DBOptionsCacheTest{
+
+    @Rule
+    public DBResource dbResource = new DBResource(DB.HSQL);
+
+    @Test
+    public void testOptionsCache()
+    {
+        Connection conn = dbResource.getConnection();
+
+        DBDatabaseDriver driver = dbResource.newDriver();
+        CompanyDB db = new CompanyDB();
+        db.open(driver, conn);
+        DBSQLScript script = new DBSQLScript();
+        db.getCreateDDLScript(db.getDriver(), script);
+        script.run(db.getDriver(), conn, false);
+
+        int[] ids = new int[3];
+        for (int i=0; i<ids.length; i++)
+        {
+            DBRecord department = new DBRecord();
+            department.create(db.DEPARTMENT);
+            department.setValue(db.DEPARTMENT.NAME, "dep"+i);
+            department.setValue(db.DEPARTMENT.BUSINESS_UNIT, "test");
+            department.update(conn);
+            ids[i] = department.getInt(db.DEPARTMENT.ID);
+        }
+
+        DBOptionsCache cache = new DBOptionsCache(10, 0);
+        db.setOptionsCache(cache);
+
+        DBCommand cmd = db.createCommand();
+        cmd.select(db.DEPARTMENT.ID, db.DEPARTMENT.NAME);
+        cmd.orderBy(db.DEPARTMENT.NAME);
+
+        Options first = db.queryCachedOptionList(cmd, conn);
+        assertEquals(ids.length, first.size());
+        assertEquals("dep1", first.get(ids[1]));
+        // second query must be served from the cache
+        Options second = db.queryCachedOptionList(cmd, conn);
+        assertSame(first, second);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        // modification of the department table expires the entry
+        DBRecord rec = new DBRecord();
+        rec.read(db.DEPARTMENT, ids[1], conn);
+        rec.setValue(db.DEPARTMENT.NAME, "changed");
+        rec.update(conn);
+
+        Options third = db.queryCachedOptionList(cmd, conn);
+        assertNotSame(first, third);
+        assertEquals("changed", third.get(ids[1]));
+        assertEquals(1, cache.getExpirationCount());
+
+        // without a cache the list is queried every time
+        db.setOptionsCache(null);
+        assertNotSame(third, db.queryCachedOptionList(cmd, conn));
+    }
+}
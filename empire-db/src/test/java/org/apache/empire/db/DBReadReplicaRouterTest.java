@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.junit.Test;
+
+public class DBReadReplicaRouterTest
+{
+    /**
+     * A DataSource which always returns the same connection
+     */
+    private static class MockDataSource implements InvocationHandler
+    {
+        private final Connection conn;
+        private boolean failing = false;
+        private int requests = 0;
+
+        public MockDataSource()
+        {
+            this.conn = (Connection)Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class }, new InvocationHandler()
+            {
+                public Object invoke(Object proxy, Method method, Object[] args)
+                {
+                    if (method.getName().equals("isValid"))
+                        return Boolean.TRUE;
+                    return null;
+                }
+            });
+        }
+
+        public DataSource getDataSource()
+        {
+            return (DataSource)Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { DataSource.class }, this);
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args)
+            throws SQLException
+        {
+            if (!method.getName().equals("getConnection"))
+                return null;
+            requests++;
+            if (failing)
+                throw new SQLException("Server down");
+            return conn;
+        }
+    }
+
+    @Test
+    public void testRoundRobin() throws SQLException
+    {
+        MockDataSource primary = new MockDataSource();
+        MockDataSource replica1 = new MockDataSource();
+        MockDataSource replica2 = new MockDataSource();
+        DBReadReplicaRouter router = new DBReadReplicaRouter(primary.getDataSource(), replica1.getDataSource(), replica2.getDataSource());
+        for (int i=0; i<10; i++)
+            router.getReadConnection();
+        assertEquals(0, primary.requests);
+        assertEquals(5, replica1.requests);
+        assertEquals(5, replica2.requests);
+        // through DataSource
+        assertSame(replica1.conn, router.getReadDataSource().getConnection());
+    }
+
+    @Test
+    public void testEjection() throws SQLException
+    {
+        MockDataSource primary = new MockDataSource();
+        MockDataSource replica1 = new MockDataSource();
+        MockDataSource replica2 = new MockDataSource();
+        DBReadReplicaRouter router = new DBReadReplicaRouter(primary.getDataSource(), replica1.getDataSource(), replica2.getDataSource());
+        replica1.failing = true;
+        for (int i=0; i<10; i++)
+            assertSame(replica2.conn, router.getReadConnection());
+        // replica1 has been tried once only
+        assertEquals(1, replica1.requests);
+        assertEquals(1, router.getHealthyReplicaCount());
+        // all replicas down
+        replica2.failing = true;
+        assertSame(primary.conn, router.getReadConnection());
+        assertEquals(0, router.getHealthyReplicaCount());
+        // recover
+        router.setEjectTime(0);
+        replica1.failing = false;
+        replica2.failing = false;
+        router.ejectReplica(0);
+        router.ejectReplica(1);
+        assertEquals(2, router.getHealthyReplicaCount());
+    }
+
+    @Test
+    public void testStickyAfterWrite() throws SQLException
+    {
+        MockDataSource primary = new MockDataSource();
+        MockDataSource replica = new MockDataSource();
+        DBReadReplicaRouter router = new DBReadReplicaRouter(primary.getDataSource(), replica.getDataSource());
+        assertSame(replica.conn, router.getReadConnection());
+        router.markWrite();
+        assertSame(primary.conn, router.getReadConnection());
+        router.clearWrite();
+        assertSame(replica.conn, router.getReadConnection());
+        // stickiness disabled
+        router.setStickyTime(0);
+        router.markWrite();
+        assertSame(replica.conn, router.getReadConnection());
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+
+import org.apache.empire.DBResource;
+import org.apache.empire.DBResource.DB;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class DBReaderTest
+{
+    @Rule
+    public DBResource dbResource = new DBResource(DB.HSQL);
+
+    private CompanyDB openDatabase(Connection conn)
+    {
+        CompanyDB db = new CompanyDB();
+        db.open(dbResource.newDriver(), conn);
+        DBSQLScript script = new DBSQLScript();
+        db.getCreateDDLScript(db.getDriver(), script);
+        script.run(db.getDriver(), conn, false);
+        return db;
+    }
+
+    @Test
+    public void testOpenReaderCount() throws InterruptedException
+    {
+        Connection conn = dbResource.getConnection();
+        CompanyDB db = openDatabase(conn);
+        DBReader.resetOpenReaderCount();
+
+        DBCommand cmd = db.createCommand();
+        cmd.select(db.DEPARTMENT.ID);
+        DBReader r = new DBReader();
+        try {
+            r.open(cmd, conn);
+            assertEquals(1, DBReader.getOpenReaderCount());
+            // counted per thread
+            final int[] otherCount = new int[] { -1 };
+            Thread other = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    otherCount[0] = DBReader.getOpenReaderCount();
+                }
+            };
+            other.start();
+            other.join();
+            assertEquals(0, otherCount[0]);
+        } finally {
+            r.close();
+        }
+        assertEquals(0, DBReader.getOpenReaderCount());
+
+        // reader not closed
+        DBReader leaked = new DBReader();
+        leaked.open(cmd, conn);
+        assertEquals(1, DBReader.resetOpenReaderCount());
+        assertEquals(0, DBReader.getOpenReaderCount());
+        // closing after the reset does not result in a negative count
+        leaked.close();
+        assertEquals(0, DBReader.getOpenReaderCount());
+    }
+
+    private void insertEmployees(CompanyDB db, Connection conn)
+    {
+        DBRecord dep = new DBRecord();
+        dep.create(db.DEPARTMENT);
+        dep.setValue(db.DEPARTMENT.NAME, "junit");
+        dep.setValue(db.DEPARTMENT.BUSINESS_UNIT, "test");
+        dep.update(conn);
+        // employee with null values
+        DBRecord emp = new DBRecord();
+        emp.create(db.EMPLOYEE);
+        emp.setValue(db.EMPLOYEE.FIRSTNAME, "null");
+        emp.setValue(db.EMPLOYEE.LASTNAME, "values");
+        emp.setValue(db.EMPLOYEE.DEPARTMENT_ID, dep.getValue(db.DEPARTMENT.ID));
+        emp.update(conn);
+        // employee with values
+        emp.create(db.EMPLOYEE);
+        emp.setValue(db.EMPLOYEE.FIRSTNAME, "with");
+        emp.setValue(db.EMPLOYEE.LASTNAME, "values");
+        emp.setValue(db.EMPLOYEE.DEPARTMENT_ID, dep.getValue(db.DEPARTMENT.ID));
+        emp.setValue(db.EMPLOYEE.SALARY, new BigDecimal("1234.50"));
+        emp.setValue(db.EMPLOYEE.PHONE_NUMBER, "42");
+        emp.setValue(db.EMPLOYEE.RETIRED, true);
+        emp.update(conn);
+    }
+
+    private DBCommand createEmployeeQuery(CompanyDB db)
+    {
+        DBCommand cmd = db.createCommand();
+        cmd.select(db.EMPLOYEE.SALARY, db.EMPLOYEE.PHONE_NUMBER, db.EMPLOYEE.RETIRED, db.EMPLOYEE.DEPARTMENT_ID);
+        cmd.orderBy(db.EMPLOYEE.FIRSTNAME);
+        return cmd;
+    }
+
+    @Test
+    public void testTypedGetters()
+    {
+        Connection conn = dbResource.getConnection();
+        CompanyDB db = openDatabase(conn);
+        insertEmployees(db, conn);
+
+        DBReader r = new DBReader();
+        try {
+            r.open(createEmployeeQuery(db), conn);
+            // null values
+            assertTrue(r.moveNext());
+            assertTrue(r.isNull(db.EMPLOYEE.SALARY));
+            assertEquals(0, r.getInt(db.EMPLOYEE.SALARY));
+            assertEquals(0L, r.getLong(db.EMPLOYEE.SALARY));
+            assertEquals(0.0d, r.getDouble(db.EMPLOYEE.SALARY), 0.0d);
+            assertTrue(r.isNull(db.EMPLOYEE.PHONE_NUMBER));
+            assertEquals(0, r.getInt(db.EMPLOYEE.PHONE_NUMBER));
+            assertFalse(r.getBoolean(db.EMPLOYEE.PHONE_NUMBER));
+            // default
+            assertFalse(r.isNull(db.EMPLOYEE.RETIRED));
+            assertFalse(r.getBoolean(db.EMPLOYEE.RETIRED));
+            // a null value read by a primitive getter does not affect the next column
+            assertFalse(r.isNull(db.EMPLOYEE.DEPARTMENT_ID));
+            assertTrue(r.getInt(db.EMPLOYEE.DEPARTMENT_ID) > 0);
+            // values
+            assertTrue(r.moveNext());
+            assertFalse(r.isNull(db.EMPLOYEE.SALARY));
+            assertEquals(1234, r.getInt(db.EMPLOYEE.SALARY));
+            assertEquals(1234L, r.getLong(db.EMPLOYEE.SALARY));
+            assertEquals(1234.5d, r.getDouble(db.EMPLOYEE.SALARY), 0.0d);
+            assertFalse(r.isNull(db.EMPLOYEE.PHONE_NUMBER));
+            assertEquals(42, r.getInt(db.EMPLOYEE.PHONE_NUMBER));
+            assertEquals(42L, r.getLong(db.EMPLOYEE.PHONE_NUMBER));
+            assertTrue(r.getBoolean(db.EMPLOYEE.RETIRED));
+            assertFalse(r.moveNext());
+        } finally {
+            r.close();
+        }
+    }
+
+    /**
+     * A reader which replaces null values by -1
+     */
+    private static class DefaultValueReader extends DBReader
+    {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Object getValue(int index)
+        {
+            Object value = super.getValue(index);
+            return (value!=null ? value : Integer.valueOf(-1));
+        }
+    }
+
+    /**
+     * A subclass of a reader which overrides getValue
+     */
+    private static class DerivedReader extends DefaultValueReader
+    {
+        private static final long serialVersionUID = 1L;
+    }
+
+    @Test
+    public void testTypedGettersWithOverriddenGetValue()
+    {
+        Connection conn = dbResource.getConnection();
+        CompanyDB db = openDatabase(conn);
+        insertEmployees(db, conn);
+
+        DBReader r = new DerivedReader();
+        try {
+            r.open(createEmployeeQuery(db), conn);
+            assertTrue(r.isValueOverridden());
+            // typed getters use getValue()
+            assertTrue(r.moveNext());
+            assertFalse(r.isNull(db.EMPLOYEE.SALARY));
+            assertEquals(-1, r.getInt(db.EMPLOYEE.SALARY));
+            assertEquals(-1L, r.getLong(db.EMPLOYEE.SALARY));
+            assertEquals(-1.0d, r.getDouble(db.EMPLOYEE.SALARY), 0.0d);
+            assertEquals(-1, r.getInt(db.EMPLOYEE.PHONE_NUMBER));
+            assertTrue(r.moveNext());
+            assertEquals(1234, r.getInt(db.EMPLOYEE.SALARY));
+        } finally {
+            r.close();
+        }
+        // plain reader
+        assertFalse(new DBReader().isValueOverridden());
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.sql.Connection;
+
+import org.apache.empire.DBResource;
+import org.apache.empire.DBResource.DB;
+import org.apache.empire.xml.XMLWriter;
+import org.junit.Rule;
+import org.junit.Test;
+
+
+public class DBReaderXmlTest{
+
+    @Rule
+    public DBResource dbResource = new DBResource(DB.HSQL);
+
+    @Test
+    public void testWriteXml() throws Exception
+    {
+        Connection conn = dbResource.getConnection();
+
+        DBDatabaseDriver driver = dbResource.newDriver();
+        CompanyDB db = new CompanyDB();
+        db.open(driver, conn);
+        DBSQLScript script = new DBSQLScript();
+        db.getCreateDDLScript(db.getDriver(), script);
+        script.run(db.getDriver(), conn, false);
+
+        String[] names = new String[] { "junit", "<special> & \"quoted\"", "third" };
+        for (int i=0; i<names.length; i++)
+        {
+            DBRecord department = new DBRecord();
+            department.create(db.DEPARTMENT);
+            department.setValue(db.DEPARTMENT.NAME, names[i]);
+            department.setValue(db.DEPARTMENT.BUSINESS_UNIT, "test");
+            if (i!=1)
+                department.setValue(db.DEPARTMENT.HEAD, "head"+i);
+            department.update(conn);
+        }
+
+        DBCommand cmd = db.createCommand();
+        cmd.select(db.DEPARTMENT.ID, db.DEPARTMENT.NAME, db.DEPARTMENT.HEAD, db.DEPARTMENT.BUSINESS_UNIT);
+        cmd.select(db.DEPARTMENT.NAME.length().as("ID"));
+        cmd.orderBy(db.DEPARTMENT.ID);
+
+        DBReader r = new DBReader();
+        // DOM
+        ByteArrayOutputStream domOut = new ByteArrayOutputStream();
+        try {
+            r.open(cmd, conn);
+            new XMLWriter(domOut).print(r.getXmlDocument());
+        } finally {
+            r.close();
+        }
+        // Streaming
+        ByteArrayOutputStream streamOut = new ByteArrayOutputStream();
+        try {
+            r.open(cmd, conn);
+            assertEquals(names.length, r.writeXml(streamOut));
+        } finally {
+            r.close();
+        }
+        assertEquals(domOut.toString("utf-8"), streamOut.toString("utf-8"));
+
+        // empty result
+        cmd.where(db.DEPARTMENT.ID.is(-1));
+        domOut.reset();
+        streamOut.reset();
+        try {
+            r.open(cmd, conn);
+            new XMLWriter(domOut).print(r.getXmlDocument());
+            r.close();
+            r.open(cmd, conn);
+            assertEquals(0, r.writeXml(streamOut));
+        } finally {
+            r.close();
+        }
+        assertEquals(domOut.toString("utf-8"), streamOut.toString("utf-8"));
+    }
+}
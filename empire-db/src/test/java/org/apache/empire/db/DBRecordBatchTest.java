@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Arrays;
+
+import org.apache.empire.DBResource;
+import org.apache.empire.DBResource.DB;
+import org.apache.empire.db.exceptions.RecordUpdateInvalidException;
+import org.apache.empire.exceptions.UnexpectedReturnValueException;
+import org.junit.Rule;
+import org.junit.Test;
+
+
+public class DBRecordBatchTest{
+
+    @Rule
+    public DBResource dbResource = new DBResource(DB.HSQL);
+
+    @Test
+    public void testRecordBatch()
+    {
+        Connection conn = dbResource.getConnection();
+
+        DBDatabaseDriver driver = dbResource.newDriver();
+        CompanyDB db = new CompanyDB();
+        db.open(driver, conn);
+        DBSQLScript script = new DBSQLScript();
+        db.getCreateDDLScript(db.getDriver(), script);
+        script.run(db.getDriver(), conn, false);
+        db.setPreparedStatementsEnabled(true);
+
+        // insert
+        DBRecordBatch batch = new DBRecordBatch();
+        batch.setMaxBatchSize(4);
+        DBRecord[] deps = new DBRecord[10];
+        for (int i=0; i<deps.length; i++)
+        {
+            DBRecord department = new DBRecord();
+            department.create(db.DEPARTMENT);
+            department.setValue(db.DEPARTMENT.NAME, "batch"+i);
+            department.setValue(db.DEPARTMENT.BUSINESS_UNIT, "test");
+            batch.add(department);
+            deps[i] = department;
+        }
+        assertEquals(deps.length, batch.flush(conn));
+        assertEquals(0, batch.getCount());
+        for (int i=0; i<deps.length; i++)
+        {
+            assertFalse(deps[i].isModified());
+            assertTrue(deps[i].getInt(db.DEPARTMENT.ID) > 0);
+        }
+        DBCommand cmd = db.createCommand();
+        cmd.select(db.DEPARTMENT.count());
+        assertEquals(deps.length, db.querySingleInt(cmd, 0, conn));
+
+        // update
+        for (int i=0; i<deps.length; i++)
+        {
+            deps[i].setValue(db.DEPARTMENT.HEAD, "head"+i);
+            batch.add(deps[i]);
+        }
+        assertEquals(deps.length, batch.flush(conn));
+
+        DBRecord rec = new DBRecord();
+        rec.read(db.DEPARTMENT, deps[5].getInt(db.DEPARTMENT.ID), conn);
+        assertEquals("head5", rec.getString(db.DEPARTMENT.HEAD));
+
+        // concurrent change must be detected
+        rec.delete(conn);
+        deps[5].setValue(db.DEPARTMENT.HEAD, "stale");
+        batch.add(deps[5]);
+        try {
+            batch.flush(conn);
+            fail("RecordUpdateInvalidException expected");
+        } catch(RecordUpdateInvalidException e) {
+            // expected
+        }
+    }
+
+    /**
+     * A database whose batches do not report row counts
+     */
+    private static class NoInfoCompanyDB extends CompanyDB
+    {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public int[] executeBatch(String[] sqlCmd, Object[][] sqlCmdParams, Connection conn)
+        {
+            int[] affected = super.executeBatch(sqlCmd, sqlCmdParams, conn);
+            Arrays.fill(affected, Statement.SUCCESS_NO_INFO);
+            return affected;
+        }
+    }
+
+    @Test
+    public void testRecordBatchNoInfo()
+    {
+        Connection conn = dbResource.getConnection();
+
+        DBDatabaseDriver driver = dbResource.newDriver();
+        CompanyDB db = new NoInfoCompanyDB();
+        db.open(driver, conn);
+        DBSQLScript script = new DBSQLScript();
+        db.getCreateDDLScript(db.getDriver(), script);
+        script.run(db.getDriver(), conn, false);
+        db.setPreparedStatementsEnabled(true);
+
+        // inserts do not require a row count
+        DBRecordBatch batch = new DBRecordBatch();
+        DBRecord[] deps = new DBRecord[3];
+        for (int i=0; i<deps.length; i++)
+        {
+            deps[i] = new DBRecord();
+            deps[i].create(db.DEPARTMENT);
+            deps[i].setValue(db.DEPARTMENT.NAME, "batch"+i);
+            deps[i].setValue(db.DEPARTMENT.BUSINESS_UNIT, "test");
+            batch.add(deps[i]);
+        }
+        assertEquals(deps.length, batch.flush(conn));
+
+        // updates with timestamp cannot be checked
+        DBRecord rec = new DBRecord();
+        rec.read(db.DEPARTMENT, deps[1].getInt(db.DEPARTMENT.ID), conn);
+        rec.delete(conn);
+        deps[1].setValue(db.DEPARTMENT.HEAD, "stale");
+        batch.add(deps[1]);
+        try {
+            batch.flush(conn);
+            fail("UnexpectedReturnValueException expected");
+        } catch(UnexpectedReturnValueException e) {
+            // expected
+        }
+
+        // individual execution detects the concurrent change
+        batch.clear();
+        batch.setBatchTimestampUpdates(false);
+        batch.add(deps[1]);
+        try {
+            batch.flush(conn);
+            fail("RecordUpdateInvalidException expected");
+        } catch(RecordUpdateInvalidException e) {
+            // expected
+        }
+
+        // and updates valid records
+        batch.clear();
+        deps[2].setValue(db.DEPARTMENT.HEAD, "head2");
+        batch.add(deps[2]);
+        assertEquals(1, batch.flush(conn));
+        assertFalse(deps[2].isModified());
+        rec.read(db.DEPARTMENT, deps[2].getInt(db.DEPARTMENT.ID), conn);
+        assertEquals("head2", rec.getString(db.DEPARTMENT.HEAD));
+    }
+}
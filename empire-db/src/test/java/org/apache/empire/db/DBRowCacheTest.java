@@ -0,0 +1,230 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+
+import org.apache.empire.DBResource;
+import org.apache.empire.DBResource.DB;
+import org.apache.empire.db.exceptions.RecordNotFoundException;
+import org.junit.Rule;
+import org.junit.Test;
+
+
+public class DBRowCacheTest{
+
+    @Rule
+    public DBResource dbResource = new DBResource(DB.HSQL);
+
+    @Test
+    public void testRowCache()
+    {
+        Connection conn = dbResource.getConnection();
+
+        DBDatabaseDriver driver = dbResource.newDriver();
+        CompanyDB db = new CompanyDB();
+        db.open(driver, conn);
+        DBSQLScript script = new DBSQLScript();
+        db.getCreateDDLScript(db.getDriver(), script);
+        script.run(db.getDriver(), conn, false);
+
+        DBRowCache cache = new DBRowCache(2, 0);
+        db.DEPARTMENT.setRowCache(cache);
+
+        int[] ids = new int[3];
+        for (int i=0; i<ids.length; i++)
+        {
+            DBRecord department = new DBRecord();
+            department.create(db.DEPARTMENT);
+            department.setValue(db.DEPARTMENT.NAME, "junit"+i);
+            department.setValue(db.DEPARTMENT.BUSINESS_UNIT, "test");
+            department.update(conn);
+            ids[i] = department.getInt(db.DEPARTMENT.ID);
+        }
+
+        // first read is a miss, second a hit
+        DBRecord rec = new DBRecord();
+        rec.read(db.DEPARTMENT, ids[0], conn);
+        rec.read(db.DEPARTMENT, ids[0], conn);
+        assertEquals("junit0", rec.getString(db.DEPARTMENT.NAME));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        // update invalidates the row
+        rec.setValue(db.DEPARTMENT.NAME, "changed");
+        rec.update(conn);
+        DBRecord other = new DBRecord();
+        other.read(db.DEPARTMENT, ids[0], conn);
+        assertEquals("changed", other.getString(db.DEPARTMENT.NAME));
+        assertEquals(2, cache.getMissCount());
+
+        // eviction
+        rec.read(db.DEPARTMENT, ids[1], conn);
+        rec.read(db.DEPARTMENT, ids[2], conn);
+        assertEquals(2, cache.getSize());
+        assertEquals(1, cache.getEvictionCount());
+
+        // a record read from the cache may be modified and updated
+        rec.read(db.DEPARTMENT, ids[1], conn);
+        rec.setValue(db.DEPARTMENT.HEAD, "head");
+        rec.update(conn);
+
+        // set based update clears the cache
+        DBCommand cmd = db.createCommand();
+        cmd.set(db.DEPARTMENT.BUSINESS_UNIT.to("other"));
+        db.executeUpdate(cmd, conn);
+        assertEquals(0, cache.getSize());
+        rec.read(db.DEPARTMENT, ids[2], conn);
+        assertEquals("other", rec.getString(db.DEPARTMENT.BUSINESS_UNIT));
+
+        // delete
+        rec.delete(conn);
+        assertNull(cache.get(new Object[] { ids[2] }));
+        db.DEPARTMENT.setRowCache(null);
+    }
+
+    @Test
+    public void testRowCacheKeyTypes()
+    {
+        Connection conn = dbResource.getConnection();
+
+        DBDatabaseDriver driver = dbResource.newDriver();
+        CompanyDB db = new CompanyDB();
+        db.open(driver, conn);
+        DBSQLScript script = new DBSQLScript();
+        db.getCreateDDLScript(db.getDriver(), script);
+        script.run(db.getDriver(), conn, false);
+
+        DBRowCache cache = new DBRowCache(10, 0);
+        db.DEPARTMENT.setRowCache(cache);
+
+        DBRecord department = new DBRecord();
+        department.create(db.DEPARTMENT);
+        department.setValue(db.DEPARTMENT.NAME, "junit");
+        department.setValue(db.DEPARTMENT.BUSINESS_UNIT, "test");
+        department.update(conn);
+        long id = department.getLong(db.DEPARTMENT.ID);
+        String strId = String.valueOf(id);
+
+        // read by String key, update and read again
+        DBRecord rec = new DBRecord();
+        rec.read(db.DEPARTMENT, strId, conn);
+        rec.read(db.DEPARTMENT, Long.valueOf(id), conn);
+        assertEquals(1, cache.getSize());
+        assertEquals(1, cache.getHitCount());
+        rec.setValue(db.DEPARTMENT.NAME, "changed");
+        rec.update(conn);
+        assertEquals(0, cache.getSize());
+        DBRecord other = new DBRecord();
+        other.read(db.DEPARTMENT, strId, conn);
+        assertEquals("changed", other.getString(db.DEPARTMENT.NAME));
+
+        // read by Long key and delete by String key
+        other.read(db.DEPARTMENT, Long.valueOf(id), conn);
+        assertEquals(1, cache.getSize());
+        db.DEPARTMENT.deleteRecord(new Object[] { strId }, conn);
+        assertEquals(0, cache.getSize());
+        try {
+            other.read(db.DEPARTMENT, Long.valueOf(id), conn);
+            fail("RecordNotFoundException expected");
+        } catch(RecordNotFoundException e) {
+            // expected
+        }
+
+        // keys that cannot be converted bypass the cache
+        assertEquals(Long.valueOf(id), db.DEPARTMENT.getRowCacheKey(new Object[] { strId })[0]);
+        assertNull(db.DEPARTMENT.getRowCacheKey(new Object[] { "none" }));
+        assertNull(db.DEPARTMENT.getRowCacheKey(new Object[] { "" }));
+        db.DEPARTMENT.setRowCache(null);
+    }
+
+    @Test
+    public void testRowCacheRollback()
+        throws Exception
+    {
+        Connection conn = dbResource.getConnection();
+
+        DBDatabaseDriver driver = dbResource.newDriver();
+        CompanyDB db = new CompanyDB();
+        db.open(driver, conn);
+        DBSQLScript script = new DBSQLScript();
+        db.getCreateDDLScript(db.getDriver(), script);
+        script.run(db.getDriver(), conn, false);
+
+        DBRowCache cache = new DBRowCache(10, 0);
+        db.DEPARTMENT.setRowCache(cache);
+
+        DBRecord department = new DBRecord();
+        department.create(db.DEPARTMENT);
+        department.setValue(db.DEPARTMENT.NAME, "junit");
+        department.setValue(db.DEPARTMENT.BUSINESS_UNIT, "test");
+        department.update(conn);
+        int id = department.getInt(db.DEPARTMENT.ID);
+
+        conn.setAutoCommit(false);
+        try {
+            // cache the committed row
+            DBRecord rec = new DBRecord();
+            rec.read(db.DEPARTMENT, id, conn);
+            assertEquals(1, cache.getSize());
+
+            // write
+            rec.setValue(db.DEPARTMENT.NAME, "uncommitted");
+            rec.update(conn);
+            assertTrue(cache.hasPendingWrites(conn));
+
+            // read: the uncommitted row must not be cached
+            rec.read(db.DEPARTMENT, id, conn);
+            assertEquals("uncommitted", rec.getString(db.DEPARTMENT.NAME));
+            assertEquals(0, cache.getSize());
+
+            // rollback
+            db.rollback(conn);
+            assertFalse(cache.hasPendingWrites(conn));
+
+            // read: the committed row is read and cached again
+            rec.read(db.DEPARTMENT, id, conn);
+            assertEquals("junit", rec.getString(db.DEPARTMENT.NAME));
+            assertEquals(1, cache.getSize());
+            rec.read(db.DEPARTMENT, id, conn);
+            assertEquals("junit", rec.getString(db.DEPARTMENT.NAME));
+
+            // set based update and commit
+            DBCommand cmd = db.createCommand();
+            cmd.set(db.DEPARTMENT.NAME.to("committed"));
+            db.executeUpdate(cmd, conn);
+            rec.read(db.DEPARTMENT, id, conn);
+            assertEquals(0, cache.getSize());
+            db.commit(conn);
+            assertFalse(cache.hasPendingWrites(conn));
+            rec.read(db.DEPARTMENT, id, conn);
+            assertEquals("committed", rec.getString(db.DEPARTMENT.NAME));
+            assertEquals(1, cache.getSize());
+        } finally {
+            conn.setAutoCommit(true);
+            db.DEPARTMENT.setRowCache(null);
+        }
+    }
+}
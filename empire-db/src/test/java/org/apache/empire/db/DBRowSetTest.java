@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.apache.empire.data.DataType;
+import org.apache.empire.exceptions.InvalidArgumentException;
+import org.junit.Test;
+
+public class DBRowSetTest
+{
+    @Test
+    public void testColumnIndexByIdentity()
+    {
+        CompanyDB db = new CompanyDB();
+        db.open(new MockDriver(), null);
+
+        for (int i=0; i<db.DEPARTMENT.getColumns().size(); i++)
+            assertEquals(i, db.DEPARTMENT.getColumnIndex(db.DEPARTMENT.getColumn(i)));
+        assertEquals(1, db.DEPARTMENT.getColumnIndex(db.DEPARTMENT.NAME));
+        // columns of other rowsets
+        assertEquals(-1, db.DEPARTMENT.getColumnIndex(db.EMPLOYEE.ID));
+        assertEquals(-1, db.DEPARTMENT.getColumnIndex((DBColumn)null));
+    }
+
+    @Test
+    public void testColumnIndexByEquals() throws Exception
+    {
+        CompanyDB db = new CompanyDB();
+        db.open(new MockDriver(), null);
+
+        // a deserialized column is a different instance of an equal column
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(baos);
+        oos.writeObject(db.DEPARTMENT.NAME);
+        ObjectInputStream oin = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()));
+        DBColumn column = (DBColumn) oin.readObject();
+        assertNotSame(db.DEPARTMENT.NAME, column);
+        assertEquals(db.DEPARTMENT.NAME, column);
+        assertEquals(1, db.DEPARTMENT.getColumnIndex(column));
+    }
+
+    @Test
+    public void testColumnIndexAfterChange()
+    {
+        TestDB db = new TestDB();
+        TestTable table = db.T_TEST;
+        DBColumn a = table.getColumn(0);
+        DBColumn b = table.getColumn(1);
+        assertEquals(0, table.getColumnIndex(a));
+        assertEquals(1, table.getColumnIndex(b));
+
+        // add
+        DBColumn c = table.addColumn("C", DataType.TEXT, 20, false);
+        assertEquals(2, table.getColumnIndex(c));
+
+        // remove
+        table.removeColumn(a);
+        assertEquals(-1, table.getColumnIndex(a));
+        assertEquals(0, table.getColumnIndex(b));
+        assertEquals(1, table.getColumnIndex(c));
+
+        // remove and add (the column count does not change)
+        table.removeColumn(b);
+        DBColumn d = table.addColumn("D", DataType.TEXT, 20, false);
+        assertEquals(-1, table.getColumnIndex(b));
+        assertEquals(0, table.getColumnIndex(c));
+        assertEquals(1, table.getColumnIndex(d));
+
+        // columns of other rowsets cannot be removed
+        try {
+            table.removeColumn(db.T_OTHER.getColumn(0));
+            fail("InvalidArgumentException expected");
+        } catch(InvalidArgumentException e) {
+            // expected
+        }
+        assertEquals(2, table.getColumns().size());
+    }
+
+    /**
+     * A database with a modifiable table
+     */
+    static class TestDB extends DBDatabase
+    {
+        private final static long serialVersionUID = 1L;
+        public final TestTable T_TEST  = new TestTable("TEST", this);
+        public final TestTable T_OTHER = new TestTable("OTHER", this);
+    }
+
+    static class TestTable extends DBTable
+    {
+        private final static long serialVersionUID = 1L;
+
+        TestTable(String name, DBDatabase db)
+        {
+            super(name, db);
+            addColumn("A", DataType.INTEGER, 0, true);
+            addColumn("B", DataType.TEXT, 20, false);
+        }
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.apache.empire.DBResource;
+import org.apache.empire.DBResource.DB;
+import org.junit.Rule;
+import org.junit.Test;
+
+
+public class DBSQLScriptTest{
+
+    @Rule
+    public DBResource dbResource = new DBResource(DB.HSQL);
+
+    @Test
+    public void testStmtDependencies()
+    {
+        CompanyDB db = new CompanyDB();
+        DBSQLScript script = new DBSQLScript();
+        script.addStmt("CREATE SEQUENCE");                                          // 0
+        script.addStmt("CREATE TABLE DEPARTMENTS", null, db.DEPARTMENT);            // 1
+        script.addStmt("CREATE TABLE EMPLOYEES", null, db.EMPLOYEE);                // 2
+        script.addStmt("CREATE INDEX ON DEPARTMENTS", null, db.DEPARTMENT);         // 3
+        script.addStmt("ALTER TABLE EMPLOYEES", null, db.EMPLOYEE, db.DEPARTMENT);  // 4
+        script.addStmt("CREATE VIEW");                                              // 5
+        script.addStmt("INSERT INTO EMPLOYEES", null, db.EMPLOYEE);                 // 6
+
+        int[][] deps = script.getStmtDependencies();
+        assertArrayEquals(new int[] { }, deps[0]);
+        assertArrayEquals(new int[] { 0 }, deps[1]);
+        assertArrayEquals(new int[] { 0 }, deps[2]);
+        assertArrayEquals(new int[] { 0, 1 }, deps[3]);
+        assertArrayEquals(new int[] { 0, 2, 3 }, deps[4]);
+        assertArrayEquals(new int[] { 0, 1, 2, 3, 4 }, deps[5]);
+        assertArrayEquals(new int[] { 5 }, deps[6]);
+    }
+
+    @Test
+    public void testStmtDependenciesWriteAfterRead()
+    {
+        CompanyDB db = new CompanyDB();
+        DBSQLScript script = new DBSQLScript();
+        script.addStmt("CREATE TABLE DEPARTMENTS", null, db.DEPARTMENT);             // 0
+        script.addStmt("CREATE TABLE EMPLOYEES", null, db.EMPLOYEE, db.DEPARTMENT);  // 1
+        script.addStmt("ALTER TABLE DEPARTMENTS", null, db.DEPARTMENT);              // 2
+        script.addStmt("INSERT INTO EMPLOYEES", null, db.EMPLOYEE, db.DEPARTMENT);   // 3
+        script.addStmt("DELETE FROM DEPARTMENTS", null, db.DEPARTMENT);              // 4
+        script.addStmt("INSERT INTO DATA", null, db.DATA);                           // 5
+
+        int[][] deps = script.getStmtDependencies();
+        assertArrayEquals(new int[] { }, deps[0]);
+        assertArrayEquals(new int[] { 0 }, deps[1]);
+        // must wait for the statement requiring the table
+        assertArrayEquals(new int[] { 0, 1 }, deps[2]);
+        assertArrayEquals(new int[] { 1, 2 }, deps[3]);
+        assertArrayEquals(new int[] { 2, 3 }, deps[4]);
+        assertArrayEquals(new int[] { }, deps[5]);
+    }
+
+    @Test
+    public void testExecuteParallel()
+    {
+        Connection conn = dbResource.getConnection();
+
+        DBDatabaseDriver driver = dbResource.newDriver();
+        CompanyDB db = new CompanyDB();
+        db.open(driver, conn);
+        DBSQLScript script = new DBSQLScript();
+        db.getCreateDDLScript(db.getDriver(), script);
+
+        final AtomicInteger executed = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        DBSQLScript.ExecutionListener listener = new DBSQLScript.ExecutionListener() {
+            @Override
+            public void stmtExecuted(int index, String sql, int affected, long nanos)
+            {
+                executed.incrementAndGet();
+            }
+            @Override
+            public void stmtFailed(int index, String sql, SQLException e)
+            {
+                failed.incrementAndGet();
+            }
+        };
+        script.executeParallel(driver, new TestDataSource(), 4, false, listener);
+        assertEquals(script.getCount(), executed.get());
+        assertEquals(0, failed.get());
+
+        // tables must exist
+        DBRecord department = new DBRecord();
+        department.create(db.DEPARTMENT);
+        department.setValue(db.DEPARTMENT.NAME, "parallel");
+        department.setValue(db.DEPARTMENT.BUSINESS_UNIT, "test");
+        department.update(conn);
+        assertTrue(department.getInt(db.DEPARTMENT.ID) > 0);
+    }
+
+    @Test
+    public void testExecuteParallelRollback()
+    {
+        CompanyDB db = new CompanyDB();
+        DBSQLScript script = new DBSQLScript();
+        script.addStmt("INSERT INTO DEPARTMENTS", null, db.DEPARTMENT);
+        script.addStmt("FAIL INSERT INTO EMPLOYEES", null, db.EMPLOYEE);
+        script.addStmt("INSERT INTO DATA", null, db.DATA);
+        script.addStmt("UPDATE DEPARTMENTS", null, db.DEPARTMENT);
+
+        final AtomicInteger executed = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        DBSQLScript.ExecutionListener listener = new DBSQLScript.ExecutionListener() {
+            @Override
+            public void stmtExecuted(int index, String sql, int affected, long nanos)
+            {
+                executed.incrementAndGet();
+            }
+            @Override
+            public void stmtFailed(int index, String sql, SQLException e)
+            {
+                failed.incrementAndGet();
+            }
+        };
+        // a single worker executes all statements on the same connection
+        TransactionDataSource dataSource = new TransactionDataSource();
+        script.executeParallel(new TransactionDriver(), dataSource, 1, true, listener);
+        assertEquals(3, executed.get());
+        assertEquals(1, failed.get());
+        assertEquals(1, dataSource.connections.get());
+        assertEquals(0, dataSource.closedInTransaction.get());
+    }
+
+    /**
+     * A driver that fails on statements starting with FAIL.<br>
+     * Like PostgreSQL every statement fails after an error until the transaction has been rolled back.
+     */
+    private static class TransactionDriver extends MockDriver
+    {
+        private final static long serialVersionUID = 1L;
+
+        @Override
+        public int executeSQL(String sqlCmd, Object[] sqlParams, Connection conn, DBSetGenKeys genKeys)
+            throws SQLException
+        {
+            TransactionState state = (TransactionState)Proxy.getInvocationHandler(conn);
+            if (state.aborted)
+                throw new SQLException("current transaction is aborted");
+            state.open = true;
+            if (sqlCmd.startsWith("FAIL"))
+            {   state.aborted = true;
+                throw new SQLException("failed");
+            }
+            return 1;
+        }
+    }
+
+    /**
+     * Provides connections which are not in auto-commit mode
+     */
+    private static class TransactionDataSource extends TestDataSource
+    {
+        private final AtomicInteger connections = new AtomicInteger();
+        private final AtomicInteger closedInTransaction = new AtomicInteger();
+
+        @Override
+        public Connection getConnection() throws SQLException
+        {
+            connections.incrementAndGet();
+            return (Connection)Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class }, new TransactionState(closedInTransaction));
+        }
+    }
+
+    /**
+     * The transaction state of a connection
+     */
+    private static class TransactionState implements InvocationHandler
+    {
+        private final AtomicInteger closedInTransaction;
+        private boolean open = false;
+        private boolean aborted = false;
+
+        public TransactionState(AtomicInteger closedInTransaction)
+        {
+            this.closedInTransaction = closedInTransaction;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args)
+        {
+            String name = method.getName();
+            if (name.equals("getAutoCommit"))
+                return false;
+            if (name.equals("commit") || name.equals("rollback"))
+            {   // an aborted transaction is rolled back on commit
+                open = false;
+                aborted = false;
+                return null;
+            }
+            if (name.equals("close"))
+            {   if (open)
+                    closedInTransaction.incrementAndGet();
+                return null;
+            }
+            if (name.equals("hashCode"))
+                return System.identityHashCode(proxy);
+            if (name.equals("equals"))
+                return (proxy==args[0]);
+            throw new UnsupportedOperationException(name);
+        }
+    }
+
+    /**
+     * Provides connections to the in-memory database
+     */
+    private static class TestDataSource implements DataSource
+    {
+        public Connection getConnection() throws SQLException
+        {
+            return DriverManager.getConnection("jdbc:hsqldb:mem:data/derby/test", "sa", "");
+        }
+        public Connection getConnection(String username, String password) throws SQLException
+        {
+            return DriverManager.getConnection("jdbc:hsqldb:mem:data/derby/test", username, password);
+        }
+        public PrintWriter getLogWriter()
+        {
+            return null;
+        }
+        public void setLogWriter(PrintWriter out)
+        {
+            // not used
+        }
+        public void setLoginTimeout(int seconds)
+        {
+            // not used
+        }
+        public int getLoginTimeout()
+        {
+            return 0;
+        }
+        public java.util.logging.Logger getParentLogger()
+        {
+            return null;
+        }
+        public <T> T unwrap(Class<T> iface) throws SQLException
+        {
+            throw new SQLException("not a wrapper");
+        }
+        public boolean isWrapperFor(Class<?> iface)
+        {
+            return false;
+        }
+    }
+}
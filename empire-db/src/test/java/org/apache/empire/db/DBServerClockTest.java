@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.Timestamp;
+
+import org.junit.Test;
+
+public class DBServerClockTest
+{
+    private static final long OFFSET = 3600000L;
+
+    /**
+     * A clock for a server which is one hour ahead
+     */
+    private static class MockServerClock extends DBServerClock
+    {
+        private static final long serialVersionUID = 1L;
+
+        private long skew = 0;
+
+        public MockServerClock()
+        {
+            super(null, null);
+        }
+
+        @Override
+        protected Timestamp queryServerTime(Connection conn)
+        {
+            return new Timestamp(System.currentTimeMillis() + OFFSET + skew);
+        }
+    }
+
+    @Test
+    public void testCalibratedTimestamps()
+    {
+        MockServerClock clock = new MockServerClock();
+        long prev = 0;
+        for (int i=0; i<1000; i++)
+        {
+            long ts = clock.getTimestamp(null).getTime();
+            // strictly increasing
+            assertTrue(ts > prev);
+            prev = ts;
+        }
+        // queried only once
+        assertEquals(1, clock.getSyncCount());
+        // server time
+        long diff = clock.getTimestamp(null).getTime() - (System.currentTimeMillis() + OFFSET);
+        assertTrue("Deviation is "+diff, Math.abs(diff) < 1000 + clock.getMaxDrift());
+    }
+
+    @Test
+    public void testPrecision()
+    {
+        MockServerClock clock = new MockServerClock();
+        clock.setPrecision(1000);
+        long prev = 0;
+        for (int i=0; i<1000; i++)
+        {
+            long ts = clock.getTimestamp(null).getTime();
+            // truncated to seconds and not decreasing
+            assertEquals(0, ts % 1000);
+            assertTrue(ts >= prev);
+            prev = ts;
+        }
+        // not ahead of the server time
+        long diff = clock.getTimestamp(null).getTime() - (System.currentTimeMillis() + OFFSET);
+        assertTrue("Deviation is "+diff, diff <= clock.getMaxDrift());
+    }
+
+    @Test
+    public void testResync()
+    {
+        MockServerClock clock = new MockServerClock();
+        clock.setResyncInterval(0);
+        clock.getTimestamp(null);
+        clock.getTimestamp(null);
+        assertEquals(2, clock.getSyncCount());
+        // server clock set back: timestamps still increase
+        long last = clock.getTimestamp(null).getTime();
+        clock.skew = -60000;
+        long next = clock.getTimestamp(null).getTime();
+        assertTrue(next > last);
+        assertEquals(0.0d, clock.getDriftRate(), 0.0d);
+        // reset
+        clock.setResyncInterval(60000);
+        clock.reset();
+        clock.getTimestamp(null);
+        assertEquals(5, clock.getSyncCount());
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+
+import org.apache.empire.DBResource;
+import org.apache.empire.DBResource.DB;
+import org.apache.empire.db.DBStatementStats.Phase;
+import org.junit.Rule;
+import org.junit.Test;
+
+
+public class DBStatementMetricsTest{
+
+    @Rule
+    public DBResource dbResource = new DBResource(DB.HSQL);
+
+    @Test
+    public void testNormalizeSql()
+    {
+        assertEquals("SELECT t.NAME FROM T t WHERE t.ID=? AND t.NAME=?", 
+                     DBStatementMetrics.normalizeSql("SELECT t.NAME\r\nFROM T t\r\nWHERE t.ID=12 AND t.NAME='it''s'"));
+        assertEquals("SELECT COL1 FROM \"TABLE 2\" WHERE X IN (?, ?)", 
+                     DBStatementMetrics.normalizeSql("SELECT COL1 FROM \"TABLE 2\" WHERE X IN (1.5, 2)"));
+    }
+
+    @Test
+    public void testMetrics()
+    {
+        Connection conn = dbResource.getConnection();
+
+        DBDatabaseDriver driver = dbResource.newDriver();
+        CompanyDB db = new CompanyDB();
+        db.open(driver, conn);
+        DBSQLScript script = new DBSQLScript();
+        db.getCreateDDLScript(db.getDriver(), script);
+        script.run(db.getDriver(), conn, false);
+
+        DBStatementMetrics metrics = new DBStatementMetrics();
+        driver.setInstrumentation(metrics);
+        db.setPreparedStatementsEnabled(true);
+        driver.setStatementCacheSize(10);
+
+        for (int i=0; i<5; i++)
+        {
+            DBRecord department = new DBRecord();
+            department.create(db.DEPARTMENT);
+            department.setValue(db.DEPARTMENT.NAME, "junit"+i);
+            department.setValue(db.DEPARTMENT.BUSINESS_UNIT, "test");
+            department.update(conn);
+        }
+
+        // read with a reader
+        DBCommand cmd = db.createCommand();
+        cmd.select(db.DEPARTMENT.NAME);
+        cmd.where(db.DEPARTMENT.BUSINESS_UNIT.is("test"));
+        DBReader r = new DBReader();
+        try {
+            r.open(cmd, conn);
+            while (r.moveNext())
+                assertNotNull(r.getString(db.DEPARTMENT.NAME));
+        } finally {
+            r.close();
+        }
+        DBStatementStats stats = metrics.getStatistics(cmd.getSelect());
+        assertNotNull(stats);
+        assertEquals(1, stats.getExecutionCount());
+        assertEquals(5, stats.getRowsFetched());
+        assertEquals(1, stats.getTimer(Phase.FETCH).getCount());
+        assertEquals(1, stats.getTimer(Phase.CLOSE).getCount());
+
+        // query list
+        assertEquals(5, db.queryObjectList(cmd, conn).size());
+        assertEquals(2, stats.getExecutionCount());
+        assertEquals(10, stats.getRowsFetched());
+
+        // inserts share one shape and reuse the cached statement
+        assertTrue(metrics.getCacheHitCount() >= 4);
+        assertTrue(metrics.getExecutionCount() >= 7);
+        long p50 = stats.getTimer(Phase.EXECUTE).getPercentileNanos(0.5);
+        assertTrue(p50 > 0 && p50 <= stats.getTimer(Phase.EXECUTE).getMaxNanos());
+        assertTrue(metrics.getTopStatements(3).length > 0);
+
+        // reset
+        metrics.reset();
+        assertEquals(0, metrics.getStatementShapeCount());
+        driver.setInstrumentation(null);
+        driver.releaseStatementCache(conn);
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.sql.Connection;
+
+import org.apache.empire.DBResource;
+import org.apache.empire.DBResource.DB;
+import org.junit.Rule;
+import org.junit.Test;
+
+
+public class LobDataTest{
+
+    @Rule
+    public DBResource dbResource = new DBResource(DB.HSQL);
+
+    @Test
+    public void testBlobData()
+    {
+        Connection conn = dbResource.getConnection();
+
+        DBDatabaseDriver driver = dbResource.newDriver();
+        CompanyDB db = new CompanyDB();
+        db.open(driver, conn);
+        DBSQLScript script = new DBSQLScript();
+        db.getCreateDDLScript(db.getDriver(), script);
+        script.run(db.getDriver(), conn, false);
+
+        byte[] data = new byte[20000];
+        for (int i=0; i<data.length; i++)
+            data[i] = (byte)(i % 251);
+
+        DBRecord rec = new DBRecord();
+        rec.create(db.DATA);
+        rec.setValue(db.DATA.DATA, new DBBlobData(data));
+        rec.update(conn);
+        int id = rec.getInt(db.DATA.ID);
+
+        DBCommand cmd = db.createCommand();
+        cmd.select(db.DATA.ID, db.DATA.DATA);
+        cmd.where(db.DATA.ID.is(id));
+
+        DBReader r = new DBReader();
+        try {
+            r.open(cmd, conn);
+            assertTrue(r.moveNext());
+            DBBlobData blob = r.getBlobData(db.DATA.DATA);
+            assertNotNull(blob);
+            assertEquals(data.length, blob.getLongLength());
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            assertEquals(data.length, blob.copyTo(out));
+            assertArrayEquals(data, out.toByteArray());
+        } finally {
+            r.close();
+        }
+
+        // copy using the stream from the reader
+        DBRecord copy = new DBRecord();
+        try {
+            r.open(cmd, conn);
+            assertTrue(r.moveNext());
+            copy.create(db.DATA);
+            copy.setValue(db.DATA.DATA, r.getBlobData(db.DATA.DATA));
+            copy.update(conn);
+        } finally {
+            r.close();
+        }
+        DBRecord check = new DBRecord();
+        check.read(db.DATA, copy.getInt(db.DATA.ID), conn);
+        assertArrayEquals(data, check.getBlobData(db.DATA.DATA).getBytes());
+
+        // below threshold
+        driver.setLobMaterializeThreshold(data.length);
+        try {
+            r.open(cmd, conn);
+            assertTrue(r.moveNext());
+            DBBlobData blob = r.getBlobData(db.DATA.DATA);
+            r.close();
+            // must be available after close
+            assertArrayEquals(data, blob.getBytes());
+        } finally {
+            r.close();
+        }
+    }
+}
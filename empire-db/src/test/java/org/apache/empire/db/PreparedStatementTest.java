@@ -85,5 +85,42 @@ public class PreparedStatementTest{
         } finally {
             r.close();
         }
+
+        // streaming reader
+        try {
+            r.openStreaming(cmd, conn);
+            assertEquals(true, r.moveNext());
+            assertEquals(id, r.getInt(DEP.ID));
+            assertEquals(false, r.moveNext());
+        } finally {
+            r.close();
+        }
+
+        // compiled command
+        DBCmdPlan plan = cmd.compileSelect();
+        assertTrue(plan.isQuery());
+        assertEquals(1, plan.getParamCount());
+        assertEquals(cmd.getSelect(), plan.getSql());
+        // changing the command must not affect the plan
+        cmd.where(DEP.NAME.is("other"));
+        assertTrue(plan.getSql().indexOf("other") < 0);
+        // execute plan
+        Object[] values = plan.getParamValues();
+        plan.setParamValue(values, empIdParam, id);
+        try {
+            r.open(plan, values, conn);
+            assertEquals(true, r.moveNext());
+            assertEquals(id, r.getInt(DEP.ID));
+            assertEquals("junit", r.getString(DEP.NAME));
+        } finally {
+            r.close();
+        }
+        // positional binding
+        try {
+            r.open(plan, plan.bind(id + 1), conn);
+            assertEquals(false, r.moveNext());
+        } finally {
+            r.close();
+        }
     }
 }
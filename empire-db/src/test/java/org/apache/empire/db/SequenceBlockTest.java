@@ -0,0 +1,208 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+
+import org.apache.empire.DBResource;
+import org.apache.empire.DBResource.DB;
+import org.apache.empire.exceptions.MiscellaneousErrorException;
+import org.junit.Rule;
+import org.junit.Test;
+
+
+public class SequenceBlockTest{
+
+    @Rule
+    public DBResource dbResource = new DBResource(DB.HSQL);
+
+    @Test
+    public void testSequenceBlock()
+    {
+        Connection conn = dbResource.getConnection();
+
+        DBDatabaseDriver driver = dbResource.newDriver();
+        driver.setSequenceBlockSize("DEP_ID_SEQUENCE", 5);
+        assertEquals(5, driver.getSequenceBlockSize("DEP_ID_SEQUENCE"));
+        assertEquals(1, driver.getSequenceBlockSize("EMPLOYEE_ID_SEQUENCE"));
+        
+        CompanyDB db = new CompanyDB();
+        db.open(driver, conn);
+        DBSQLScript script = new DBSQLScript();
+        db.getCreateDDLScript(db.getDriver(), script);
+        script.run(db.getDriver(), conn, false);
+        
+        // values must be consecutive
+        long first = ((Number)db.getNextSequenceValue("DEP_ID_SEQUENCE", conn)).longValue();
+        for (int i=1; i<12; i++)
+        {
+            long value = ((Number)db.getNextSequenceValue("DEP_ID_SEQUENCE", conn)).longValue();
+            assertEquals(first + i, value);
+        }
+        
+        // discarded values must not be used again
+        driver.discardSequenceBlocks();
+        long next = ((Number)db.getNextSequenceValue("DEP_ID_SEQUENCE", conn)).longValue();
+        assertTrue(next > first + 11);
+        
+        // records
+        DBRecord department = new DBRecord();
+        department.create(db.DEPARTMENT);
+        department.setValue(db.DEPARTMENT.NAME, "junit");
+        department.setValue(db.DEPARTMENT.BUSINESS_UNIT, "test");
+        department.update(conn);
+        assertEquals(next + 1, department.getLong(db.DEPARTMENT.ID));
+    }
+
+    @Test
+    public void testRollbackKeepsNativeBlocks()
+        throws Exception
+    {
+        Connection conn = dbResource.getConnection();
+
+        DBDatabaseDriver driver = dbResource.newDriver();
+        driver.setSequenceBlockSize("DEP_ID_SEQUENCE", 5);
+
+        CompanyDB db = new CompanyDB();
+        db.open(driver, conn);
+        DBSQLScript script = new DBSQLScript();
+        db.getCreateDDLScript(db.getDriver(), script);
+        script.run(db.getDriver(), conn, false);
+
+        conn.setAutoCommit(false);
+        try {
+            long first = ((Number)db.getNextSequenceValue("DEP_ID_SEQUENCE", conn)).longValue();
+            db.rollback(conn);
+            // values of a native sequence are not given back by a rollback
+            assertEquals(first + 1, ((Number)db.getNextSequenceValue("DEP_ID_SEQUENCE", conn)).longValue());
+            db.commit(conn);
+            assertEquals(first + 2, ((Number)db.getNextSequenceValue("DEP_ID_SEQUENCE", conn)).longValue());
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    @Test
+    public void testUncommittedBlocks()
+    {
+        SeqTableDriver driver = new SeqTableDriver();
+        driver.setSequenceBlockSize("SEQ", 5);
+        CompanyDB db = new CompanyDB();
+        db.open(driver, null);
+
+        Connection conn1 = createConnection(false);
+        Connection conn2 = createConnection(false);
+        Connection conn3 = createConnection(true);
+        // a block reserved by an uncommitted transaction is not used by other connections
+        assertEquals(1, ((Number)db.getNextSequenceValue("SEQ", conn1)).longValue());
+        assertEquals(6, ((Number)db.getNextSequenceValue("SEQ", conn2)).longValue());
+        assertEquals(2, ((Number)db.getNextSequenceValue("SEQ", conn1)).longValue());
+        // rollback discards the block of this connection only
+        db.rollback(conn1);
+        assertEquals(7, ((Number)db.getNextSequenceValue("SEQ", conn2)).longValue());
+        // commit makes the block available to all connections
+        db.commit(conn2);
+        assertEquals(8, ((Number)db.getNextSequenceValue("SEQ", conn1)).longValue());
+        assertEquals(9, ((Number)db.getNextSequenceValue("SEQ", conn3)).longValue());
+        // blocks reserved in auto-commit mode are shared at once
+        assertEquals(10, ((Number)db.getNextSequenceValue("SEQ", conn3)).longValue());
+        assertEquals(11, ((Number)db.getNextSequenceValue("SEQ", conn3)).longValue());
+        assertEquals(12, ((Number)db.getNextSequenceValue("SEQ", conn1)).longValue());
+    }
+
+    @Test
+    public void testIncrementMismatch()
+    {
+        Connection conn = dbResource.getConnection();
+
+        // sequence is created with an increment of 1
+        DBDatabaseDriver driver = dbResource.newDriver();
+        CompanyDB db = new CompanyDB();
+        db.open(driver, conn);
+        DBSQLScript script = new DBSQLScript();
+        db.getCreateDDLScript(db.getDriver(), script);
+        script.run(db.getDriver(), conn, false);
+
+        driver.setSequenceBlockSize("DEP_ID_SEQUENCE", 5);
+        try {
+            db.getNextSequenceValue("DEP_ID_SEQUENCE", conn);
+            fail("MiscellaneousErrorException expected");
+        } catch(MiscellaneousErrorException e) {
+            // expected
+        }
+        // matching increment
+        driver.setSequenceBlockSize("DEP_ID_SEQUENCE", 1);
+        long first = ((Number)db.getNextSequenceValue("DEP_ID_SEQUENCE", conn)).longValue();
+        assertEquals(first + 1, ((Number)db.getNextSequenceValue("DEP_ID_SEQUENCE", conn)).longValue());
+    }
+
+    /**
+     * Creates a connection that only supports getAutoCommit(), commit() and rollback()
+     */
+    private static Connection createConnection(final boolean autoCommit)
+    {
+        return (Connection)Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class }, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args)
+            {
+                String name = method.getName();
+                if (name.equals("getAutoCommit"))
+                    return autoCommit;
+                if (name.equals("hashCode"))
+                    return System.identityHashCode(proxy);
+                if (name.equals("equals"))
+                    return (proxy==args[0]);
+                if (name.equals("commit") || name.equals("rollback"))
+                    return null;
+                throw new UnsupportedOperationException(name);
+            }
+        });
+    }
+
+    /**
+     * A driver emulating a sequence table.<br>
+     * Each reservation increments the sequence by the block size.
+     */
+    private static class SeqTableDriver extends MockDriver
+    {
+        private final static long serialVersionUID = 1L;
+        private long nextValue = 1;
+
+        @Override
+        public Object getNextSequenceValue(DBDatabase db, String SeqName, int minValue, Connection conn)
+        {
+            long value = nextValue;
+            nextValue += getSequenceBlockSize(SeqName);
+            return value;
+        }
+
+        @Override
+        protected boolean isSequenceBlockTransactional(DBDatabase db, String seqName)
+        {
+            return true;
+        }
+    }
+}
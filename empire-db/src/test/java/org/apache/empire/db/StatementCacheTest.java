@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+
+import org.apache.empire.DBResource;
+import org.apache.empire.DBResource.DB;
+import org.junit.Rule;
+import org.junit.Test;
+
+
+public class StatementCacheTest{
+
+    @Rule
+    public DBResource dbResource = new DBResource(DB.HSQL);
+
+    @Test
+    public void testStatementCache()
+    {
+        Connection conn = dbResource.getConnection();
+
+        DBDatabaseDriver driver = dbResource.newDriver();
+        CompanyDB db = new CompanyDB();
+        db.open(driver, conn);
+        DBSQLScript script = new DBSQLScript();
+        db.getCreateDDLScript(db.getDriver(), script);
+        script.run(db.getDriver(), conn, false);
+
+        db.setPreparedStatementsEnabled(true);
+        driver.setStatementCacheSize(10);
+
+        int[] ids = new int[3];
+        for (int i=0; i<ids.length; i++)
+        {
+            DBRecord department = new DBRecord();
+            department.create(db.DEPARTMENT);
+            department.setValue(db.DEPARTMENT.NAME, "junit"+i);
+            department.setValue(db.DEPARTMENT.BUSINESS_UNIT, "test");
+            department.update(conn);
+            ids[i] = department.getInt(db.DEPARTMENT.ID);
+        }
+
+        // read the records again
+        for (int i=0; i<ids.length; i++)
+        {
+            DBRecord department = new DBRecord();
+            department.read(db.DEPARTMENT, ids[i], conn);
+            assertEquals("junit"+i, department.getString(db.DEPARTMENT.NAME));
+        }
+
+        DBStatementCache cache = driver.getStatementCache(conn);
+        assertNotNull(cache);
+        // insert and select statements must have been reused
+        assertTrue(cache.getHitCount() >= 4);
+        assertTrue(cache.getSize() > 0);
+
+        // release the cache
+        driver.releaseStatementCache(conn);
+        assertNull(driver.getStatementCache(conn));
+        assertEquals(0, cache.getSize());
+    }
+}
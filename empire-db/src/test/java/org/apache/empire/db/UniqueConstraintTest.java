@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.empire.DBResource;
+import org.apache.empire.DBResource.DB;
+import org.junit.Rule;
+import org.junit.Test;
+
+
+public class UniqueConstraintTest{
+
+    @Rule
+    public DBResource dbResource = new DBResource(DB.HSQL);
+
+    @Test
+    public void testCheckUniqueConstraints()
+    {
+        Connection conn = dbResource.getConnection();
+
+        DBDatabaseDriver driver = dbResource.newDriver();
+        CompanyDB db = new CompanyDB();
+        db.open(driver, conn);
+        DBSQLScript script = new DBSQLScript();
+        db.getCreateDDLScript(db.getDriver(), script);
+        script.run(db.getDriver(), conn, false);
+
+        DBRecord existing = createDepartment(db, "existing");
+        existing.update(conn);
+
+        // single record
+        DBRecord rec = createDepartment(db, "existing");
+        DBIndex idx = db.DEPARTMENT.checkUniqueConstraints(rec, conn);
+        assertEquals("DEARTMENT_NAME_IDX", idx.getName());
+        rec.setValue(db.DEPARTMENT.NAME, "other");
+        assertNull(db.DEPARTMENT.checkUniqueConstraints(rec, conn));
+        // unmodified records are not checked
+        assertNull(db.DEPARTMENT.checkUniqueConstraints(existing, conn));
+
+        // batch
+        List<DBRecord> batch = new ArrayList<DBRecord>();
+        for (int i=0; i<250; i++)
+            batch.add(createDepartment(db, "batch"+i));
+        DBRecord dup1 = createDepartment(db, "duplicate");
+        DBRecord dup2 = createDepartment(db, "duplicate");
+        DBRecord dbDup = createDepartment(db, "existing");
+        batch.add(dup1);
+        batch.add(dbDup);
+        batch.add(dup2);
+        Map<DBRecord, List<DBIndex>> result = db.DEPARTMENT.checkUniqueConstraints(batch, conn);
+        assertEquals(3, result.size());
+        assertTrue(result.containsKey(dup1));
+        assertTrue(result.containsKey(dup2));
+        assertTrue(result.containsKey(dbDup));
+        assertEquals(1, result.get(dbDup).size());
+        assertEquals("DEARTMENT_NAME_IDX", result.get(dbDup).get(0).getName());
+        assertFalse(result.containsKey(batch.get(0)));
+    }
+
+    @Test
+    public void testUniqueKeyValues()
+    {
+        Connection conn = dbResource.getConnection();
+
+        DBDatabaseDriver driver = dbResource.newDriver();
+        CompanyDB db = new CompanyDB();
+        db.open(driver, conn);
+        DBSQLScript script = new DBSQLScript();
+        db.getCreateDDLScript(db.getDriver(), script);
+        script.run(db.getDriver(), conn, false);
+
+        // values containing the separator of the former key string
+        DBRecord tab1 = createEmployee(db, "a\tb", "c", new Date(0));
+        DBRecord tab2 = createEmployee(db, "a", "b\tc", new Date(0));
+        // null values are not unique
+        DBRecord null1 = createEmployee(db, "null", "value", null);
+        DBRecord null2 = createEmployee(db, "null", "value", null);
+        // equal values of different types
+        long time = System.currentTimeMillis();
+        DBRecord date1 = createEmployee(db, "same", "date", new Date(time));
+        DBRecord date2 = createEmployee(db, "same", "date", new Timestamp(time));
+
+        Map<DBRecord, List<DBIndex>> result = db.EMPLOYEE.checkUniqueConstraints(Arrays.asList(tab1, tab2, null1, null2, date1, date2), conn);
+        assertEquals(2, result.size());
+        assertTrue(result.containsKey(date1));
+        assertTrue(result.containsKey(date2));
+        assertEquals("EMPLOYEE_NAME_IDX", result.get(date1).get(0).getName());
+    }
+
+    private DBRecord createEmployee(CompanyDB db, String firstName, String lastName, Date dateOfBirth)
+    {
+        DBRecord employee = new DBRecord();
+        employee.create(db.EMPLOYEE);
+        employee.setValue(db.EMPLOYEE.FIRSTNAME, firstName);
+        employee.setValue(db.EMPLOYEE.LASTNAME, lastName);
+        employee.setValue(db.EMPLOYEE.DATE_OF_BIRTH, dateOfBirth);
+        return employee;
+    }
+
+    private DBRecord createDepartment(CompanyDB db, String name)
+    {
+        DBRecord department = new DBRecord();
+        department.create(db.DEPARTMENT);
+        department.setValue(db.DEPARTMENT.NAME, name);
+        department.setValue(db.DEPARTMENT.BUSINESS_UNIT, "test");
+        return department;
+    }
+}